@@ -0,0 +1,477 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson.processor;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes the source of a record's codec. The generated reader dispatches on each key's length, and then on the
+ *  characters that tell the record's keys of that length apart, before confirming the match with equals; the
+ *  generated writer writes the components in declaration order, with their names as constants
+ */
+final class CodecGenerator {
+    private static final String SUFFIX = "_JsonCodec";
+
+    private static final Map<String, String> BOXES = Map.of(
+            "java.lang.Integer", "Integer.valueOf(%s.nextInt())",
+            "java.lang.Long", "Long.valueOf(%s.nextLong())",
+            "java.lang.Double", "Double.valueOf(%s.nextDouble())",
+            "java.lang.Float", "Float.valueOf((float) %s.nextDouble())",
+            "java.lang.Boolean", "Boolean.valueOf(%s.nextBoolean())"
+    );
+
+    /**
+     * Thrown when a record (or one of its components) can't have a codec generated for it
+     */
+    static final class UnsupportedException extends RuntimeException {
+        final transient Element element;
+
+        UnsupportedException(String message, Element element) {
+            super(message);
+            this.element = element;
+        }
+    }
+
+    private final TypeElement record;
+    private final List<VariableElement> components = new ArrayList<>();
+    private final StringBuilder out = new StringBuilder();
+    private VariableElement component; // The component being generated, for error messages
+    private int variables; // For unique names of temporary variables
+
+    CodecGenerator(TypeElement record) {
+        this.record = record;
+
+        if (!record.getTypeParameters().isEmpty())
+            throw new UnsupportedException("@JsonModel records cannot be generic", record);
+
+        // A record's instance fields are its components, in order
+        for (Element element : record.getEnclosedElements())
+            if (element.getKind() == ElementKind.FIELD && !element.getModifiers().contains(Modifier.STATIC))
+                components.add((VariableElement) element);
+    }
+
+    /**
+     * @return the fully qualified name of the codec
+     */
+    String codecName() {
+        return qualifiedCodecName(record);
+    }
+
+    private static String qualifiedCodecName(TypeElement type) {
+        String packageName = packageOf(type).getQualifiedName().toString();
+        return (packageName.isEmpty()) ? simpleCodecName(type) : packageName + "." + simpleCodecName(type);
+    }
+
+    private static String simpleCodecName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+
+        for (Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement())
+            name.insert(0, e.getSimpleName() + "_");
+
+        return name + SUFFIX;
+    }
+
+    private static PackageElement packageOf(Element element) {
+        while (!(element instanceof PackageElement))
+            element = element.getEnclosingElement();
+
+        return (PackageElement) element;
+    }
+
+    String generate() {
+        String packageName = packageOf(record).getQualifiedName().toString();
+        String recordName = record.getQualifiedName().toString();
+
+        if (!packageName.isEmpty())
+            line(0, "package " + packageName + ";").line(0, "");
+
+        line(0, "import com.LeggoMahEggo.esson.JsonReader;");
+        line(0, "import com.LeggoMahEggo.esson.JsonWriter;");
+        line(0, "");
+        line(0, "import java.io.IOException;");
+        line(0, "import java.io.UncheckedIOException;");
+        line(0, "");
+        line(0, "/**");
+        line(0, " * Reads and writes {@link " + recordName + "} as JSON. Generated by esson-processor -- do not edit");
+        line(0, " */");
+        line(0, "public final class " + simpleCodecName(record) + " {");
+        line(1, "private " + simpleCodecName(record) + "() {");
+        line(1, "}");
+        line(0, "");
+
+        generateRead(recordName);
+        generateWrite(recordName);
+
+        line(1, "public static " + recordName + " fromJson(String json) {");
+        line(2, "JsonReader reader = new JsonReader(json);");
+        line(2, recordName + " value = read(reader);");
+        line(2, "reader.endDocument();");
+        line(2, "return value;");
+        line(1, "}");
+        line(0, "");
+        line(1, "public static String toJson(" + recordName + " value) {");
+        line(2, "return toJson(value, false);");
+        line(1, "}");
+        line(0, "");
+        line(1, "public static String toJson(" + recordName + " value, boolean compact) {");
+        line(2, "StringBuilder builder = new StringBuilder();");
+        line(2, "try (JsonWriter writer = new JsonWriter(builder, compact)) {");
+        line(3, "write(writer, value);");
+        line(2, "} catch (IOException e) {");
+        line(3, "throw new UncheckedIOException(e); // A StringBuilder doesn't throw them");
+        line(2, "}");
+        line(2, "return builder.toString();");
+        line(1, "}");
+        line(0, "}");
+
+        return out.toString();
+    }
+
+    private CodecGenerator line(int indent, String text) {
+        out.append("    ".repeat(indent)).append(text).append('\n');
+        return this;
+    }
+
+
+    /*
+     * Reading
+     */
+
+    private void generateRead(String recordName) {
+        line(1, "public static " + recordName + " read(JsonReader reader) {");
+        line(2, "if (reader.nextIfNull())");
+        line(3, "return null;");
+        line(0, "");
+
+        for (int i = 0; i < components.size(); i++)
+            line(2, components.get(i).asType() + " f" + i + " = " + defaultValue(components.get(i).asType()) + ";");
+
+        line(0, "");
+        line(2, "reader.beginObject();");
+        line(2, "while (reader.hasNext()) {");
+        line(3, "String key = reader.nextName();");
+
+        // Keys grouped by length
+        Map<Integer, List<Integer>> byLength = new TreeMap<>();
+        for (int i = 0; i < components.size(); i++)
+            byLength.computeIfAbsent(name(i).length(), length -> new ArrayList<>()).add(i);
+
+        if (!byLength.isEmpty()) {
+            line(3, "switch (key.length()) {");
+            for (Map.Entry<Integer, List<Integer>> group : byLength.entrySet()) {
+                line(4, "case " + group.getKey() + ":");
+                dispatch(group.getValue(), 5);
+                line(5, "break;");
+            }
+            line(3, "}");
+        }
+
+        line(3, "reader.skipValue(); // Unknown key");
+        line(2, "}");
+        line(2, "reader.endObject();");
+        line(0, "");
+
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < components.size(); i++)
+            arguments.append((i > 0) ? ", f" : "f").append(i);
+
+        line(2, "return new " + recordName + "(" + arguments + ");");
+        line(1, "}");
+        line(0, "");
+    }
+
+    private String name(int index) {
+        return components.get(index).getSimpleName().toString();
+    }
+
+    /**
+     * Generates the code that tells apart keys of the same length, switching on the character position with the most
+     *  different characters until only one candidate is left
+     */
+    private void dispatch(List<Integer> candidates, int indent) {
+        if (candidates.size() == 1) {
+            int index = candidates.get(0);
+            component = components.get(index);
+
+            line(indent, "if (key.equals(" + stringLiteral(name(index)) + ")) {");
+            line(indent + 1, "f" + index + " = " + readExpression(component.asType(), "reader", 0) + ";");
+            line(indent + 1, "continue;");
+            line(indent, "}");
+            return;
+        }
+
+        int length = name(candidates.get(0)).length();
+        int bestPosition = 0;
+        int bestCount = 0;
+
+        for (int position = 0; position < length; position++) {
+            Set<Character> chars = new TreeSet<>();
+            for (int index : candidates)
+                chars.add(name(index).charAt(position));
+
+            if (chars.size() > bestCount) {
+                bestPosition = position;
+                bestCount = chars.size();
+            }
+        }
+
+        Map<Character, List<Integer>> byChar = new LinkedHashMap<>();
+        for (int index : candidates)
+            byChar.computeIfAbsent(name(index).charAt(bestPosition), c -> new ArrayList<>()).add(index);
+
+        line(indent, "switch (key.charAt(" + bestPosition + ")) {");
+        for (Map.Entry<Character, List<Integer>> group : byChar.entrySet()) {
+            line(indent + 1, "case " + charLiteral(group.getKey()) + ":");
+            dispatch(group.getValue(), indent + 2);
+            line(indent + 2, "break;");
+        }
+        line(indent, "}");
+    }
+
+    private String readExpression(TypeMirror type, String reader, int depth) {
+        switch (type.getKind()) {
+            case INT: return reader + ".nextInt()";
+            case LONG: return reader + ".nextLong()";
+            case DOUBLE: return reader + ".nextDouble()";
+            case FLOAT: return "(float) " + reader + ".nextDouble()";
+            case BOOLEAN: return reader + ".nextBoolean()";
+            case DECLARED: break;
+            default: throw unsupported(type);
+        }
+
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement element = (TypeElement) declared.asElement();
+        String name = element.getQualifiedName().toString();
+        String next = "r" + (depth + 1);
+
+        if (BOXES.containsKey(name))
+            return "(" + reader + ".nextIfNull() ? null : " + String.format(BOXES.get(name), reader) + ")";
+
+        if (name.equals("java.lang.String"))
+            return reader + ".nextString()";
+
+        if (name.equals("com.LeggoMahEggo.esson.JsonValue"))
+            return reader + ".nextValue()";
+
+        if (element.getKind() == ElementKind.ENUM)
+            return reader + ".nextEnum(" + name + ".class)";
+
+        if (isJsonModel(element))
+            return qualifiedCodecName(element) + ".read(" + reader + ")";
+
+        if (name.equals("java.util.List"))
+            return reader + ".nextList(" + next + " -> " +
+                    readExpression(typeArgument(declared, 0), next, depth + 1) + ")";
+
+        if (name.equals("java.util.Map") && isStringKeyed(declared))
+            return reader + ".nextMap(" + next + " -> " +
+                    readExpression(typeArgument(declared, 1), next, depth + 1) + ")";
+
+        throw unsupported(type);
+    }
+
+    private static String defaultValue(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+            case LONG: return "0";
+            case DOUBLE: return "0.0";
+            case FLOAT: return "0.0f";
+            case BOOLEAN: return "false";
+            default: return "null";
+        }
+    }
+
+
+    /*
+     * Writing
+     */
+
+    private void generateWrite(String recordName) {
+        line(1, "public static void write(JsonWriter writer, " + recordName + " value) throws IOException {");
+        line(2, "if (value == null) {");
+        line(3, "writer.nullValue();");
+        line(3, "return;");
+        line(2, "}");
+        line(0, "");
+        line(2, "writer.beginObject();");
+
+        for (int i = 0; i < components.size(); i++) {
+            component = components.get(i);
+            line(2, "writer.name(" + stringLiteral(name(i)) + ");");
+            writeStatements(component.asType(), "value." + name(i) + "()", 2);
+        }
+
+        line(2, "writer.endObject();");
+        line(1, "}");
+        line(0, "");
+    }
+
+    private void writeStatements(TypeMirror type, String value, int indent) {
+        switch (type.getKind()) {
+            case INT:
+            case LONG:
+            case DOUBLE:
+            case BOOLEAN:
+                line(indent, "writer.value(" + value + ");");
+                return;
+            case FLOAT: // Written as the float's shortest form, not the double it widens to
+                line(indent, "writer.value(Double.parseDouble(Float.toString(" + value + ")));");
+                return;
+            case DECLARED: break;
+            default: throw unsupported(type);
+        }
+
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement element = (TypeElement) declared.asElement();
+        String name = element.getQualifiedName().toString();
+
+        if (name.equals("java.lang.String") || name.equals("com.LeggoMahEggo.esson.JsonValue")) {
+            line(indent, "writer.value(" + value + ");");
+            return;
+        }
+
+        if (isJsonModel(element)) {
+            line(indent, qualifiedCodecName(element) + ".write(writer, " + value + ");");
+            return;
+        }
+
+        String variable = "v" + variables++;
+        line(indent, type + " " + variable + " = " + value + ";");
+
+        line(indent, "if (" + variable + " == null) {");
+        line(indent + 1, "writer.nullValue();");
+        line(indent, "} else {");
+
+        if (BOXES.containsKey(name)) {
+            writeStatements(unboxedKind(name), variable, indent + 1);
+        } else if (element.getKind() == ElementKind.ENUM) {
+            line(indent + 1, "writer.value(" + variable + ".name());");
+        } else if (name.equals("java.util.List")) {
+            String each = "e" + variables++;
+            line(indent + 1, "writer.beginArray();");
+            line(indent + 1, "for (" + typeArgument(declared, 0) + " " + each + " : " + variable + ") {");
+            writeStatements(typeArgument(declared, 0), each, indent + 2);
+            line(indent + 1, "}");
+            line(indent + 1, "writer.endArray();");
+        } else if (name.equals("java.util.Map") && isStringKeyed(declared)) {
+            String each = "e" + variables++;
+            line(indent + 1, "writer.beginObject();");
+            line(indent + 1, "for (java.util.Map.Entry<String, " + typeArgument(declared, 1) + "> " + each + " : " +
+                    variable + ".entrySet()) {");
+            line(indent + 2, "writer.name(" + each + ".getKey());");
+            writeStatements(typeArgument(declared, 1), each + ".getValue()", indent + 2);
+            line(indent + 1, "}");
+            line(indent + 1, "writer.endObject();");
+        } else {
+            throw unsupported(type);
+        }
+
+        line(indent, "}");
+    }
+
+    private void writeStatements(TypeKind kind, String value, int indent) {
+        if (kind == TypeKind.FLOAT)
+            line(indent, "writer.value(Double.parseDouble(Float.toString(" + value + ")));");
+        else
+            line(indent, "writer.value(" + value + ");");
+    }
+
+    private static TypeKind unboxedKind(String box) {
+        switch (box) {
+            case "java.lang.Integer": return TypeKind.INT;
+            case "java.lang.Long": return TypeKind.LONG;
+            case "java.lang.Double": return TypeKind.DOUBLE;
+            case "java.lang.Float": return TypeKind.FLOAT;
+            default: return TypeKind.BOOLEAN;
+        }
+    }
+
+
+    /*
+     * Helpers
+     */
+
+    private static boolean isJsonModel(TypeElement element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors())
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName()
+                    .contentEquals(JsonModelProcessor.JSON_MODEL))
+                return true;
+
+        return false;
+    }
+
+    private TypeMirror typeArgument(DeclaredType type, int index) {
+        if (type.getTypeArguments().size() <= index)
+            throw unsupported(type); // Raw type
+
+        TypeMirror argument = type.getTypeArguments().get(index);
+        if (argument.getKind() != TypeKind.DECLARED)
+            throw unsupported(type); // Wildcards and type variables
+
+        return argument;
+    }
+
+    private boolean isStringKeyed(DeclaredType map) {
+        TypeMirror key = typeArgument(map, 0);
+        return ((TypeElement) ((DeclaredType) key).asElement()).getQualifiedName().contentEquals("java.lang.String");
+    }
+
+    private UnsupportedException unsupported(TypeMirror type) {
+        return new UnsupportedException("@JsonModel cannot read/write component " + component.getSimpleName() +
+                " of type " + type + " (supported: int, long, double, float, boolean and their boxes, String, enums, " +
+                "JsonValue, @JsonModel records, and Lists and String-keyed Maps of those)", component);
+    }
+
+    private static String charLiteral(char c) {
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$')
+            return "'" + c + "'";
+
+        return String.format("0x%04x", (int) c); // Unicode escapes in char literals would be read before parsing
+    }
+
+    private static String stringLiteral(String str) {
+        StringBuilder literal = new StringBuilder("\"");
+
+        for (char c : str.toCharArray()) {
+            if (c == '"' || c == '\\')
+                literal.append('\\').append(c);
+            else if (c < 0x20)
+                literal.append(String.format("\\%03o", (int) c));
+            else if (c > 0x7e)
+                literal.append(String.format("\\u%04x", (int) c));
+            else
+                literal.append(c);
+        }
+
+        return literal.append('"').toString();
+    }
+}
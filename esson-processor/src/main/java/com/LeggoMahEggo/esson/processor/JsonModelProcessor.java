@@ -0,0 +1,79 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+/**
+ * Generates a {@code <Record>_JsonCodec} class for each record annotated with {@code @JsonModel} (see
+ *  {@link CodecGenerator} for what the generated code looks like)
+ */
+@SupportedAnnotationTypes(JsonModelProcessor.JSON_MODEL)
+public final class JsonModelProcessor extends AbstractProcessor {
+    static final String JSON_MODEL = "com.LeggoMahEggo.esson.JsonModel";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                // ElementKind.RECORD can't be referred to directly, as the processor runs on Java 11
+                if (!element.getKind().name().equals("RECORD")) {
+                    error("@JsonModel can only be used on records", element);
+                    continue;
+                }
+
+                generate((TypeElement) element);
+            }
+        }
+
+        return true;
+    }
+
+    private void generate(TypeElement record) {
+        try {
+            CodecGenerator generator = new CodecGenerator(record);
+            String source = generator.generate();
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(generator.codecName(), record);
+
+            try (Writer writer = file.openWriter()) {
+                writer.write(source);
+            }
+        } catch (CodecGenerator.UnsupportedException e) {
+            error(e.getMessage(), e.element);
+        } catch (IOException e) {
+            error("Could not write the codec for " + record.getSimpleName() + ": " + e.getMessage(), record);
+        }
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson.processor;
+
+import com.LeggoMahEggo.esson.JsonModel;
+import com.LeggoMahEggo.esson.JsonReader;
+import com.LeggoMahEggo.esson.JsonValue;
+import com.LeggoMahEggo.esson.JsonWriter;
+import com.LeggoMahEggo.esson.Parser;
+import com.LeggoMahEggo.esson.exceptions.ValueParserException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class JsonModelProcessorTests {
+
+    public enum Kind { LINE, POLYGON }
+
+    @JsonModel
+    public record Point(int x, int y) {
+    }
+
+    @JsonModel
+    public record Shape(String name, Kind kind, List<Point> points, Map<String, List<Double>> weights, Integer count,
+                        Float ratio, boolean closed, JsonValue extra, Point origin, long id, float scale) {
+    }
+
+    // Keys that need several characters to tell apart
+    @JsonModel
+    public record Keys(int ab, int ac, int bc, String abc, String abd, String xbd) {
+    }
+
+    private static Shape shape() {
+        return new Shape("tri \"1\"\n", Kind.POLYGON, List.of(new Point(0, 0), new Point(3, -4)),
+                Map.of("w", List.of(0.5, 2.0)), null, 0.1f, true, Parser.parseFromString("{\"k\": [true]}"),
+                new Point(1, 1), Long.MAX_VALUE, 2.5f);
+    }
+
+    @Test
+    public void roundTrips() {
+        Shape shape = shape();
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(shape, Shape_fromJson(JsonModelProcessorTests_Shape_JsonCodec.toJson(shape))),
+                () -> Assertions.assertEquals(shape, Shape_fromJson(JsonModelProcessorTests_Shape_JsonCodec.toJson(shape,
+                        true))),
+                () -> Assertions.assertNull(Shape_fromJson("null"))
+        );
+    }
+
+    private static Shape Shape_fromJson(String json) {
+        return JsonModelProcessorTests_Shape_JsonCodec.fromJson(json);
+    }
+
+    @Test
+    public void writesLikeWriteObject() throws IOException {
+        Shape shape = shape();
+        StringWriter out = new StringWriter();
+
+        try (JsonWriter writer = new JsonWriter(out, true)) {
+            writer.writeObject(shape);
+        }
+
+        Assertions.assertEquals(out.toString(), JsonModelProcessorTests_Shape_JsonCodec.toJson(shape, true));
+    }
+
+    @Test
+    public void dispatchesKeys() {
+        Keys keys = JsonModelProcessorTests_Keys_JsonCodec.fromJson("{\"xbd\": \"x\", \"bc\": 3, \"unknown\": {\"ab\": 9}, " +
+                "\"abd\": \"d\", \"ac\": 2, \"ab\": 1, \"abc\": \"c\", \"b\": [], \"abe\": null}");
+
+        Assertions.assertEquals(new Keys(1, 2, 3, "c", "d", "x"), keys);
+    }
+
+    @Test
+    public void leavesMissingComponentsAtDefaults() {
+        Shape shape = JsonModelProcessorTests_Shape_JsonCodec.fromJson("{\"name\": \"empty\"}");
+
+        Assertions.assertEquals(new Shape("empty", null, null, null, null, null, false, null, null, 0, 0), shape);
+    }
+
+    @Test
+    public void readsFromAnOpenReader() {
+        JsonReader reader = new JsonReader("[{\"x\": 1, \"y\": 2}, null]");
+
+        Assertions.assertEquals(java.util.Arrays.asList(new Point(1, 2), null),
+                reader.nextList(JsonModelProcessorTests_Point_JsonCodec::read));
+        Assertions.assertThrowsExactly(ValueParserException.class,
+                () -> JsonModelProcessorTests_Point_JsonCodec.fromJson("{\"x\": \"1\"}"));
+    }
+
+    @Test
+    public void reportsUnsupportedModels() throws Exception {
+        JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///models/Bad.java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return "package models;\n" +
+                        "import com.LeggoMahEggo.esson.JsonModel;\n" +
+                        "public class Bad {\n" +
+                        "    @JsonModel public record Dated(java.util.Date when) {}\n" +
+                        "    @JsonModel public static class NotARecord {}\n" +
+                        "}\n";
+            }
+        };
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        String esson = new File(JsonModel.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                List.of("-proc:only", "-classpath", esson), null, List.of(source));
+        task.setProcessors(List.of(new JsonModelProcessor()));
+
+        Assertions.assertFalse(task.call());
+
+        List<String> errors = diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .collect(Collectors.toList());
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(2, errors.size(), errors.toString()),
+                () -> Assertions.assertTrue(errors.stream().anyMatch(error -> error.contains("component when"))),
+                () -> Assertions.assertTrue(errors.stream().anyMatch(error -> error.contains("only be used on records")))
+        );
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.exceptions.IllegalCharacterException;
+import com.LeggoMahEggo.esson.exceptions.JsonParserException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Splits a top-level JSON array read from a Reader into the text of its elements, for {@link JsonArrayStream}. The
+ *  input is read through a window of {@link #WINDOW_SIZE} characters, which only grows to fit an element longer than
+ *  it, so the whole input is never held at once; nothing is read past the window holding the element asked for.
+ *  Elements are only checked for terminated strings and balanced brackets here (the rest is checked when an element is
+ *  parsed)
+ */
+final class ArrayScanner implements Closeable {
+    static final int WINDOW_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final boolean commaAtEnd;
+    private char[] window = new char[WINDOW_SIZE];
+    private int position; // The next character to scan in the window
+    private int limit; // The end of the characters read into the window
+    private int mark = -1; // The start of the element being scanned, which is kept in the window (-1 between elements)
+    private long offset; // The number of characters that were dropped from the start of the window
+    private boolean started; // Set after the first element, so that a ',' is expected before the next one
+    private boolean finished;
+
+    /**
+     * Creates an ArrayScanner positioned before the first element of the array
+     * @param reader the Reader to read the JSON from
+     * @param options the Options object
+     * @throws IllegalCharacterException if the JSON isn't an array
+     */
+    ArrayScanner(Reader reader, Options options) {
+        this.reader = reader;
+        commaAtEnd = options.commaAtEnd;
+
+        skipWhitespace();
+        if (window[position] != '[')
+            throw new IllegalCharacterException("Expected to find a '[' character to start the array, found a '" +
+                    window[position] + "' instead" + location());
+
+        position++;
+    }
+
+    /**
+     * Reads the next element of the array
+     * @return the element's text, or null at the end of the array
+     * @throws JsonParserException if the array is malformed
+     */
+    String next() {
+        if (finished)
+            return null;
+
+        skipWhitespace();
+        char c = window[position];
+
+        if (c == ']') {
+            finish();
+            return null;
+        }
+
+        if (started) {
+            if (c != ',')
+                throw new IllegalCharacterException("Expected to find a ',' to continue the array or a ']' character " +
+                        "to end it, found '" + c + "' instead" + location());
+
+            position++;
+            skipWhitespace();
+            c = window[position];
+
+            if (c == ']') {
+                if (!commaAtEnd)
+                    throw new IllegalCharacterException("Reached the end of an array with an extra comma" + location());
+
+                finish();
+                return null;
+            }
+        }
+
+        started = true;
+        mark = position;
+        skipValue(c);
+        String text = new String(window, mark, position - mark);
+        mark = -1;
+        return text;
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /*
+     * Scanning
+     */
+
+    private void skipValue(char first) {
+        if (first == '"' || first == '\'') {
+            skipString(first);
+            return;
+        }
+
+        if (first != '[' && first != '{') {
+            while (available() && !isValueEnd(window[position]))
+                position++;
+
+            if (position == mark)
+                throw new IllegalCharacterException("Encountered an unknown character ('" + first + "') while " +
+                        "trying to determine the type of value to collect" + location());
+
+            return;
+        }
+
+        int nesting = 0;
+        do {
+            char c = current();
+
+            if (c == '"' || c == '\'') {
+                skipString(c);
+                continue;
+            }
+
+            if (c == '[' || c == '{')
+                nesting++;
+            else if (c == ']' || c == '}')
+                nesting--;
+
+            position++;
+        } while (nesting > 0);
+    }
+
+    private void skipString(char enclosingQuote) {
+        position++;
+
+        while (true) {
+            char c = current();
+            position++;
+
+            if (c == '\\') {
+                current();
+                position++;
+            }
+            else if (c == enclosingQuote)
+                return;
+        }
+    }
+
+    private void skipWhitespace() {
+        while (available()) {
+            char c = window[position];
+            if (c != ' ' && c != '\r' && c != '\n' && c != '\t')
+                return;
+
+            position++;
+        }
+
+        throw new JsonParserException("Reached end of JSON string without encountering a non-whitespace character");
+    }
+
+    /**
+     * Moves past the closing bracket of the array, and checks that nothing but whitespace is left after it
+     */
+    private void finish() {
+        position++;
+        finished = true;
+
+        while (available()) {
+            char c = window[position];
+            if (c != ' ' && c != '\r' && c != '\n' && c != '\t')
+                throw new IllegalCharacterException("Found unexpected '" + c + "' character after the end of the " +
+                        "array" + location());
+
+            position++;
+        }
+    }
+
+    private static boolean isValueEnd(char c) {
+        return c == ',' || c == ']' || c == '}' || c == ' ' || c == '\r' || c == '\n' || c == '\t';
+    }
+
+    private String location() {
+        return " (index of " + (offset + position) + ")";
+    }
+
+
+    /*
+     * Window
+     */
+
+    private char current() {
+        if (!available())
+            throw new JsonParserException("Reached end of JSON string prematurely (did you forget to close an " +
+                    "array/object?)" + location());
+
+        return window[position];
+    }
+
+    /**
+     * Reads more of the input into the window if everything in it has been scanned
+     * @return false if the end of the input was reached
+     */
+    private boolean available() {
+        if (position < limit)
+            return true;
+
+        // Drop what has been scanned, except for the current element
+        int keep = (mark >= 0) ? mark : position;
+        if (keep > 0) {
+            System.arraycopy(window, keep, window, 0, limit - keep);
+            offset += keep;
+            position -= keep;
+            limit -= keep;
+            if (mark >= 0)
+                mark = 0;
+        }
+
+        if (limit == window.length)
+            window = Arrays.copyOf(window, window.length * 2);
+
+        int read;
+        try {
+            do {
+                read = reader.read(window, limit, window.length - limit);
+            } while (read == 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (read < 0)
+            return false;
+
+        limit += read;
+        return true;
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.exceptions.JsonParserException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Reads and writes JsonValues in a compact binary format. A document is a header (the bytes 'E', 'S', 'B' and a version
+ *  byte) followed by a single value. Each value starts with a one-byte type tag:
+ * <ul>
+ * <li type="circle">null, false, true - nothing follows</li>
+ * <li type="circle">long - a zigzag varint</li>
+ * <li type="circle">double - its 8 IEEE 754 bytes, big-endian</li>
+ * <li type="circle">string - a varint byte length, then the string's UTF-16 units encoded like UTF-8 (each unit on its
+ *  own, so that any Java String round-trips)</li>
+ * <li type="circle">number - a lazily-parsed number's text (see {@link JsonNumber}), stored like a string</li>
+ * <li type="circle">array - a varint element count, then the elements</li>
+ * <li type="circle">object - a varint entry count, then each key and value. A key is a varint: 0 is followed by a new
+ *  key stored like a string (which is added to the document's key dictionary), any other n refers to the (n-1)th key
+ *  in the dictionary</li>
+ * </ul>
+ * Strings keep the same form as in a parsed JsonValue (escape sequences are not resolved), so a decoded tree is equal to
+ *  the encoded one and serializes to the same JSON
+ */
+final class BinaryCodec {
+    private static final byte[] HEADER = {'E', 'S', 'B'};
+    private static final byte VERSION = 1;
+
+    // Type tags
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte STRING = 5;
+    private static final byte NUMBER = 6;
+    private static final byte ARRAY = 7;
+    private static final byte OBJECT = 8;
+
+    private BinaryCodec() {
+    }
+
+
+    /*
+     * Encoding
+     */
+
+    /**
+     * Writes a value (and everything inside it) to a stream. The stream is not flushed or closed
+     * @param value the JsonValue to write
+     * @param out the OutputStream to write to
+     */
+    static void write(JsonValue value, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder(out);
+        encoder.writeBytes(HEADER);
+        encoder.writeByte(VERSION);
+        encoder.writeValue(value);
+        encoder.flush();
+    }
+
+    private static final class Encoder {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[OutputSink.BUFFER_SIZE];
+        private int length;
+        private final Map<String, Integer> keys = new HashMap<>();
+
+        Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeValue(JsonValue value) throws IOException {
+            Object internal = value.internal;
+
+            if (internal == null) {
+                writeByte(NULL);
+            } else if (internal instanceof Boolean) {
+                writeByte((Boolean) internal ? TRUE : FALSE);
+            } else if (internal instanceof Long) {
+                writeByte(LONG);
+                long l = (Long) internal;
+                writeVarLong((l << 1) ^ (l >> 63));
+            } else if (internal instanceof Double) {
+                writeByte(DOUBLE);
+                long bits = Double.doubleToRawLongBits((Double) internal);
+                for (int shift = 56; shift >= 0; shift -= 8)
+                    writeByte((byte) (bits >>> shift));
+            } else if (internal instanceof CharSequence) { // String or StringSlice
+                writeByte(STRING);
+                writeString((CharSequence) internal);
+            } else if (internal instanceof JsonNumber) {
+                writeByte(NUMBER);
+                writeString(internal.toString());
+            } else if (internal instanceof JsonList) {
+                JsonList list = (JsonList) internal;
+                writeByte(ARRAY);
+                writeVarLong(list.size());
+
+                for (JsonValue element : list)
+                    writeValue(element);
+            } else if (internal instanceof JsonMap) {
+                JsonMap map = (JsonMap) internal;
+                writeByte(OBJECT);
+                writeVarLong(map.size());
+
+                for (Entry<String, JsonValue> pair : map.entrySet()) {
+                    writeKey(pair.getKey());
+                    writeValue(pair.getValue());
+                }
+            } else {
+                throw new IllegalArgumentException("Cannot encode a value of type " +
+                        internal.getClass().getSimpleName());
+            }
+        }
+
+        private void writeKey(String key) throws IOException {
+            Integer index = keys.get(key);
+
+            if (index != null) {
+                writeVarLong(index + 1);
+            } else {
+                keys.put(key, keys.size());
+                writeVarLong(0);
+                writeString(key);
+            }
+        }
+
+        private void writeString(CharSequence str) throws IOException {
+            int strLength = str.length();
+            int byteLength = 0;
+
+            for (int i = 0; i < strLength; i++) {
+                char c = str.charAt(i);
+                byteLength += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+            }
+
+            writeVarLong(byteLength);
+
+            for (int i = 0; i < strLength; i++) {
+                if (length > buffer.length - 3)
+                    drain();
+
+                char c = str.charAt(i);
+
+                if (c < 0x80) {
+                    buffer[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[length++] = (byte) (0xC0 | (c >> 6));
+                    buffer[length++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    buffer[length++] = (byte) (0xE0 | (c >> 12));
+                    buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+
+            writeByte((byte) value);
+        }
+
+        void writeByte(byte b) throws IOException {
+            if (length == buffer.length)
+                drain();
+
+            buffer[length++] = b;
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            for (byte b : bytes)
+                writeByte(b);
+        }
+
+        private void drain() throws IOException {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+
+        void flush() throws IOException {
+            if (length > 0)
+                drain();
+        }
+    }
+
+
+    /*
+     * Decoding
+     */
+
+    /**
+     * Reads a document
+     * @param data the bytes to read from
+     * @param offset where the document starts
+     * @param limit where the data ends
+     * @param end if not null, its first element is set to where the document ended
+     * @return the decoded JsonValue
+     * @throws JsonParserException if the data is not a valid document
+     */
+    static JsonValue read(byte[] data, int offset, int limit, int[] end) throws JsonParserException {
+        Decoder decoder = new Decoder(data, offset, limit);
+
+        for (byte b : HEADER)
+            if (decoder.readByte() != b)
+                throw new JsonParserException("Data is not in esson's binary format (missing header)");
+
+        byte version = decoder.readByte();
+        if (version != VERSION)
+            throw new JsonParserException("Unsupported binary format version " + version + " (expected " + VERSION + ")");
+
+        JsonValue value = decoder.readValue();
+
+        if (end != null)
+            end[0] = decoder.pos;
+
+        return value;
+    }
+
+    private static final class Decoder {
+        private final byte[] data;
+        private final int limit;
+        int pos;
+        private String[] keys = new String[16];
+        private int keyCount;
+
+        Decoder(byte[] data, int offset, int limit) {
+            this.data = data;
+            this.pos = offset;
+            this.limit = limit;
+        }
+
+        JsonValue readValue() {
+            byte tag = readByte();
+
+            switch (tag) {
+                case NULL:
+                    return JsonValue.wrap(null);
+                case FALSE:
+                    return JsonValue.wrap(Boolean.FALSE);
+                case TRUE:
+                    return JsonValue.wrap(Boolean.TRUE);
+                case LONG:
+                    long zigzag = readVarLong();
+                    return JsonValue.wrap((zigzag >>> 1) ^ -(zigzag & 1));
+                case DOUBLE:
+                    require(8);
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++)
+                        bits = (bits << 8) | (data[pos++] & 0xFF);
+                    return JsonValue.wrap(Double.longBitsToDouble(bits));
+                case STRING:
+                    return JsonValue.wrap(readString());
+                case NUMBER:
+                    String text = readString();
+                    if (text.isEmpty())
+                        throw new JsonParserException("Encountered an empty number at byte " + pos);
+                    return JsonValue.wrap(new JsonNumber(text, 0, text.length()));
+                case ARRAY:
+                    int size = readCount();
+                    JsonList list = new JsonList();
+                    list.ensureCapacity(size);
+
+                    for (int i = 0; i < size; i++)
+                        list.add(readValue());
+
+                    return JsonValue.wrap(list);
+                case OBJECT:
+                    int entries = readCount();
+                    JsonMap map = new JsonMap();
+
+                    for (int i = 0; i < entries; i++) {
+                        String key = readKey();
+                        map.put(key, readValue());
+                    }
+
+                    return JsonValue.wrap(map);
+                default:
+                    throw new JsonParserException("Encountered an unknown type tag (" + tag + ") at byte " + (pos - 1));
+            }
+        }
+
+        private String readKey() {
+            long index = readVarLong();
+
+            if (index != 0) {
+                if (index < 0 || index > keyCount)
+                    throw new JsonParserException("Encountered a reference to an unknown key at byte " + pos);
+                return keys[(int) index - 1];
+            }
+
+            String key = readString();
+            if (keyCount == keys.length)
+                keys = Arrays.copyOf(keys, keyCount * 2);
+            keys[keyCount++] = key;
+            return key;
+        }
+
+        private String readString() {
+            int byteLength = readCount();
+            require(byteLength);
+            int end = pos + byteLength;
+
+            // ASCII is by far the most common, and can be copied as-is
+            int i = pos;
+            while (i < end && data[i] >= 0)
+                i++;
+
+            if (i == end) {
+                String str = new String(data, pos, byteLength, StandardCharsets.ISO_8859_1);
+                pos = end;
+                return str;
+            }
+
+            char[] chars = new char[byteLength];
+            int count = 0;
+
+            while (pos < end) {
+                int b = data[pos++];
+
+                if (b >= 0) {
+                    chars[count++] = (char) b;
+                } else if ((b & 0xE0) == 0xC0 && pos < end) {
+                    chars[count++] = (char) (((b & 0x1F) << 6) | continuation());
+                } else if ((b & 0xF0) == 0xE0 && pos + 1 < end) {
+                    int high = ((b & 0x0F) << 12) | (continuation() << 6);
+                    chars[count++] = (char) (high | continuation());
+                } else {
+                    throw new JsonParserException("Encountered an invalid string byte at byte " + (pos - 1));
+                }
+            }
+
+            return new String(chars, 0, count);
+        }
+
+        private int continuation() {
+            int b = data[pos++];
+            if ((b & 0xC0) != 0x80)
+                throw new JsonParserException("Encountered an invalid string byte at byte " + (pos - 1));
+
+            return b & 0x3F;
+        }
+
+        /**
+         * Reads a length/count, which can't be larger than the number of bytes left (every element takes at least one)
+         */
+        private int readCount() {
+            long count = readVarLong();
+            if (count < 0 || count > limit - pos)
+                throw new JsonParserException("Encountered an invalid length (" + count + ") at byte " + pos);
+
+            return (int) count;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+
+                if (b >= 0)
+                    return value;
+            }
+
+            throw new JsonParserException("Encountered a malformed varint at byte " + pos);
+        }
+
+        byte readByte() {
+            require(1);
+            return data[pos++];
+        }
+
+        private void require(int count) {
+            if (count > limit - pos)
+                throw new JsonParserException("Reached the end of the binary data prematurely (at byte " + pos + ")");
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Change tracking for a JsonList/JsonMap, attached once {@link JsonList#enableOutputCache()} or
+ *  {@link JsonMap#enableOutputCache()} is called on it or on a container holding it. Knows which tracked containers
+ *  hold this one (a container may be held by several, or more than once by the same one), so that a change anywhere in
+ *  a tree can be passed up to every container above it. Also holds what is cached for the container (its output and
+ *  hash code), which is dropped whenever the container or anything inside it changes, and a count of those changes
+ *  (so that indexes over the container can tell when they are out of date)
+ */
+final class ContainerState {
+    private static final Object[] NO_PARENTS = {};
+    private static final AtomicInteger EPOCHS = new AtomicInteger();
+
+    private Object[] parents = NO_PARENTS; // One entry per reference held by a tracked JsonList/JsonMap
+    private int parentCount;
+    private int visitedEpoch; // Stops a change from being passed to the same container twice
+
+    // Cached output; null if the container changed since it was last serialized
+    String json;
+    String compactJson;
+
+    // Cached hash code; only valid while hashed is true (see hashCode)
+    int hash;
+    boolean hashed;
+
+    int changes; // Counts changes to the container or anything inside it (see JsonIndex)
+
+    /**
+     * Returned by knownHashCode methods when the hash code isn't cached
+     */
+    static final long UNKNOWN_HASH = Long.MIN_VALUE;
+
+    /**
+     * @param container a JsonContainer
+     * @return the container's state, or null if it isn't tracked
+     */
+    static ContainerState of(Object container) {
+        if (container instanceof JsonList)
+            return ((JsonList) container).state;
+
+        if (container instanceof JsonMap)
+            return ((JsonMap) container).state;
+
+        return null;
+    }
+
+    /**
+     * Starts tracking a container and every container inside it (those already tracked are left as they are)
+     * @param container the JsonList/JsonMap to track
+     * @return the container's state, or null if it can't be tracked (see {@link JsonList#isTrackable()})
+     */
+    static ContainerState track(Object container) {
+        ContainerState state = of(container);
+        if (state != null)
+            return state;
+
+        if (container instanceof JsonList && ((JsonList) container).isTrackable()) {
+            JsonList list = (JsonList) container;
+            list.state = state = new ContainerState();
+
+            for (JsonValue value : list)
+                attach(value, list);
+        }
+
+        else if (container instanceof JsonMap && ((JsonMap) container).isTrackable()) {
+            JsonMap map = (JsonMap) container;
+            map.state = state = new ContainerState();
+
+            for (Map.Entry<String, JsonValue> pair : map.entrySet())
+                attach(pair.getValue(), map);
+        }
+
+        return state;
+    }
+
+    /**
+     * Called when a value is placed in a tracked container; starts tracking the value if it holds a container
+     */
+    static void attach(JsonValue value, Object parent) {
+        if (value == null || !(value.internal instanceof JsonContainer))
+            return;
+
+        ContainerState state = track(value.internal);
+        if (state == null)
+            return;
+
+        if (state.parentCount == state.parents.length)
+            state.parents = Arrays.copyOf(state.parents, Math.max(2, state.parentCount * 2));
+
+        state.parents[state.parentCount++] = parent;
+    }
+
+    /**
+     * Called when a value is taken out of a tracked container
+     */
+    static void detach(Object value, Object parent) {
+        if (!(value instanceof JsonValue))
+            return;
+
+        ContainerState state = of(((JsonValue) value).internal);
+        if (state == null)
+            return;
+
+        for (int i = 0; i < state.parentCount; i++) {
+            if (state.parents[i] == parent) {
+                System.arraycopy(state.parents, i + 1, state.parents, i, state.parentCount - i - 1);
+                state.parents[--state.parentCount] = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a tracked container's hash code (as defined by List.hashCode/Map.hashCode), from the cache if it hasn't
+     *  changed since it was last computed. The hash code is only cached if every array/object inside the container is
+     *  tracked or frozen: an untracked one (such as a view) could change without this container knowing, as with
+     *  cached output (see {@link Serializer#wroteUntracked})
+     * @param container the JsonList/JsonMap this is the state of
+     * @return the hash code
+     */
+    int hashCode(Object container) {
+        if (hashed)
+            return hash;
+
+        int h;
+        boolean cacheable = true;
+
+        if (container instanceof JsonList) {
+            h = 1;
+            for (JsonValue value : (JsonList) container) {
+                h = 31 * h + ((value == null) ? 0 : value.hashCode());
+                cacheable &= hasStableHash(value);
+            }
+        }
+        else {
+            h = 0;
+            for (Map.Entry<String, JsonValue> pair : ((JsonMap) container).entrySet()) {
+                JsonValue value = pair.getValue();
+                h += pair.getKey().hashCode() ^ ((value == null) ? 0 : value.hashCode());
+                cacheable &= hasStableHash(value);
+            }
+        }
+
+        hash = h;
+        hashed = cacheable;
+        return h;
+    }
+
+    /**
+     * @return whether a value's hash code can only change along with the tracked container holding it: it isn't an
+     *  array/object, is a frozen one, or is a tracked one whose own hash code could be cached
+     */
+    private static boolean hasStableHash(JsonValue value) {
+        if (value == null || !(value.internal instanceof JsonContainer))
+            return true;
+
+        Object container = value.internal;
+        if (container instanceof PersistentJsonList || container instanceof PersistentJsonMap)
+            return true;
+
+        ContainerState state = of(container);
+        return state != null && state.hashed;
+    }
+
+    /**
+     * @return true if both hash codes are known, and differ (so the containers can't be equal)
+     */
+    static boolean hashesDiffer(long hash1, long hash2) {
+        return hash1 != UNKNOWN_HASH && hash2 != UNKNOWN_HASH && hash1 != hash2;
+    }
+
+    /**
+     * Called after the container changed; drops what is cached for it and for every container above it
+     */
+    void changed() {
+        invalidate(EPOCHS.incrementAndGet());
+    }
+
+    private void invalidate(int epoch) {
+        if (visitedEpoch == epoch)
+            return;
+
+        visitedEpoch = epoch;
+        changes++;
+        json = null;
+        compactJson = null;
+        hashed = false;
+
+        for (int i = 0; i < parentCount; i++)
+            of(parents[i]).invalidate(epoch);
+    }
+}
@@ -34,6 +34,11 @@ class Cursor {
     private int depth; // How deep the cursor currently is
     final Options options; // To decide how strict you want parsing to be, eg allow leading zeroes for numbers
     // is thrown
+    private StringPool keyPool; // Object keys are interned here (created on first use, unless set in options)
+    private SubtreePool subtreePool; // Identical arrays/objects are shared through this, if enabled in options
+    SourceSpans spans; // Where each array/object starts and ends is recorded here, if set (see EditableJson)
+    SchemaValidator validator; // Values are checked against the schema in options as they are parsed, if set
+    private final static int PER_PARSE_KEY_POOL_CAPACITY = 256;
 
     /**
      * Creates a new Cursor object with options set that may not fully follow EMCA-404 standards
@@ -48,6 +53,21 @@ class Cursor {
     }
 
 
+    /**
+     * Creates a new Cursor object that checks the values it parses against the schema set in options, if there is one
+     *  (only the parser reports values to the schema, so other readers of a cursor don't use this)
+     * @param json the JSON string to be parsed
+     * @param options the parsing options object
+     */
+    static Cursor validating(String json, Options options) {
+        Cursor cursor = new Cursor(json, options);
+        if (options.schema != null)
+            cursor.validator = new SchemaValidator(options.schema, cursor);
+
+        return cursor;
+    }
+
+
     /*
      * Methods to throw exception if reached the end of the json string without finishing parsing
      */
@@ -123,6 +143,30 @@ class Cursor {
     }
 
 
+    /**
+     * @return the index of the internal JSON string that the cursor is pointing to
+     */
+    int position() {
+        return index;
+    }
+
+    /**
+     * @return the index after the last non-whitespace character before the cursor (eg after an array's closing
+     *  bracket, once the whitespace following it has been skipped)
+     */
+    int endOfPreviousToken() {
+        int end = index;
+        while (end > 0) {
+            char c = json.charAt(end - 1);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                break;
+
+            end--;
+        }
+
+        return end;
+    }
+
     /**
      * Returns the current character of the internal JSON string that the parser object is at
      * @return the current character of the internal JSON string that the parser object is at
@@ -217,6 +261,67 @@ class Cursor {
     }
 
 
+    /**
+     * Moves the index back (or forward) to a position found earlier with {@link #position()}
+     * @param position the index to move to
+     */
+    void seek(int position) {
+        index = position;
+    }
+
+    /**
+     * Moves the index past the value starting at it, without collecting anything. Only the ends of strings and the
+     *  nesting of arrays/objects are tracked, so a malformed value may be skipped without an error being thrown
+     * @throws JsonParserException if the end of the internal JSON string is reached before the end of the value
+     */
+    void skipValue() throws JsonParserException {
+        char first = currentChar();
+
+        if (first != '[' && first != '{') {
+            if (first == '"' || first == '\'')
+                skipString(first);
+            else {
+                while (index < jsonLength && !LEGAL_NUMBER_STOP.contains(json.charAt(index)))
+                    index++;
+            }
+
+            return;
+        }
+
+        int nesting = 0;
+        do {
+            char c = currentChar();
+
+            if (c == '"' || c == '\'') {
+                skipString(c);
+                continue;
+            }
+
+            if (c == '[' || c == '{')
+                nesting++;
+            else if (c == ']' || c == '}')
+                nesting--;
+
+            index++;
+        } while (nesting > 0);
+    }
+
+    private void skipString(char enclosingQuote) throws JsonParserException {
+        for (int i = index + 1; i < jsonLength; i++) {
+            char c = json.charAt(i);
+
+            if (c == '\\')
+                i++;
+            else if (c == enclosingQuote) {
+                index = i + 1;
+                return;
+            }
+        }
+
+        throw new JsonParserException("Reached end of JSON string while skipping a string" + locationErrMsgHelper());
+    }
+
+
     /*
      * String parsing
      */
@@ -341,6 +446,121 @@ class Cursor {
     }
 
 
+    /**
+     * Finds the closing quote of a string starting at the internal index, as long as the string contains no escapes,
+     *  control characters (which need to be checked/converted character by character) or double-quotes (which need to
+     *  be escaped when serialized)
+     * @param enclosingQuote What character delineates the string. Can be a single or double quote
+     * @return the index of the closing quote, or -1 if the string has to be collected with {@link #collectString(char)}
+     */
+    private int findPlainStringEnd(char enclosingQuote) {
+        for (int i = index + 1; i < jsonLength; i++) {
+            char c = json.charAt(i);
+
+            if (c == enclosingQuote)
+                return i;
+
+            if (c == '\\' || c == '"' || c < 0x20)
+                return -1;
+        }
+
+        return -1;
+    }
+
+    private StringPool keyPool() {
+        if (keyPool == null)
+            keyPool = (options.keyPool != null)
+                    ? options.keyPool
+                    : new StringPool(PER_PARSE_KEY_POOL_CAPACITY, StringPool.DEFAULT_MAX_LENGTH, false);
+
+        return keyPool;
+    }
+
+    /**
+     * Returns the parsed array/object, or an identical one parsed earlier if subtrees are deduplicated (see
+     *  {@link Options.OptionsBuilder#deduplicateSubtrees()})
+     * @param container the array/object that was just parsed
+     * @return the array/object to use in its place
+     */
+    Object share(Object container) {
+        if (!options.deduplicateSubtrees)
+            return container;
+
+        if (subtreePool == null)
+            subtreePool = new SubtreePool();
+
+        return subtreePool.share(container);
+    }
+
+    /**
+     * Collects an object's key from the internal JSON, starting at the internal index. Keys are interned, so that
+     *  objects sharing the same keys also share the same String objects
+     * @param enclosingQuote What character delineates the string. Can be a single or double quote
+     * @return a String value
+     * @throws JsonParserException if the internal index is greater than or equal to the length of the internal JSON string
+     */
+    public String collectKey(char enclosingQuote) throws JsonParserException {
+        int end = findPlainStringEnd(enclosingQuote);
+
+        if (end < 0)
+            return keyPool().intern(collectString(enclosingQuote));
+
+        String key = keyPool().intern(json, index + 1, end);
+        index = end + 1;
+        return key;
+    }
+
+    /**
+     * Checks whether the object key starting at the internal index equals a String, without collecting or interning
+     *  it (keys with escapes are still collected, and compared once unescaped). The index doesn't move; use
+     *  {@link #skipValue()} to move past the key
+     * @param enclosingQuote What character delineates the key. Can be a single or double quote
+     * @param key the String to compare the key to
+     * @return true if the key equals the String
+     * @throws JsonParserException if the internal index is greater than or equal to the length of the internal JSON string
+     */
+    boolean keyEquals(char enclosingQuote, String key) throws JsonParserException {
+        int end = findPlainStringEnd(enclosingQuote);
+
+        if (end >= 0)
+            return end - index - 1 == key.length() && json.regionMatches(index + 1, key, 0, key.length());
+
+        int start = index;
+        String collected = JsonValue.unescape(collectString(enclosingQuote));
+        index = start;
+        return collected.equals(key);
+    }
+
+    /**
+     * Collects a string value from the internal JSON, starting at the internal index. If a value pool is set in the
+     *  options, the value is deduplicated through it; if string slices are enabled, long strings without escapes are
+     *  returned as a {@link StringSlice} instead of being copied
+     * @param enclosingQuote What character delineates the string. Can be a single or double quote
+     * @return a String or StringSlice value
+     * @throws JsonParserException if the internal index is greater than or equal to the length of the internal JSON string
+     */
+    public CharSequence collectStringValue(char enclosingQuote) throws JsonParserException {
+        int end = findPlainStringEnd(enclosingQuote);
+
+        if (end < 0) {
+            String str = collectString(enclosingQuote);
+            return (options.valuePool != null) ? options.valuePool.intern(str) : str;
+        }
+
+        int start = index + 1;
+        int length = end - start;
+        index = end + 1;
+
+        if (options.valuePool != null && options.valuePool.canPool(length))
+            return options.valuePool.intern(json, start, end);
+
+        if (options.stringSlices && length >= options.stringSliceMinLength)
+            return new StringSlice(json, start, end);
+
+        return json.substring(start, end);
+    }
+
+
     /*
      * Boolean parsing
      */
@@ -420,23 +640,22 @@ class Cursor {
     }
 
     /**
-     * Converts a sequence of characters into a Long/Double. Must follow the following format, in order:
+     * Checks that the characters starting at the internal index form a legal number, and moves the internal index past
+     *  them. Must follow the following format, in order:
      * <li type="circle">may start with a + or -</li>
      * <li type="circle">has 1+ digits</li>
      * <li type="circle">may have a . here -- if so, then must be followed by 1+ digits</li>
      * <li type="circle">may have an e or E character denoting exponent, followed by a + or -, then by 1+ digits</li>
-     * @return a Number that is either a Long or a Double
+     * @return the index of the exponent character, or -1 if the number has no exponent
      * @throws NumberParserException if the number being parsed does not follow the above format
      */
-    public Number collectNumber() throws JsonParserException {
+    private int scanNumber() throws JsonParserException {
         int startIndex = index; // For +/- in wrong places
-        StringBuilder collector = new StringBuilder();
-        StringBuilder eCollector = new StringBuilder();
+        int exponentIndex = -1;
 
         char currentChar = 0;
         char prevChar = 0;
         boolean hasDecimal = false;
-        boolean afterE = false;
 
         while (true) {
             // Stop collecting if the end of the JSON string has been reached
@@ -467,7 +686,7 @@ class Cursor {
             if (currentChar == '.') {
                 if (hasDecimal)
                     throw new NumberParserException("Cannot have 2 decimal characters in a number" + locationErrMsgHelper());
-                else if (afterE)
+                else if (exponentIndex >= 0)
                     throw new NumberParserException("Exponent cannot get a decimal character" + locationErrMsgHelper());
                 else if (prevChar == '+' || prevChar == '-')
                     throw new NumberParserException("Decimal must follow a number, was instead '" + prevChar + "'" +
@@ -480,9 +699,8 @@ class Cursor {
                 if (!isDigit(prevChar))
                     throw new NumberParserException("Exponent can only follow digits" + locationErrMsgHelper());
 
-                if (!afterE) {
-                    afterE = true;
-                    eCollector.append("e");
+                if (exponentIndex < 0) {
+                    exponentIndex = index;
                     prevChar = currentChar;
                     index++;
                     continue;
@@ -492,12 +710,6 @@ class Cursor {
                         locationErrMsgHelper());
             }
 
-            // Append to correct collector
-            if (afterE)
-                eCollector.append(currentChar);
-            else
-                collector.append(currentChar);
-
             if (currentChar == '.')
                 hasDecimal = true;
 
@@ -512,19 +724,62 @@ class Cursor {
         if (prevChar == '.' && !isDigit(currentChar))
             throw new NumberParserException("Must have at least 1 digit after a decimal character" + locationErrMsgHelper());
 
-        if (collector.length() == 1 && (collector.charAt(0) == '-' || collector.charAt(0) == '+'))
-            throw new NumberParserException("Number cannot consist solely of '" + collector.charAt(0) + "'" +
+        int numberEnd = (exponentIndex >= 0) ? exponentIndex : index;
+        char firstChar = json.charAt(startIndex);
+        if (numberEnd - startIndex == 1 && (firstChar == '-' || firstChar == '+'))
+            throw new NumberParserException("Number cannot consist solely of '" + firstChar + "'" +
                     locationErrMsgHelper());
 
-        if (eCollector.length() == 1)
+        if (exponentIndex >= 0 && exponentIndex + 1 == index)
             throw new NumberParserException("Must include number after exponent character" + locationErrMsgHelper());
 
-        char lastEChar = (eCollector.length() > 1) ? eCollector.charAt(eCollector.length() - 1) : 0;
+        char lastEChar = (exponentIndex >= 0) ? json.charAt(index - 1) : 0;
         if (lastEChar == '+' || lastEChar == '-')
             throw new NumberParserException("Exponent cannot only consist of a '+/-' character" + locationErrMsgHelper());
 
-        String numberString = removeLeadingZeros(collector.toString());
-        String exponentString = (eCollector.length() == 0) ? "" : removeLeadingZeros(eCollector.deleteCharAt(0).toString());
+        return exponentIndex;
+    }
+
+    /**
+     * Checks if a number (or exponent) in the internal JSON starts with a 0, ignoring its sign
+     */
+    private boolean startsWithZero(int from, int to) {
+        if (from < to && (json.charAt(from) == '-' || json.charAt(from) == '+'))
+            from++;
+
+        return from < to && json.charAt(from) == '0';
+    }
+
+    /**
+     * Converts a sequence of characters into a Long/Double (see {@link #scanNumber()} for the format). If lazy numbers
+     *  are enabled in the options, returns a {@link JsonNumber} instead, leaving the conversion for later
+     * @return a Number that is either a Long, a Double or a JsonNumber
+     * @throws NumberParserException if the number being parsed does not follow the format
+     */
+    public Number collectNumber() throws JsonParserException {
+        int startIndex = index;
+        int exponentIndex = scanNumber();
+        int endIndex = index;
+        int numberEnd = (exponentIndex >= 0) ? exponentIndex : endIndex;
+
+        if (options.lazyNumbers) {
+            boolean mantissaZero = startsWithZero(startIndex, numberEnd);
+            boolean exponentZero = exponentIndex >= 0 && startsWithZero(exponentIndex + 1, endIndex);
+
+            if (!mantissaZero && !exponentZero)
+                return new JsonNumber(json, startIndex, endIndex);
+
+            // Leading zeroes (if allowed) are removed so that they don't end up in toJsonString's output
+            String numberString = removeLeadingZeros(json.substring(startIndex, numberEnd));
+            String normalized = (exponentIndex < 0)
+                    ? numberString
+                    : numberString + "e" + removeLeadingZeros(json.substring(exponentIndex + 1, endIndex));
+            return new JsonNumber(normalized, 0, normalized.length());
+        }
+
+        String numberString = removeLeadingZeros(json.substring(startIndex, numberEnd));
+        String exponentString = (exponentIndex < 0) ? "" : removeLeadingZeros(json.substring(exponentIndex + 1, endIndex));
+        boolean hasDecimal = numberString.indexOf('.') >= 0;
 
         // Finally, convert from string
         if (exponentString.isBlank()) {
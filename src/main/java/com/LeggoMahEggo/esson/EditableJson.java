@@ -0,0 +1,179 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.exceptions.JsonParserException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed JSON document that remembers its text and where each of its arrays/objects came from, so that it can be
+ *  re-parsed cheaply after a small edit (see {@link Parser#parseEditable(String, Options)} and
+ *  {@link Parser#reparse(EditableJson, int, int, String)}).
+ * <p>
+ * After an edit, only the innermost array/object enclosing the edited text is parsed again, and its contents are
+ *  replaced in place; everything outside it keeps its identity (and any output cached by
+ *  {@link JsonMap#enableOutputCache()}). The whole document is parsed again if the edit touches the brackets of
+ *  every array/object around it, or if the edited region no longer parses as a single array/object on its own.
+ *  Documents parsed with {@link Options.OptionsBuilder#deduplicateSubtrees()} are always parsed again in full, as
+ *  their arrays/objects may be shared between several places, as are documents parsed with
+ *  {@link Options.OptionsBuilder#schema(JsonSchema)}
+ */
+public final class EditableJson {
+    private final Options options;
+    private String text;
+    private JsonValue value;
+    private SourceSpans.Node root; // Null if the document isn't an array/object, or spans aren't kept
+
+    private EditableJson(Options options) {
+        this.options = options;
+    }
+
+    static EditableJson parse(String json, Options options) {
+        EditableJson document = new EditableJson(options);
+        document.parseAll(json);
+        return document;
+    }
+
+    /**
+     * @return the document's current text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the parsed document. This is the same JsonValue after each edit unless the whole document had to be
+     *  parsed again
+     * @return the parsed document
+     */
+    public JsonValue getValue() {
+        return value;
+    }
+
+    /**
+     * Applies an edit to the text, and updates the parsed document to match
+     * @param offset the index of the edit
+     * @param removedLength the number of characters removed at offset
+     * @param insertedText the text inserted in their place
+     * @throws JsonParserException if the edited text is not valid JSON (the document is then left unchanged)
+     */
+    void edit(int offset, int removedLength, String insertedText) throws JsonParserException {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > text.length())
+            throw new IndexOutOfBoundsException("Edit of " + removedLength + " characters at " + offset +
+                    " is outside of the document (length " + text.length() + ")");
+
+        String edited = text.substring(0, offset) + insertedText + text.substring(offset + removedLength);
+        if (root == null || !reparseEnclosing(edited, offset, removedLength, insertedText.length() - removedLength))
+            parseAll(edited);
+    }
+
+    private void parseAll(String json) throws JsonParserException {
+        Cursor cursor = Cursor.validating(json, options);
+        if (!options.deduplicateSubtrees)
+            cursor.spans = new SourceSpans();
+
+        value = parse(cursor);
+        text = json;
+        root = (cursor.spans != null) ? cursor.spans.root() : null;
+    }
+
+    /**
+     * Parses the innermost array/object strictly enclosing the edit again, and replaces its contents
+     * @return false if there is no such array/object, or its new text doesn't parse as one on its own
+     */
+    private boolean reparseEnclosing(String edited, int offset, int removedLength, int delta) {
+        if (!encloses(root.start, root, offset, removedLength))
+            return false;
+
+        // Innermost span, and the path of (span, child position) pairs leading to it
+        List<SourceSpans.Node> path = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        SourceSpans.Node node = root;
+        int start = root.start;
+
+        while (true) {
+            int position = node.childBefore(offset - start);
+            if (position < 0 || !encloses(start + node.children[position].start, node.children[position], offset,
+                    removedLength))
+                break;
+
+            path.add(node);
+            positions.add(position);
+            node = node.children[position];
+            start += node.start;
+        }
+
+        // A schema is checked from the top of the document down, so it can't be checked on part of it
+        Object container = node.container;
+        if (container instanceof ReadOnlyJsonList || container instanceof ReadOnlyJsonMap || options.schema != null)
+            return false;
+
+        Cursor cursor = new Cursor(edited.substring(start, start + node.length + delta), options);
+        cursor.spans = new SourceSpans();
+        Object parsed;
+
+        try {
+            parsed = parse(cursor).internal;
+        } catch (JsonParserException e) {
+            return false; // The edit changed the structure around the array/object, so it can't be parsed by itself
+        }
+
+        if (container instanceof JsonList) {
+            JsonList list = (JsonList) container;
+            list.clear();
+            list.addAll((JsonList) parsed);
+        }
+        else {
+            JsonMap map = (JsonMap) container;
+            map.clear();
+            map.putAll((JsonMap) parsed);
+        }
+
+        // The spans inside the re-parsed array/object are already relative to its start; the ones after it move
+        node.children = cursor.spans.root().children;
+        node.length += delta;
+
+        for (int i = path.size() - 1; i >= 0; i--) {
+            SourceSpans.Node parent = path.get(i);
+            parent.length += delta;
+
+            for (int j = positions.get(i) + 1; j < parent.children.length; j++)
+                parent.children[j].start += delta;
+        }
+
+        text = edited;
+        return true;
+    }
+
+    // Whether the edit lies strictly between the array/object's brackets
+    private static boolean encloses(int start, SourceSpans.Node node, int offset, int removedLength) {
+        return start < offset && offset + removedLength < start + node.length;
+    }
+
+    private static JsonValue parse(Cursor cursor) throws JsonParserException {
+        try {
+            return Parser.parseFromString(cursor);
+
+        } catch (Exception e) {
+            if (e instanceof JsonParserException)
+                throw e;
+
+            throw new JsonParserException("Encountered unexpected error while parsing: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Escapes strings for JSON output in a single pass, using a table of the escape sequence for each ASCII character.
+ *  Double-quotes and all control characters are escaped (the latter as their short form where there is one, and as
+ *  \\u00XX otherwise). Non-ASCII characters are written as-is
+ * <p>
+ * Strings held by a {@link JsonValue} keep the escape sequences they were parsed with (eg a backslash followed by n),
+ *  so backslashes in them are left alone. Strings that come from elsewhere can have their backslashes escaped as well
+ */
+final class Escaper {
+    private static final String[] ESCAPES = new String[128];
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static {
+        for (char c = 0; c < 0x20; c++)
+            ESCAPES[c] = "\\u00" + HEX_DIGITS[c >> 4] + HEX_DIGITS[c & 0xF];
+
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['"'] = "\\\"";
+    }
+
+    private Escaper() {
+    }
+
+    /**
+     * Escapes a string held by a JsonValue (backslashes are left alone)
+     * @param str the String to escape
+     * @return the escaped String, or str itself if nothing had to be escaped
+     */
+    static String escape(String str) {
+        int first = firstEscape(str, 0, false);
+        if (first == str.length())
+            return str;
+
+        StringBuilder builder = new StringBuilder(str.length() + 16);
+        try {
+            write(OutputSink.of(builder), str, first, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Can't happen; StringBuilders don't throw
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Writes a string out escaped, without the enclosing quotes
+     * @param out the OutputSink to write to
+     * @param str the characters to escape
+     * @param escapeBackslash whether backslashes are escaped too; false for strings held by a JsonValue
+     */
+    static void write(OutputSink out, CharSequence str, boolean escapeBackslash) throws IOException {
+        write(out, str, firstEscape(str, 0, escapeBackslash), escapeBackslash);
+    }
+
+    private static void write(OutputSink out, CharSequence str, int next, boolean escapeBackslash) throws IOException {
+        int length = str.length();
+        int start = 0;
+
+        while (next < length) {
+            // Write everything up to the character, then the character's escape
+            out.write(str, start, next);
+
+            char c = str.charAt(next);
+            out.write(c == '\\' ? "\\\\" : ESCAPES[c]);
+
+            start = next + 1;
+            next = firstEscape(str, start, escapeBackslash);
+        }
+
+        out.write(str, start, length);
+    }
+
+    /**
+     * @return the index of the first character at or after from that has to be escaped, or the length of str if there
+     *  is none
+     */
+    private static int firstEscape(CharSequence str, int from, boolean escapeBackslash) {
+        int length = str.length();
+
+        for (int i = from; i < length; i++) {
+            char c = str.charAt(i);
+
+            if (c < 128 && (ESCAPES[c] != null || (c == '\\' && escapeBackslash)))
+                return i;
+        }
+
+        return length;
+    }
+}
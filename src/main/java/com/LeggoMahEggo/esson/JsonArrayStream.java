@@ -0,0 +1,408 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.exceptions.IllegalCharacterException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads the elements of a top-level JSON array one at a time (see {@link Parser#streamArray(java.io.File)}), building a
+ *  JsonValue only for the elements that pass its filters. A filter tests a single field of each element, named by a
+ *  JSON Pointer (RFC 6901); the field is found by scanning the element's text, so only the field itself is parsed, and
+ *  elements that fail a filter are skipped without building anything:
+ * <pre>{@code
+ * List<JsonValue> slowErrors = Parser.streamArray(file)
+ *         .filter("/status", status -> status.equals(JsonValue.valueOf("error")))
+ *         .filter("/latency", latency -> latency.getAsNumber().longValue() > 500)
+ *         .limit(100)
+ *         .toList();
+ * }</pre>
+ * The input is read a window at a time (see {@link ArrayScanner}), so arrays far larger than memory (or than a String
+ *  can hold) can be filtered, and once enough elements have been found for {@link #limit(long)}, the rest of the input
+ *  is not read at all (nor checked to be valid JSON). Skipped elements are only checked for terminated strings and
+ *  balanced brackets, and the schema set in the options (if any) is not checked.
+ * <p>
+ * Like a java.util.stream.Stream, a JsonArrayStream can only be read once. The input is closed once it has been read
+ *  (or reading it fails); a stream that is never read should be closed with {@link #close()}
+ */
+public final class JsonArrayStream implements Closeable {
+    private final ArrayScanner scanner;
+    private final Options options;
+    private final List<String[]> paths = new ArrayList<>();
+    private final List<Predicate<JsonValue>> predicates = new ArrayList<>();
+    private long limit = Long.MAX_VALUE;
+    private boolean consumed;
+    private int[] filters; // The indices of every filter, set once reading starts
+    private int[] fieldStarts; // Where each filter's field starts in the current element, or -1 if it has none
+
+    /**
+     * Creates a JsonArrayStream positioned before the first element of the array
+     * @param reader the Reader to read the JSON from, which must hold an array
+     * @param options the Options object
+     * @throws IllegalCharacterException if the JSON isn't an array (the reader is then closed)
+     */
+    JsonArrayStream(Reader reader, Options options) {
+        try {
+            scanner = new ArrayScanner(reader, options);
+        } catch (RuntimeException e) {
+            try {
+                reader.close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+
+            throw e;
+        }
+
+        this.options = options;
+    }
+
+
+    /*
+     * Configuration
+     */
+
+    /**
+     * Only keeps the elements with a field that passes a test. Elements without the field (including elements that
+     *  aren't arrays/objects) are dropped without calling the test. If an object has the same key more than once, the
+     *  last value is tested (the one the parsed object keeps). Several filters must all pass
+     * @param pointer the JSON Pointer to the field in each element (eg "/status", or "/request/headers/0"); the empty
+     *  pointer tests the whole element, which then has to be parsed
+     * @param predicate the test for the field's value
+     * @return this JsonArrayStream
+     * @throws IllegalArgumentException if the pointer isn't empty and doesn't start with a '/'
+     */
+    public JsonArrayStream filter(String pointer, Predicate<JsonValue> predicate) {
+        if (!pointer.isEmpty() && pointer.charAt(0) != '/')
+            throw new IllegalArgumentException("'" + pointer + "' is not a JSON Pointer (it must start with a '/')");
+
+        String[] tokens = (pointer.isEmpty()) ? new String[0] : pointer.substring(1).split("/", -1);
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].indexOf('~') >= 0)
+                tokens[i] = tokens[i].replace("~1", "/").replace("~0", "~");
+        }
+
+        paths.add(tokens);
+        predicates.add(predicate);
+        return this;
+    }
+
+    /**
+     * Stops reading the array once a number of elements have passed the filters
+     * @param maxSize the largest number of elements to read
+     * @return this JsonArrayStream
+     * @throws IllegalArgumentException if maxSize is negative
+     */
+    public JsonArrayStream limit(long maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("The limit cannot be negative, was " + maxSize);
+
+        limit = Math.min(limit, maxSize);
+        return this;
+    }
+
+
+    /*
+     * Reading
+     */
+
+    /**
+     * Passes each element that passes the filters to an action, in the order they appear in the array
+     * @param action the action
+     * @throws IllegalStateException if the stream has already been read
+     */
+    public void forEach(Consumer<JsonValue> action) {
+        start();
+
+        try {
+            String element;
+            for (long found = 0; found < limit && (element = scanner.next()) != null; ) {
+                Cursor cursor = new Cursor(element, options);
+                if (matches(cursor)) {
+                    cursor.seek(0);
+                    action.accept(Parser.parseFromString(cursor));
+                    found++;
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * @return the elements that pass the filters, in the order they appear in the array
+     * @throws IllegalStateException if the stream has already been read
+     */
+    public List<JsonValue> toList() {
+        List<JsonValue> elements = new ArrayList<>();
+        forEach(elements::add);
+        return elements;
+    }
+
+    /**
+     * Counts the elements that pass the filters, without parsing any of them (other than the fields being tested)
+     * @return the number of elements found
+     * @throws IllegalStateException if the stream has already been read
+     */
+    public long count() {
+        start();
+
+        long found = 0;
+        try {
+            String element;
+            while (found < limit && (element = scanner.next()) != null) {
+                if (matches(new Cursor(element, options)))
+                    found++;
+            }
+        } finally {
+            close();
+        }
+
+        return found;
+    }
+
+    /**
+     * Returns the greatest elements that pass the filters. Unlike {@link #limit(long)}, this has to read the whole
+     *  array (or as much of it as a limit allows), but only k elements are kept at any time
+     * @param k the number of elements to return
+     * @param comparator the order of the elements
+     * @return up to k elements, greatest first
+     * @throws IllegalStateException if the stream has already been read
+     */
+    public List<JsonValue> top(int k, Comparator<JsonValue> comparator) {
+        if (k < 0)
+            throw new IllegalArgumentException("k cannot be negative, was " + k);
+
+        PriorityQueue<JsonValue> greatest = new PriorityQueue<>(Math.max(k, 1), comparator);
+        forEach(element -> {
+            if (greatest.size() < k)
+                greatest.add(element);
+            else if (k > 0 && comparator.compare(element, greatest.peek()) > 0) {
+                greatest.poll();
+                greatest.add(element);
+            }
+        });
+
+        List<JsonValue> elements = new ArrayList<>(greatest);
+        elements.sort(comparator.reversed());
+        return elements;
+    }
+
+    /**
+     * Closes the input, without reading the rest of it
+     */
+    @Override
+    public void close() {
+        scanner.close();
+    }
+
+
+    /*
+     * Filtering
+     */
+
+    private void start() {
+        if (consumed)
+            throw new IllegalStateException("The array has already been read");
+
+        consumed = true;
+        filters = new int[paths.size()];
+        for (int i = 0; i < filters.length; i++)
+            filters[i] = i;
+
+        fieldStarts = new int[filters.length];
+    }
+
+    /**
+     * @param cursor a Cursor at the start of the element
+     * @return true if the element passes every filter
+     */
+    private boolean matches(Cursor cursor) {
+        if (filters.length == 0)
+            return true;
+
+        locate(cursor, filters, 0);
+        for (int i = 0; i < filters.length; i++) {
+            if (fieldStarts[i] < 0)
+                return false;
+
+            cursor.seek(fieldStarts[i]);
+            if (!predicates.get(i).test(Parser.collectValue(cursor)))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds where the fields of several filters start, reading each array/object on their paths only once for all of
+     *  them. Sets the fieldStarts of the filters to their fields' positions, or to -1 for those without a field
+     * @param cursor a Cursor at the start of a value
+     * @param group the indices of the filters whose paths lead to the value (they share their first depth tokens)
+     * @param depth the number of tokens leading to the value
+     */
+    private void locate(Cursor cursor, int[] group, int depth) {
+        boolean deeper = false;
+        for (int filter : group) {
+            if (paths.get(filter).length == depth)
+                fieldStarts[filter] = cursor.position();
+            else {
+                fieldStarts[filter] = -1;
+                deeper = true;
+            }
+        }
+
+        if (!deeper)
+            return;
+
+        char c = cursor.currentChar();
+        if (c == '{')
+            scanObject(cursor, group, depth);
+        else if (c == '[')
+            scanArray(cursor, group, depth);
+
+        if (group.length == 1) {
+            if (fieldStarts[group[0]] >= 0) {
+                cursor.seek(fieldStarts[group[0]]);
+                locate(cursor, group, depth + 1);
+            }
+
+            return;
+        }
+
+        // Filters leading to the same value read it together (the positions are copied, as reading overwrites them)
+        int[] starts = new int[group.length];
+        for (int i = 0; i < group.length; i++)
+            starts[i] = (paths.get(group[i]).length == depth) ? -1 : fieldStarts[group[i]];
+
+        for (int i = 0; i < group.length; i++) {
+            int start = starts[i];
+            if (start < 0)
+                continue;
+
+            int size = 0;
+            int[] next = new int[group.length - i];
+            for (int j = i; j < group.length; j++) {
+                if (starts[j] == start) {
+                    next[size++] = group[j];
+                    starts[j] = -1;
+                }
+            }
+
+            cursor.seek(start);
+            locate(cursor, Arrays.copyOf(next, size), depth + 1);
+        }
+    }
+
+    /**
+     * Moves from the start of an object past its keys, setting the fieldStarts of the filters whose next token is one
+     *  of the keys to that key's value (the last one, if the key is repeated). Keys are compared where they are,
+     *  without being collected
+     */
+    private void scanObject(Cursor cursor, int[] group, int depth) {
+        cursor.moveCursorFoward();
+
+        while (true) {
+            cursor.moveToFirstNonWhitespace();
+            char c = cursor.currentChar();
+            if (c != '"' && c != '\'')
+                break;
+
+            int key = cursor.position();
+            cursor.skipValue();
+            cursor.moveToFirstNonWhitespace();
+            if (cursor.currentChar() != ':')
+                break;
+
+            cursor.moveCursorFoward();
+            cursor.moveToFirstNonWhitespace();
+            int value = cursor.position();
+
+            cursor.seek(key);
+            for (int filter : group) {
+                String[] tokens = paths.get(filter);
+                if (tokens.length > depth && cursor.keyEquals(c, tokens[depth]))
+                    fieldStarts[filter] = value;
+            }
+
+            cursor.seek(value);
+            cursor.skipValue();
+            cursor.moveToFirstNonWhitespace();
+            if (cursor.currentChar() != ',')
+                break;
+
+            cursor.moveCursorFoward();
+        }
+    }
+
+    /**
+     * Moves from the start of an array to the last of its elements the filters need, setting the fieldStarts of the
+     *  filters whose next token is an index of the array to that element
+     */
+    private void scanArray(Cursor cursor, int[] group, int depth) {
+        int last = -1;
+        for (int filter : group) {
+            String[] tokens = paths.get(filter);
+            if (tokens.length > depth)
+                last = Math.max(last, index(tokens[depth]));
+        }
+
+        cursor.moveCursorFoward();
+        for (int i = 0; i <= last; i++) {
+            cursor.moveToFirstNonWhitespace();
+            if (cursor.currentChar() == ']')
+                return;
+
+            for (int filter : group) {
+                String[] tokens = paths.get(filter);
+                if (tokens.length > depth && index(tokens[depth]) == i)
+                    fieldStarts[filter] = cursor.position();
+            }
+
+            if (i == last)
+                return;
+
+            cursor.skipValue();
+            cursor.moveToFirstNonWhitespace();
+            if (cursor.currentChar() != ',')
+                return;
+
+            cursor.moveCursorFoward();
+        }
+    }
+
+    /**
+     * @param token a reference token
+     * @return the array index the token stands for, or -1 if it isn't one
+     */
+    private static int index(String token) {
+        boolean digits = !token.isEmpty() && token.length() <= 9 && (token.length() == 1 || token.charAt(0) != '0');
+        for (int i = 0; i < token.length() && digits; i++)
+            digits = token.charAt(i) >= '0' && token.charAt(i) <= '9';
+
+        return (digits) ? Integer.parseInt(token) : -1;
+    }
+}
@@ -0,0 +1,556 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.DoublePredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * A column store built from a list of objects (see {@link JsonList#toColumns()}): each key becomes a column, held as
+ *  a primitive array rather than as one JsonValue per row. Integer columns are held as a long[], decimal columns (and
+ *  columns mixing integers and decimals) as a double[], boolean columns as a long[] of 0s and 1s, and string columns
+ *  as an int[] of codes into a dictionary of their distinct values. Nulls, and rows missing the key, are marked in a
+ *  bitmap. Columns holding arrays/objects or several kinds of values keep their JsonValues.
+ * <p>
+ * Aggregations run over the primitive arrays directly. Filtering and grouping return new column stores holding only
+ *  the selected rows, which can then be aggregated in turn. A JsonColumns is never changed once built
+ */
+public final class JsonColumns {
+    /**
+     * How a column's values are held
+     */
+    public enum ColumnType {
+        LONG, DOUBLE, BOOLEAN, STRING, OTHER
+    }
+
+    private final int size;
+    private final Map<String, Column> columns; // In the order the keys were first seen
+
+    private JsonColumns(int size, Map<String, Column> columns) {
+        this.size = size;
+        this.columns = columns;
+    }
+
+    static JsonColumns from(JsonList list) throws IllegalArgumentException {
+        // First pass: the columns, and the kind of value each holds
+        Map<String, Column> columns = new LinkedHashMap<>();
+        for (int row = 0; row < list.size(); row++) {
+            Object element = list.get(row).internal;
+            if (!(element instanceof JsonMap))
+                throw new IllegalArgumentException("Element " + row + " is not an object, so it can't be a row");
+
+            for (Map.Entry<String, JsonValue> entry : ((JsonMap) element).entrySet())
+                columns.computeIfAbsent(entry.getKey(), key -> new Column()).widen(entry.getValue().internal);
+        }
+
+        // Second pass: the values
+        for (Map.Entry<String, Column> entry : columns.entrySet()) {
+            Column column = entry.getValue();
+            column.allocate(list.size());
+
+            for (int row = 0; row < list.size(); row++)
+                column.set(row, ((JsonMap) list.get(row).internal).get(entry.getKey()));
+
+            column.finish();
+        }
+
+        return new JsonColumns(list.size(), columns);
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the names of the columns, in the order they were first seen
+     */
+    public List<String> columnNames() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+    }
+
+    /**
+     * @param column the name of a column
+     * @return how the column's values are held
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public ColumnType getType(String column) throws IllegalArgumentException {
+        return column(column).type;
+    }
+
+
+    /*
+     * Row access
+     */
+
+    /**
+     * @return whether the column is null (or missing) at the row
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public boolean isNull(String column, int row) throws IllegalArgumentException {
+        Column values = column(column);
+        Objects.checkIndex(row, size);
+        return values.nulls.get(row);
+    }
+
+    /**
+     * @return the value of a LONG or BOOLEAN column (1 for true) at the row, or 0 if it is null
+     * @throws IllegalArgumentException if there is no such column, or it isn't a LONG/BOOLEAN column
+     */
+    public long getLong(String column, int row) throws IllegalArgumentException {
+        return column(column, ColumnType.LONG, ColumnType.BOOLEAN).longs[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @return the value of a numeric column at the row, or 0 if it is null
+     * @throws IllegalArgumentException if there is no such column, or it isn't a LONG/DOUBLE column
+     */
+    public double getDouble(String column, int row) throws IllegalArgumentException {
+        Column values = column(column, ColumnType.LONG, ColumnType.DOUBLE);
+        Objects.checkIndex(row, size);
+        return (values.type == ColumnType.LONG) ? values.longs[row] : values.doubles[row];
+    }
+
+    /**
+     * @return the value of a STRING column at the row, or null if it is null
+     * @throws IllegalArgumentException if there is no such column, or it isn't a STRING column
+     */
+    public String getString(String column, int row) throws IllegalArgumentException {
+        Column values = column(column, ColumnType.STRING);
+        int code = values.codes[Objects.checkIndex(row, size)];
+        return (code < 0) ? null : values.dictionary[code];
+    }
+
+    /**
+     * @return the value of any column at the row, as a JsonValue (a JSON null if the row is missing the key)
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public JsonValue getValue(String column, int row) throws IllegalArgumentException {
+        Column values = column(column);
+        Objects.checkIndex(row, size);
+        if (values.nulls.get(row))
+            return (values.type == ColumnType.OTHER) ? values.values[row] : JsonValue.valueOf(null);
+
+        switch (values.type) {
+            case LONG: return JsonValue.valueOf(values.longs[row]);
+            case DOUBLE: return JsonValue.valueOf(values.doubles[row]);
+            case BOOLEAN: return JsonValue.valueOf(values.longs[row] != 0);
+            case STRING: return JsonValue.wrap(values.dictionary[values.codes[row]]);
+            default: return values.values[row];
+        }
+    }
+
+
+    /*
+     * Aggregations
+     */
+
+    /**
+     * @param column the name of a column
+     * @return the number of rows where the column isn't null
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public int count(String column) throws IllegalArgumentException {
+        return size - column(column).nulls.cardinality();
+    }
+
+    /**
+     * @param column the name of a numeric column
+     * @return the sum of the column's values (a Long for LONG columns, a Double for DOUBLE columns); nulls are skipped
+     * @throws IllegalArgumentException if there is no such column, or it isn't a LONG/DOUBLE column
+     */
+    public Number sum(String column) throws IllegalArgumentException {
+        Column values = column(column, ColumnType.LONG, ColumnType.DOUBLE);
+
+        // Nulls are held as 0, so they don't need to be skipped
+        if (values.type == ColumnType.LONG) {
+            long sum = 0;
+            for (long value : values.longs)
+                sum += value;
+
+            return sum;
+        }
+
+        double sum = 0;
+        for (double value : values.doubles)
+            sum += value;
+
+        return sum;
+    }
+
+    /**
+     * @param column the name of a numeric column
+     * @return the smallest of the column's values (a Long for LONG columns, a Double for DOUBLE columns), or null if
+     *  every value is null
+     * @throws IllegalArgumentException if there is no such column, or it isn't a LONG/DOUBLE column
+     */
+    public Number min(String column) throws IllegalArgumentException {
+        return extreme(column, true);
+    }
+
+    /**
+     * @param column the name of a numeric column
+     * @return the largest of the column's values (a Long for LONG columns, a Double for DOUBLE columns), or null if
+     *  every value is null
+     * @throws IllegalArgumentException if there is no such column, or it isn't a LONG/DOUBLE column
+     */
+    public Number max(String column) throws IllegalArgumentException {
+        return extreme(column, false);
+    }
+
+    private Number extreme(String column, boolean min) {
+        Column values = column(column, ColumnType.LONG, ColumnType.DOUBLE);
+        BitSet nulls = values.nulls;
+        boolean noNulls = nulls.isEmpty();
+
+        if (values.type == ColumnType.LONG) {
+            long[] longs = values.longs;
+            long result = (min) ? Long.MAX_VALUE : Long.MIN_VALUE;
+            boolean found = false;
+
+            for (int row = 0; row < longs.length; row++) {
+                if (noNulls || !nulls.get(row)) {
+                    result = (min) ? Math.min(result, longs[row]) : Math.max(result, longs[row]);
+                    found = true;
+                }
+            }
+
+            return (found) ? result : null;
+        }
+
+        double[] doubles = values.doubles;
+        double result = (min) ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        boolean found = false;
+
+        for (int row = 0; row < doubles.length; row++) {
+            if (noNulls || !nulls.get(row)) {
+                result = (min) ? Math.min(result, doubles[row]) : Math.max(result, doubles[row]);
+                found = true;
+            }
+        }
+
+        return (found) ? result : null;
+    }
+
+
+    /*
+     * Filtering and grouping
+     */
+
+    /**
+     * @param column the name of a LONG or BOOLEAN column (whose values are 1 for true and 0 for false)
+     * @param test the test for each non-null value
+     * @return a column store of the rows whose value passes the test
+     * @throws IllegalArgumentException if there is no such column, or it isn't a LONG/BOOLEAN column
+     */
+    public JsonColumns filterLong(String column, LongPredicate test) throws IllegalArgumentException {
+        Column values = column(column, ColumnType.LONG, ColumnType.BOOLEAN);
+        return select(values, row -> test.test(values.longs[row]));
+    }
+
+    /**
+     * @param column the name of a numeric column
+     * @param test the test for each non-null value
+     * @return a column store of the rows whose value passes the test
+     * @throws IllegalArgumentException if there is no such column, or it isn't a LONG/DOUBLE column
+     */
+    public JsonColumns filterDouble(String column, DoublePredicate test) throws IllegalArgumentException {
+        Column values = column(column, ColumnType.LONG, ColumnType.DOUBLE);
+        return (values.type == ColumnType.LONG)
+                ? select(values, row -> test.test(values.longs[row]))
+                : select(values, row -> test.test(values.doubles[row]));
+    }
+
+    /**
+     * @param column the name of a STRING column
+     * @param test the test for each non-null value; it is only called once for each distinct value
+     * @return a column store of the rows whose value passes the test
+     * @throws IllegalArgumentException if there is no such column, or it isn't a STRING column
+     */
+    public JsonColumns filterString(String column, Predicate<String> test) throws IllegalArgumentException {
+        Column values = column(column, ColumnType.STRING);
+        boolean[] passes = new boolean[values.dictionary.length];
+        for (int code = 0; code < passes.length; code++)
+            passes[code] = test.test(values.dictionary[code]);
+
+        return select(values, row -> passes[values.codes[row]]);
+    }
+
+    /**
+     * Splits the rows by the values of a column
+     * @param column the name of a column
+     * @return a column store for each distinct value, in the order the values first appear. Keys are Longs, Doubles,
+     *  Booleans or Strings (JsonValues for OTHER columns), and null for the rows where the column is null
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public Map<Object, JsonColumns> groupBy(String column) throws IllegalArgumentException {
+        Column values = column(column);
+        Map<Object, RowList> groups = new LinkedHashMap<>();
+
+        // Strings are grouped by their codes, so that no key has to be hashed per row
+        RowList[] byCode = (values.type == ColumnType.STRING) ? new RowList[values.dictionary.length] : null;
+        RowList nullRows = null;
+
+        for (int row = 0; row < size; row++) {
+            RowList rows;
+
+            if (values.nulls.get(row)) {
+                if (nullRows == null)
+                    groups.put(null, nullRows = new RowList());
+                rows = nullRows;
+            }
+            else if (byCode != null) {
+                int code = values.codes[row];
+                if (byCode[code] == null)
+                    groups.put(values.dictionary[code], byCode[code] = new RowList());
+                rows = byCode[code];
+            }
+            else
+                rows = groups.computeIfAbsent(values.key(row), key -> new RowList());
+
+            rows.add(row);
+        }
+
+        Map<Object, JsonColumns> result = new LinkedHashMap<>();
+        for (Map.Entry<Object, RowList> group : groups.entrySet())
+            result.put(group.getKey(), select(group.getValue()));
+
+        return result;
+    }
+
+    private interface RowTest {
+        boolean test(int row);
+    }
+
+    // The non-null rows of a column that pass a test
+    private JsonColumns select(Column tested, RowTest test) {
+        RowList rows = new RowList();
+        BitSet nulls = tested.nulls;
+        boolean noNulls = nulls.isEmpty();
+
+        for (int row = 0; row < size; row++) {
+            if ((noNulls || !nulls.get(row)) && test.test(row))
+                rows.add(row);
+        }
+
+        return select(rows);
+    }
+
+    private JsonColumns select(RowList rows) {
+        Map<String, Column> selected = new LinkedHashMap<>();
+        for (Map.Entry<String, Column> entry : columns.entrySet())
+            selected.put(entry.getKey(), entry.getValue().select(rows.rows, rows.size));
+
+        return new JsonColumns(rows.size, selected);
+    }
+
+    private Column column(String name) {
+        Column column = columns.get(name);
+        if (column == null)
+            throw new IllegalArgumentException("There is no column named '" + name + "'");
+
+        return column;
+    }
+
+    private Column column(String name, ColumnType... types) {
+        Column column = column(name);
+        for (ColumnType type : types) {
+            if (column.type == type)
+                return column;
+        }
+
+        throw new IllegalArgumentException("Column '" + name + "' is a " + column.type + " column, not " +
+                Arrays.toString(types));
+    }
+
+    /**
+     * A growable list of row numbers
+     */
+    private static final class RowList {
+        int[] rows = new int[8];
+        int size;
+
+        void add(int row) {
+            if (size == rows.length)
+                rows = Arrays.copyOf(rows, size * 2);
+
+            rows[size++] = row;
+        }
+    }
+
+
+    /**
+     * A single column. Only the array(s) for its type are set; null rows hold 0 (or code -1)
+     */
+    private static final class Column {
+        ColumnType type; // Null until a non-null value is seen
+        long[] longs;
+        double[] doubles;
+        int[] codes;
+        String[] dictionary;
+        JsonValue[] values;
+        BitSet nulls;
+
+        private Map<String, Integer> codeOf; // Only while the column is being built
+
+        /**
+         * Changes the column's type, if needed, to one that can also hold value
+         */
+        void widen(Object value) {
+            if (value == null || type == ColumnType.OTHER)
+                return;
+
+            ColumnType needed = typeOf(value);
+            if (type == null || type == needed)
+                type = needed;
+            else if ((type == ColumnType.LONG && needed == ColumnType.DOUBLE) ||
+                    (type == ColumnType.DOUBLE && needed == ColumnType.LONG))
+                type = ColumnType.DOUBLE;
+            else
+                type = ColumnType.OTHER;
+        }
+
+        private static ColumnType typeOf(Object value) {
+            if (value instanceof Long)
+                return ColumnType.LONG;
+            if (value instanceof JsonNumber) {
+                JsonNumber number = (JsonNumber) value;
+                return (number.isIntegral() && number.bigIntegerValue().bitLength() < 64)
+                        ? ColumnType.LONG
+                        : ColumnType.DOUBLE;
+            }
+            if (value instanceof Number)
+                return ColumnType.DOUBLE;
+            if (value instanceof Boolean)
+                return ColumnType.BOOLEAN;
+            if (value instanceof CharSequence)
+                return ColumnType.STRING;
+
+            return ColumnType.OTHER;
+        }
+
+        void allocate(int size) {
+            if (type == null)
+                type = ColumnType.OTHER; // Nothing but nulls
+
+            nulls = new BitSet(size);
+            switch (type) {
+                case LONG:
+                case BOOLEAN: longs = new long[size]; break;
+                case DOUBLE: doubles = new double[size]; break;
+                case STRING:
+                    codes = new int[size];
+                    codeOf = new HashMap<>();
+                    break;
+                default: values = new JsonValue[size];
+            }
+        }
+
+        void set(int row, JsonValue value) {
+            if (value == null || value.internal == null) {
+                nulls.set(row);
+                if (type == ColumnType.STRING)
+                    codes[row] = -1;
+                else if (type == ColumnType.OTHER)
+                    values[row] = (value != null) ? value : JsonValue.valueOf(null);
+
+                return;
+            }
+
+            switch (type) {
+                case LONG: longs[row] = ((Number) value.internal).longValue(); break;
+                case BOOLEAN: longs[row] = ((Boolean) value.internal) ? 1 : 0; break;
+                case DOUBLE: doubles[row] = ((Number) value.internal).doubleValue(); break;
+                case STRING: {
+                    String string = value.getAsString();
+                    Integer code = codeOf.get(string);
+                    if (code == null)
+                        codeOf.put(string, code = codeOf.size());
+
+                    codes[row] = code;
+                    break;
+                }
+                default: values[row] = value;
+            }
+        }
+
+        void finish() {
+            if (codeOf != null) {
+                dictionary = new String[codeOf.size()];
+                for (Map.Entry<String, Integer> entry : codeOf.entrySet())
+                    dictionary[entry.getValue()] = entry.getKey();
+
+                codeOf = null;
+            }
+        }
+
+        // The value at a (non-null) row as a group key
+        Object key(int row) {
+            switch (type) {
+                case LONG: return longs[row];
+                case DOUBLE: return doubles[row];
+                case BOOLEAN: return longs[row] != 0;
+                case STRING: return dictionary[codes[row]];
+                default: return values[row];
+            }
+        }
+
+        Column select(int[] rows, int count) {
+            Column column = new Column();
+            column.type = type;
+            column.dictionary = dictionary; // Shared, as some codes may still be in use
+            column.nulls = new BitSet(count);
+
+            if (longs != null)
+                column.longs = new long[count];
+            else if (doubles != null)
+                column.doubles = new double[count];
+            else if (codes != null)
+                column.codes = new int[count];
+            else
+                column.values = new JsonValue[count];
+
+            for (int i = 0; i < count; i++) {
+                int row = rows[i];
+                if (nulls.get(row))
+                    column.nulls.set(i);
+
+                if (longs != null)
+                    column.longs[i] = longs[row];
+                else if (doubles != null)
+                    column.doubles[i] = doubles[row];
+                else if (codes != null)
+                    column.codes[i] = codes[row];
+                else
+                    column.values[i] = values[row];
+            }
+
+            return column;
+        }
+    }
+}
@@ -15,6 +15,12 @@
  */
 package com.LeggoMahEggo.esson;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Interface to be implemented on array/object representations (see {@link JsonList} or {@link JsonMap})
  */
@@ -25,4 +31,126 @@ public interface JsonContainer {
      * @return the container's contents converted to the JSON format
      */
     String toJsonString();
+
+    /**
+     * Converts the container into an appropriate JSON representation
+     * @param compact if true, no spaces are placed after commas and colons
+     * @return the container's contents converted to the JSON format
+     */
+    default String toJsonString(boolean compact) {
+        return toJsonString();
+    }
+
+    /**
+     * Writes the container's JSON representation to an Appendable (eg a Writer or StringBuilder), without building it
+     *  as a String first. The Appendable is not flushed or closed
+     * @param out the Appendable to write to
+     * @throws IOException if the Appendable throws one
+     */
+    default void writeTo(Appendable out) throws IOException {
+        writeTo(out, false);
+    }
+
+    /**
+     * Writes the container's JSON representation to an Appendable (eg a Writer or StringBuilder), without building it
+     *  as a String first. The Appendable is not flushed or closed
+     * @param out the Appendable to write to
+     * @param compact if true, no spaces are placed after commas and colons
+     * @throws IOException if the Appendable throws one
+     */
+    default void writeTo(Appendable out, boolean compact) throws IOException {
+        Serializer.write(this, OutputSink.of(out), compact);
+    }
+
+    /**
+     * Writes the container's JSON representation to an OutputStream as UTF-8, without building it as a String first.
+     *  The stream is not flushed or closed
+     * @param out the OutputStream to write to
+     * @throws IOException if the stream throws one
+     */
+    default void writeTo(OutputStream out) throws IOException {
+        writeTo(out, false);
+    }
+
+    /**
+     * Writes the container's JSON representation to an OutputStream as UTF-8, without building it as a String first.
+     *  The stream is not flushed or closed
+     * @param out the OutputStream to write to
+     * @param compact if true, no spaces are placed after commas and colons
+     * @throws IOException if the stream throws one
+     */
+    default void writeTo(OutputStream out, boolean compact) throws IOException {
+        Serializer.write(this, OutputSink.of(out), compact);
+    }
+
+    /**
+     * Puts the container's JSON representation in a ByteBuffer as UTF-8, starting at the buffer's position
+     * @param buffer the ByteBuffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer runs out of space; what was written before that point is
+     *  left in the buffer
+     */
+    default void writeTo(ByteBuffer buffer) {
+        writeTo(buffer, false);
+    }
+
+    /**
+     * Puts the container's JSON representation in a ByteBuffer as UTF-8, starting at the buffer's position
+     * @param buffer the ByteBuffer to write to
+     * @param compact if true, no spaces are placed after commas and colons
+     * @throws java.nio.BufferOverflowException if the buffer runs out of space; what was written before that point is
+     *  left in the buffer
+     */
+    default void writeTo(ByteBuffer buffer, boolean compact) {
+        try {
+            Serializer.write(this, OutputSink.of(buffer), compact);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Can't happen; nothing here throws one
+        }
+    }
+
+    /**
+     * Converts the container into an appropriate JSON representation, serializing large arrays/objects (and large
+     *  arrays/objects within it) in chunks on a ForkJoinPool. Smaller ones are converted on the current thread, so this
+     *  is only worth using for very large containers
+     * @param compact if true, no spaces are placed after commas and colons
+     * @param pool the ForkJoinPool to use (eg ForkJoinPool.commonPool())
+     * @return the container's contents converted to the JSON format
+     */
+    default String toJsonString(boolean compact, ForkJoinPool pool) {
+        StringBuilder builder = new StringBuilder();
+
+        try {
+            writeTo(builder, compact, pool);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Can't happen; StringBuilders don't throw
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Writes the container's JSON representation to an Appendable (eg a Writer or StringBuilder), serializing large
+     *  arrays/objects in chunks on a ForkJoinPool. Chunks are written out in order as they are completed. The
+     *  Appendable is not flushed or closed
+     * @param out the Appendable to write to
+     * @param compact if true, no spaces are placed after commas and colons
+     * @param pool the ForkJoinPool to use (eg ForkJoinPool.commonPool())
+     * @throws IOException if the Appendable throws one
+     */
+    default void writeTo(Appendable out, boolean compact, ForkJoinPool pool) throws IOException {
+        ParallelSerializer.write(this, OutputSink.of(out), compact, pool);
+    }
+
+    /**
+     * Writes the container's JSON representation to an OutputStream as UTF-8, serializing large arrays/objects in
+     *  chunks on a ForkJoinPool. Chunks are written out in order as they are completed. The stream is not flushed or
+     *  closed
+     * @param out the OutputStream to write to
+     * @param compact if true, no spaces are placed after commas and colons
+     * @param pool the ForkJoinPool to use (eg ForkJoinPool.commonPool())
+     * @throws IOException if the stream throws one
+     */
+    default void writeTo(OutputStream out, boolean compact, ForkJoinPool pool) throws IOException {
+        ParallelSerializer.write(this, OutputSink.of(out), compact, pool);
+    }
 }
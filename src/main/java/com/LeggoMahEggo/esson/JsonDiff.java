@@ -0,0 +1,606 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.exceptions.JsonPatchException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes and applies JSON Patches (RFC 6902): lists of add/remove/replace/move/copy/test operations that turn one
+ *  JSON document into another. Sending a patch instead of the whole document keeps the cost of syncing a large,
+ *  mostly unchanged document proportional to what actually changed
+ * <p>
+ * A patch is a JsonList of JsonMaps (eg [{"op": "replace", "path": "/a/0", "value": 1}]), so it can be written with
+ *  toJsonString and read back with {@link Parser#parse(String)}. Paths are JSON Pointers (RFC 6901), with keys in the
+ *  same form as they are held in a JsonMap
+ */
+public final class JsonDiff {
+    // Arrays whose unmatched middle sections have more element pairs than this are compared position by position,
+    //  rather than aligned (which takes memory proportional to the number of pairs)
+    private static final long MAX_ALIGNED_PAIRS = 1_000_000;
+
+    private final String idKey;
+    private final JsonList patch = new JsonList();
+    private final Map<Object, Integer> hashes = new IdentityHashMap<>(); // Exact hashes of the arrays/objects seen
+
+    private JsonDiff(String idKey) {
+        this.idKey = idKey;
+    }
+
+    /**
+     * Returns a patch that turns source into target. Arrays are compared by position, with unchanged runs of elements
+     *  lined up so that an insertion or deletion doesn't make every element after it differ. Numbers are compared
+     *  exactly, rather than with the tolerance used by {@link JsonValue#equals(Object)}
+     * <p>
+     * The patch's values are target's own JsonValues rather than copies; {@link #apply(JsonValue, JsonList)} copies
+     *  them as it inserts them
+     * @param source the document to be patched
+     * @param target the document that the patch should produce
+     * @return the patch
+     */
+    public static JsonList diff(JsonValue source, JsonValue target) {
+        return diff(source, target, null);
+    }
+
+    /**
+     * As {@link #diff(JsonValue, JsonValue)}, except that arrays of objects which all have a unique, non-array/object
+     *  value for idKey are matched by that value instead of by position: an object that was moved is moved (and then
+     *  patched) rather than being rewritten at every position in between
+     * @param source the document to be patched
+     * @param target the document that the patch should produce
+     * @param idKey the key identifying the objects in an array, or null to match every array by position
+     * @return the patch
+     */
+    public static JsonList diff(JsonValue source, JsonValue target, String idKey) {
+        JsonDiff differ = new JsonDiff(idKey);
+        differ.compare(source, target, "");
+        return differ.patch;
+    }
+
+
+    /*
+     * Diffing
+     */
+
+    private void compare(JsonValue source, JsonValue target, String path) {
+        if (same(source, target))
+            return;
+
+        Object from = source.internal;
+        Object to = target.internal;
+
+        if (from instanceof JsonMap && to instanceof JsonMap)
+            diffMaps((JsonMap) from, (JsonMap) to, path);
+        else if (from instanceof JsonList && to instanceof JsonList)
+            diffLists((JsonList) from, (JsonList) to, path);
+        else
+            addOperation("replace", path, target);
+    }
+
+    private void diffMaps(JsonMap source, JsonMap target, String path) {
+        for (Map.Entry<String, JsonValue> entry : source.entrySet()) {
+            JsonValue targetValue = target.get(entry.getKey());
+            String childPath = path + '/' + escapeToken(entry.getKey());
+
+            if (targetValue == null)
+                addOperation("remove", childPath, null);
+            else
+                compare(entry.getValue(), targetValue, childPath);
+        }
+
+        for (Map.Entry<String, JsonValue> entry : target.entrySet()) {
+            if (!source.containsKey(entry.getKey()))
+                addOperation("add", path + '/' + escapeToken(entry.getKey()), entry.getValue());
+        }
+    }
+
+    private void diffLists(JsonList source, JsonList target, String path) {
+        if (idKey != null && diffKeyedLists(source, target, path))
+            return;
+
+        // Unchanged elements at either end need no alignment
+        int start = 0;
+        int sourceEnd = source.size();
+        int targetEnd = target.size();
+
+        while (start < sourceEnd && start < targetEnd && same(source.get(start), target.get(start)))
+            start++;
+        while (sourceEnd > start && targetEnd > start && same(source.get(sourceEnd - 1), target.get(targetEnd - 1))) {
+            sourceEnd--;
+            targetEnd--;
+        }
+
+        int sourceCount = sourceEnd - start;
+        int targetCount = targetEnd - start;
+        int index = start; // The position in the array as patched so far
+
+        if (sourceCount == 0 || targetCount == 0 || (long) sourceCount * targetCount > MAX_ALIGNED_PAIRS) {
+            emitGap(source, start, sourceEnd, target, start, targetEnd, path, index);
+            return;
+        }
+
+        // Longest common subsequence of the middle sections, filled in from the end so it can be walked from the start
+        int width = targetCount + 1;
+        int[] lengths = new int[(sourceCount + 1) * width];
+        for (int i = sourceCount - 1; i >= 0; i--) {
+            for (int j = targetCount - 1; j >= 0; j--) {
+                lengths[i * width + j] = same(source.get(start + i), target.get(start + j))
+                        ? lengths[(i + 1) * width + j + 1] + 1
+                        : Math.max(lengths[(i + 1) * width + j], lengths[i * width + j + 1]);
+            }
+        }
+
+        int i = 0;
+        int j = 0;
+        int gapI = 0;
+        int gapJ = 0;
+        while (i < sourceCount && j < targetCount) {
+            if (lengths[i * width + j] == lengths[(i + 1) * width + j + 1] + 1 &&
+                    same(source.get(start + i), target.get(start + j))) {
+                index = emitGap(source, start + gapI, start + i, target, start + gapJ, start + j, path, index) + 1;
+                gapI = ++i;
+                gapJ = ++j;
+            }
+            else if (lengths[(i + 1) * width + j] >= lengths[i * width + j + 1])
+                i++;
+            else
+                j++;
+        }
+
+        emitGap(source, start + gapI, sourceEnd, target, start + gapJ, targetEnd, path, index);
+    }
+
+    /**
+     * Emits the operations for a run of unmatched elements: pairs of elements are diffed in place, and whatever is
+     *  left over is removed or added
+     * @return the position after the run, in the array as patched so far
+     */
+    private int emitGap(JsonList source, int sourceStart, int sourceEnd, JsonList target, int targetStart,
+                        int targetEnd, String path, int index) {
+        int pairs = Math.min(sourceEnd - sourceStart, targetEnd - targetStart);
+
+        for (int k = 0; k < pairs; k++, index++)
+            compare(source.get(sourceStart + k), target.get(targetStart + k), path + '/' + index);
+        for (int k = sourceStart + pairs; k < sourceEnd; k++)
+            addOperation("remove", path + '/' + index, null);
+        for (int k = targetStart + pairs; k < targetEnd; k++, index++)
+            addOperation("add", path + '/' + index, target.get(k));
+
+        return index;
+    }
+
+    /**
+     * Matches the elements of two arrays by the value of idKey, if every element of both is an object with a unique
+     *  value for it. Unmatched elements are removed first, then the target's elements are moved or added into place
+     *  in order, and diffed
+     * @return false if the arrays can't be matched by key
+     */
+    private boolean diffKeyedLists(JsonList source, JsonList target, String path) {
+        List<JsonValue> currentIds = ids(source);
+        List<JsonValue> targetIds = ids(target);
+        if (currentIds == null || targetIds == null)
+            return false;
+
+        Map<JsonValue, Boolean> inTarget = new HashMap<>();
+        for (JsonValue id : targetIds)
+            inTarget.put(id, Boolean.TRUE);
+
+        List<JsonValue> current = new ArrayList<>(source);
+        for (int i = current.size() - 1; i >= 0; i--) {
+            if (!inTarget.containsKey(currentIds.get(i))) {
+                addOperation("remove", path + '/' + i, null);
+                current.remove(i);
+                currentIds.remove(i);
+            }
+        }
+
+        for (int i = 0; i < targetIds.size(); i++) {
+            JsonValue id = targetIds.get(i);
+            String childPath = path + '/' + i;
+
+            if (i >= current.size() || !currentIds.get(i).equals(id)) {
+                int from = currentIds.subList(i, currentIds.size()).indexOf(id);
+
+                if (from < 0) {
+                    addOperation("add", childPath, target.get(i));
+                    current.add(i, target.get(i));
+                    currentIds.add(i, id);
+                    continue;
+                }
+
+                from += i;
+                addMove(path + '/' + from, childPath);
+                current.add(i, current.remove(from));
+                currentIds.add(i, currentIds.remove(from));
+            }
+
+            compare(current.get(i), target.get(i), childPath);
+        }
+
+        return true;
+    }
+
+    // The id of each element in the array, or null if they aren't all objects with a unique array/object-free id
+    private List<JsonValue> ids(JsonList list) {
+        List<JsonValue> ids = new ArrayList<>(list.size());
+        Map<JsonValue, Boolean> seen = new HashMap<>();
+
+        for (JsonValue element : list) {
+            if (!(element.internal instanceof JsonMap))
+                return null;
+
+            JsonValue id = ((JsonMap) element.internal).get(idKey);
+            if (id == null || id.internal instanceof JsonContainer || seen.put(id, Boolean.TRUE) != null)
+                return null;
+
+            ids.add(id);
+        }
+
+        return ids;
+    }
+
+    private void addOperation(String op, String path, JsonValue value) {
+        JsonMap operation = new JsonMap();
+        operation.put("op", JsonValue.wrap(op));
+        operation.put("path", JsonValue.wrap(path));
+        if (value != null)
+            operation.put("value", value);
+
+        patch.add(JsonValue.wrap(operation));
+    }
+
+    private void addMove(String from, String path) {
+        JsonMap operation = new JsonMap();
+        operation.put("op", JsonValue.wrap("move"));
+        operation.put("from", JsonValue.wrap(from));
+        operation.put("path", JsonValue.wrap(path));
+        patch.add(JsonValue.wrap(operation));
+    }
+
+    static String escapeToken(String key) {
+        if (key.indexOf('~') < 0 && key.indexOf('/') < 0)
+            return key;
+
+        return key.replace("~", "~0").replace("/", "~1");
+    }
+
+
+    /*
+     * Exact comparison. Arrays/objects are hashed once each (bottom-up, so every subtree's hash is computed a single
+     *  time), and only subtrees with equal hashes are walked to confirm that they are the same
+     */
+
+    private boolean same(JsonValue first, JsonValue second) {
+        Object a = first.internal;
+        Object b = second.internal;
+
+        if (a == b)
+            return true;
+
+        if (a instanceof JsonContainer || b instanceof JsonContainer) {
+            if (!(a instanceof JsonContainer && b instanceof JsonContainer) ||
+                    (a instanceof JsonList) != (b instanceof JsonList))
+                return false;
+            if (knownHashesDiffer(a, b) || hash(first) != hash(second))
+                return false;
+
+            if (a instanceof JsonList) {
+                JsonList list = (JsonList) a;
+                JsonList other = (JsonList) b;
+                if (list.size() != other.size())
+                    return false;
+
+                for (int i = 0; i < list.size(); i++) {
+                    if (!same(list.get(i), other.get(i)))
+                        return false;
+                }
+
+                return true;
+            }
+
+            JsonMap map = (JsonMap) a;
+            JsonMap other = (JsonMap) b;
+            if (map.size() != other.size())
+                return false;
+
+            for (Map.Entry<String, JsonValue> entry : map.entrySet()) {
+                JsonValue otherValue = other.get(entry.getKey());
+                if (otherValue == null || !same(entry.getValue(), otherValue))
+                    return false;
+            }
+
+            return true;
+        }
+
+        if (isDecimal(a) || isDecimal(b)) {
+            return isDecimal(a) && isDecimal(b) &&
+                    Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue()) == 0;
+        }
+
+        return first.equals(second); // Strings, booleans, nulls and integers are compared exactly by equals
+    }
+
+    private static boolean knownHashesDiffer(Object a, Object b) {
+        return (a instanceof JsonList)
+                ? ContainerState.hashesDiffer(((JsonList) a).knownHashCode(), ((JsonList) b).knownHashCode())
+                : ContainerState.hashesDiffer(((JsonMap) a).knownHashCode(), ((JsonMap) b).knownHashCode());
+    }
+
+    private static boolean isDecimal(Object value) {
+        return value instanceof Double || (value instanceof JsonNumber && !((JsonNumber) value).isIntegral());
+    }
+
+    private int hash(JsonValue value) {
+        Object internal = value.internal;
+
+        if (isDecimal(internal))
+            return Double.hashCode(((Number) internal).doubleValue());
+
+        if (!(internal instanceof JsonContainer))
+            return value.hashCode();
+
+        Integer cached = hashes.get(internal);
+        if (cached != null)
+            return cached;
+
+        int hash;
+        if (internal instanceof JsonList) {
+            hash = 1;
+            for (JsonValue element : (JsonList) internal)
+                hash = 31 * hash + hash(element);
+        }
+        else {
+            hash = 2;
+            for (Map.Entry<String, JsonValue> entry : ((JsonMap) internal).entrySet())
+                hash += entry.getKey().hashCode() ^ hash(entry.getValue());
+        }
+
+        hashes.put(internal, hash);
+        return hash;
+    }
+
+
+    /*
+     * Patching
+     */
+
+    /**
+     * Applies a patch to a document, changing its arrays/objects in place (so any output cached by
+     *  {@link JsonList#enableOutputCache()}/{@link JsonMap#enableOutputCache()} is invalidated as it would be by any
+     *  other change). Values are copied out of the patch as they are inserted, so the patch can be applied again.
+     *  Operations are applied in order; if one fails, the ones before it are not undone
+     * @param document the document to patch
+     * @param patch a list of RFC 6902 operations, such as one returned by {@link #diff(JsonValue, JsonValue)}
+     * @return the patched document; this is document itself, unless the patch replaces the whole document
+     * @throws JsonPatchException if an operation is malformed, refers to a location that doesn't exist, or is a test
+     *  that fails
+     * @throws UnsupportedOperationException if the patch changes a read-only array/object
+     */
+    public static JsonValue apply(JsonValue document, JsonList patch) throws JsonPatchException {
+        JsonValue root = document;
+
+        for (int i = 0; i < patch.size(); i++) {
+            JsonValue operationValue = patch.get(i);
+            if (!(operationValue.internal instanceof JsonMap))
+                throw new JsonPatchException("Operation " + i + " is not an object");
+
+            JsonMap operation = (JsonMap) operationValue.internal;
+            String op = member(operation, "op", i);
+            String path = member(operation, "path", i);
+
+            switch (op) {
+                case "add":
+                    root = add(root, path, copyOf(value(operation, i)));
+                    break;
+                case "remove":
+                    remove(root, path);
+                    break;
+                case "replace":
+                    get(root, path);
+                    root = (path.isEmpty()) ? copyOf(value(operation, i)) : replace(root, path, value(operation, i));
+                    break;
+                case "move": {
+                    String from = member(operation, "from", i);
+                    if (path.startsWith(from + '/'))
+                        throw new JsonPatchException("Cannot move " + from + " into its own child " + path);
+                    if (!from.equals(path))
+                        root = add(root, path, remove(root, from));
+                    break;
+                }
+                case "copy":
+                    root = add(root, path, copyOf(get(root, member(operation, "from", i))));
+                    break;
+                case "test":
+                    if (!get(root, path).equals(value(operation, i)))
+                        throw new JsonPatchException("Test of operation " + i + " failed at " + path);
+                    break;
+                default:
+                    throw new JsonPatchException("Operation " + i + " has an unknown op '" + op + "'");
+            }
+        }
+
+        return root;
+    }
+
+    private static String member(JsonMap operation, String key, int index) {
+        JsonValue value = operation.get(key);
+        if (value == null || !value.isString())
+            throw new JsonPatchException("Operation " + index + " is missing a string '" + key + "'");
+
+        return value.internal.toString();
+    }
+
+    private static JsonValue value(JsonMap operation, int index) {
+        JsonValue value = operation.get("value");
+        if (value == null)
+            throw new JsonPatchException("Operation " + index + " is missing a 'value'");
+
+        return value;
+    }
+
+    private static JsonValue add(JsonValue root, String path, JsonValue value) {
+        if (path.isEmpty())
+            return value;
+
+        Location location = new Location(root, path);
+        if (location.list != null) {
+            if (location.token.equals("-"))
+                location.list.add(value);
+            else
+                location.list.add(location.index(location.list.size()), value);
+        }
+        else
+            location.map.put(location.token, value);
+
+        return root;
+    }
+
+    private static JsonValue remove(JsonValue root, String path) {
+        if (path.isEmpty())
+            throw new JsonPatchException("Cannot remove the whole document");
+
+        Location location = new Location(root, path);
+        if (location.list != null)
+            return location.list.remove(location.index(location.list.size() - 1));
+
+        if (!location.map.containsKey(location.token))
+            throw new JsonPatchException("Nothing to remove at " + path);
+
+        return location.map.remove(location.token);
+    }
+
+    private static JsonValue replace(JsonValue root, String path, JsonValue value) {
+        Location location = new Location(root, path);
+        if (location.list != null)
+            location.list.set(location.index(location.list.size() - 1), copyOf(value));
+        else
+            location.map.put(location.token, copyOf(value));
+
+        return root;
+    }
+
+    private static JsonValue get(JsonValue root, String path) {
+        if (path.isEmpty())
+            return root;
+
+        Location location = new Location(root, path);
+        JsonValue value = (location.list != null)
+                ? location.list.get(location.index(location.list.size() - 1))
+                : location.map.get(location.token);
+
+        if (value == null)
+            throw new JsonPatchException("Nothing found at " + path);
+
+        return value;
+    }
+
+    // Copies arrays/objects that could be changed later; frozen ones and everything else are immutable
+    private static JsonValue copyOf(JsonValue value) {
+        Object internal = value.internal;
+
+        if (internal instanceof PersistentJsonList || internal instanceof PersistentJsonMap)
+            return value;
+
+        if (internal instanceof JsonList) {
+            JsonList copy = new JsonList();
+            for (JsonValue element : (JsonList) internal)
+                copy.add(copyOf(element));
+
+            return JsonValue.wrap(copy);
+        }
+
+        if (internal instanceof JsonMap) {
+            JsonMap copy = new JsonMap();
+            for (Map.Entry<String, JsonValue> entry : ((JsonMap) internal).entrySet())
+                copy.put(entry.getKey(), copyOf(entry.getValue()));
+
+            return JsonValue.wrap(copy);
+        }
+
+        return value;
+    }
+
+    /**
+     * The array/object holding the value a (non-empty) JSON Pointer refers to, and the pointer's last token
+     */
+    private static final class Location {
+        final String path;
+        JsonList list;
+        JsonMap map;
+        String token;
+
+        Location(JsonValue root, String path) {
+            if (path.charAt(0) != '/')
+                throw new JsonPatchException("Path '" + path + "' does not start with a '/'");
+
+            this.path = path;
+            Object parent = root.internal;
+            int start = 1;
+
+            while (true) {
+                int end = path.indexOf('/', start);
+                token = unescapeToken(path.substring(start, (end < 0) ? path.length() : end));
+
+                if (parent instanceof JsonList)
+                    list = (JsonList) parent;
+                else if (parent instanceof JsonMap)
+                    map = (JsonMap) parent;
+                else
+                    throw new JsonPatchException("Path " + path + " goes through a value that is not an array/object");
+
+                if (end < 0)
+                    return;
+
+                JsonValue child = (list != null) ? list.get(index(list.size() - 1)) : map.get(token);
+                if (child == null)
+                    throw new JsonPatchException("Nothing found at " + path.substring(0, end));
+
+                parent = child.internal;
+                list = null;
+                map = null;
+                start = end + 1;
+            }
+        }
+
+        /**
+         * @param max the highest index allowed
+         * @return the token as an array index
+         */
+        int index(int max) {
+            boolean digits = !token.isEmpty() && token.length() <= 9 && (token.length() == 1 || token.charAt(0) != '0');
+            for (int i = 0; i < token.length() && digits; i++)
+                digits = token.charAt(i) >= '0' && token.charAt(i) <= '9';
+
+            int index = (digits) ? Integer.parseInt(token) : -1;
+            if (index < 0 || index > max)
+                throw new JsonPatchException("'" + token + "' is not a valid array index in " + path);
+
+            return index;
+        }
+
+        private static String unescapeToken(String token) {
+            if (token.indexOf('~') < 0)
+                return token;
+
+            return token.replace("~1", "/").replace("~0", "~");
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hash index over the objects in a JsonList, built by {@link JsonList#indexBy(String...)}. Maps the values of the
+ *  indexed keys to the objects holding them; objects sharing the same values are kept in list order. Values are
+ *  matched as by {@link JsonValue#equals(Object)}, so 1 finds an object whose key is 1 whether it was parsed as a
+ *  Long or a JsonNumber, and strings are matched by their unescaped characters. The one exception is decimal
+ *  numbers, which are matched by their exact double value rather than within equals' tolerance.
+ * <p>
+ * The index is rebuilt on the first lookup after the list (or an object inside it) changes. Changes to the Java
+ *  list behind a view (see {@link JsonValue#view(Object)}) can't be seen, so an index over a view reflects the
+ *  view as it was when the index was built. Like JsonList, a JsonIndex is not thread-safe
+ */
+public final class JsonIndex {
+    private static final Object NULL_KEY = new Object(); // The key of JSON nulls
+
+    private final JsonList list;
+    private final String[][] paths;
+    private final ContainerState state; // Null if the list can't be tracked
+    private int changes;
+    private Map<Object, Object> entries; // Key to JsonValue, or to a List of JsonValues for keys shared by several
+    private boolean unique;
+
+    JsonIndex(JsonList list, String[] keys) {
+        if (keys.length == 0)
+            throw new IllegalArgumentException("At least one key is needed to build an index");
+
+        this.list = list;
+        paths = new String[keys.length][];
+        for (int i = 0; i < keys.length; i++)
+            paths[i] = keys[i].split("\\.", -1);
+
+        state = ContainerState.track(list);
+        build();
+    }
+
+    /**
+     * Returns the first object (in list order) with the given values
+     * @param key the values of the indexed keys, in the order the keys were given. Each is either a JsonValue, or a
+     *  value accepted by {@link JsonValue#valueOf(Object)}
+     * @return the object, or null if no object has those values
+     * @throws IllegalArgumentException if the wrong number of values is given, or one can't be converted
+     */
+    @SuppressWarnings("unchecked")
+    public JsonValue get(Object... key) throws IllegalArgumentException {
+        Object found = entries().get(toKey(key));
+        if (found instanceof JsonValue || found == null)
+            return (JsonValue) found;
+
+        return ((List<JsonValue>) found).get(0);
+    }
+
+    /**
+     * Returns every object with the given values
+     * @param key the values of the indexed keys, in the order the keys were given
+     * @return the objects in list order (an empty list if there are none)
+     * @throws IllegalArgumentException if the wrong number of values is given, or one can't be converted
+     */
+    @SuppressWarnings("unchecked")
+    public List<JsonValue> getAll(Object... key) throws IllegalArgumentException {
+        Object found = entries().get(toKey(key));
+        if (found == null)
+            return Collections.emptyList();
+
+        if (found instanceof JsonValue)
+            return Collections.singletonList((JsonValue) found);
+
+        return Collections.unmodifiableList((List<JsonValue>) found);
+    }
+
+    /**
+     * @param key the values of the indexed keys, in the order the keys were given
+     * @return whether an object has the given values
+     * @throws IllegalArgumentException if the wrong number of values is given, or one can't be converted
+     */
+    public boolean containsKey(Object... key) throws IllegalArgumentException {
+        return entries().containsKey(toKey(key));
+    }
+
+    /**
+     * @return whether no two indexed objects share the same values
+     */
+    public boolean isUnique() {
+        entries();
+        return unique;
+    }
+
+    /**
+     * @return the number of distinct values (or combinations of values) in the index
+     */
+    public int size() {
+        return entries().size();
+    }
+
+    private Map<Object, Object> entries() {
+        if (state != null && state.changes != changes)
+            build();
+
+        return entries;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void build() {
+        Map<Object, Object> entries = new HashMap<>(Math.max(16, list.size() * 4 / 3 + 1));
+        boolean unique = true;
+
+        for (JsonValue element : list) {
+            Object key = keyOf(element);
+            if (key == null)
+                continue;
+
+            Object existing = entries.putIfAbsent(key, element);
+            if (existing == null)
+                continue;
+
+            unique = false;
+            if (existing instanceof JsonValue) {
+                List<JsonValue> elements = new ArrayList<>(2);
+                elements.add((JsonValue) existing);
+                elements.add(element);
+                entries.put(key, elements);
+            }
+            else
+                ((List<JsonValue>) existing).add(element);
+        }
+
+        this.entries = entries;
+        this.unique = unique;
+        if (state != null)
+            changes = state.changes;
+    }
+
+    // The element's values for the indexed keys, or null if it doesn't have them all
+    private Object keyOf(JsonValue element) {
+        if (paths.length == 1) {
+            JsonValue value = valueAt(element, paths[0]);
+            return (value == null) ? null : exactKey(value);
+        }
+
+        Object[] values = new Object[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            JsonValue value = valueAt(element, paths[i]);
+            if (value == null)
+                return null;
+
+            values[i] = exactKey(value);
+        }
+
+        return Arrays.asList(values);
+    }
+
+    /**
+     * Converts a value to the key it is stored under. JsonValue.hashCode gives every decimal the same hash code (so
+     *  that it can compare them with a tolerance), which would put an index over a decimal key in a single bucket;
+     *  keys are therefore plain Java values with exact hash codes: Longs or BigIntegers for integers, Doubles for
+     *  decimals, and unescaped Strings for strings
+     */
+    private static Object exactKey(JsonValue value) {
+        Object internal = value.internal;
+
+        if (internal == null)
+            return NULL_KEY;
+
+        if (internal instanceof String)
+            return JsonValue.unescape((String) internal);
+
+        if (internal instanceof StringSlice)
+            return internal.toString();
+
+        if (internal instanceof JsonNumber) {
+            JsonNumber number = (JsonNumber) internal;
+            if (!number.isIntegral())
+                return exactDouble(number.doubleValue());
+
+            BigInteger integer = number.bigIntegerValue();
+            return (integer.bitLength() < 64) ? (Object) integer.longValue() : integer;
+        }
+
+        if (internal instanceof Double)
+            return exactDouble((Double) internal);
+
+        return internal; // Longs, Booleans, and arrays/objects (which hash as List/Map)
+    }
+
+    private static Double exactDouble(double number) {
+        return (number == 0) ? 0.0 : number; // -0.0 equals 0.0
+    }
+
+    private static JsonValue valueAt(JsonValue value, String[] path) {
+        for (String key : path) {
+            if (value == null || !(value.internal instanceof JsonMap))
+                return null;
+
+            value = ((JsonMap) value.internal).get(key);
+        }
+
+        return value;
+    }
+
+    private Object toKey(Object[] key) {
+        if (key.length != paths.length)
+            throw new IllegalArgumentException("Expected " + paths.length + " key values, got " + key.length);
+
+        Object[] values = new Object[key.length];
+        for (int i = 0; i < key.length; i++)
+            values[i] = exactKey((key[i] instanceof JsonValue) ? (JsonValue) key[i] : JsonValue.valueOf(key[i]));
+
+        return (values.length == 1) ? values[0] : Arrays.asList(values);
+    }
+}
@@ -15,14 +15,21 @@
  */
 package com.LeggoMahEggo.esson;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
  * This class extends {@link ArrayList}<{@link JsonValue}>
  */
 public class JsonList extends ArrayList<JsonValue> implements JsonContainer {
+    transient ContainerState state; // Set once changes are tracked (see enableOutputCache)
 
     /**
      * Converts a List of objects into a JsonList containing JsonValue objects. The following types are permissible to
@@ -73,28 +80,346 @@ public class JsonList extends ArrayList<JsonValue> implements JsonContainer {
         return jlist;
     }
 
+    /**
+     * Creates an immutable copy of the list, whose nested arrays/objects are frozen as well. Updated versions of it can
+     *  then be made cheaply with {@link PersistentJsonList#with(int, JsonValue)} and
+     *  {@link PersistentJsonList#append(JsonValue)}, and it can be shared between threads without locking
+     * @return a PersistentJsonList with the same elements
+     */
+    public PersistentJsonList freeze() {
+        return PersistentJsonList.from(this);
+    }
+
+    /**
+     * Starts tracking changes made to the list and to the arrays/objects inside it (including ones added later), and
+     *  caches their JSON output. Later calls to toJsonString/writeTo then only re-encode the arrays/objects that
+     *  changed since the last call (along with those holding them), and reuse the cached output of the rest
+     * <p>
+     * Each array/object keeps its own copy of its output, so this trades memory for speed; it suits large documents
+     *  that are serialized repeatedly with few changes in between. Views (see {@link JsonValue#view(Object)}) and
+     *  frozen lists/maps inside the list are not tracked, and are re-encoded every time.
+     * <p>
+     * Hash codes are cached the same way (other than for those holding a view), so that {@link #hashCode()} only
+     *  recomputes the parts that changed, and {@link #equals(Object)} can tell two lists with different cached hash
+     *  codes apart without comparing them
+     */
+    public void enableOutputCache() {
+        ContainerState.track(this);
+    }
+
+    /**
+     * Builds a hash index over the objects in the list, from the values of one or more of their keys to the objects
+     *  themselves, so that looking an object up by key doesn't scan the list. A key may be a dotted path into nested
+     *  objects (eg "customer.id"); several keys make a composite index. Elements that aren't objects, or that are
+     *  missing one of the keys, are left out of the index.
+     * <p>
+     * The list's changes are tracked (as with {@link #enableOutputCache()}), including changes to the objects inside
+     *  it, and any change makes the index rebuild itself on its next lookup
+     * @param keys the keys (or dotted paths) to index the objects by
+     * @return the index
+     * @throws IllegalArgumentException if no keys are given
+     */
+    public JsonIndex indexBy(String... keys) throws IllegalArgumentException {
+        return new JsonIndex(this, keys);
+    }
+
+    /**
+     * Converts a list of objects into a column store, with one column per key holding the values of every row in a
+     *  primitive array (see {@link JsonColumns}), so that a field can be summed, filtered or grouped across many rows
+     *  without going through a JsonValue per row. Objects don't need to have every key; missing keys are nulls
+     * @return the column store
+     * @throws IllegalArgumentException if an element is not an object
+     */
+    public JsonColumns toColumns() throws IllegalArgumentException {
+        return JsonColumns.from(this);
+    }
+
+    /**
+     * @return whether changes to the list can be tracked (false for read-only lists)
+     */
+    boolean isTrackable() {
+        return true;
+    }
+
+
+    /*
+     * Change tracking; each method that modifies the list informs its state (if it is tracked)
+     */
+
+    private void added(JsonValue value) {
+        if (state != null)
+            ContainerState.attach(value, this);
+    }
+
+    private void removed(Object value) {
+        if (state != null)
+            ContainerState.detach(value, this);
+    }
+
+    private void changed() {
+        if (state != null)
+            state.changed();
+    }
+
     @Override
-    public String toJsonString() {
-        StringBuilder builder = new StringBuilder().append("[");
+    public boolean add(JsonValue value) {
+        super.add(value);
+        added(value);
+        changed();
+        return true;
+    }
+
+    @Override
+    public void add(int index, JsonValue value) {
+        super.add(index, value);
+        added(value);
+        changed();
+    }
 
-        for (int i = 0; i < this.size(); i++) {
-            JsonValue value = this.get(i);
+    @Override
+    public boolean addAll(Collection<? extends JsonValue> c) {
+        if (!super.addAll(c))
+            return false;
 
-            if (value.internal instanceof String)
-                builder.append("\"")
-                        .append(JsonValue.escapeString((String) value.internal))
-                        .append("\"");
+        if (state != null) {
+            for (JsonValue value : c)
+                added(value);
+            changed();
+        }
 
-            else if (value.internal instanceof JsonContainer)
-                builder.append(((JsonContainer)value.internal).toJsonString()); // Call JsonList/Map's toJsonString method
+        return true;
+    }
 
-            else
-                builder.append(value);
+    @Override
+    public boolean addAll(int index, Collection<? extends JsonValue> c) {
+        if (!super.addAll(index, c))
+            return false;
 
-            if (i + 1 < this.size())
-                builder.append(", "); // No extra commas at the end of the array
+        if (state != null) {
+            for (JsonValue value : c)
+                added(value);
+            changed();
         }
 
-        return builder.append("]").toString();
+        return true;
+    }
+
+    @Override
+    public JsonValue set(int index, JsonValue value) {
+        JsonValue previous = super.set(index, value);
+        removed(previous);
+        added(value);
+        changed();
+        return previous;
+    }
+
+    @Override
+    public JsonValue remove(int index) {
+        JsonValue previous = super.remove(index);
+        removed(previous);
+        changed();
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index == -1)
+            return false;
+
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if (state == null)
+            return super.removeAll(c);
+
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        if (state == null)
+            return super.retainAll(c);
+
+        return removeIf(value -> !c.contains(value));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super JsonValue> filter) {
+        if (state == null)
+            return super.removeIf(filter);
+
+        boolean modified = super.removeIf(value -> {
+            if (!filter.test(value))
+                return false;
+
+            removed(value);
+            return true;
+        });
+
+        if (modified)
+            changed();
+
+        return modified;
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<JsonValue> operator) {
+        if (state == null) {
+            super.replaceAll(operator);
+            return;
+        }
+
+        super.replaceAll(value -> {
+            JsonValue replacement = operator.apply(value);
+            removed(value);
+            added(replacement);
+            return replacement;
+        });
+        changed();
+    }
+
+    @Override
+    public void sort(Comparator<? super JsonValue> c) {
+        super.sort(c);
+        changed();
+    }
+
+    @Override
+    public void clear() {
+        if (state != null)
+            for (JsonValue value : this)
+                removed(value);
+
+        super.clear();
+        changed();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (state != null)
+            for (int i = fromIndex; i < toIndex; i++)
+                removed(get(i));
+
+        super.removeRange(fromIndex, toIndex);
+        changed();
+    }
+
+    // ArrayList's iterators make their changes through remove(int), set and add(int, JsonValue), so they are tracked
+    //  as well. Its sub-lists don't, so they are replaced
+
+    @Override
+    public List<JsonValue> subList(int fromIndex, int toIndex) {
+        if (state == null)
+            return super.subList(fromIndex, toIndex);
+
+        Objects.checkFromToIndex(fromIndex, toIndex, size());
+        return new TrackedSubList(fromIndex, toIndex - fromIndex);
+    }
+
+    @Override
+    public Object clone() {
+        JsonList copy = (JsonList) super.clone();
+        copy.state = null; // The copy starts out untracked
+        return copy;
+    }
+
+    /**
+     * A range of the list, whose changes are made through the list's own (tracked) methods
+     */
+    private final class TrackedSubList extends AbstractList<JsonValue> {
+        private final int offset;
+        private int size;
+
+        TrackedSubList(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public JsonValue get(int index) {
+            Objects.checkIndex(index, size);
+            return JsonList.this.get(offset + index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public JsonValue set(int index, JsonValue value) {
+            Objects.checkIndex(index, size);
+            return JsonList.this.set(offset + index, value);
+        }
+
+        @Override
+        public void add(int index, JsonValue value) {
+            Objects.checkIndex(index, size + 1);
+            JsonList.this.add(offset + index, value);
+            size++;
+            modCount++;
+        }
+
+        @Override
+        public JsonValue remove(int index) {
+            Objects.checkIndex(index, size);
+            JsonValue previous = JsonList.this.remove(offset + index);
+            size--;
+            modCount++;
+            return previous;
+        }
+    }
+
+    /**
+     * Returns the hash code defined by {@link java.util.List#hashCode()}, using {@link JsonValue#hashCode()} for the
+     *  values. Only cached (until the list changes) if {@link #enableOutputCache()} was called, and nothing inside the
+     *  list is a view; otherwise it is computed on every call
+     * @return the list's hash code
+     */
+    @Override
+    public int hashCode() {
+        ContainerState state = this.state;
+        return (state == null) ? super.hashCode() : state.hashCode(this);
+    }
+
+    /**
+     * @return the cached hash code, or {@link ContainerState#UNKNOWN_HASH} if it isn't cached
+     */
+    long knownHashCode() {
+        ContainerState state = this.state;
+        return (state != null && state.hashed) ? state.hash : ContainerState.UNKNOWN_HASH;
+    }
+
+    /**
+     * Compares the list with another as defined by {@link java.util.List#equals(Object)}. If both lists have cached hash
+     *  codes (see {@link #hashCode()}) that differ, they are known to be unequal without comparing them; otherwise
+     *  every element is compared
+     * @param o the object to compare with
+     * @return whether o is an equal list
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+
+        // Different cached hash codes rule out equality without comparing every element
+        if (o instanceof JsonList && ContainerState.hashesDiffer(knownHashCode(), ((JsonList) o).knownHashCode()))
+            return false;
+
+        return super.equals(o);
+    }
+
+    @Override
+    public String toJsonString() {
+        return Serializer.toJsonString(this, false);
+    }
+
+    @Override
+    public String toJsonString(boolean compact) {
+        return Serializer.toJsonString(this, compact);
     }
 }
@@ -0,0 +1,71 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A read-only {@link JsonList} backed by an existing List. Elements are validated and wrapped in a JsonValue each time
+ *  they are accessed, and nothing is copied (see {@link JsonValue#view(Object)})
+ */
+final class JsonListView extends ReadOnlyJsonList {
+    private final List<?> backing;
+
+    JsonListView(List<?> backing) {
+        super("Cannot modify a JsonList that is a view over another List");
+        this.backing = backing;
+    }
+
+    @Override
+    public int size() {
+        return backing.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return backing.isEmpty();
+    }
+
+    @Override
+    public JsonValue get(int index) {
+        return JsonValue.view(backing.get(index));
+    }
+
+    @Override
+    public Iterator<JsonValue> iterator() {
+        Iterator<?> it = backing.iterator();
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public JsonValue next() {
+                return JsonValue.view(it.next());
+            }
+        };
+    }
+
+    @Override
+    public void forEach(Consumer<? super JsonValue> action) {
+        for (Object obj : backing)
+            action.accept(JsonValue.view(obj));
+    }
+}
@@ -15,15 +15,23 @@
  */
 package com.LeggoMahEggo.esson;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * This class extends {@link LinkedHashMap}<{@link String},{@link JsonValue}>
  */
 public class JsonMap extends LinkedHashMap<String, JsonValue> implements JsonContainer {
+    transient ContainerState state; // Set once changes are tracked (see enableOutputCache)
 
     /**
      * Converts a Map of objects into a JsonMap containing JsonValue objects. The following types are permissible to
@@ -78,35 +86,444 @@ public class JsonMap extends LinkedHashMap<String, JsonValue> implements JsonCon
         return jmap;
     }
 
+    /**
+     * Creates an immutable copy of the map, whose nested arrays/objects are frozen as well. Updated versions of it can
+     *  then be made cheaply with {@link PersistentJsonMap#with(String, JsonValue)} and
+     *  {@link PersistentJsonMap#without(String)}, and it can be shared between threads without locking
+     * @return a PersistentJsonMap with the same entries
+     */
+    public PersistentJsonMap freeze() {
+        return PersistentJsonMap.from(this);
+    }
+
+    /**
+     * Starts tracking changes made to the map and to the arrays/objects inside it (including ones added later), and
+     *  caches their JSON output. Later calls to toJsonString/writeTo then only re-encode the arrays/objects that
+     *  changed since the last call (along with those holding them), and reuse the cached output of the rest
+     * <p>
+     * Each array/object keeps its own copy of its output, so this trades memory for speed; it suits large documents
+     *  that are serialized repeatedly with few changes in between. Views (see {@link JsonValue#view(Object)}) and
+     *  frozen lists/maps inside the map are not tracked, and are re-encoded every time.
+     * <p>
+     * Hash codes are cached the same way (other than for those holding a view), so that {@link #hashCode()} only
+     *  recomputes the parts that changed, and {@link #equals(Object)} can tell two maps with different cached hash
+     *  codes apart without comparing them
+     */
+    public void enableOutputCache() {
+        ContainerState.track(this);
+    }
+
+    /**
+     * @return whether changes to the map can be tracked (false for read-only maps)
+     */
+    boolean isTrackable() {
+        return true;
+    }
+
+
+    /*
+     * Change tracking; each method that modifies the map informs its state (if it is tracked). HashMap makes most
+     *  changes internally without going through its public methods, so all of them (and the key/value/entry views)
+     *  are overridden
+     */
+
+    private void replaced(JsonValue previous, JsonValue value) {
+        if (state != null) {
+            ContainerState.detach(previous, this);
+            ContainerState.attach(value, this);
+            state.changed();
+        }
+    }
+
+    private void removed(JsonValue previous) {
+        if (state != null) {
+            ContainerState.detach(previous, this);
+            state.changed();
+        }
+    }
+
     @Override
-    public String toJsonString() {
-        StringBuilder builder = new StringBuilder().append("{");
+    public JsonValue put(String key, JsonValue value) {
+        JsonValue previous = super.put(key, value);
+        replaced(previous, value);
+        return previous;
+    }
 
-        int i = 0;
-        for (Entry<String, JsonValue> pair : this.entrySet()) {
-            // Add key
-            builder.append("\"")
-                    .append(JsonValue.escapeString(pair.getKey())) // Make sure string is properly escaped
-                    .append("\": ");
+    @Override
+    public void putAll(Map<? extends String, ? extends JsonValue> m) {
+        if (state == null) {
+            super.putAll(m);
+            return;
+        }
 
-            // Add value
-            JsonValue value = pair.getValue();
+        for (Entry<? extends String, ? extends JsonValue> pair : m.entrySet())
+            put(pair.getKey(), pair.getValue());
+    }
 
-            if (value.internal instanceof String)
-                builder.append("\"")
-                        .append(JsonValue.escapeString((String) value.internal))
-                        .append("\""); // getAsString un-escapes control characters
+    @Override
+    public JsonValue putIfAbsent(String key, JsonValue value) {
+        if (state == null)
+            return super.putIfAbsent(key, value);
 
-            else if (value.internal instanceof JsonContainer)
-                builder.append(((JsonContainer)value.internal).toJsonString()); // Call JsonList/Map's toJsonString method
+        JsonValue previous = get(key);
+        return previous == null ? put(key, value) : previous;
+    }
 
-            else
-                builder.append(value);
+    @Override
+    public JsonValue remove(Object key) {
+        if (state == null || !containsKey(key))
+            return super.remove(key);
+
+        JsonValue previous = super.remove(key);
+        removed(previous);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (state == null)
+            return super.remove(key, value);
+
+        JsonValue previous = get(key);
+        if (!super.remove(key, value))
+            return false;
+
+        removed(previous);
+        return true;
+    }
+
+    @Override
+    public JsonValue replace(String key, JsonValue value) {
+        if (state == null || !containsKey(key))
+            return super.replace(key, value);
+
+        return put(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, JsonValue oldValue, JsonValue newValue) {
+        if (state == null)
+            return super.replace(key, oldValue, newValue);
+
+        JsonValue previous = get(key);
+        if (!super.replace(key, oldValue, newValue))
+            return false;
+
+        replaced(previous, newValue);
+        return true;
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super JsonValue, ? extends JsonValue> function) {
+        if (state == null) {
+            super.replaceAll(function);
+            return;
+        }
+
+        super.replaceAll((key, value) -> {
+            JsonValue replacement = function.apply(key, value);
+            ContainerState.detach(value, this);
+            ContainerState.attach(replacement, this);
+            return replacement;
+        });
+        state.changed();
+    }
+
+    @Override
+    public JsonValue computeIfAbsent(String key, Function<? super String, ? extends JsonValue> mappingFunction) {
+        if (state == null)
+            return super.computeIfAbsent(key, mappingFunction);
+
+        return compute(key, (k, previous) -> previous != null ? previous : mappingFunction.apply(k));
+    }
+
+    @Override
+    public JsonValue computeIfPresent(String key,
+            BiFunction<? super String, ? super JsonValue, ? extends JsonValue> remappingFunction) {
+        if (state == null)
+            return super.computeIfPresent(key, remappingFunction);
+
+        return compute(key, (k, previous) -> previous == null ? null : remappingFunction.apply(k, previous));
+    }
+
+    @Override
+    public JsonValue compute(String key,
+            BiFunction<? super String, ? super JsonValue, ? extends JsonValue> remappingFunction) {
+        if (state == null)
+            return super.compute(key, remappingFunction);
+
+        boolean present = containsKey(key);
+        JsonValue previous = get(key);
+        JsonValue value = super.compute(key, remappingFunction);
+
+        if (value != previous || present != containsKey(key))
+            replaced(previous, value);
+
+        return value;
+    }
 
-            if (i++ + 1 < this.size())
-                builder.append(", "); // No extra commas at the end of the object
+    @Override
+    public JsonValue merge(String key, JsonValue value,
+            BiFunction<? super JsonValue, ? super JsonValue, ? extends JsonValue> remappingFunction) {
+        if (state == null)
+            return super.merge(key, value, remappingFunction);
+
+        return compute(key, (k, previous) -> previous == null ? value : remappingFunction.apply(previous, value));
+    }
+
+    @Override
+    public void clear() {
+        if (state != null) {
+            for (JsonValue value : super.values())
+                ContainerState.detach(value, this);
+            state.changed();
         }
 
-        return builder.append("}").toString();
+        super.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return state == null ? super.keySet() : new TrackedKeySet();
+    }
+
+    @Override
+    public Collection<JsonValue> values() {
+        return state == null ? super.values() : new TrackedValues();
+    }
+
+    @Override
+    public Set<Entry<String, JsonValue>> entrySet() {
+        return state == null ? super.entrySet() : new TrackedEntrySet();
+    }
+
+    @Override
+    public Object clone() {
+        JsonMap copy = (JsonMap) super.clone();
+        copy.state = null; // The copy starts out untracked
+        return copy;
+    }
+
+    /**
+     * Iterates over the map's entries, informing the map's state when an entry is removed or its value set
+     */
+    private class TrackedEntryIterator implements Iterator<Entry<String, JsonValue>> {
+        private final Iterator<Entry<String, JsonValue>> iterator = JsonMap.super.entrySet().iterator();
+        private Entry<String, JsonValue> last;
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Entry<String, JsonValue> next() {
+            Entry<String, JsonValue> entry = last = iterator.next();
+
+            return new Entry<String, JsonValue>() {
+                @Override
+                public String getKey() {
+                    return entry.getKey();
+                }
+
+                @Override
+                public JsonValue getValue() {
+                    return entry.getValue();
+                }
+
+                @Override
+                public JsonValue setValue(JsonValue value) {
+                    JsonValue previous = entry.setValue(value);
+                    replaced(previous, value);
+                    return previous;
+                }
+
+                @Override
+                public boolean equals(Object o) {
+                    return entry.equals(o);
+                }
+
+                @Override
+                public int hashCode() {
+                    return entry.hashCode();
+                }
+
+                @Override
+                public String toString() {
+                    return entry.toString();
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            JsonValue previous = last.getValue();
+            iterator.remove();
+            removed(previous);
+        }
+    }
+
+    private final class TrackedEntrySet extends AbstractSet<Entry<String, JsonValue>> {
+        @Override
+        public Iterator<Entry<String, JsonValue>> iterator() {
+            return new TrackedEntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return JsonMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return JsonMap.super.entrySet().contains(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof Entry<?, ?> &&
+                    JsonMap.this.remove(((Entry<?, ?>) o).getKey(), ((Entry<?, ?>) o).getValue());
+        }
+
+        @Override
+        public void clear() {
+            JsonMap.this.clear();
+        }
+    }
+
+    private final class TrackedKeySet extends AbstractSet<String> {
+        @Override
+        public Iterator<String> iterator() {
+            TrackedEntryIterator iterator = new TrackedEntryIterator();
+
+            return new Iterator<String>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    return iterator.next().getKey();
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return JsonMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!containsKey(o))
+                return false;
+
+            JsonMap.this.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            JsonMap.this.clear();
+        }
+    }
+
+    private final class TrackedValues extends AbstractCollection<JsonValue> {
+        @Override
+        public Iterator<JsonValue> iterator() {
+            TrackedEntryIterator iterator = new TrackedEntryIterator();
+
+            return new Iterator<JsonValue>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public JsonValue next() {
+                    return iterator.next().getValue();
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return JsonMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            JsonMap.this.clear();
+        }
+    }
+
+    /**
+     * Returns the hash code defined by {@link java.util.Map#hashCode()}, using {@link JsonValue#hashCode()} for the
+     *  values. Only cached (until the map changes) if {@link #enableOutputCache()} was called, and nothing inside the
+     *  map is a view; otherwise it is computed on every call
+     * @return the map's hash code
+     */
+    @Override
+    public int hashCode() {
+        ContainerState state = this.state;
+        return (state == null) ? super.hashCode() : state.hashCode(this);
+    }
+
+    /**
+     * @return the cached hash code, or {@link ContainerState#UNKNOWN_HASH} if it isn't cached
+     */
+    long knownHashCode() {
+        ContainerState state = this.state;
+        return (state != null && state.hashed) ? state.hash : ContainerState.UNKNOWN_HASH;
+    }
+
+    /**
+     * Compares the map with another as defined by {@link java.util.Map#equals(Object)}. If both maps have cached hash
+     *  codes (see {@link #hashCode()}) that differ, they are known to be unequal without comparing them; otherwise
+     *  every entry is compared
+     * @param o the object to compare with
+     * @return whether o is an equal map
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+
+        // Different cached hash codes rule out equality without comparing every entry
+        if (o instanceof JsonMap && ContainerState.hashesDiffer(knownHashCode(), ((JsonMap) o).knownHashCode()))
+            return false;
+
+        return super.equals(o);
+    }
+
+    @Override
+    public String toJsonString() {
+        return Serializer.toJsonString(this, false);
+    }
+
+    @Override
+    public String toJsonString(boolean compact) {
+        return Serializer.toJsonString(this, compact);
     }
 }
@@ -0,0 +1,86 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A read-only {@link JsonMap} backed by an existing Map. Values are validated and wrapped in a JsonValue each time they
+ *  are accessed, and nothing is copied (see {@link JsonValue#view(Object)})
+ */
+final class JsonMapView extends ReadOnlyJsonMap {
+    private final Map<?, ?> backing;
+
+    JsonMapView(Map<?, ?> backing) {
+        super("Cannot modify a JsonMap that is a view over another Map");
+        this.backing = backing;
+    }
+
+    private static String checkKey(Object key) {
+        if (!(key instanceof String))
+            throw new IllegalArgumentException("Illegal key in viewed Map: must be a String (was " +
+                    ((key == null) ? "null" : "of type " + key.getClass().getSimpleName()) + ")");
+
+        return (String) key;
+    }
+
+    @Override
+    Iterator<Entry<String, JsonValue>> entryIterator() {
+        Iterator<? extends Entry<?, ?>> it = backing.entrySet().iterator();
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Entry<String, JsonValue> next() {
+                Entry<?, ?> entry = it.next();
+                return new SimpleImmutableEntry<>(checkKey(entry.getKey()), JsonValue.view(entry.getValue()));
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return backing.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return backing.isEmpty();
+    }
+
+    @Override
+    public JsonValue get(Object key) {
+        Object value = backing.get(key);
+
+        // A key mapped to null is a JSON null, while a missing key has no value
+        if (value == null && !backing.containsKey(key))
+            return null;
+
+        return JsonValue.view(value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return backing.containsKey(key);
+    }
+}
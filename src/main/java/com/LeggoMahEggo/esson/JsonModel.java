@@ -0,0 +1,43 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a record for the esson-processor annotation processor, which generates a {@code <Record>_JsonCodec} class
+ *  next to it at compile time. The codec reads the record with a {@link JsonReader} and writes it with a
+ *  {@link JsonWriter}, without any reflection at runtime:
+ * <pre>{@code
+ * @JsonModel
+ * public record Point(int x, int y) {}
+ *
+ * Point point = Point_JsonCodec.fromJson("{\"x\": 1, \"y\": 2}");
+ * String json = Point_JsonCodec.toJson(point);
+ * }</pre>
+ * Components can be primitives (other than byte, short and char), their boxes, Strings, enums, JsonValues, other
+ *  {@code @JsonModel} records, and Lists and String-keyed Maps of those. Records nested in other classes get codecs
+ *  named after all of their enclosing classes (eg {@code Outer_Point_JsonCodec})
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+}
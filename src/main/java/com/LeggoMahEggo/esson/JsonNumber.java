@@ -0,0 +1,167 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * A number parsed with {@link Options.OptionsBuilder#lazyNumbers()} set. Holds the number's text as it appeared in the
+ *  JSON string, and only converts it when one of its value methods is first called (each conversion is then cached).
+ *  Integers outside the range of a long and decimals that can't be represented exactly by a double keep their exact
+ *  value, and are written back out unchanged by toJsonString.
+ * <p>
+ * Unlike numbers parsed without the option, an exponent is read as a power of ten, as defined by the JSON standard
+ *  (eg 16e2 is 1600)
+ */
+public final class JsonNumber extends Number {
+    private final String source;
+    private final int start;
+    private final int end;
+    private final boolean integral; // No decimal point or exponent
+
+    // Cached conversions (immutable objects, so they can safely be shared between threads)
+    private transient Long longCache;
+    private transient Double doubleCache;
+    private transient BigInteger bigIntegerCache;
+    private transient BigDecimal bigDecimalCache;
+
+    /**
+     * Creates a JsonNumber from a range of a JSON string that has already been checked to be a legal number
+     * @param source the JSON string
+     * @param start the index of the number's first character (inclusive)
+     * @param end the index of the number's last character (exclusive)
+     */
+    JsonNumber(String source, int start, int end) {
+        // A leading + is dropped, so that it doesn't end up in toJsonString's output
+        if (source.charAt(start) == '+')
+            start++;
+
+        this.source = source;
+        this.start = start;
+        this.end = end;
+
+        boolean integral = true;
+        for (int i = start; i < end && integral; i++) {
+            char c = source.charAt(i);
+            integral = c != '.' && c != 'e' && c != 'E';
+        }
+
+        this.integral = integral;
+    }
+
+    /**
+     * Returns true if the number was written without a decimal point or exponent
+     * @return true if the number is an integer
+     */
+    public boolean isIntegral() {
+        return integral;
+    }
+
+    /**
+     * Writes the number's text out without creating an intermediate String
+     * @param out the OutputSink to write to
+     */
+    void writeTo(OutputSink out) throws IOException {
+        out.write(source, start, end);
+    }
+
+
+    /*
+     * Conversions
+     */
+
+    @Override
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    @Override
+    public long longValue() {
+        Long value = longCache;
+
+        if (value == null) {
+            // Integers with up to 18 digits always fit in a long
+            if (integral && end - start <= 18)
+                value = Long.parseLong(source, start, end, 10);
+            else if (integral)
+                value = bigIntegerValue().longValue();
+            else
+                value = bigDecimalValue().longValue();
+
+            longCache = value;
+        }
+
+        return value;
+    }
+
+    @Override
+    public float floatValue() {
+        return (float) doubleValue();
+    }
+
+    @Override
+    public double doubleValue() {
+        Double value = doubleCache;
+
+        if (value == null) {
+            value = Double.parseDouble(toString());
+            doubleCache = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the number as a BigInteger, dropping any fractional part
+     * @return the number as a BigInteger
+     */
+    public BigInteger bigIntegerValue() {
+        BigInteger value = bigIntegerCache;
+
+        if (value == null) {
+            value = (integral) ? new BigInteger(toString()) : bigDecimalValue().toBigInteger();
+            bigIntegerCache = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the exact value of the number as a BigDecimal
+     * @return the number as a BigDecimal
+     */
+    public BigDecimal bigDecimalValue() {
+        BigDecimal value = bigDecimalCache;
+
+        if (value == null) {
+            value = new BigDecimal(toString());
+            bigDecimalCache = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the number's text as it appeared in the JSON string
+     * @return the number's text
+     */
+    @Override
+    public String toString() {
+        return source.substring(start, end);
+    }
+}
@@ -0,0 +1,631 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled JSONPath expression, which selects values from a document, eg
+ *  {@code JsonPath.compile("$.orders[?(@.total > 100)].items[*].sku").evaluate(document)}. An expression is only
+ *  parsed when it is compiled; evaluating it walks the document directly. Compiled expressions are immutable, so they
+ *  can be shared between threads, and the most recently used ones are kept in a cache (of up to
+ *  {@link #CACHE_CAPACITY} expressions) so that compiling the same string again is only a lookup.
+ * <p>
+ * The following are supported:
+ * <ul>
+ * <li type="circle">$ (the document) and @ (the current value, inside filters)</li>
+ * <li type="circle">.name, ['name'] and ["name"] (an object's value), and .* or [*] (every value of an
+ *  array/object)</li>
+ * <li type="circle">[index] (negative indexes count from the end), [start:end:step] (slices, as in Python) and
+ *  unions such as [0,2] or ['a','b']</li>
+ * <li type="circle">..selector (the selector applied to the value and everything inside it, eg $..sku)</li>
+ * <li type="circle">[?(filter)] or [?filter], which keeps the values of an array/object that match the filter. A
+ *  filter compares paths (starting with @ or $) and literals (numbers, quoted strings, true, false and null) with
+ *  ==, !=, &lt;, &lt;=, &gt; and &gt;=, tests that a path exists, and combines tests with &amp;&amp;, || and !.
+ *  Numbers are compared by value (so 100 == 100.0), and strings by their characters</li>
+ * </ul>
+ * Names are matched against keys as they are stored in a {@link JsonMap}
+ */
+public final class JsonPath {
+    /**
+     * The number of compiled expressions kept by {@link #compile(String)}
+     */
+    public static final int CACHE_CAPACITY = 256;
+
+    private static final Map<String, JsonPath> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, JsonPath>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, JsonPath> eldest) {
+                    return size() > CACHE_CAPACITY;
+                }
+            });
+
+    private final String expression;
+    private final Selector[] segments;
+
+    private JsonPath(String expression, Selector[] segments) {
+        this.expression = expression;
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles an expression, or returns the one compiled earlier from the same string
+     * @param expression the JSONPath expression (starting with $)
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static JsonPath compile(String expression) throws IllegalArgumentException {
+        JsonPath path = CACHE.get(expression);
+
+        if (path == null) {
+            Compiler compiler = new Compiler(expression);
+            path = new JsonPath(expression, compiler.compile());
+            CACHE.put(expression, path);
+        }
+
+        return path;
+    }
+
+    /**
+     * Selects values from a document
+     * @param document the document to select from
+     * @return the selected values (the document's own JsonValues, not copies), in the order they were found
+     */
+    public List<JsonValue> evaluate(JsonValue document) {
+        return select(segments, document, document);
+    }
+
+    /**
+     * As {@link #evaluate(JsonValue)}, but returns only the first value selected
+     * @param document the document to select from
+     * @return the first selected value, or null if nothing was selected
+     */
+    public JsonValue evaluateFirst(JsonValue document) {
+        List<JsonValue> values = evaluate(document);
+        return (values.isEmpty()) ? null : values.get(0);
+    }
+
+    /**
+     * @return the expression the path was compiled from
+     */
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private static List<JsonValue> select(Selector[] segments, JsonValue start, JsonValue document) {
+        List<JsonValue> current = new ArrayList<>(1);
+        current.add(start);
+
+        for (Selector segment : segments) {
+            List<JsonValue> next = new ArrayList<>();
+            for (JsonValue value : current)
+                segment.select(value, document, next);
+
+            current = next;
+            if (current.isEmpty())
+                break;
+        }
+
+        return current;
+    }
+
+
+    /*
+     * Selectors
+     */
+
+    private interface Selector {
+        /**
+         * Adds the values selected from value to out
+         */
+        void select(JsonValue value, JsonValue document, List<JsonValue> out);
+    }
+
+    private static Selector name(String name) {
+        return (value, document, out) -> {
+            if (value.internal instanceof JsonMap) {
+                JsonValue child = ((JsonMap) value.internal).get(name);
+                if (child != null)
+                    out.add(child);
+            }
+        };
+    }
+
+    private static Selector index(int index) {
+        return (value, document, out) -> {
+            if (value.internal instanceof JsonList) {
+                JsonList list = (JsonList) value.internal;
+                int position = (index < 0) ? list.size() + index : index;
+                if (position >= 0 && position < list.size())
+                    out.add(list.get(position));
+            }
+        };
+    }
+
+    private static Selector slice(Integer start, Integer end, int step) {
+        return (value, document, out) -> {
+            if (!(value.internal instanceof JsonList) || step == 0)
+                return;
+
+            JsonList list = (JsonList) value.internal;
+            int size = list.size();
+
+            if (step > 0) {
+                int from = bound((start == null) ? 0 : start, size, 0, size);
+                int to = bound((end == null) ? size : end, size, 0, size);
+                for (int i = from; i < to; i += step)
+                    out.add(list.get(i));
+            }
+            else {
+                int from = bound((start == null) ? size - 1 : start, size, -1, size - 1);
+                int to = bound((end == null) ? -size - 1 : end, size, -1, size - 1);
+                for (int i = from; i > to; i += step)
+                    out.add(list.get(i));
+            }
+        };
+    }
+
+    // Turns a (possibly negative) slice index into a position, clamped to [low, high]
+    private static int bound(int index, int size, int low, int high) {
+        int position = (index < 0) ? size + index : index;
+        return Math.max(low, Math.min(high, position));
+    }
+
+    private static final Selector WILDCARD = (value, document, out) -> {
+        if (value.internal instanceof JsonList)
+            out.addAll((JsonList) value.internal);
+        else if (value.internal instanceof JsonMap)
+            out.addAll(((JsonMap) value.internal).values());
+    };
+
+    private static Selector filter(Filter filter) {
+        return (value, document, out) -> {
+            Iterable<JsonValue> children;
+            if (value.internal instanceof JsonList)
+                children = (JsonList) value.internal;
+            else if (value.internal instanceof JsonMap)
+                children = ((JsonMap) value.internal).values();
+            else
+                return;
+
+            for (JsonValue child : children) {
+                if (filter.test(child, document))
+                    out.add(child);
+            }
+        };
+    }
+
+    private static Selector union(List<Selector> selectors) {
+        if (selectors.size() == 1)
+            return selectors.get(0);
+
+        Selector[] all = selectors.toArray(new Selector[0]);
+        return (value, document, out) -> {
+            for (Selector selector : all)
+                selector.select(value, document, out);
+        };
+    }
+
+    // The selector applied to the value and to every array/object inside it
+    private static Selector descendants(Selector selector) {
+        return new Selector() {
+            @Override
+            public void select(JsonValue value, JsonValue document, List<JsonValue> out) {
+                selector.select(value, document, out);
+
+                if (value.internal instanceof JsonList) {
+                    for (JsonValue child : (JsonList) value.internal)
+                        select(child, document, out);
+                }
+                else if (value.internal instanceof JsonMap) {
+                    for (JsonValue child : ((JsonMap) value.internal).values())
+                        select(child, document, out);
+                }
+            }
+        };
+    }
+
+
+    /*
+     * Filters
+     */
+
+    private interface Filter {
+        boolean test(JsonValue current, JsonValue document);
+    }
+
+    /**
+     * A side of a comparison: a literal, or the first value selected by a path
+     */
+    private interface Operand {
+        JsonValue value(JsonValue current, JsonValue document);
+    }
+
+    private static Operand pathOperand(boolean relative, Selector[] segments) {
+        return (current, document) -> {
+            List<JsonValue> values = select(segments, (relative) ? current : document, document);
+            return (values.isEmpty()) ? null : values.get(0);
+        };
+    }
+
+    private static Filter exists(boolean relative, Selector[] segments) {
+        return (current, document) -> !select(segments, (relative) ? current : document, document).isEmpty();
+    }
+
+    private static Filter comparison(Operand left, String operator, Operand right) {
+        return (current, document) -> {
+            JsonValue a = left.value(current, document);
+            JsonValue b = right.value(current, document);
+
+            switch (operator) {
+                case "==": return areEqual(a, b);
+                case "!=": return !areEqual(a, b);
+                default:
+                    if (a == null || b == null)
+                        return false;
+
+                    int order;
+                    if (a.internal instanceof Number && b.internal instanceof Number)
+                        order = Double.compare(((Number) a.internal).doubleValue(), ((Number) b.internal).doubleValue());
+                    else if (a.isString() && b.isString())
+                        order = CharSequence.compare(a.getAsCharSequence(), b.getAsCharSequence());
+                    else
+                        return false;
+
+                    switch (operator) {
+                        case "<": return order < 0;
+                        case "<=": return order <= 0;
+                        case ">": return order > 0;
+                        default: return order >= 0;
+                    }
+            }
+        };
+    }
+
+    private static boolean areEqual(JsonValue a, JsonValue b) {
+        if (a == null || b == null)
+            return a == b;
+
+        if (a.internal instanceof Number && b.internal instanceof Number)
+            return ((Number) a.internal).doubleValue() == ((Number) b.internal).doubleValue();
+
+        return a.equals(b);
+    }
+
+
+    /**
+     * Parses an expression into its selectors
+     */
+    private static final class Compiler {
+        private final String expression;
+        private int index;
+
+        Compiler(String expression) {
+            this.expression = expression;
+        }
+
+        Selector[] compile() {
+            skipWhitespace();
+            expect('$');
+            Selector[] segments = segments();
+            skipWhitespace();
+
+            if (index < expression.length())
+                throw error("Unexpected '" + expression.charAt(index) + "'");
+
+            return segments;
+        }
+
+        private Selector[] segments() {
+            List<Selector> segments = new ArrayList<>();
+
+            while (true) {
+                skipWhitespace();
+                if (peek() == '.') {
+                    index++;
+                    if (peek() == '.') {
+                        index++;
+                        segments.add(descendants((peek() == '[') ? bracket() : dotted()));
+                    }
+                    else
+                        segments.add(dotted());
+                }
+                else if (peek() == '[')
+                    segments.add(bracket());
+                else
+                    return segments.toArray(new Selector[0]);
+            }
+        }
+
+        // A name or * after a dot
+        private Selector dotted() {
+            if (peek() == '*') {
+                index++;
+                return WILDCARD;
+            }
+
+            int start = index;
+            while (index < expression.length()) {
+                char c = expression.charAt(index);
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '$' && c < 0x80)
+                    break;
+
+                index++;
+            }
+
+            if (start == index)
+                throw error("Expected a name");
+
+            return name(expression.substring(start, index));
+        }
+
+        private Selector bracket() {
+            expect('[');
+            skipWhitespace();
+            Selector selector;
+
+            if (peek() == '?') {
+                index++;
+                skipWhitespace();
+                selector = filter(or());
+            }
+            else if (peek() == '*') {
+                index++;
+                selector = WILDCARD;
+            }
+            else {
+                List<Selector> selectors = new ArrayList<>();
+                do {
+                    skipWhitespace();
+                    selectors.add((peek() == '\'' || peek() == '"') ? name(string()) : indexOrSlice());
+                    skipWhitespace();
+                } while (accept(','));
+
+                selector = union(selectors);
+            }
+
+            skipWhitespace();
+            expect(']');
+            return selector;
+        }
+
+        private Selector indexOrSlice() {
+            Integer[] parts = new Integer[3];
+            int count = 0;
+
+            while (true) {
+                skipWhitespace();
+                if (peek() == '-' || Character.isDigit(peek()))
+                    parts[count] = integer();
+
+                skipWhitespace();
+                if (count == 2 || !accept(':'))
+                    break;
+
+                count++;
+            }
+
+            if (count == 0) {
+                if (parts[0] == null)
+                    throw error("Expected an index, a slice or a quoted name");
+
+                return index(parts[0]);
+            }
+
+            return slice(parts[0], parts[1], (parts[2] == null) ? 1 : parts[2]);
+        }
+
+        private int integer() {
+            int start = index;
+            if (peek() == '-')
+                index++;
+            while (Character.isDigit(peek()))
+                index++;
+
+            try {
+                return Integer.parseInt(expression.substring(start, index));
+            } catch (NumberFormatException e) {
+                throw error("Invalid index");
+            }
+        }
+
+        private String string() {
+            char quote = expression.charAt(index++);
+            StringBuilder string = new StringBuilder();
+
+            while (true) {
+                if (index >= expression.length())
+                    throw error("Unterminated string");
+
+                char c = expression.charAt(index++);
+                if (c == quote)
+                    return string.toString();
+
+                if (c == '\\' && index < expression.length())
+                    c = expression.charAt(index++);
+
+                string.append(c);
+            }
+        }
+
+        // Filter expressions, from the lowest precedence up
+        private Filter or() {
+            Filter filter = and();
+            while (acceptOperator("||")) {
+                Filter left = filter;
+                Filter right = and();
+                filter = (current, document) -> left.test(current, document) || right.test(current, document);
+            }
+
+            return filter;
+        }
+
+        private Filter and() {
+            Filter filter = unary();
+            while (acceptOperator("&&")) {
+                Filter left = filter;
+                Filter right = unary();
+                filter = (current, document) -> left.test(current, document) && right.test(current, document);
+            }
+
+            return filter;
+        }
+
+        private Filter unary() {
+            skipWhitespace();
+
+            if (peek() == '!' && peek(1) != '=') {
+                index++;
+                Filter negated = unary();
+                return (current, document) -> !negated.test(current, document);
+            }
+
+            if (accept('(')) {
+                Filter filter = or();
+                skipWhitespace();
+                expect(')');
+                return filter;
+            }
+
+            // A path by itself tests whether it selects anything
+            if (peek() == '@' || peek() == '$') {
+                boolean relative = expression.charAt(index++) == '@';
+                Selector[] segments = segments();
+                String operator = operator();
+
+                return (operator == null)
+                        ? exists(relative, segments)
+                        : comparison(pathOperand(relative, segments), operator, operand());
+            }
+
+            Operand left = operand();
+            String operator = operator();
+            if (operator == null)
+                throw error("Expected a comparison operator");
+
+            return comparison(left, operator, operand());
+        }
+
+        private Operand operand() {
+            skipWhitespace();
+            char c = peek();
+
+            if (c == '@' || c == '$') {
+                index++;
+                return pathOperand(c == '@', segments());
+            }
+
+            JsonValue literal;
+            if (c == '\'' || c == '"')
+                literal = JsonValue.valueOf(string());
+            else if (expression.startsWith("true", index))
+                literal = literalWord("true", JsonValue.valueOf(true));
+            else if (expression.startsWith("false", index))
+                literal = literalWord("false", JsonValue.valueOf(false));
+            else if (expression.startsWith("null", index))
+                literal = literalWord("null", JsonValue.valueOf(null));
+            else if (c == '-' || Character.isDigit(c))
+                literal = number();
+            else
+                throw error("Expected a path or a literal");
+
+            return (current, document) -> literal;
+        }
+
+        private JsonValue literalWord(String word, JsonValue value) {
+            index += word.length();
+            return value;
+        }
+
+        private JsonValue number() {
+            int start = index;
+            boolean decimal = false;
+
+            while (index < expression.length()) {
+                char c = expression.charAt(index);
+                if (c == '.' || c == 'e' || c == 'E')
+                    decimal = true;
+                else if (!Character.isDigit(c) && !(c == '-' || c == '+'))
+                    break;
+
+                index++;
+            }
+
+            String text = expression.substring(start, index);
+            try {
+                return (decimal) ? JsonValue.valueOf(Double.parseDouble(text)) : JsonValue.valueOf(Long.parseLong(text));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + text + "'");
+            }
+        }
+
+        private String operator() {
+            skipWhitespace();
+            for (String operator : new String[] {"==", "!=", "<=", ">=", "<", ">"}) {
+                if (expression.startsWith(operator, index)) {
+                    index += operator.length();
+                    return operator;
+                }
+            }
+
+            return null;
+        }
+
+        private boolean acceptOperator(String operator) {
+            skipWhitespace();
+            if (!expression.startsWith(operator, index))
+                return false;
+
+            index += operator.length();
+            return true;
+        }
+
+        private char peek() {
+            return peek(0);
+        }
+
+        private char peek(int offset) {
+            return (index + offset < expression.length()) ? expression.charAt(index + offset) : 0;
+        }
+
+        private boolean accept(char c) {
+            if (peek() != c)
+                return false;
+
+            index++;
+            return true;
+        }
+
+        private void expect(char c) {
+            if (!accept(c))
+                throw error("Expected '" + c + "'");
+        }
+
+        private void skipWhitespace() {
+            while (index < expression.length() && Character.isWhitespace(expression.charAt(index)))
+                index++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at index " + index + " of the JSONPath '" + expression + "'");
+        }
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.exceptions.IllegalCharacterException;
+import com.LeggoMahEggo.esson.exceptions.ValueParserException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a JSON string one token at a time, without building JsonMaps/JsonLists first -- the reading counterpart of
+ *  {@link JsonWriter}. Values are scanned the same way (and with the same Options) as by {@link Parser}
+ * <pre>{@code
+ * JsonReader reader = new JsonReader(json);
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     switch (reader.nextName()) {
+ *         case "id": id = reader.nextLong(); break;
+ *         case "name": name = reader.nextString(); break;
+ *         default: reader.skipValue();
+ *     }
+ * }
+ * reader.endObject();
+ * reader.endDocument();
+ * }</pre>
+ * Reading a token that isn't next (such as calling nextString on a number) throws a ValueParserException, and
+ *  malformed JSON throws the same exceptions as Parser does
+ */
+public final class JsonReader {
+
+    /**
+     * The kinds of token that can come next
+     */
+    public enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    /**
+     * Reads one value from a JsonReader (see {@link #nextList(ValueReader)} and {@link #nextMap(ValueReader)})
+     * @param <T> the type of value read
+     */
+    public interface ValueReader<T> {
+        T read(JsonReader reader);
+    }
+
+    // Scopes
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int DANGLING_NAME = 6; // In an object, after a name and before its value
+
+    private final Cursor cursor;
+    private int[] stack = new int[32];
+    private int depth = 1;
+    private Token peeked; // The next token, once it has been found
+
+    /**
+     * Creates a JsonReader that reads according to EMCA-404 standards
+     * @param json the string to read
+     */
+    public JsonReader(String json) {
+        this(json, new Options());
+    }
+
+    /**
+     * Creates a JsonReader with options to (potentially) ignore EMCA-404 standards
+     * @param json the string to read
+     * @param options the Options object
+     */
+    public JsonReader(String json, Options options) {
+        cursor = new Cursor(json, options);
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+
+    /*
+     * Structure
+     */
+
+    /**
+     * Returns the kind of token that comes next, without reading it
+     * @return the next token
+     * @throws com.LeggoMahEggo.esson.exceptions.JsonParserException if the JSON is malformed
+     */
+    public Token peek() {
+        if (peeked == null)
+            peeked = findNextToken();
+
+        return peeked;
+    }
+
+    /**
+     * Returns true if the current array or object has another element
+     * @return false at the end of an array, object, or the document
+     */
+    public boolean hasNext() {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Reads the start of an array
+     */
+    public void beginArray() {
+        expect(Token.BEGIN_ARRAY);
+        cursor.moveCursorFoward();
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Reads the end of the current array
+     */
+    public void endArray() {
+        expect(Token.END_ARRAY);
+        cursor.moveCursorFoward();
+        depth--;
+    }
+
+    /**
+     * Reads the start of an object
+     */
+    public void beginObject() {
+        expect(Token.BEGIN_OBJECT);
+        cursor.moveCursorFoward();
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Reads the end of the current object
+     */
+    public void endObject() {
+        expect(Token.END_OBJECT);
+        cursor.moveCursorFoward();
+        depth--;
+    }
+
+    /**
+     * Reads the name of an object's next key/value pair
+     * @return the name
+     */
+    public String nextName() {
+        expect(Token.NAME);
+        stack[depth - 1] = DANGLING_NAME;
+        return JsonValue.unescape(cursor.collectKey(cursor.currentChar()));
+    }
+
+    /**
+     * Checks that nothing but whitespace is left after the top-level value
+     * @throws IllegalCharacterException if something else is left
+     */
+    public void endDocument() {
+        expect(Token.END_DOCUMENT);
+    }
+
+
+    /*
+     * Values
+     */
+
+    /**
+     * Reads a string value
+     * @return the string, or null if the value was null
+     */
+    public String nextString() {
+        if (nextIfNull())
+            return null;
+
+        expect(Token.STRING);
+        return JsonValue.unescape(cursor.collectStringValue(cursor.currentChar()).toString());
+    }
+
+    /**
+     * Reads a number value as it would be parsed by {@link Parser} (a Long, a Double, or a {@link JsonNumber} if lazy
+     *  numbers are enabled in the options)
+     * @return the number
+     */
+    public Number nextNumber() {
+        expect(Token.NUMBER);
+        return cursor.collectNumber();
+    }
+
+    /**
+     * Reads a number value that must be an integer
+     * @return the number
+     * @throws ValueParserException if the number isn't an integer, or doesn't fit in a long
+     */
+    public long nextLong() {
+        return ObjectBinder.exactLong(nextNumber(), cursor, Long.MIN_VALUE, Long.MAX_VALUE, "long");
+    }
+
+    /**
+     * Reads a number value that must be an integer
+     * @return the number
+     * @throws ValueParserException if the number isn't an integer, or doesn't fit in an int
+     */
+    public int nextInt() {
+        return (int) ObjectBinder.exactLong(nextNumber(), cursor, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+    }
+
+    /**
+     * Reads a number value
+     * @return the number
+     */
+    public double nextDouble() {
+        return nextNumber().doubleValue();
+    }
+
+    /**
+     * Reads a boolean value
+     * @return the boolean
+     */
+    public boolean nextBoolean() {
+        expect(Token.BOOLEAN);
+        return cursor.collectBoolean();
+    }
+
+    /**
+     * Reads a null value
+     */
+    public void nextNull() {
+        expect(Token.NULL);
+        cursor.collectNull();
+    }
+
+    /**
+     * Reads the next value if it is null
+     * @return true if a null was read, false if the next token is something else (which is left unread)
+     */
+    public boolean nextIfNull() {
+        if (peek() != Token.NULL)
+            return false;
+
+        nextNull();
+        return true;
+    }
+
+    /**
+     * Reads a string value as an enum constant
+     * @param type the enum's class
+     * @param <E> the enum's type
+     * @return the constant with the string's name, or null if the value was null
+     * @throws ValueParserException if the enum has no constant with that name
+     */
+    public <E extends Enum<E>> E nextEnum(Class<E> type) {
+        String name = nextString();
+        if (name == null)
+            return null;
+
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new ValueParserException("\"" + name + "\" is not a constant of " + type.getSimpleName() +
+                    cursor.locationErrMsgHelper());
+        }
+    }
+
+    /**
+     * Reads the next value (including any array/object) as a JsonValue
+     * @return the value
+     */
+    public JsonValue nextValue() {
+        Token token = peek();
+        if (token == Token.END_ARRAY || token == Token.END_OBJECT || token == Token.NAME || token == Token.END_DOCUMENT)
+            throw unexpected("a value", token);
+
+        peeked = null;
+        return Parser.collectValue(cursor);
+    }
+
+    /**
+     * Reads an array, reading each of its elements with elementReader
+     * @param elementReader reads one element
+     * @param <T> the type of the elements
+     * @return an ArrayList of the elements, or null if the value was null
+     */
+    public <T> List<T> nextList(ValueReader<T> elementReader) {
+        if (nextIfNull())
+            return null;
+
+        List<T> list = new ArrayList<>();
+        beginArray();
+        while (hasNext())
+            list.add(elementReader.read(this));
+        endArray();
+
+        return list;
+    }
+
+    /**
+     * Reads an object, reading each of its values with valueReader
+     * @param valueReader reads one value
+     * @param <T> the type of the values
+     * @return a LinkedHashMap of the object's pairs, or null if the value was null
+     */
+    public <T> Map<String, T> nextMap(ValueReader<T> valueReader) {
+        if (nextIfNull())
+            return null;
+
+        Map<String, T> map = new LinkedHashMap<>();
+        beginObject();
+        while (hasNext())
+            map.put(nextName(), valueReader.read(this));
+        endObject();
+
+        return map;
+    }
+
+    /**
+     * Skips the next value, including everything inside it if it is an array/object
+     */
+    public void skipValue() {
+        switch (peek()) {
+            case BEGIN_ARRAY:
+                beginArray();
+                while (hasNext())
+                    skipValue();
+                endArray();
+                break;
+            case BEGIN_OBJECT:
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+                break;
+            case STRING: nextString(); break;
+            case NUMBER: nextNumber(); break;
+            case BOOLEAN: nextBoolean(); break;
+            case NULL: nextNull(); break;
+            default: throw unexpected("a value", peek());
+        }
+    }
+
+
+    /*
+     * Scanning
+     */
+
+    private void expect(Token token) {
+        Token next = peek();
+
+        if (next != token)
+            throw unexpected(describe(token), next);
+
+        peeked = null;
+    }
+
+    private ValueParserException unexpected(String expected, Token found) {
+        return new ValueParserException("Expected " + expected + ", found " + describe(found) +
+                (found == Token.END_DOCUMENT ? "" : cursor.locationErrMsgHelper()));
+    }
+
+    private static String describe(Token token) {
+        switch (token) {
+            case BEGIN_ARRAY: return "the start of an array";
+            case END_ARRAY: return "the end of an array";
+            case BEGIN_OBJECT: return "the start of an object";
+            case END_OBJECT: return "the end of an object";
+            case NAME: return "a key";
+            case END_DOCUMENT: return "the end of the JSON string";
+            default: return "a " + token.name().toLowerCase();
+        }
+    }
+
+    private Token findNextToken() {
+        int scope = stack[depth - 1];
+        char c;
+
+        switch (scope) {
+            case EMPTY_DOCUMENT:
+                cursor.moveToFirstNonWhitespace();
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+
+            case NONEMPTY_DOCUMENT:
+                if (cursor.atEndOfJson(false) || cursor.restOfStringIsBlank())
+                    return Token.END_DOCUMENT;
+
+                cursor.moveToFirstNonWhitespace();
+                throw new IllegalCharacterException("Found unexpected '" +
+                        cursor.getPrintableCharacter(cursor.currentChar()) + "' character at/near the end of the JSON " +
+                        "string" + cursor.locationErrMsgHelper());
+
+            case EMPTY_ARRAY:
+                cursor.moveToFirstNonWhitespace();
+                if (cursor.currentChar() == ']')
+                    return Token.END_ARRAY;
+
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                break;
+
+            case NONEMPTY_ARRAY:
+                if (nextSeparator(']', "array"))
+                    return Token.END_ARRAY;
+                break;
+
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                if (scope == EMPTY_OBJECT) {
+                    cursor.moveToFirstNonWhitespace();
+                    if (cursor.currentChar() == '}')
+                        return Token.END_OBJECT;
+                } else if (nextSeparator('}', "object")) {
+                    return Token.END_OBJECT;
+                }
+
+                c = cursor.currentChar();
+                if (c != '"' && (c != '\'' || !cursor.options.singleQuoteString))
+                    throw new IllegalCharacterException("Expected to find a quote character to start the object's key, " +
+                            "found a '" + c + "' instead" + cursor.locationErrMsgHelper());
+
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return Token.NAME;
+
+            default: // DANGLING_NAME
+                cursor.moveToFirstNonWhitespace();
+                c = cursor.currentChar();
+
+                if (c != ':')
+                    throw new IllegalCharacterException("Expected to find a ':' character to start the object's value" +
+                            ", found a '" + c + "' instead" + cursor.locationErrMsgHelper());
+
+                cursor.moveCursorFoward();
+                cursor.moveToFirstNonWhitespace();
+                stack[depth - 1] = NONEMPTY_OBJECT;
+        }
+
+        return valueToken();
+    }
+
+    /**
+     * Moves past the ',' between two elements of an array/object
+     * @return true if the array/object ends instead
+     */
+    private boolean nextSeparator(char end, String container) {
+        cursor.moveToFirstNonWhitespace();
+        char c = cursor.currentChar();
+
+        if (c == end)
+            return true;
+
+        if (c != ',')
+            throw new IllegalCharacterException("Expected to find a ',' to continue the " + container + " or a '" + end +
+                    "' character to end it, found '" + c + "' instead" + cursor.locationErrMsgHelper());
+
+        cursor.moveCursorFoward();
+        cursor.moveToFirstNonWhitespace();
+
+        if (cursor.currentChar() != end)
+            return false;
+
+        if (!cursor.options.commaAtEnd)
+            throw new IllegalCharacterException("Reached the end of an " + container + " with an extra comma" +
+                    cursor.locationErrMsgHelper());
+
+        return true;
+    }
+
+    private Token valueToken() {
+        char c = cursor.currentChar();
+
+        switch (c) {
+            case '[': return Token.BEGIN_ARRAY;
+            case '{': return Token.BEGIN_OBJECT;
+            case '"': return Token.STRING;
+            case 't':
+            case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            case '\'':
+                if (cursor.options.singleQuoteString)
+                    return Token.STRING;
+
+                throw new IllegalCharacterException("Cannot collect a string that opens with a single-quote" +
+                        cursor.locationErrMsgHelper());
+            case '+':
+                if (cursor.options.plusAtFront)
+                    return Token.NUMBER;
+
+                throw new IllegalCharacterException("Cannot start a number with the + sign" +
+                        cursor.locationErrMsgHelper());
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return Token.NUMBER;
+
+                throw new IllegalCharacterException("Encountered an unknown character ('" + c + "') while trying to " +
+                        "determine the type of value to collect" + cursor.locationErrMsgHelper());
+        }
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length)
+            stack = Arrays.copyOf(stack, depth * 2);
+
+        stack[depth++] = scope;
+    }
+}
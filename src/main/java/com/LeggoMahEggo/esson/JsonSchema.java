@@ -0,0 +1,378 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.exceptions.JsonParserException;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled JSON Schema, for validating documents while they are parsed (see
+ *  {@link Options.OptionsBuilder#schema(JsonSchema)}). Compiling turns each (sub)schema into a set of ready-made
+ *  checks (regular expressions are compiled, enums are put in hash sets), so a JsonSchema should be compiled once and
+ *  reused; it is immutable, and can be shared between threads.
+ * <p>
+ * The following keywords are supported: type (a single type or a list of them), enum, const, minimum, maximum,
+ *  exclusiveMinimum, exclusiveMaximum, minLength, maxLength, pattern, items (a single schema for every element),
+ *  minItems, maxItems, properties, additionalProperties (true, false or a schema), required, minProperties and
+ *  maxProperties. Annotations ($schema, $id, $comment, title, description, default, examples, format) are ignored,
+ *  and any other keyword is rejected rather than silently not being checked
+ */
+public final class JsonSchema {
+    // Bits for the types a value can have ("integer" is also a "number")
+    static final int NULL = 1;
+    static final int BOOLEAN = 1 << 1;
+    static final int INTEGER = 1 << 2;
+    static final int NUMBER = 1 << 3;
+    static final int STRING = 1 << 4;
+    static final int ARRAY = 1 << 5;
+    static final int OBJECT = 1 << 6;
+    private static final int ANY_TYPE = (1 << 7) - 1;
+
+    private static final String[] TYPE_NAMES = {"null", "boolean", "integer", "number", "string", "array", "object"};
+    private static final Set<String> ANNOTATIONS = Set.of("$schema", "$id", "$comment", "title", "description",
+            "default", "examples", "format");
+
+    private final String source;
+    final Node root;
+
+    private JsonSchema(String source, Node root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * Compiles a schema from its JSON text
+     * @param schema the schema, as JSON
+     * @return the compiled schema
+     * @throws JsonParserException if schema isn't valid JSON
+     * @throws IllegalArgumentException if schema isn't a valid schema, or uses an unsupported keyword
+     */
+    public static JsonSchema compile(String schema) throws JsonParserException, IllegalArgumentException {
+        return compile(Parser.parseFromString(schema));
+    }
+
+    /**
+     * Compiles a schema that has already been parsed
+     * @param schema the schema
+     * @return the compiled schema
+     * @throws IllegalArgumentException if schema isn't a valid schema, or uses an unsupported keyword
+     */
+    public static JsonSchema compile(JsonValue schema) throws IllegalArgumentException {
+        String source = (schema.internal instanceof JsonContainer)
+                ? ((JsonContainer) schema.internal).toJsonString(true)
+                : String.valueOf(schema.internal);
+        return new JsonSchema(source, compileNode(schema, ""));
+    }
+
+    /**
+     * @return the schema's JSON text (compacted)
+     */
+    @Override
+    public String toString() {
+        return source;
+    }
+
+
+    /*
+     * Compiling
+     */
+
+    private static Node compileNode(JsonValue schema, String path) {
+        Node node = new Node();
+
+        if (schema.internal instanceof Boolean) {
+            if (!schema.getAsBoolean())
+                node.types = 0;
+
+            return node;
+        }
+
+        if (!(schema.internal instanceof JsonMap))
+            throw new IllegalArgumentException("Schema at '" + path + "' must be an object or a boolean");
+
+        for (Map.Entry<String, JsonValue> entry : ((JsonMap) schema.internal).entrySet()) {
+            String keyword = entry.getKey();
+            JsonValue value = entry.getValue();
+            String keywordPath = path + '/' + keyword;
+
+            switch (keyword) {
+                case "type":
+                    node.types = 0;
+                    if (value.internal instanceof JsonList) {
+                        for (JsonValue type : (JsonList) value.internal)
+                            node.types |= typeBit(type, keywordPath);
+                    }
+                    else
+                        node.types = typeBit(value, keywordPath);
+                    break;
+                case "enum":
+                    if (!(value.internal instanceof JsonList))
+                        throw new IllegalArgumentException("'" + keywordPath + "' must be an array");
+
+                    node.setEnum((JsonList) value.internal);
+                    break;
+                case "const":
+                    node.setEnum(List.of(value));
+                    break;
+                case "minimum": node.minimum = number(value, keywordPath); break;
+                case "maximum": node.maximum = number(value, keywordPath); break;
+                case "exclusiveMinimum": node.exclusiveMinimum = number(value, keywordPath); break;
+                case "exclusiveMaximum": node.exclusiveMaximum = number(value, keywordPath); break;
+                case "minLength": node.minLength = count(value, keywordPath); break;
+                case "maxLength": node.maxLength = count(value, keywordPath); break;
+                case "minItems": node.minItems = count(value, keywordPath); break;
+                case "maxItems": node.maxItems = count(value, keywordPath); break;
+                case "minProperties": node.minProperties = count(value, keywordPath); break;
+                case "maxProperties": node.maxProperties = count(value, keywordPath); break;
+                case "pattern":
+                    if (!value.isString())
+                        throw new IllegalArgumentException("'" + keywordPath + "' must be a string");
+
+                    try {
+                        node.pattern = Pattern.compile(value.getAsString());
+                    } catch (PatternSyntaxException e) {
+                        throw new IllegalArgumentException("'" + keywordPath + "' is not a valid regular expression", e);
+                    }
+                    break;
+                case "items":
+                    node.items = compileNode(value, keywordPath);
+                    break;
+                case "properties":
+                    if (!(value.internal instanceof JsonMap))
+                        throw new IllegalArgumentException("'" + keywordPath + "' must be an object");
+
+                    node.properties = new HashMap<>();
+                    for (Map.Entry<String, JsonValue> property : ((JsonMap) value.internal).entrySet())
+                        node.properties.put(property.getKey(),
+                                compileNode(property.getValue(), keywordPath + '/' + property.getKey()));
+                    break;
+                case "additionalProperties":
+                    node.additionalProperties = compileNode(value, keywordPath);
+                    break;
+                case "required":
+                    if (!(value.internal instanceof JsonList))
+                        throw new IllegalArgumentException("'" + keywordPath + "' must be an array");
+
+                    List<JsonValue> required = (JsonList) value.internal;
+                    node.required = new String[required.size()];
+                    for (int i = 0; i < node.required.length; i++) {
+                        if (!required.get(i).isString())
+                            throw new IllegalArgumentException("'" + keywordPath + "' must only contain strings");
+
+                        node.required[i] = required.get(i).internal.toString();
+                    }
+                    break;
+                default:
+                    if (!ANNOTATIONS.contains(keyword))
+                        throw new IllegalArgumentException("Unsupported schema keyword '" + keywordPath + "'");
+            }
+        }
+
+        return node;
+    }
+
+    private static int typeBit(JsonValue type, String path) {
+        if (type.isString()) {
+            String name = type.internal.toString();
+            for (int i = 0; i < TYPE_NAMES.length; i++) {
+                if (TYPE_NAMES[i].equals(name))
+                    return 1 << i;
+            }
+        }
+
+        throw new IllegalArgumentException("'" + path + "' contains an unknown type (" + type + ")");
+    }
+
+    private static double number(JsonValue value, String path) {
+        if (!(value.internal instanceof Number))
+            throw new IllegalArgumentException("'" + path + "' must be a number");
+
+        return ((Number) value.internal).doubleValue();
+    }
+
+    private static int count(JsonValue value, String path) {
+        Object number = value.internal;
+        if (!(number instanceof Long) || (Long) number < 0 || (Long) number > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("'" + path + "' must be a non-negative integer");
+
+        return ((Long) number).intValue();
+    }
+
+    static String typeNames(int types) {
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if ((types & (1 << i)) != 0)
+                names.append((names.length() == 0) ? "" : " or ").append(TYPE_NAMES[i]);
+        }
+
+        return (names.length() == 0) ? "nothing" : names.toString();
+    }
+
+
+    /**
+     * The checks of a single (sub)schema. Limits that aren't set are NaN (numbers) or -1 (counts)
+     */
+    static final class Node {
+        private static final Node ANYTHING = new Node();
+
+        int types = ANY_TYPE;
+        List<JsonValue> enumValues;
+        private Set<Object> enumKeys; // The enum's values, with numbers as BigDecimals (see enumKey)
+        double minimum = Double.NaN;
+        double maximum = Double.NaN;
+        double exclusiveMinimum = Double.NaN;
+        double exclusiveMaximum = Double.NaN;
+        int minLength = -1;
+        int maxLength = -1;
+        Pattern pattern;
+        Node items;
+        int minItems = -1;
+        int maxItems = -1;
+        Map<String, Node> properties;
+        Node additionalProperties;
+        String[] required;
+        int minProperties = -1;
+        int maxProperties = -1;
+
+        /**
+         * @param type the type bit of a value
+         * @return whether a value of that type is allowed
+         */
+        boolean allows(int type) {
+            return (types & type) != 0 || (type == INTEGER && (types & NUMBER) != 0);
+        }
+
+        /**
+         * @param index the position of an array element
+         * @return the schema of the element
+         */
+        Node item(int index) {
+            return (items != null) ? items : ANYTHING;
+        }
+
+        /**
+         * @param key the key of an object's value
+         * @return the schema of the value
+         */
+        Node property(String key) {
+            Node node = (properties != null) ? properties.get(key) : null;
+            if (node == null)
+                node = (additionalProperties != null) ? additionalProperties : ANYTHING;
+
+            return node;
+        }
+
+        /**
+         * Sets the values allowed by enum/const
+         * @param values the allowed values
+         */
+        void setEnum(List<JsonValue> values) {
+            enumValues = List.copyOf(values);
+            enumKeys = new HashSet<>();
+            for (JsonValue value : values)
+                enumKeys.add(enumKey(value));
+        }
+
+        /**
+         * @param value a value
+         * @return whether the value is allowed by enum/const (always true if neither is set)
+         */
+        boolean inEnum(JsonValue value) {
+            return enumKeys == null || enumKeys.contains(enumKey(value));
+        }
+
+        /**
+         * Numbers are compared by their mathematical value (eg 1 and 1.0 are the same), as JSON Schema requires, rather
+         *  than as JsonValue.equals compares them
+         * @return the value to look up in enumKeys
+         */
+        private static Object enumKey(JsonValue value) {
+            Object internal = value.internal;
+            if (!(internal instanceof Number))
+                return value;
+
+            if (internal instanceof Double && (((Double) internal).isNaN() || ((Double) internal).isInfinite()))
+                return value;
+
+            BigDecimal number = value.getAsBigDecimal();
+            return (number.signum() == 0) ? BigDecimal.ZERO : number.stripTrailingZeros();
+        }
+
+        /**
+         * Checks a string, number, boolean or null
+         * @return a description of the first check that fails, or null if the value matches
+         */
+        String checkScalar(JsonValue value) {
+            Object internal = value.internal;
+            int type = typeOf(internal);
+
+            if (!allows(type))
+                return "expected " + typeNames(types) + ", found " + typeNames(type);
+
+            if (!inEnum(value))
+                return "value is not one of " + enumValues;
+
+            if (internal instanceof Number) {
+                double number = ((Number) internal).doubleValue();
+
+                if (number < minimum)
+                    return value + " is less than the minimum of " + minimum;
+                if (number > maximum)
+                    return value + " is greater than the maximum of " + maximum;
+                if (number <= exclusiveMinimum)
+                    return value + " is not greater than the exclusive minimum of " + exclusiveMinimum;
+                if (number >= exclusiveMaximum)
+                    return value + " is not less than the exclusive maximum of " + exclusiveMaximum;
+            }
+            else if (type == STRING && (minLength >= 0 || maxLength >= 0 || pattern != null)) {
+                String string = value.getAsString();
+                int length = string.codePointCount(0, string.length());
+
+                if (minLength >= 0 && length < minLength)
+                    return "string is shorter than " + minLength + " characters";
+                if (maxLength >= 0 && length > maxLength)
+                    return "string is longer than " + maxLength + " characters";
+                if (pattern != null && !pattern.matcher(string).find())
+                    return "string does not match the pattern " + pattern;
+            }
+
+            return null;
+        }
+
+        private static int typeOf(Object value) {
+            if (value == null)
+                return NULL;
+            if (value instanceof Boolean)
+                return BOOLEAN;
+            if (value instanceof Long || (value instanceof JsonNumber && ((JsonNumber) value).isIntegral()))
+                return INTEGER;
+            if (value instanceof Number) {
+                double number = ((Number) value).doubleValue();
+                return (number == Math.rint(number) && !Double.isInfinite(number)) ? INTEGER : NUMBER;
+            }
+
+            return STRING;
+        }
+    }
+}
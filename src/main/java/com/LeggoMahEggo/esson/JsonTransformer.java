@@ -0,0 +1,65 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Rewrites a tree without changing it: each value is replaced by what {@link #transform(JsonValue)} returns for it,
+ *  working from the innermost values outwards. An array/object is only copied if something inside it was replaced,
+ *  and the copy is what is then passed to transform; anything left unchanged is shared between the old and new trees
+ *  (so neither should be changed afterwards while the other is in use). The children of large arrays/objects can be
+ *  transformed on several threads (see {@link #apply(JsonValue, ForkJoinPool)}).
+ * <p>
+ * For example, dropping every null from a document's arrays/objects:
+ * <pre>{@code
+ * JsonTransformer dropNulls = value -> value.isNullValue() ? null : value;
+ * JsonValue cleaned = dropNulls.apply(document);
+ * }</pre>
+ */
+@FunctionalInterface
+public interface JsonTransformer {
+
+    /**
+     * Returns the replacement for a value, whose arrays/objects (if it is one) have already been transformed. Must not
+     *  change the value; return a new one instead. When transforming on a ForkJoinPool this is called from several
+     *  threads at once
+     * @param value the value
+     * @return the value to use in its place (value itself to keep it), or null to drop it from the array/object
+     *  holding it
+     */
+    JsonValue transform(JsonValue value);
+
+    /**
+     * Transforms a tree on the current thread
+     * @param root the root of the tree
+     * @return the transformed tree (root itself if nothing changed), or null if the root was dropped
+     */
+    default JsonValue apply(JsonValue root) {
+        return TreeWalker.transform(root, this, null);
+    }
+
+    /**
+     * Transforms a tree, splitting the children of arrays/objects with at least
+     *  {@value JsonVisitor#PARALLEL_THRESHOLD} elements into tasks that run on a ForkJoinPool
+     * @param root the root of the tree
+     * @param pool the pool to run on
+     * @return the transformed tree (root itself if nothing changed), or null if the root was dropped
+     */
+    default JsonValue apply(JsonValue root, ForkJoinPool pool) {
+        return TreeWalker.transform(root, this, pool);
+    }
+}
@@ -15,18 +15,28 @@
  */
 package com.LeggoMahEggo.esson;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Represents some legal JSON value, wrapping a Java value. Valid types are null, Boolean, String, Long, Double, Integer
- * (cast to Long), JsonList (backed by an ArrayList), and JsonMap (backed by a LinkedHashMap)
+ * (cast to Long), JsonNumber, JsonList (backed by an ArrayList), and JsonMap (backed by a LinkedHashMap)
  */
 public class JsonValue {
     Object internal; // Wrapped value
     private final static String[] CONTROL_CHARACTERS_FROM = {"\\n", "\\r", "\\t", "\\f", "\\b"};
     private final static String[] CONTROL_CHARACTERS_TO = {"\n", "\r", "\t", "\f", "\b"};
+    private final static int DECIMAL_HASH = Double.hashCode(0.5); // Shared by all decimal numbers (see hashCode)
 
     /**
      * Factory method to return a JsonValue object with its internal value set
-     * @param value a Boolean, String, Integer, Long, Double, JsonMap, JsonList, or a null value
+     * @param value a Boolean, String, Integer, Long, Double, JsonNumber, JsonMap, JsonList, or a null value
      * @return a JsonValue object
      * @throws IllegalArgumentException if value is not a supported JSON value
      */
@@ -37,18 +47,61 @@ public class JsonValue {
                 !(value instanceof Integer) &&
                 !(value instanceof Long) &&
                 !(value instanceof Double) &&
+                !(value instanceof JsonNumber) &&
                 !(value instanceof Boolean) &&
                 !(value instanceof JsonList) &&
                 !(value instanceof JsonMap)
         )
             throw new IllegalArgumentException("Illegal value to wrap: must be a null, String, Boolean, Integer, Long, " +
-                    "Double, JsonList, or JsonMap (was of type " + value.getClass().getSimpleName() + ")");
+                    "Double, JsonNumber, JsonList, or JsonMap (was of type " + value.getClass().getSimpleName() + ")");
 
         JsonValue jv = new JsonValue();
         jv.internal = (value instanceof Integer) ? Long.valueOf((Integer) value) : value;
         return jv;
     }
 
+    /**
+     * Factory method to return a JsonValue object that wraps an existing Java value without copying it. Maps and Lists
+     *  are wrapped in read-only views (a {@link JsonMap} or {@link JsonList}) whose elements are validated and wrapped
+     *  only when they are accessed or serialized; any other value is wrapped as by {@link #valueOf(Object)}. As the
+     *  backing Map/List is not copied, changes made to it are visible through the view
+     * @param value a Boolean, String, Integer, Long, Double, JsonMap, JsonList, Map (with String keys), List, or a null
+     *  value
+     * @return a JsonValue object
+     * @throws IllegalArgumentException if value is not a supported JSON value
+     */
+    public static JsonValue view(Object value) throws IllegalArgumentException {
+        if (value instanceof JsonValue)
+            return (JsonValue) value;
+
+        if (value instanceof JsonList || value instanceof JsonMap)
+            return valueOf(value);
+
+        JsonValue jv = new JsonValue();
+
+        if (value instanceof List<?>)
+            jv.internal = new JsonListView((List<?>) value);
+
+        else if (value instanceof Map<?, ?>)
+            jv.internal = new JsonMapView((Map<?, ?>) value);
+
+        else
+            return valueOf(value);
+
+        return jv;
+    }
+
+    /**
+     * Wraps a value produced by the parser (which may also be a {@link StringSlice}) without checking its type
+     * @param internal the value to wrap
+     * @return a JsonValue object
+     */
+    static JsonValue wrap(Object internal) {
+        JsonValue jv = new JsonValue();
+        jv.internal = internal;
+        return jv;
+    }
+
     private void throwIfNotClass(Class<?> clazz) {
         if (!clazz.isInstance(internal)) {
             String isOf = (internal == null) ? "a null" : "an instance of " + internal.getClass().getSimpleName();
@@ -64,11 +117,7 @@ public class JsonValue {
      * @return a String escaped according to JSON specifications
      */
     static String escapeString(String str) {
-        // Was using StringUtils.replaceEach, removed it to avoid multiple licensing headaches
-        for (int i = 0; i < CONTROL_CHARACTERS_TO.length; i++)
-            str = str.replace(CONTROL_CHARACTERS_TO[i], CONTROL_CHARACTERS_FROM[i]);
-
-        return str.replace("\"", "\\\"");
+        return Escaper.escape(str);
     }
 
 
@@ -108,14 +157,34 @@ public class JsonValue {
     }
 
     /**
-     * Returns the internal object as a String
+     * Returns true if the internal object is a string (including one kept as a slice of the parsed JSON)
+     * @return true if the internal object is a string, false otherwise
+     */
+    boolean isString() {
+        return internal instanceof String || internal instanceof StringSlice;
+    }
+
+    /**
+     * Returns the internal object as a String. If the string was kept as a slice of the parsed JSON (see
+     *  {@link Options.OptionsBuilder#stringSlices(int)}), it is copied into a String on the first call
      * @return the internal object cast to a String
      * @throws ClassCastException if the internal object is null or not an instance of String
      */
     public String getAsString() throws ClassCastException {
+        if (internal instanceof StringSlice)
+            internal = internal.toString();
+
         throwIfNotClass(String.class);
-        String str = (String) internal;
+        return unescape((String) internal);
+    }
 
+    /**
+     * Converts the escaped control characters kept in parsed strings (eg a backslash followed by n) back to the
+     *  characters themselves
+     * @param str the string as parsed
+     * @return the string with its control characters unescaped
+     */
+    static String unescape(String str) {
         if (!str.contains("\\"))
             return str;
 
@@ -126,6 +195,19 @@ public class JsonValue {
         return str;
     }
 
+    /**
+     * Returns the internal string without copying it, if it was kept as a slice of the parsed JSON (see
+     *  {@link Options.OptionsBuilder#stringSlices(int)}); otherwise returns the same value as {@link #getAsString()}
+     * @return the internal object as a CharSequence
+     * @throws ClassCastException if the internal object is null or not a string
+     */
+    public CharSequence getAsCharSequence() throws ClassCastException {
+        if (internal instanceof StringSlice)
+            return (StringSlice) internal;
+
+        return getAsString();
+    }
+
     /**
      * Returns the internal object as a Boolean
      * @return the internal object cast to a Boolean
@@ -146,6 +228,44 @@ public class JsonValue {
         return (Number) internal;
     }
 
+    /**
+     * Returns the internal object as a BigDecimal. Numbers parsed with {@link Options.OptionsBuilder#lazyNumbers()} set
+     *  keep their exact value
+     * @return the internal number converted to a BigDecimal
+     * @throws ClassCastException if the internal object is null or not an instance of Number
+     * @throws NumberFormatException if the internal object is a Double that is infinite or not a number
+     */
+    public BigDecimal getAsBigDecimal() throws ClassCastException {
+        throwIfNotClass(Number.class);
+
+        if (internal instanceof JsonNumber)
+            return ((JsonNumber) internal).bigDecimalValue();
+
+        if (internal instanceof Long)
+            return BigDecimal.valueOf((Long) internal);
+
+        return BigDecimal.valueOf(((Number) internal).doubleValue());
+    }
+
+    /**
+     * Returns the internal object as a BigInteger, dropping any fractional part. Integers parsed with
+     *  {@link Options.OptionsBuilder#lazyNumbers()} set keep their exact value, even outside the range of a Long
+     * @return the internal number converted to a BigInteger
+     * @throws ClassCastException if the internal object is null or not an instance of Number
+     * @throws NumberFormatException if the internal object is a Double that is infinite or not a number
+     */
+    public BigInteger getAsBigInteger() throws ClassCastException {
+        throwIfNotClass(Number.class);
+
+        if (internal instanceof JsonNumber)
+            return ((JsonNumber) internal).bigIntegerValue();
+
+        if (internal instanceof Long)
+            return BigInteger.valueOf((Long) internal);
+
+        return getAsBigDecimal().toBigInteger();
+    }
+
     /**
      * Returns the internal object as a JsonMap
      * @return the internal object cast to a JsonMap
@@ -171,6 +291,26 @@ public class JsonValue {
      * Overriden methods
      */
 
+    // Integers (Longs and JsonNumbers without a decimal point/exponent) are never equal to decimals
+    private static boolean isIntegral(Object number) {
+        return number instanceof Long || (number instanceof JsonNumber && ((JsonNumber) number).isIntegral());
+    }
+
+    private static boolean doublesEqual(Double double1, Double double2) {
+        // Was using Precision.equals, removed it to avoid multiple licensing headaches
+        double epsilon = 0.000001d;
+
+        // Infinite values
+        if (double1.isInfinite() || double2.isInfinite())
+            return false;
+
+        // Not a number
+        if (double1.isNaN() || double2.isNaN())
+            return false;
+
+        return Math.abs(double1 - double2) < epsilon;
+    }
+
     @Override
     public boolean equals(Object other) {
         if (other == null)
@@ -192,8 +332,8 @@ public class JsonValue {
             return false;
 
         // String
-        if (otherValue.internal instanceof String && internal instanceof String)
-            return otherValue.getAsString().equals(getAsString());
+        if (otherValue.isString() && isString())
+            return CharSequence.compare(otherValue.getAsCharSequence(), getAsCharSequence()) == 0;
 
         // Boolean
         if (otherValue.internal instanceof Boolean && internal instanceof Boolean)
@@ -204,21 +344,21 @@ public class JsonValue {
             return otherValue.getAsNumber().longValue() == getAsNumber().longValue();
 
         // Double
-        if (otherValue.internal instanceof Double && internal instanceof Double) {
-            // Was using Precision.equals, removed it to avoid multiple licensing headaches
-            double epsilon = 0.000001d;
-            Double double1 = otherValue.getAsNumber().doubleValue();
-            Double double2 = getAsNumber().doubleValue();
-
-            // Infinite values
-            if (double1.isInfinite() || double2.isInfinite())
-                return false;
+        if (otherValue.internal instanceof Double && internal instanceof Double)
+            return doublesEqual(otherValue.getAsNumber().doubleValue(), getAsNumber().doubleValue());
+
+        // JsonNumber (compared with Longs/Doubles the same way as they are compared with each other)
+        if ((otherValue.internal instanceof JsonNumber || internal instanceof JsonNumber) &&
+                otherValue.internal instanceof Number && internal instanceof Number) {
+            boolean integral = isIntegral(internal);
 
-            // Not a number
-            if (double1.isNaN() || double2.isNaN())
+            if (integral != isIntegral(otherValue.internal))
                 return false;
 
-            return Math.abs(double1 - double2) < epsilon;
+            if (integral)
+                return otherValue.getAsBigInteger().equals(getAsBigInteger());
+
+            return doublesEqual(otherValue.getAsNumber().doubleValue(), getAsNumber().doubleValue());
         }
 
         // List
@@ -234,7 +374,64 @@ public class JsonValue {
     }
 
     /**
-     * As Object.toString, except that String objects are wrapped with '', and null values are returned as "null"
+     * Returns a hash code consistent with {@link #equals(Object)}: strings hash by their unescaped characters (whether
+     *  or not they are slices), integers by their value (whether they are Longs or JsonNumbers), and arrays/objects as
+     *  defined by List.hashCode/Map.hashCode. As decimal numbers are compared with a tolerance, they all share the same
+     *  hash code
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        Object value = internal;
+
+        if (value == null)
+            return 0;
+
+        // Strings hash by the same unescaped characters that equals compares (slices never hold escapes)
+        if (value instanceof String)
+            return unescape((String) value).hashCode();
+
+        if (value instanceof StringSlice)
+            return hashCharacters(getAsCharSequence());
+
+        if (isIntegral(value)) {
+            if (value instanceof Long)
+                return Long.hashCode((Long) value);
+
+            BigInteger integer = ((JsonNumber) value).bigIntegerValue();
+            return (integer.bitLength() < 64) ? Long.hashCode(integer.longValue()) : integer.hashCode();
+        }
+
+        if (value instanceof Number)
+            return DECIMAL_HASH;
+
+        return value.hashCode(); // Booleans, JsonLists and JsonMaps
+    }
+
+    // The same as String.hashCode
+    static int hashCharacters(CharSequence chars) {
+        int hash = 0;
+        for (int i = 0, length = chars.length(); i < length; i++)
+            hash = 31 * hash + chars.charAt(i);
+
+        return hash;
+    }
+
+    /**
+     * Writes the value (including everything inside it, if it is an array/object) to a stream in esson's compact binary
+     *  format, which can be read back with {@link Parser#parseBinary(InputStream)} or
+     *  {@link Parser#parseBinary(ByteBuffer)} much faster than JSON text can be parsed. Every kind of value round-trips
+     *  exactly, including numbers parsed with {@link Options.OptionsBuilder#lazyNumbers()}. The stream is not flushed or
+     *  closed
+     * @param out the OutputStream to write to
+     * @throws IOException if the stream throws one
+     */
+    public void writeBinary(OutputStream out) throws IOException {
+        BinaryCodec.write(this, out);
+    }
+
+    /**
+     * As Object.toString, except that strings (including slices) are wrapped with '', and null values are returned as "null"
      * @return a String representation of the internal object
      */
     @Override
@@ -242,7 +439,7 @@ public class JsonValue {
         if (internal == null)
             return "null";
 
-        if (internal instanceof String)
+        if (isString())
             return "'" + internal + "'";
 
         return internal.toString();
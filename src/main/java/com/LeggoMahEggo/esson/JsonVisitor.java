@@ -0,0 +1,145 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * Computes a result from every value in a tree (the root, and everything inside every array/object), such as a count
+ *  or a list of matching values. Each value is visited on its own, and the results are merged with
+ *  {@link #combine(Object, Object)}, in document order (a value's result comes before its children's). Because the
+ *  results are merged rather than accumulated in one place, the children of large arrays/objects can be visited on
+ *  several threads (see {@link #walk(JsonValue, ForkJoinPool)}).
+ * <p>
+ * For example, counting the objects in a document:
+ * <pre>{@code
+ * long objects = JsonVisitor.counting(value -> value.getValueType() == ValueType.MAP).walk(document, pool);
+ * }</pre>
+ * @param <R> the type of the result
+ */
+public interface JsonVisitor<R> {
+
+    /**
+     * The number of elements an array/object needs before its children are split into tasks when walking on a
+     *  ForkJoinPool. {@link JsonTransformer} and the ForkJoinPool overloads of {@link JsonContainer#writeTo} use the
+     *  same number
+     */
+    int PARALLEL_THRESHOLD = 2048;
+
+    /**
+     * Returns the result for a single value, not including the values inside it (which are visited separately). Must
+     *  not change the value. When walking on a ForkJoinPool this is called from several threads at once
+     * @param value the value
+     * @return the result for the value
+     */
+    R visit(JsonValue value);
+
+    /**
+     * Merges two results; first is always the result for values earlier in the document. Must be associative, and may
+     *  return (and change) either of its arguments, which are not used again
+     * @param first the result for the earlier values
+     * @param second the result for the later values
+     * @return the merged result
+     */
+    R combine(R first, R second);
+
+    /**
+     * @return the result for no values at all (eg 0, or an empty list), which {@link #combine(Object, Object)} leaves
+     *  other results unchanged with
+     */
+    R empty();
+
+    /**
+     * Visits every value in a tree on the current thread
+     * @param root the root of the tree
+     * @return the merged result for every value in the tree
+     */
+    default R walk(JsonValue root) {
+        return TreeWalker.visit(root, this, null);
+    }
+
+    /**
+     * Visits every value in a tree, splitting the children of arrays/objects with at least
+     *  {@value #PARALLEL_THRESHOLD} elements into tasks that run on a ForkJoinPool
+     * @param root the root of the tree
+     * @param pool the pool to run on
+     * @return the merged result for every value in the tree
+     */
+    default R walk(JsonValue root, ForkJoinPool pool) {
+        return TreeWalker.visit(root, this, pool);
+    }
+
+    /**
+     * @param test the test for each value
+     * @return a visitor that counts the values passing the test
+     */
+    static JsonVisitor<Long> counting(Predicate<JsonValue> test) {
+        return new JsonVisitor<>() {
+            @Override
+            public Long visit(JsonValue value) {
+                return test.test(value) ? 1L : 0L;
+            }
+
+            @Override
+            public Long combine(Long first, Long second) {
+                return first + second;
+            }
+
+            @Override
+            public Long empty() {
+                return 0L;
+            }
+        };
+    }
+
+    /**
+     * @param test the test for each value
+     * @return a visitor that collects the values passing the test, in document order
+     */
+    static JsonVisitor<List<JsonValue>> collecting(Predicate<JsonValue> test) {
+        return new JsonVisitor<>() {
+            @Override
+            public List<JsonValue> visit(JsonValue value) {
+                if (!test.test(value))
+                    return Collections.emptyList();
+
+                List<JsonValue> found = new ArrayList<>();
+                found.add(value);
+                return found;
+            }
+
+            @Override
+            public List<JsonValue> combine(List<JsonValue> first, List<JsonValue> second) {
+                if (second.isEmpty())
+                    return first;
+                if (first.isEmpty())
+                    return second;
+
+                first.addAll(second); // Non-empty lists are always ones created by visit
+                return first;
+            }
+
+            @Override
+            public List<JsonValue> empty() {
+                return Collections.emptyList();
+            }
+        };
+    }
+}
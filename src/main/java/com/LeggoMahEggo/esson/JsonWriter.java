@@ -0,0 +1,422 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes JSON straight to a Writer/OutputStream one token at a time, without building JsonMaps/JsonLists first. Output
+ *  is buffered internally, so documents of any size can be written in constant memory. Strings are escaped and numbers
+ *  are formatted the same way as by {@link JsonContainer#toJsonString()}
+ * <pre>{@code
+ * try (JsonWriter writer = new JsonWriter(outputStream)) {
+ *     writer.beginObject().name("id").value(1).name("tags").beginArray().value("a").value("b").endArray().endObject();
+ * }
+ * }</pre>
+ * Calls that would produce invalid JSON (such as a value in an object without a name before it, or ending an array
+ *  while inside an object) throw an IllegalStateException
+ */
+public final class JsonWriter implements Closeable, Flushable {
+    // Scopes
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int DANGLING_NAME = 6; // In an object, after a name and before its value
+    private static final int CLOSED = 7;
+
+    private final Object target;
+    private final OutputSink out;
+    private final Serializer serializer;
+    private final String elementSeparator;
+    private final String keySeparator;
+
+    private int[] stack = new int[32];
+    private int depth = 1;
+
+    /**
+     * Creates a JsonWriter that writes to an Appendable (eg a Writer or StringBuilder)
+     * @param out the Appendable to write to
+     */
+    public JsonWriter(Appendable out) {
+        this(out, false);
+    }
+
+    /**
+     * Creates a JsonWriter that writes to an Appendable (eg a Writer or StringBuilder)
+     * @param out the Appendable to write to
+     * @param compact if true, no spaces are placed after commas and colons
+     */
+    public JsonWriter(Appendable out, boolean compact) {
+        this(out, OutputSink.of(out), compact);
+    }
+
+    /**
+     * Creates a JsonWriter that writes to an OutputStream as UTF-8
+     * @param out the OutputStream to write to
+     */
+    public JsonWriter(OutputStream out) {
+        this(out, false);
+    }
+
+    /**
+     * Creates a JsonWriter that writes to an OutputStream as UTF-8
+     * @param out the OutputStream to write to
+     * @param compact if true, no spaces are placed after commas and colons
+     */
+    public JsonWriter(OutputStream out, boolean compact) {
+        this(out, OutputSink.of(out), compact);
+    }
+
+    private JsonWriter(Object target, OutputSink out, boolean compact) {
+        this.target = target;
+        this.out = out;
+        this.serializer = new Serializer(out, compact);
+        this.elementSeparator = compact ? "," : ", ";
+        this.keySeparator = compact ? ":" : ": ";
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+
+    /*
+     * Structure
+     */
+
+    /**
+     * Begins a new array; each value written until the matching {@link #endArray()} is one of its elements
+     * @return this JsonWriter
+     * @throws IllegalStateException if a value can't be written here
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        out.write('[');
+        return this;
+    }
+
+    /**
+     * Ends the current array
+     * @return this JsonWriter
+     * @throws IllegalStateException if not inside an array
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter endArray() throws IOException {
+        int scope = peek();
+        if (scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY)
+            throw new IllegalStateException("Attempted to end an array " + describe(scope));
+
+        depth--;
+        out.write(']');
+        return this;
+    }
+
+    /**
+     * Begins a new object; each entry is written as a {@link #name(String)} followed by a value, until the matching
+     *  {@link #endObject()}
+     * @return this JsonWriter
+     * @throws IllegalStateException if a value can't be written here
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        out.write('{');
+        return this;
+    }
+
+    /**
+     * Ends the current object
+     * @return this JsonWriter
+     * @throws IllegalStateException if not inside an object, or if the last name written has no value
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter endObject() throws IOException {
+        int scope = peek();
+        if (scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT)
+            throw new IllegalStateException("Attempted to end an object " + describe(scope));
+
+        depth--;
+        out.write('}');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next entry in the current object
+     * @param name the entry's key
+     * @return this JsonWriter
+     * @throws IllegalArgumentException if name is null
+     * @throws IllegalStateException if not inside an object, or if the last name written has no value
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter name(String name) throws IOException {
+        if (name == null)
+            throw new IllegalArgumentException("Object keys cannot be null");
+
+        int scope = peek();
+        if (scope == NONEMPTY_OBJECT)
+            out.write(elementSeparator);
+        else if (scope != EMPTY_OBJECT)
+            throw new IllegalStateException("Attempted to write a name " + describe(scope));
+
+        stack[depth - 1] = DANGLING_NAME;
+        writeString(name);
+        out.write(keySeparator);
+        return this;
+    }
+
+
+    /*
+     * Values
+     */
+
+    /**
+     * Writes a string value
+     * @param value the string to write, or null to write a null value
+     * @return this JsonWriter
+     * @throws IllegalStateException if a value can't be written here
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter value(String value) throws IOException {
+        if (value == null)
+            return nullValue();
+
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes a number value
+     * @param value the number to write
+     * @return this JsonWriter
+     * @throws IllegalStateException if a value can't be written here
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        NumberWriter.writeLong(out, value);
+        return this;
+    }
+
+    /**
+     * Writes a number value
+     * @param value the number to write
+     * @return this JsonWriter
+     * @throws IllegalArgumentException if value is NaN or infinite, as JSON can't represent those
+     * @throws IllegalStateException if a value can't be written here
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            throw new IllegalArgumentException("JSON numbers cannot be NaN or infinite (was " + value + ")");
+
+        beforeValue();
+        NumberWriter.writeDouble(out, value);
+        return this;
+    }
+
+    /**
+     * Writes a boolean value
+     * @param value the boolean to write
+     * @return this JsonWriter
+     * @throws IllegalStateException if a value can't be written here
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes a null value
+     * @return this JsonWriter
+     * @throws IllegalStateException if a value can't be written here
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    /**
+     * Writes an existing JsonValue (including any JsonList/JsonMap it holds) as a single value
+     * @param value the JsonValue to write, or null to write a null value
+     * @return this JsonWriter
+     * @throws IllegalStateException if a value can't be written here
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter value(JsonValue value) throws IOException {
+        if (value == null)
+            return nullValue();
+
+        beforeValue();
+        serializer.writeValue(value);
+        return this;
+    }
+
+    /**
+     * Writes a plain Java object as a single value, without converting it to a JsonValue first:
+     * <ul>
+     *     <li>Strings, numbers, booleans, Characters and nulls are written as JSON values; enums as their names;
+     *      BigIntegers and BigDecimals exactly</li>
+     *     <li>Maps (whose keys must be Strings) as objects; Collections, other Iterables and arrays as arrays</li>
+     *     <li>Records as objects of their components, in declaration order</li>
+     *     <li>Other classes from the JDK (eg UUID, LocalDate) as the string returned by their toString method</li>
+     *     <li>Anything else as a Java bean: an object of the values returned by its public getX/isX methods, sorted
+     *      by property name</li>
+     * </ul>
+     * What to do for each class is worked out the first time an object of that class is written, and then reused
+     * @param value the object to write
+     * @return this JsonWriter
+     * @throws IllegalArgumentException if value (or an object inside it) can't be written, such as a Map with a
+     *  non-String key, a NaN double, or objects that refer back to themselves
+     * @throws IllegalStateException if a value can't be written here
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    public JsonWriter writeObject(Object value) throws IOException {
+        ObjectSerializer.write(this, value);
+        return this;
+    }
+
+    /**
+     * Writes a number's text unchanged
+     * @param text the text of a legal JSON number
+     */
+    JsonWriter numberValue(String text) throws IOException {
+        beforeValue();
+        out.write(text);
+        return this;
+    }
+
+    /**
+     * @return how many arrays/objects deep the writer currently is
+     */
+    int depth() {
+        return depth - 1;
+    }
+
+
+    /*
+     * Output
+     */
+
+    /**
+     * Writes any buffered output to the underlying Writer/OutputStream, and flushes it
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    @Override
+    public void flush() throws IOException {
+        if (peek() == CLOSED)
+            throw new IllegalStateException("JsonWriter is closed");
+
+        out.flush();
+
+        if (target instanceof Flushable)
+            ((Flushable) target).flush();
+    }
+
+    /**
+     * Writes any buffered output to the underlying Writer/OutputStream, and closes it
+     * @throws IllegalStateException if the document is incomplete (the writer is still closed)
+     * @throws IOException if the underlying Writer/OutputStream throws one
+     */
+    @Override
+    public void close() throws IOException {
+        int scope = peek();
+        if (scope == CLOSED)
+            return;
+
+        out.flush();
+        if (target instanceof Closeable)
+            ((Closeable) target).close();
+
+        depth = 1;
+        stack[0] = CLOSED;
+
+        if (scope != NONEMPTY_DOCUMENT)
+            throw new IllegalStateException("JsonWriter was closed with an incomplete document");
+    }
+
+    private void beforeValue() throws IOException {
+        int scope = peek();
+
+        switch (scope) {
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                break;
+            case NONEMPTY_ARRAY:
+                out.write(elementSeparator);
+                break;
+            case DANGLING_NAME:
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                throw new IllegalStateException("Attempted to write a value inside an object without writing its name " +
+                        "first");
+            default:
+                throw new IllegalStateException("Attempted to write a value " + describe(scope));
+        }
+    }
+
+    private void writeString(String str) throws IOException {
+        out.write('"');
+        Escaper.write(out, str, true); // Not parsed, so backslashes aren't escape sequences
+        out.write('"');
+    }
+
+    private int peek() {
+        return stack[depth - 1];
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length)
+            stack = Arrays.copyOf(stack, depth * 2);
+
+        stack[depth++] = scope;
+    }
+
+    private static String describe(int scope) {
+        switch (scope) {
+            case EMPTY_DOCUMENT:
+                return "before anything was written";
+            case NONEMPTY_DOCUMENT:
+                return "after the top-level value was completed";
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY:
+                return "inside an array";
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                return "inside an object";
+            case DANGLING_NAME:
+                return "after a name (which needs a value first)";
+            default:
+                return "after the JsonWriter was closed";
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.OutputSink.Fragment;
+
+import java.util.Collection;
+
+/**
+ * Remembers the key sequences ("shapes") of recently serialized objects, with each key already escaped and encoded
+ *  together with the separators around it (eg <code>, "key": </code>). Objects with the same keys in the same order,
+ *  like the rows of a table, then only need their values written. Kept for a single serialization, so nothing
+ *  outlives it
+ */
+final class KeyShapes {
+    static final int MAX_KEYS = 64; // Larger objects are unlikely to repeat, and are written key by key
+    private static final int CAPACITY = 8;
+
+    private final Shape[] shapes = new Shape[CAPACITY];
+    private int next; // Replaced next once all slots are used
+
+    static final class Shape {
+        private final String[] keys;
+        final Fragment[] fragments;
+
+        private Shape(String[] keys, String elementSeparator, String keySeparator) {
+            this.keys = keys;
+            this.fragments = new Fragment[keys.length];
+
+            for (int i = 0; i < keys.length; i++)
+                fragments[i] = new Fragment((i > 0 ? elementSeparator : "") + "\"" + Escaper.escape(keys[i]) + "\"" +
+                        keySeparator);
+        }
+
+        /**
+         * @return whether the keys are the same as this shape's, in the same order
+         */
+        private boolean matches(Collection<String> keys) {
+            if (keys.size() != this.keys.length)
+                return false;
+
+            int i = 0;
+            for (String key : keys) {
+                String expected = this.keys[i++];
+                if (expected != key && !expected.equals(key)) // Parsed keys are usually the same instance
+                    return false;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Returns the shape of an object's keys: a known shape with the same keys in the same order (the most recently
+     *  added are checked first), or a new one, which is remembered in place of the oldest once all slots are used
+     * @param keys the object's keys, in order
+     * @return the shape
+     */
+    Shape shapeOf(Collection<String> keys, String elementSeparator, String keySeparator) {
+        int slot = next;
+        for (int checked = 0; checked < CAPACITY; checked++) {
+            slot = (slot == 0) ? CAPACITY - 1 : slot - 1;
+            Shape shape = shapes[slot];
+            if (shape == null)
+                break; // Slots are used in order, so the rest are empty too
+
+            if (shape.matches(keys))
+                return shape;
+        }
+
+        Shape shape = new Shape(keys.toArray(new String[0]), elementSeparator, keySeparator);
+        shapes[next] = shape;
+        next = (next + 1) % CAPACITY;
+        return shape;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * Writes numbers straight to an {@link OutputSink}, without creating a String for each one. Longs are written digit by
+ *  digit; doubles are written with the fewest digits that still parse back to the same double, found with the
+ *  Schubfach algorithm (R. Giulietti, "The Schubfach way to render doubles", 2020). Doubles are laid out as by
+ *  Double.toString (eg 55.4, 100.0, 1.0E10, 1.0E-5, NaN)
+ */
+final class NumberWriter {
+    private static final char[] MIN_LONG = Long.toString(Long.MIN_VALUE).toCharArray();
+
+    // Double layout
+    private static final int P = 53; // Precision, in bits
+    private static final int Q_MIN = -1074; // Exponent of the smallest subnormal
+    private static final long C_MIN = 1L << (P - 1); // Implicit bit of normal doubles
+    private static final long T_MASK = C_MIN - 1;
+    private static final long C_TINY = 3; // Subnormals below this need an extra digit of precision
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    // Approximations of powers of ten, 10^-k for k in [K_MIN, K_MAX]
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final long[] G = new long[(K_MAX - K_MIN + 1) * 2];
+
+    static {
+        // g = floor(10^-k * 2^(125 - floor(log2(10^-k)))) + 1, split into its upper and lower 63 bits
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int shift = 125 - flog2pow10(-k);
+            BigInteger g;
+
+            if (k <= 0)
+                g = BigInteger.TEN.pow(-k).shiftLeft(shift);
+            else
+                g = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k));
+
+            g = g.add(BigInteger.ONE);
+            G[(k - K_MIN) << 1] = g.shiftRight(63).longValue();
+            G[((k - K_MIN) << 1) + 1] = g.longValue() & MASK_63;
+        }
+    }
+
+    private NumberWriter() {
+    }
+
+    /**
+     * Writes a long in decimal
+     * @param out the OutputSink to write to
+     * @param value the long to write
+     */
+    static void writeLong(OutputSink out, long value) throws IOException {
+        if (value == Long.MIN_VALUE) { // Can't be negated
+            out.write(MIN_LONG, 0, MIN_LONG.length);
+            return;
+        }
+
+        char[] buffer = out.scratch;
+        int pos = buffer.length;
+        boolean negative = value < 0;
+        if (negative)
+            value = -value;
+
+        do {
+            buffer[--pos] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        if (negative)
+            buffer[--pos] = '-';
+
+        out.write(buffer, pos, buffer.length);
+    }
+
+    /**
+     * Writes a double with the shortest decimal representation that parses back to it
+     * @param out the OutputSink to write to
+     * @param value the double to write
+     */
+    static void writeDouble(OutputSink out, double value) throws IOException {
+        long bits = Double.doubleToRawLongBits(value);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & 0x7FF;
+
+        if (bq == 0x7FF) {
+            out.write(t != 0 ? "NaN" : value > 0 ? "Infinity" : "-Infinity");
+            return;
+        }
+
+        if (bits < 0)
+            out.write('-');
+
+        if (bq != 0) { // Normal
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+
+            // Integers below 2^53 are exact
+            if (0 < mq && mq < P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    writeDecimal(out, f, 0);
+                    return;
+                }
+            }
+
+            toDecimal(out, -mq, c, 0);
+        }
+
+        else if (t != 0) { // Subnormal
+            if (t < C_TINY)
+                toDecimal(out, Q_MIN, 10 * t, -1);
+            else
+                toDecimal(out, Q_MIN, t, 0);
+        }
+
+        else {
+            out.write("0.0");
+        }
+    }
+
+    /**
+     * Finds the shortest decimal in the rounding interval of c * 2^q, and writes it
+     */
+    private static void toDecimal(OutputSink out, int q, long c, int dk) throws IOException {
+        int oddC = (int) c & 1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+
+        // The interval is asymmetric when c is a power of two (except for the smallest exponent)
+        if (c != C_MIN | q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10ThreeQuartersPow2(q);
+        }
+
+        int h = q + flog2pow10(-k) + 2;
+        long g1 = G[(k - K_MIN) << 1];
+        long g0 = G[((k - K_MIN) << 1) + 1];
+
+        long vb = roundOdd(g1, g0, cb << h);
+        long vbl = roundOdd(g1, g0, cbl << h);
+        long vbr = roundOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // Try one digit fewer first
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upIn = vbl + oddC <= sp10 << 2;
+            boolean wpIn = (tp10 << 2) + oddC <= vbr;
+
+            if (upIn != wpIn) {
+                writeDecimal(out, upIn ? sp10 : tp10, k);
+                return;
+            }
+        }
+
+        long t = s + 1;
+        boolean uIn = vbl + oddC <= s << 2;
+        boolean wIn = (t << 2) + oddC <= vbr;
+
+        if (uIn != wIn) {
+            writeDecimal(out, uIn ? s : t, k + dk);
+            return;
+        }
+
+        // Both are in the interval; pick the closest one (or the even one on a tie)
+        long cmp = vb - ((s + t) << 1);
+        writeDecimal(out, cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk);
+    }
+
+    /**
+     * @return the upper 64 bits of g * cp (where g = g1 * 2^63 + g0), rounded to odd
+     */
+    private static long roundOdd(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /**
+     * Writes f * 10^e (f > 0) as Double.toString would lay it out
+     */
+    private static void writeDecimal(OutputSink out, long f, int e) throws IOException {
+        char[] buffer = out.scratch;
+        int end = buffer.length;
+        int start = end;
+
+        do {
+            buffer[--start] = (char) ('0' + f % 10);
+            f /= 10;
+        } while (f != 0);
+
+        // Drop trailing zeroes
+        while (buffer[end - 1] == '0') {
+            end--;
+            e++;
+        }
+
+        int length = end - start;
+        int point = length + e; // The value is 0.digits * 10^point
+
+        if (0 < point && point <= 7) { // Plain, with at least one digit after the point
+            if (length <= point) {
+                out.write(buffer, start, end);
+                for (int i = length; i < point; i++)
+                    out.write('0');
+                out.write(".0");
+            } else {
+                out.write(buffer, start, start + point);
+                out.write('.');
+                out.write(buffer, start + point, end);
+            }
+        }
+
+        else if (-3 < point && point <= 0) { // Plain, below 1
+            out.write("0.");
+            for (int i = point; i < 0; i++)
+                out.write('0');
+            out.write(buffer, start, end);
+        }
+
+        else { // Scientific notation
+            out.write(buffer[start]);
+            out.write('.');
+
+            if (length == 1)
+                out.write('0');
+            else
+                out.write(buffer, start + 1, end);
+
+            out.write('E');
+            writeLong(out, point - 1);
+        }
+    }
+
+    /**
+     * @return floor(log10(2^e))
+     */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /**
+     * @return floor(log10(3/4 * 2^e))
+     */
+    private static int flog10ThreeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    /**
+     * @return floor(log2(10^e))
+     */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+}
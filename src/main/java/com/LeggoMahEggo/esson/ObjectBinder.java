@@ -0,0 +1,718 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.exceptions.IllegalCharacterException;
+import com.LeggoMahEggo.esson.exceptions.JsonParserException;
+import com.LeggoMahEggo.esson.exceptions.ValueParserException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Binds JSON straight onto Java objects (see {@link Parser#parseInto(String, Class, Options)}), reading it with a
+ *  {@link Cursor} without building JsonMaps/JsonLists/JsonValues first. How to bind each class (its constructor and
+ *  setters as MethodHandles, and a lookup from keys to properties) is worked out once, and then cached
+ */
+final class ObjectBinder {
+    private static final ClassValue<Binder> BINDERS = new ClassValue<>() {
+        @Override
+        protected Binder computeValue(Class<?> type) {
+            return binderFor(type);
+        }
+    };
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType RECORD_CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    /**
+     * Reads a value of one type, starting at the cursor's current (non-whitespace) character
+     */
+    private interface Binder {
+        Object read(Cursor cursor);
+    }
+
+    /**
+     * Called for each key/value pair of an object, with the cursor at the start of the value
+     */
+    private interface PairReader {
+        void read(Cursor cursor, String key, int position);
+    }
+
+    private ObjectBinder() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T read(Cursor cursor, Class<T> type) {
+        cursor.moveToFirstNonWhitespace();
+        T value = (T) BINDERS.get(type).read(cursor);
+
+        while (!cursor.atEndOfJson(false)) {
+            char c = cursor.currentChar();
+
+            if (c != ' ' && c != '\r' && c != '\n' && c != '\t')
+                throw new IllegalCharacterException("Found unexpected '" + cursor.getPrintableCharacter(c) + "' " +
+                        "character at/near the end of the JSON string");
+
+            cursor.moveCursorFoward();
+        }
+
+        return value;
+    }
+
+    private static Binder binder(Type type) {
+        if (type instanceof Class)
+            return BINDERS.get((Class<?>) type);
+
+        if (type instanceof ParameterizedType) {
+            Class<?> raw = (Class<?>) ((ParameterizedType) type).getRawType();
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+
+            if (Map.class.isAssignableFrom(raw))
+                return mapBinder(raw, arguments[0], arguments[1]);
+
+            if (Collection.class.isAssignableFrom(raw) || raw == Iterable.class)
+                return collectionBinder(raw, arguments[0]);
+
+            return BINDERS.get(raw);
+        }
+
+        if (type instanceof GenericArrayType) {
+            Type componentType = ((GenericArrayType) type).getGenericComponentType();
+            return arrayBinder(rawClass(componentType), binder(componentType));
+        }
+
+        return BINDERS.get(rawClass(type));
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class)
+            return (Class<?>) type;
+
+        if (type instanceof ParameterizedType)
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+
+        if (type instanceof GenericArrayType)
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+
+        if (type instanceof WildcardType)
+            return rawClass(((WildcardType) type).getUpperBounds()[0]);
+
+        if (type instanceof TypeVariable)
+            return rawClass(((TypeVariable<?>) type).getBounds()[0]);
+
+        return Object.class;
+    }
+
+    private static Binder binderFor(Class<?> type) {
+        // Values
+        if (type == String.class || type == CharSequence.class)
+            return ObjectBinder::readString;
+
+        if (type == long.class || type == Long.class)
+            return integerBinder(type, Long.MIN_VALUE, Long.MAX_VALUE, Long::valueOf);
+        if (type == int.class || type == Integer.class)
+            return integerBinder(type, Integer.MIN_VALUE, Integer.MAX_VALUE, l -> (int) l);
+        if (type == short.class || type == Short.class)
+            return integerBinder(type, Short.MIN_VALUE, Short.MAX_VALUE, l -> (short) l);
+        if (type == byte.class || type == Byte.class)
+            return integerBinder(type, Byte.MIN_VALUE, Byte.MAX_VALUE, l -> (byte) l);
+
+        if (type == double.class || type == Double.class)
+            return primitiveOrNull(type, cursor -> readNumber(cursor).doubleValue());
+        if (type == float.class || type == Float.class)
+            return primitiveOrNull(type, cursor -> readNumber(cursor).floatValue());
+
+        if (type == BigInteger.class)
+            return nullOr(cursor -> toBigDecimal(readNumber(cursor)).toBigInteger());
+        if (type == BigDecimal.class)
+            return nullOr(cursor -> toBigDecimal(readNumber(cursor)));
+        if (type == Number.class)
+            return nullOr(ObjectBinder::readNumber);
+
+        if (type == boolean.class || type == Boolean.class)
+            return primitiveOrNull(type, ObjectBinder::readBoolean);
+
+        if (type == char.class || type == Character.class)
+            return primitiveOrNull(type, cursor -> {
+                String str = readString(cursor);
+
+                if (str.length() != 1)
+                    throw new ValueParserException("Expected a single character, found \"" + str + "\"" +
+                            cursor.locationErrMsgHelper());
+
+                return str.charAt(0);
+            });
+
+        if (type.isEnum())
+            return enumBinder(type);
+
+        if (type == Object.class)
+            return ObjectBinder::readAny;
+
+        // Existing tree types are parsed as usual
+        if (type == JsonValue.class)
+            return Parser::collectValue;
+        if (type == JsonMap.class || type == JsonList.class)
+            return cursor -> {
+                JsonValue value = Parser.collectValue(cursor);
+
+                if (!value.isNullValue() && !type.isInstance(value.internal))
+                    throw new ValueParserException("Expected a JSON " + (type == JsonMap.class ? "object" : "array") +
+                            " for a " + type.getSimpleName() + cursor.locationErrMsgHelper());
+
+                return value.internal;
+            };
+
+        // Containers
+        if (type.isArray())
+            return arrayBinder(type.getComponentType(), binder(type.getComponentType()));
+
+        if (Map.class.isAssignableFrom(type))
+            return mapBinder(type, String.class, Object.class);
+
+        if (Collection.class.isAssignableFrom(type) || type == Iterable.class)
+            return collectionBinder(type, Object.class);
+
+        // Objects
+        String name = type.getName();
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isPrimitive() ||
+                name.startsWith("java.") || name.startsWith("javax."))
+            throw new IllegalArgumentException("Cannot bind JSON to " + name);
+
+        if (ObjectSerializer.isRecord(type))
+            return recordBinder(type);
+
+        return beanBinder(type);
+    }
+
+
+    /*
+     * Values
+     */
+
+    private static ValueParserException mismatch(Cursor cursor, String expected) {
+        return new ValueParserException("Expected " + expected + ", found a value starting with '" +
+                cursor.getPrintableCharacter(cursor.currentChar()) + "'" + cursor.locationErrMsgHelper());
+    }
+
+    /**
+     * @return a Binder that reads a null as null, and anything else with binder
+     */
+    private static Binder nullOr(Binder binder) {
+        return cursor -> (cursor.currentChar() == 'n') ? cursor.collectNull() : binder.read(cursor);
+    }
+
+    /**
+     * @return a Binder that reads a null as null for a boxed type, and rejects it for a primitive type
+     */
+    private static Binder primitiveOrNull(Class<?> type, Binder binder) {
+        if (!type.isPrimitive())
+            return nullOr(binder);
+
+        return cursor -> {
+            if (cursor.currentChar() == 'n')
+                throw new ValueParserException("Cannot set a " + type.getName() + " to null" +
+                        cursor.locationErrMsgHelper());
+
+            return binder.read(cursor);
+        };
+    }
+
+    private interface LongConverter {
+        Object convert(long value);
+    }
+
+    private static Binder integerBinder(Class<?> type, long min, long max, LongConverter converter) {
+        return primitiveOrNull(type, cursor -> converter.convert(exactLong(readNumber(cursor), cursor, min, max,
+                type.getSimpleName())));
+    }
+
+    /**
+     * @return number as a long, if it is an integer between min and max
+     * @throws ValueParserException if it isn't
+     */
+    static long exactLong(Number number, Cursor cursor, long min, long max, String typeName) {
+        long value;
+
+        if (number instanceof Long) {
+            value = number.longValue();
+        } else {
+            try {
+                value = toBigDecimal(number).longValueExact();
+            } catch (ArithmeticException e) {
+                throw new ValueParserException("Expected an integer, found " + number + cursor.locationErrMsgHelper());
+            }
+        }
+
+        if (value < min || value > max)
+            throw new ValueParserException(value + " is out of range for a " + typeName + cursor.locationErrMsgHelper());
+
+        return value;
+    }
+
+    static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof JsonNumber)
+            return ((JsonNumber) number).bigDecimalValue();
+
+        return (number instanceof Long) ? BigDecimal.valueOf(number.longValue()) :
+                BigDecimal.valueOf(number.doubleValue());
+    }
+
+    private static Number readNumber(Cursor cursor) {
+        char c = cursor.currentChar();
+
+        if (c == '+' && !cursor.options.plusAtFront)
+            throw new IllegalCharacterException("Cannot start a number with the + sign" + cursor.locationErrMsgHelper());
+
+        if (c != '-' && c != '+' && (c < '0' || c > '9'))
+            throw mismatch(cursor, "a number");
+
+        return cursor.collectNumber();
+    }
+
+    private static String readString(Cursor cursor) {
+        char c = cursor.currentChar();
+
+        if (c == 'n')
+            return (String) cursor.collectNull();
+
+        if (c != '"' && (c != '\'' || !cursor.options.singleQuoteString))
+            throw mismatch(cursor, "a string");
+
+        return JsonValue.unescape(cursor.collectStringValue(c).toString());
+    }
+
+    private static Boolean readBoolean(Cursor cursor) {
+        char c = cursor.currentChar();
+
+        if (c != 't' && c != 'f')
+            throw mismatch(cursor, "a boolean");
+
+        return cursor.collectBoolean();
+    }
+
+    private static Binder enumBinder(Class<?> type) {
+        Map<String, Object> constants = new HashMap<>();
+        for (Object constant : type.getEnumConstants())
+            constants.put(((Enum<?>) constant).name(), constant);
+
+        return cursor -> {
+            String name = readString(cursor);
+            Object constant = constants.get(name);
+
+            if (constant == null && name != null)
+                throw new ValueParserException("\"" + name + "\" is not a constant of " + type.getSimpleName() +
+                        cursor.locationErrMsgHelper());
+
+            return constant;
+        };
+    }
+
+    /**
+     * Reads any value as plain Java objects: Strings, Numbers, Booleans, nulls, ArrayLists and LinkedHashMaps
+     */
+    private static Object readAny(Cursor cursor) {
+        switch (cursor.currentChar()) {
+            case '[':
+                List<Object> list = new ArrayList<>();
+                readArray(cursor, element -> list.add(readAny(element)));
+                return list;
+            case '{':
+                Map<String, Object> map = new LinkedHashMap<>();
+                readObject(cursor, (value, key, position) -> map.put(JsonValue.unescape(key), readAny(value)));
+                return map;
+            case '"':
+            case '\'': return readString(cursor);
+            case 't':
+            case 'f': return cursor.collectBoolean();
+            case 'n': return cursor.collectNull();
+            default: return readNumber(cursor);
+        }
+    }
+
+
+    /*
+     * Containers
+     */
+
+    private interface ElementReader {
+        void read(Cursor cursor);
+    }
+
+    private static void readArray(Cursor cursor, ElementReader reader) {
+        if (cursor.currentChar() != '[')
+            throw mismatch(cursor, "an array");
+
+        cursor.moveCursorFoward();
+        cursor.moveToFirstNonWhitespace();
+
+        if (cursor.currentChar() == ']') {
+            cursor.moveCursorFoward();
+            return;
+        }
+
+        while (true) {
+            reader.read(cursor);
+
+            cursor.moveToFirstNonWhitespace();
+            char c = cursor.currentChar();
+            cursor.moveCursorFoward();
+
+            if (c == ']')
+                return;
+
+            if (c != ',')
+                throw new IllegalCharacterException("Expected to find a ',' to continue the array or a ']' character " +
+                        "to end it, found '" + c + "' instead" + cursor.locationErrMsgHelper());
+
+            cursor.moveToFirstNonWhitespace();
+
+            if (cursor.currentChar() == ']') {
+                if (!cursor.options.commaAtEnd)
+                    throw new IllegalCharacterException("Reached the end of an array with an extra comma" +
+                            cursor.locationErrMsgHelper());
+
+                cursor.moveCursorFoward();
+                return;
+            }
+        }
+    }
+
+    private static void readObject(Cursor cursor, PairReader reader) {
+        if (cursor.currentChar() != '{')
+            throw mismatch(cursor, "an object");
+
+        cursor.moveCursorFoward();
+        cursor.moveToFirstNonWhitespace();
+
+        if (cursor.currentChar() == '}') {
+            cursor.moveCursorFoward();
+            return;
+        }
+
+        for (int position = 0; ; position++) {
+            char c = cursor.currentChar();
+
+            if (c != '"' && (c != '\'' || !cursor.options.singleQuoteString))
+                throw new IllegalCharacterException("Expected to find a quote character to start the object's key, " +
+                        "found a '" + c + "' instead" + cursor.locationErrMsgHelper());
+
+            String key = cursor.collectKey(c);
+
+            cursor.moveToFirstNonWhitespace();
+            c = cursor.currentChar();
+
+            if (c != ':')
+                throw new IllegalCharacterException("Expected to find a ':' character to start the object's value" +
+                        ", found a '" + c + "' instead" + cursor.locationErrMsgHelper());
+
+            cursor.moveCursorFoward();
+            cursor.moveToFirstNonWhitespace();
+            reader.read(cursor, key, position);
+
+            cursor.moveToFirstNonWhitespace();
+            c = cursor.currentChar();
+            cursor.moveCursorFoward();
+
+            if (c == '}')
+                return;
+
+            if (c != ',')
+                throw new IllegalCharacterException("Expected to find a ',' to continue the object or a '}' character " +
+                        "to end it, found '" + c + "' instead" + cursor.locationErrMsgHelper());
+
+            cursor.moveToFirstNonWhitespace();
+
+            if (cursor.currentChar() == '}') {
+                if (!cursor.options.commaAtEnd)
+                    throw new IllegalCharacterException("Reached the end of an object with an extra comma" +
+                            cursor.locationErrMsgHelper());
+
+                cursor.moveCursorFoward();
+                return;
+            }
+        }
+    }
+
+    private static Binder collectionBinder(Class<?> type, Type elementType) {
+        Supplier<Collection<Object>> factory;
+
+        if (type.isAssignableFrom(ArrayList.class))
+            factory = ArrayList::new;
+        else if (type.isAssignableFrom(LinkedHashSet.class))
+            factory = LinkedHashSet::new;
+        else
+            throw new IllegalArgumentException("Cannot bind JSON to " + type.getName() + " (use a List, Set or " +
+                    "Collection)");
+
+        Binder element = binder(elementType);
+
+        return nullOr(cursor -> {
+            Collection<Object> collection = factory.get();
+            readArray(cursor, value -> collection.add(element.read(value)));
+            return collection;
+        });
+    }
+
+    private static Binder mapBinder(Class<?> type, Type keyType, Type valueType) {
+        if (!type.isAssignableFrom(LinkedHashMap.class))
+            throw new IllegalArgumentException("Cannot bind JSON to " + type.getName() + " (use a Map)");
+
+        Class<?> rawKeyType = rawClass(keyType);
+        if (rawKeyType != String.class && rawKeyType != Object.class && rawKeyType != CharSequence.class)
+            throw new IllegalArgumentException("Cannot bind JSON to a Map with keys of type " + rawKeyType.getName() +
+                    " (keys must be Strings)");
+
+        Binder value = binder(valueType);
+
+        return nullOr(cursor -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            readObject(cursor, (pair, key, position) -> map.put(JsonValue.unescape(key), value.read(pair)));
+            return map;
+        });
+    }
+
+    private static Binder arrayBinder(Class<?> componentType, Binder element) {
+        return nullOr(cursor -> {
+            List<Object> elements = new ArrayList<>();
+            readArray(cursor, value -> elements.add(element.read(value)));
+
+            Object array = Array.newInstance(componentType, elements.size());
+            for (int i = 0; i < elements.size(); i++)
+                Array.set(array, i, elements.get(i));
+
+            return array;
+        });
+    }
+
+
+    /*
+     * Records and beans
+     */
+
+    /**
+     * A record component or bean property. Its Binder is only found when first needed, so that classes can refer to
+     *  themselves
+     */
+    private static final class Property {
+        final String name;
+        final Type type;
+        final MethodHandle setter; // null for record components
+        private Binder binder;
+
+        Property(String name, Type type, MethodHandle setter) {
+            this.name = name;
+            this.type = type;
+            this.setter = setter;
+        }
+
+        Binder binder() {
+            Binder b = binder;
+
+            if (b == null) {
+                b = ObjectBinder.binder(type);
+                binder = b;
+            }
+
+            return b;
+        }
+    }
+
+    /**
+     * Finds the property for a key. Objects usually list their keys in the same order as the class's properties, so
+     *  the property at the key's position is tried first; otherwise small classes are scanned, and larger ones use a
+     *  HashMap
+     */
+    private static final class KeyIndex {
+        private static final int MAX_SCANNED = 8;
+
+        private final String[] names;
+        private final Map<String, Integer> indexes;
+
+        KeyIndex(Property[] properties) {
+            names = new String[properties.length];
+            for (int i = 0; i < properties.length; i++)
+                names[i] = properties[i].name;
+
+            if (names.length > MAX_SCANNED) {
+                indexes = new HashMap<>();
+                for (int i = 0; i < names.length; i++)
+                    indexes.put(names[i], i);
+            } else {
+                indexes = null;
+            }
+        }
+
+        /**
+         * @return the index of the key's property, or -1 if the class doesn't have one
+         */
+        int find(String key, int position) {
+            if (position < names.length && names[position].equals(key))
+                return position;
+
+            if (indexes != null) {
+                Integer index = indexes.get(key);
+                return (index == null) ? -1 : index;
+            }
+
+            for (int i = 0; i < names.length; i++)
+                if (names[i].equals(key))
+                    return i;
+
+            return -1;
+        }
+    }
+
+    private static Binder recordBinder(Class<?> type) {
+        Method[] accessors = ObjectSerializer.recordAccessors(type);
+        Class<?>[] types = new Class<?>[accessors.length];
+        Property[] properties = new Property[accessors.length];
+        Object[] defaults = new Object[accessors.length];
+
+        for (int i = 0; i < accessors.length; i++) {
+            types[i] = accessors[i].getReturnType();
+            properties[i] = new Property(accessors[i].getName(), accessors[i].getGenericReturnType(), null);
+
+            if (types[i].isPrimitive()) // Missing keys leave components at their default values
+                defaults[i] = Array.get(Array.newInstance(types[i], 1), 0);
+        }
+
+        MethodHandle constructor;
+        try {
+            Constructor<?> canonical = type.getDeclaredConstructor(types);
+            canonical.setAccessible(true);
+            constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+                    .asSpreader(Object[].class, types.length).asType(RECORD_CONSTRUCTOR_TYPE);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access the constructor of record " + type.getName(), e);
+        }
+
+        KeyIndex keys = new KeyIndex(properties);
+
+        return nullOr(cursor -> {
+            Object[] arguments = defaults.clone();
+
+            readObject(cursor, (value, key, position) -> {
+                int index = keys.find(key, position);
+
+                if (index < 0)
+                    readAny(value); // Unknown keys are skipped
+                else
+                    arguments[index] = properties[index].binder().read(value);
+            });
+
+            try {
+                return (Object) constructor.invokeExact(arguments);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new JsonParserException("Creating a " + type.getName() + " failed", t);
+            }
+        });
+    }
+
+    private static Binder beanBinder(Class<?> type) {
+        MethodHandle constructor;
+        try {
+            Constructor<?> noArguments = type.getDeclaredConstructor();
+            noArguments.setAccessible(true);
+            constructor = MethodHandles.lookup().unreflectConstructor(noArguments).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Cannot bind JSON to " + type.getName() + ", as it has no " +
+                    "constructor without arguments (is it a non-static inner class?)", e);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access the constructor of " + type.getName(), e);
+        }
+
+        // Public setX methods, sorted by property name (the order writeObject writes them in)
+        List<Property> propertyList = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            String name = method.getName();
+
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1 ||
+                    !name.startsWith("set") || name.length() == 3)
+                continue;
+
+            String propertyName = ObjectSerializer.decapitalize(name.substring(3));
+            if (propertyList.stream().anyMatch(property -> property.name.equals(propertyName)))
+                continue;
+
+            MethodHandle setter = ObjectSerializer.unreflect(type, method).asType(SETTER_TYPE);
+            propertyList.add(new Property(propertyName, method.getGenericParameterTypes()[0], setter));
+        }
+
+        propertyList.sort(Comparator.comparing(property -> property.name));
+        Property[] properties = propertyList.toArray(new Property[0]);
+        KeyIndex keys = new KeyIndex(properties);
+
+        return nullOr(cursor -> {
+            Object bean;
+
+            try {
+                bean = (Object) constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new JsonParserException("Creating a " + type.getName() + " failed", t);
+            }
+
+            readObject(cursor, (value, key, position) -> {
+                int index = keys.find(key, position);
+
+                if (index < 0) {
+                    readAny(value); // Unknown keys are skipped
+                    return;
+                }
+
+                Property property = properties[index];
+                Object propertyValue = property.binder().read(value);
+
+                try {
+                    property.setter.invokeExact(bean, propertyValue);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new JsonParserException("Setting " + property.name + " of " + type.getName() + " failed", t);
+                }
+            });
+
+            return bean;
+        });
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes plain Java objects to a {@link JsonWriter} (see {@link JsonWriter#writeObject(Object)}). How each class is
+ *  written is worked out once, and then cached; the getters of records and beans are called through MethodHandles
+ */
+final class ObjectSerializer {
+    static final int MAX_DEPTH = 1000; // Deeper than this is almost certainly a cycle
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    // Records are only available from Java 16 on, so they are found through reflection
+    private static final Method IS_RECORD;
+    private static final Method GET_RECORD_COMPONENTS;
+    private static final Method GET_ACCESSOR;
+
+    static {
+        Method isRecord = null;
+        Method getRecordComponents = null;
+        Method getAccessor = null;
+
+        try {
+            isRecord = Class.class.getMethod("isRecord");
+            getRecordComponents = Class.class.getMethod("getRecordComponents");
+            getAccessor = Class.forName("java.lang.reflect.RecordComponent").getMethod("getAccessor");
+        } catch (ReflectiveOperationException e) {
+            // Running on a version without records
+        }
+
+        IS_RECORD = isRecord;
+        GET_RECORD_COMPONENTS = getRecordComponents;
+        GET_ACCESSOR = getAccessor;
+    }
+
+    private static final ClassValue<Codec> CODECS = new ClassValue<>() {
+        @Override
+        protected Codec computeValue(Class<?> type) {
+            return codecFor(type);
+        }
+    };
+
+    /**
+     * How objects of a class are written
+     */
+    private interface Codec {
+        void write(JsonWriter writer, Object value) throws IOException;
+    }
+
+    private ObjectSerializer() {
+    }
+
+    static void write(JsonWriter writer, Object value) throws IOException {
+        if (value == null)
+            writer.nullValue();
+        else
+            CODECS.get(value.getClass()).write(writer, value);
+    }
+
+    private static Codec codecFor(Class<?> type) {
+        // Values
+        if (type == String.class)
+            return (writer, value) -> writer.value((String) value);
+
+        if (type == Long.class || type == Integer.class || type == Short.class || type == Byte.class ||
+                type == AtomicLong.class || type == AtomicInteger.class)
+            return (writer, value) -> writer.value(((Number) value).longValue());
+
+        if (type == BigInteger.class || type == BigDecimal.class || type == JsonNumber.class)
+            return (writer, value) -> writer.numberValue(value.toString());
+
+        if (type == Float.class) // Written as the float's shortest form, not the double it widens to
+            return (writer, value) -> writer.value(Double.parseDouble(value.toString()));
+
+        if (Number.class.isAssignableFrom(type))
+            return (writer, value) -> writer.value(((Number) value).doubleValue());
+
+        if (type == Boolean.class)
+            return (writer, value) -> writer.value((boolean) (Boolean) value);
+
+        if (type == Character.class || CharSequence.class.isAssignableFrom(type))
+            return (writer, value) -> writer.value(value.toString());
+
+        if (Enum.class.isAssignableFrom(type))
+            return (writer, value) -> writer.value(((Enum<?>) value).name());
+
+        if (type == JsonValue.class)
+            return (writer, value) -> writer.value((JsonValue) value);
+
+        if (JsonContainer.class.isAssignableFrom(type) && (JsonList.class.isAssignableFrom(type) ||
+                JsonMap.class.isAssignableFrom(type)))
+            return (writer, value) -> writer.value(JsonValue.wrap(value));
+
+        // Containers
+        if (Map.class.isAssignableFrom(type))
+            return ObjectSerializer::writeMap;
+
+        if (Iterable.class.isAssignableFrom(type))
+            return ObjectSerializer::writeIterable;
+
+        if (type.isArray())
+            return arrayCodec(type.getComponentType());
+
+        if (isRecord(type))
+            return propertiesCodec(type, recordProperties(type));
+
+        // Other classes from the JDK (eg UUID, LocalDate) aren't beans; their String forms are what is wanted
+        String name = type.getName();
+        if (name.startsWith("java.") || name.startsWith("javax."))
+            return (writer, value) -> writer.value(value.toString());
+
+        return propertiesCodec(type, beanGetters(type));
+    }
+
+    private static void checkDepth(JsonWriter writer) {
+        if (writer.depth() > MAX_DEPTH)
+            throw new IllegalArgumentException("Objects are nested more than " + MAX_DEPTH + " deep (they may " +
+                    "contain a cycle)");
+    }
+
+    private static void writeMap(JsonWriter writer, Object value) throws IOException {
+        checkDepth(writer);
+        writer.beginObject();
+
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!(entry.getKey() instanceof String))
+                throw new IllegalArgumentException("Map keys must be Strings (was " + (entry.getKey() == null ? "null" :
+                        "of type " + entry.getKey().getClass().getSimpleName()) + ")");
+
+            writer.name((String) entry.getKey());
+            write(writer, entry.getValue());
+        }
+
+        writer.endObject();
+    }
+
+    private static void writeIterable(JsonWriter writer, Object value) throws IOException {
+        checkDepth(writer);
+        writer.beginArray();
+
+        for (Object element : (Iterable<?>) value)
+            write(writer, element);
+
+        writer.endArray();
+    }
+
+    private static Codec arrayCodec(Class<?> componentType) {
+        if (componentType == int.class)
+            return (writer, value) -> {
+                writer.beginArray();
+                for (int i : (int[]) value)
+                    writer.value(i);
+                writer.endArray();
+            };
+
+        if (componentType == long.class)
+            return (writer, value) -> {
+                writer.beginArray();
+                for (long l : (long[]) value)
+                    writer.value(l);
+                writer.endArray();
+            };
+
+        if (componentType == double.class)
+            return (writer, value) -> {
+                writer.beginArray();
+                for (double d : (double[]) value)
+                    writer.value(d);
+                writer.endArray();
+            };
+
+        if (componentType.isPrimitive()) // The rest are rare enough to box
+            return (writer, value) -> {
+                writer.beginArray();
+                for (int i = 0, length = Array.getLength(value); i < length; i++)
+                    write(writer, Array.get(value, i));
+                writer.endArray();
+            };
+
+        return (writer, value) -> {
+            checkDepth(writer);
+            writer.beginArray();
+            for (Object element : (Object[]) value)
+                write(writer, element);
+            writer.endArray();
+        };
+    }
+
+
+    /*
+     * Records and beans
+     */
+
+    static boolean isRecord(Class<?> type) {
+        try {
+            return IS_RECORD != null && (Boolean) IS_RECORD.invoke(type);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the accessor methods of the record's components, in the order they were declared
+     */
+    static Method[] recordAccessors(Class<?> type) {
+        try {
+            Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+            Method[] accessors = new Method[components.length];
+
+            for (int i = 0; i < components.length; i++)
+                accessors[i] = (Method) GET_ACCESSOR.invoke(components[i]);
+
+            return accessors;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot read the components of record " + type.getName(), e);
+        }
+    }
+
+    private static List<Property> recordProperties(Class<?> type) {
+        List<Property> properties = new ArrayList<>();
+
+        for (Method accessor : recordAccessors(type))
+            properties.add(new Property(accessor.getName(), getter(type, accessor)));
+
+        return properties;
+    }
+
+    /**
+     * @return the bean's public getX/isX methods, as properties sorted by name
+     */
+    private static List<Property> beanGetters(Class<?> type) {
+        List<Property> properties = new ArrayList<>();
+
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0 ||
+                    method.getDeclaringClass() == Object.class)
+                continue;
+
+            String name = method.getName();
+            Class<?> returnType = method.getReturnType();
+            String propertyName;
+
+            if (name.startsWith("get") && name.length() > 3 && returnType != void.class)
+                propertyName = decapitalize(name.substring(3));
+            else if (name.startsWith("is") && name.length() > 2 && (returnType == boolean.class ||
+                    returnType == Boolean.class))
+                propertyName = decapitalize(name.substring(2));
+            else
+                continue;
+
+            // A getX and an isX for the same property; keep the getter
+            if (properties.stream().anyMatch(property -> property.name.equals(propertyName))) {
+                if (name.startsWith("is"))
+                    continue;
+                properties.removeIf(property -> property.name.equals(propertyName));
+            }
+
+            properties.add(new Property(propertyName, getter(type, method)));
+        }
+
+        properties.sort(Comparator.comparing(property -> property.name));
+        return properties;
+    }
+
+    /**
+     * As java.beans.Introspector.decapitalize: "Name" becomes "name", but "URL" stays "URL"
+     */
+    static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1)))
+            return name;
+
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static MethodHandle getter(Class<?> type, Method method) {
+        return unreflect(type, method).asType(GETTER_TYPE);
+    }
+
+    /**
+     * @return a MethodHandle for a public method, even if the class declaring it isn't public
+     */
+    static MethodHandle unreflect(Class<?> type, Method method) {
+        try {
+            try {
+                return MethodHandles.publicLookup().unreflect(method);
+            } catch (IllegalAccessException e) {
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method);
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access " + method.getName() + " of " + type.getName(), e);
+        }
+    }
+
+    private static final class Property {
+        final String name;
+        final MethodHandle getter;
+
+        Property(String name, MethodHandle getter) {
+            this.name = name;
+            this.getter = getter;
+        }
+    }
+
+    private static Codec propertiesCodec(Class<?> type, List<Property> propertyList) {
+        Property[] properties = propertyList.toArray(new Property[0]);
+
+        return (writer, value) -> {
+            checkDepth(writer);
+            writer.beginObject();
+
+            for (Property property : properties) {
+                Object propertyValue;
+
+                try {
+                    propertyValue = property.getter.invokeExact(value);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalArgumentException("Reading " + property.name + " of " + type.getName() +
+                            " failed", t);
+                }
+
+                writer.name(property.name);
+                write(writer, propertyValue);
+            }
+
+            writer.endObject();
+        };
+    }
+}
@@ -23,12 +23,26 @@ public class Options {
     boolean plusAtFront; // If a number can start with a + sign
     boolean singleQuoteString; // If a string can be enclosed with single-quotes
     boolean commaAtEnd; // If an array/object can have a single comma at the end
+    StringPool keyPool; // Pool shared between parses for object keys (if null, each parse uses its own)
+    StringPool valuePool; // Pool for deduplicating short string values (if null, values are not deduplicated)
+    boolean stringSlices; // If long strings are kept as slices of the JSON string instead of being copied
+    int stringSliceMinLength; // The shortest string that will be kept as a slice
+    boolean lazyNumbers; // If numbers are kept as text and only converted when read
+    boolean deduplicateSubtrees; // If identical arrays/objects are shared as a single frozen instance
+    JsonSchema schema; // Schema that documents are validated against while they are parsed (if null, they aren't)
 
     Options() {
         leadingZeroes = false;
         plusAtFront = false;
         singleQuoteString = false;
         commaAtEnd = false;
+        keyPool = null;
+        valuePool = null;
+        stringSlices = false;
+        stringSliceMinLength = OptionsBuilder.DEFAULT_STRING_SLICE_MIN_LENGTH;
+        lazyNumbers = false;
+        deduplicateSubtrees = false;
+        schema = null;
     }
 
     /**
@@ -86,7 +100,10 @@ public class Options {
     @Override
     public String toString() {
         return "|leadingZeroes: " + leadingZeroes + "|plusAtFront: " + plusAtFront + "|singleQuoteString: " +
-                singleQuoteString + "|commaAtEnd: " + commaAtEnd + "|";
+                singleQuoteString + "|commaAtEnd: " + commaAtEnd + "|keyPool: " + keyPool + "|valuePool: " + valuePool +
+                "|stringSlices: " + stringSlices + "|stringSliceMinLength: " + stringSliceMinLength +
+                "|lazyNumbers: " + lazyNumbers + "|deduplicateSubtrees: " + deduplicateSubtrees +
+                "|schema: " + schema + "|";
     }
 
 
@@ -98,6 +115,18 @@ public class Options {
         private boolean plusAtFront;
         private boolean singleQuoteString;
         private boolean commaAtEnd;
+        private StringPool keyPool;
+        private StringPool valuePool;
+        private boolean stringSlices;
+        private int stringSliceMinLength = DEFAULT_STRING_SLICE_MIN_LENGTH;
+        private boolean lazyNumbers;
+        private boolean deduplicateSubtrees;
+        private JsonSchema schema;
+
+        /**
+         * The shortest string that {@link #stringSlices()} keeps as a slice
+         */
+        public static final int DEFAULT_STRING_SLICE_MIN_LENGTH = 256;
 
         private OptionsBuilder() {
         }
@@ -142,12 +171,113 @@ public class Options {
             return this;
         }
 
+        /**
+         * Sets the pool that object keys are interned into. By default, each parse interns its keys into its own small
+         *  pool; sharing one between parses lets documents with the same keys reuse the same Strings, and makes its
+         *  hit rate available
+         * @param pool the StringPool to intern keys into
+         * @return a reference to the builder object
+         */
+        public OptionsBuilder keyPool(StringPool pool) {
+            keyPool = pool;
+            return this;
+        }
+
+        /**
+         * Enables deduplicating string values (up to the pool's maximum length) through a given pool, so that repeated
+         *  values such as "active" or "error" share a single String
+         * @param pool the StringPool to deduplicate string values with
+         * @return a reference to the builder object
+         */
+        public OptionsBuilder deduplicateStrings(StringPool pool) {
+            valuePool = pool;
+            return this;
+        }
+
+        /**
+         * Enables keeping string values of at least {@value #DEFAULT_STRING_SLICE_MIN_LENGTH} characters as slices
+         *  of the JSON string (see {@link #stringSlices(int)})
+         * @return a reference to the builder object
+         */
+        public OptionsBuilder stringSlices() {
+            return stringSlices(DEFAULT_STRING_SLICE_MIN_LENGTH);
+        }
+
+        /**
+         * Enables keeping string values as slices of the JSON string instead of copying them, as long as they are at
+         *  least a given length and contain no escapes, double-quotes or control characters. A slice is only copied
+         *  into a String when {@link JsonValue#getAsString()} is called; serializing it writes the characters straight
+         *  from the JSON string.
+         * <p>
+         * <b>Note:</b> a single slice keeps the entire JSON string it was parsed from in memory, for as long as the
+         *  JsonValue holding it is reachable. Only enable this if the parsed values don't outlive the JSON string by
+         *  much (for example, when parsing a request and serializing parts of it back out)
+         * @param minLength the shortest string to keep as a slice
+         * @return a reference to the builder object
+         */
+        public OptionsBuilder stringSlices(int minLength) {
+            stringSlices = true;
+            stringSliceMinLength = minLength;
+            return this;
+        }
+
+        /**
+         * Enables keeping numbers as their text in the JSON string, only converting them when they are read. Numbers
+         *  are returned as {@link JsonNumber} objects, which can also be read as exact BigInteger/BigDecimal values and
+         *  are written back out unchanged by toJsonString.
+         * <p>
+         * <b>Note:</b> like {@link #stringSlices(int)}, a JsonNumber keeps the entire JSON string it was parsed from
+         *  in memory
+         * @return a reference to the builder object
+         */
+        public OptionsBuilder lazyNumbers() {
+            lazyNumbers = true;
+            return this;
+        }
+
+        /**
+         * Enables sharing identical arrays/objects: each array/object that is identical to one already parsed (the
+         *  same values, and keys in the same order) is replaced with that one, so that documents with many repeated
+         *  sub-objects take up far less memory. Shared arrays/objects must not be modified, so every array/object in
+         *  the result is frozen (see {@link JsonList#freeze()} and {@link JsonMap#freeze()}).
+         * <p>
+         * Frozen arrays/objects cache their hash codes, so comparing shared trees is also faster
+         * @return a reference to the builder object
+         */
+        public OptionsBuilder deduplicateSubtrees() {
+            deduplicateSubtrees = true;
+            return this;
+        }
+
+        /**
+         * Validates documents against a schema while they are parsed: each value is checked as soon as it has been
+         *  read (arrays/objects as soon as they start, and again once they are complete), and parsing stops at the
+         *  first value that doesn't match, with a {@link com.LeggoMahEggo.esson.exceptions.SchemaViolationException}.
+         *  The schema is compiled once, and can be shared between parses and threads.
+         * <p>
+         * Applies to {@link Parser#parseFromString(String, Options)}, {@link Parser#parseFromFile(java.io.File, Options)}
+         *  and {@link Parser#parseEditable(String, Options)}
+         * @param schema the compiled schema
+         * @return a reference to the builder object
+         */
+        public OptionsBuilder schema(JsonSchema schema) {
+            this.schema = schema;
+            return this;
+        }
+
         public Options build() {
             Options options = new Options();
             options.leadingZeroes = leadingZeroes;
             options.plusAtFront = plusAtFront;
             options.singleQuoteString = singleQuoteString;
             options.commaAtEnd = commaAtEnd;
+            options.keyPool = keyPool;
+            options.valuePool = valuePool;
+            options.stringSlices = stringSlices;
+            options.stringSliceMinLength = stringSliceMinLength;
+            options.lazyNumbers = lazyNumbers;
+            options.deduplicateSubtrees = deduplicateSubtrees;
+            options.schema = schema;
             return options;
         }
     }
@@ -0,0 +1,314 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Where serialized JSON is written to. Output is buffered internally (except when writing to a StringBuilder), and
+ *  pushed to the target by {@link #flush()}
+ */
+abstract class OutputSink {
+    static final int BUFFER_SIZE = 8192;
+
+    final char[] scratch = new char[32]; // For formatting numbers without allocating
+
+    /**
+     * Creates a sink that appends characters to an Appendable (such as a StringBuilder or Writer)
+     * @param out the Appendable to write to
+     * @return an OutputSink
+     */
+    static OutputSink of(Appendable out) {
+        if (out instanceof StringBuilder)
+            return new StringBuilderSink((StringBuilder) out);
+
+        return new AppendableSink(out);
+    }
+
+    /**
+     * Creates a sink that encodes characters as UTF-8 bytes and writes them to an OutputStream
+     * @param out the OutputStream to write to
+     * @return an OutputSink
+     */
+    static OutputSink of(OutputStream out) {
+        return new Utf8Sink(out, null);
+    }
+
+    /**
+     * Creates a sink that encodes characters as UTF-8 bytes and puts them in a ByteBuffer
+     * @param buffer the ByteBuffer to write to
+     * @return an OutputSink
+     */
+    static OutputSink of(ByteBuffer buffer) {
+        return new Utf8Sink(null, buffer);
+    }
+
+    abstract void write(char c) throws IOException;
+
+    abstract void write(CharSequence chars, int start, int end) throws IOException;
+
+    void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+    void write(char[] chars, int start, int end) throws IOException {
+        for (int i = start; i < end; i++)
+            write(chars[i]);
+    }
+
+    void write(Fragment fragment) throws IOException {
+        write(fragment.text);
+    }
+
+    /**
+     * Pushes any buffered output to the target (without flushing the target itself)
+     */
+    abstract void flush() throws IOException;
+
+    /**
+     * A piece of output that is written often, kept both as characters and encoded as UTF-8
+     */
+    static final class Fragment {
+        final String text;
+        final byte[] utf8;
+
+        Fragment(String text) {
+            this.text = text;
+            this.utf8 = text.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+
+    /*
+     * Implementations
+     */
+
+    private static final class StringBuilderSink extends OutputSink {
+        private final StringBuilder builder;
+
+        StringBuilderSink(StringBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        void write(char c) {
+            builder.append(c);
+        }
+
+        @Override
+        void write(CharSequence chars, int start, int end) {
+            builder.append(chars, start, end);
+        }
+
+        @Override
+        void write(char[] chars, int start, int end) {
+            builder.append(chars, start, end - start);
+        }
+
+        @Override
+        void flush() {
+        }
+    }
+
+    private static final class AppendableSink extends OutputSink {
+        private final Appendable out;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int length;
+
+        AppendableSink(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        void write(char c) throws IOException {
+            if (length == buffer.length)
+                flush();
+
+            buffer[length++] = c;
+        }
+
+        @Override
+        void write(CharSequence chars, int start, int end) throws IOException {
+            while (start < end) {
+                if (length == buffer.length)
+                    flush();
+
+                int count = Math.min(end - start, buffer.length - length);
+
+                if (chars instanceof String) {
+                    ((String) chars).getChars(start, start + count, buffer, length);
+                } else {
+                    for (int i = 0; i < count; i++)
+                        buffer[length + i] = chars.charAt(start + i);
+                }
+
+                length += count;
+                start += count;
+            }
+        }
+
+        @Override
+        void write(char[] chars, int start, int end) throws IOException {
+            if (length + end - start > buffer.length)
+                flush();
+
+            if (end - start > buffer.length) { // Too large to buffer
+                out.append(CharBuffer.wrap(chars, start, end - start));
+                return;
+            }
+
+            System.arraycopy(chars, start, buffer, length, end - start);
+            length += end - start;
+        }
+
+        @Override
+        void flush() throws IOException {
+            if (length == 0)
+                return;
+
+            if (out instanceof Writer)
+                ((Writer) out).write(buffer, 0, length);
+            else
+                out.append(CharBuffer.wrap(buffer, 0, length));
+
+            length = 0;
+        }
+    }
+
+    /**
+     * Encodes characters as UTF-8 into a buffer, which is written out to an OutputStream or ByteBuffer
+     */
+    private static final class Utf8Sink extends OutputSink {
+        private final OutputStream stream;
+        private final ByteBuffer target;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int length;
+        private char highSurrogate; // The first half of a surrogate pair, waiting for the second
+
+        Utf8Sink(OutputStream stream, ByteBuffer target) {
+            this.stream = stream;
+            this.target = target;
+        }
+
+        @Override
+        void write(char c) throws IOException {
+            // Leave room for the longest encoding
+            if (length > buffer.length - 4)
+                drain();
+
+            if (c < 0x80 && highSurrogate == 0) {
+                buffer[length++] = (byte) c;
+                return;
+            }
+
+            encode(c);
+        }
+
+        @Override
+        void write(CharSequence chars, int start, int end) throws IOException {
+            for (int i = start; i < end; i++) {
+                if (length > buffer.length - 4)
+                    drain();
+
+                char c = chars.charAt(i);
+
+                if (c < 0x80 && highSurrogate == 0)
+                    buffer[length++] = (byte) c;
+                else
+                    encode(c);
+            }
+        }
+
+        @Override
+        void write(Fragment fragment) throws IOException {
+            if (highSurrogate != 0 || fragment.utf8.length > buffer.length) {
+                write(fragment.text);
+                return;
+            }
+
+            if (length + fragment.utf8.length > buffer.length)
+                drain();
+
+            System.arraycopy(fragment.utf8, 0, buffer, length, fragment.utf8.length);
+            length += fragment.utf8.length;
+        }
+
+        private void encode(char c) {
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+
+                if (Character.isLowSurrogate(c)) {
+                    int codePoint = Character.toCodePoint(high, c);
+                    buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+                    return;
+                }
+
+                buffer[length++] = '?'; // Unpaired surrogate, replaced as String.getBytes does
+            }
+
+            if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                buffer[length++] = '?';
+            }
+
+            drain();
+        }
+
+        private void drain() throws IOException {
+            if (length == 0)
+                return;
+
+            if (stream != null) {
+                stream.write(buffer, 0, length);
+            } else {
+                if (target.remaining() < length)
+                    throw new BufferOverflowException();
+
+                target.put(buffer, 0, length);
+            }
+
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A {@link Serializer} that splits large arrays/objects into chunks of elements, serializes the chunks concurrently on
+ *  a ForkJoinPool, and writes them out in order. Arrays/objects with fewer than {@link #THRESHOLD} elements are
+ *  serialized on the current thread (although large arrays/objects inside them are still split)
+ */
+final class ParallelSerializer extends Serializer {
+    static final int THRESHOLD = JsonVisitor.PARALLEL_THRESHOLD;
+    static final int CHUNK_SIZE = 512;
+
+    private final ForkJoinPool pool;
+
+    ParallelSerializer(OutputSink out, boolean compact, ForkJoinPool pool) {
+        super(out, compact);
+        this.pool = pool;
+    }
+
+    /**
+     * Writes a container out to a sink using a ForkJoinPool, and flushes the sink
+     * @param container the JsonContainer to write
+     * @param out the OutputSink to write to
+     * @param compact whether to leave out the spaces after commas and colons
+     * @param pool the ForkJoinPool to serialize chunks on
+     */
+    static void write(JsonContainer container, OutputSink out, boolean compact, ForkJoinPool pool)
+            throws IOException {
+        new ParallelSerializer(out, compact, pool).writeContainer(container);
+        out.flush();
+    }
+
+    @Override
+    Serializer withSink(OutputSink out) {
+        return new ParallelSerializer(out, compact, pool);
+    }
+
+    @Override
+    void writeContents(JsonContainer container) throws IOException {
+        if (container instanceof JsonList && ((JsonList) container).size() >= THRESHOLD) {
+            out.write('[');
+            writeChunks(((JsonList) container).toArray(), false);
+            out.write(']');
+        }
+
+        else if (container instanceof JsonMap && ((JsonMap) container).size() >= THRESHOLD) {
+            out.write('{');
+            writeChunks(((JsonMap) container).entrySet().toArray(), true);
+            out.write('}');
+        }
+
+        else
+            super.writeContents(container);
+    }
+
+    /**
+     * Serializes the elements in chunks, and writes each chunk out as soon as it and the ones before it are done. Only
+     *  a few chunks per thread are pending at a time, so that the whole output isn't held in memory at once
+     */
+    private void writeChunks(Object[] elements, boolean isMap) throws IOException {
+        int window = pool.getParallelism() * 2;
+        ArrayDeque<ForkJoinTask<StringBuilder>> pending = new ArrayDeque<>(window);
+        int written = 0;
+
+        for (int from = 0; from < elements.length; from += CHUNK_SIZE) {
+            int to = Math.min(from + CHUNK_SIZE, elements.length);
+            pending.add(pool.submit(new ChunkTask(elements, from, to, isMap)));
+
+            // Write out the oldest chunk, or all that are left once everything has been submitted
+            while (pending.size() == window || (to == elements.length && !pending.isEmpty())) {
+                if (written++ > 0)
+                    out.write(elementSeparator);
+
+                StringBuilder chunk = pending.remove().join();
+                out.write(chunk, 0, chunk.length());
+            }
+        }
+    }
+
+    private final class ChunkTask extends RecursiveTask<StringBuilder> {
+        private final Object[] elements;
+        private final int from;
+        private final int to;
+        private final boolean isMap;
+
+        ChunkTask(Object[] elements, int from, int to, boolean isMap) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.isMap = isMap;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected StringBuilder compute() {
+            StringBuilder builder = new StringBuilder();
+            Serializer serializer = withSink(OutputSink.of(builder));
+
+            try {
+                for (int i = from; i < to; i++) {
+                    if (i > from)
+                        builder.append(elementSeparator);
+
+                    if (isMap) {
+                        Entry<String, JsonValue> pair = (Entry<String, JsonValue>) elements[i];
+                        serializer.writeString(pair.getKey());
+                        builder.append(keySeparator);
+                        serializer.writeValue(pair.getValue());
+                    } else {
+                        serializer.writeValue((JsonValue) elements[i]);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // Can't happen; StringBuilders don't throw
+            }
+
+            if (serializer.wroteUntracked)
+                wroteUntracked = true; // Only read once the chunks have been joined
+            return builder;
+        }
+    }
+}
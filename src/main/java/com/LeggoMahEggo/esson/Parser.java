@@ -21,6 +21,12 @@ import com.LeggoMahEggo.esson.exceptions.JsonParserException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -57,7 +63,7 @@ public class Parser {
      */
     public static JsonValue parseFromString(String json, Options options) throws JsonParserException {
         try {
-            return parseFromString(new Cursor(json, options));
+            return parseFromString(Cursor.validating(json, options));
 
         } catch (Exception e) {
             if (e instanceof JsonParserException)
@@ -67,6 +73,92 @@ public class Parser {
         }
     }
 
+    /**
+     * Parses a JSON string straight into an object of the given class, without building JsonMaps/JsonLists first.
+     *  Objects can be bound to records (through their canonical constructor), to classes with a constructor without
+     *  arguments (through their public setX methods), and to Maps; arrays can be bound to Lists, Sets and arrays.
+     *  Generic types of fields (eg {@code List<Point>}) are followed, and JsonValue/JsonMap/JsonList fields are
+     *  parsed as usual. Keys without a matching property are skipped, and properties without a key are left unset.
+     *  How each class is bound is worked out the first time it is used, and then reused
+     * @param json the string to parse
+     * @param type the class to bind the JSON to
+     * @param options the Options object
+     * @param <T> the type of the object returned
+     * @return the bound object (or null, if the JSON was null)
+     * @throws JsonParserException if parsing fails, or the JSON doesn't fit the class (eg a string for an int
+     *  property)
+     * @throws IllegalArgumentException if JSON can't be bound to the class (eg an interface, or a class without a
+     *  constructor without arguments)
+     */
+    public static <T> T parseInto(String json, Class<T> type, Options options) throws JsonParserException {
+        try {
+            return ObjectBinder.read(new Cursor(json, options), type);
+
+        } catch (Exception e) {
+            if (e instanceof JsonParserException || e instanceof IllegalArgumentException)
+                throw e;
+
+            throw new JsonParserException("Encountered unexpected error while parsing: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses a JSON string according to EMCA-404 standards straight into an object of the given class (see
+     *  {@link #parseInto(String, Class, Options)})
+     * @param json the string to parse
+     * @param type the class to bind the JSON to
+     * @param <T> the type of the object returned
+     * @return the bound object (or null, if the JSON was null)
+     * @throws JsonParserException if parsing fails, or the JSON doesn't fit the class
+     * @throws IllegalArgumentException if JSON can't be bound to the class
+     */
+    public static <T> T parseInto(String json, Class<T> type) throws JsonParserException {
+        return parseInto(json, type, new Options());
+    }
+
+    /**
+     * Parses a JSON string according to the options set, keeping the string and the position of each array/object in
+     *  it, so that the document can be updated cheaply after the string is edited (see
+     *  {@link #reparse(EditableJson, int, int, String)})
+     * @param json the JSON string to parse
+     * @param options the options for the parser
+     * @return the parsed document, with its text
+     * @throws JsonParserException if parsing fails, or some other unexpected error occurs while parsing
+     */
+    public static EditableJson parseEditable(String json, Options options) throws JsonParserException {
+        return EditableJson.parse(json, options);
+    }
+
+    /**
+     * Parses a JSON string according to EMCA-404 standards, keeping the string and the position of each array/object
+     *  in it (see {@link #parseEditable(String, Options)})
+     * @param json the JSON string to parse
+     * @return the parsed document, with its text
+     * @throws JsonParserException if parsing fails, or some other unexpected error occurs while parsing
+     */
+    public static EditableJson parseEditable(String json) throws JsonParserException {
+        return EditableJson.parse(json, new Options());
+    }
+
+    /**
+     * Updates a document after an edit to its text. Only the innermost array/object enclosing the edit is parsed
+     *  again, and its contents are replaced in place, unless the edit changed the structure around it (in which case
+     *  the whole text is parsed again). The cost of a small edit is therefore proportional to the size of the
+     *  array/object it is in, rather than to the size of the document
+     * @param previousResult the document to update, which is changed and returned
+     * @param editOffset the index in the document's text where the edit was made
+     * @param removedLength the number of characters removed at editOffset
+     * @param insertedText the text inserted at editOffset
+     * @return previousResult, updated to the edited text
+     * @throws JsonParserException if the edited text is not valid JSON (previousResult is then left unchanged)
+     * @throws IndexOutOfBoundsException if the edit lies outside of the document's text
+     */
+    public static EditableJson reparse(EditableJson previousResult, int editOffset, int removedLength,
+                                       String insertedText) throws JsonParserException {
+        previousResult.edit(editOffset, removedLength, insertedText);
+        return previousResult;
+    }
+
     /**
      * Parses a JSON from a file according to EMCA-404 standards
      * @param file the file to load
@@ -99,16 +191,151 @@ public class Parser {
     }
 
 
+    /**
+     * Reads the elements of a JSON array one at a time, according to EMCA-404 standards. Only the elements that pass
+     *  the stream's filters are parsed into JsonValues (see {@link JsonArrayStream})
+     * @param json the JSON string, which must be an array
+     * @return a JsonArrayStream positioned before the array's first element
+     * @throws JsonParserException if the JSON string isn't an array
+     */
+    public static JsonArrayStream streamArray(String json) throws JsonParserException {
+        return streamArray(json, new Options());
+    }
+
+    /**
+     * Reads the elements of a JSON array one at a time, with options to (potentially) ignore EMCA-404 standards. Only
+     *  the elements that pass the stream's filters are parsed into JsonValues (see {@link JsonArrayStream})
+     * @param json the JSON string, which must be an array
+     * @param options the Options object
+     * @return a JsonArrayStream positioned before the array's first element
+     * @throws JsonParserException if the JSON string isn't an array
+     */
+    public static JsonArrayStream streamArray(String json, Options options) throws JsonParserException {
+        return new JsonArrayStream(new StringReader(json), options);
+    }
+
+    /**
+     * Reads the elements of a JSON array in a (UTF-8) file one at a time, according to EMCA-404 standards. The file is
+     *  read a window at a time as the stream is read, and only the elements that pass the stream's filters are parsed
+     *  into JsonValues (see {@link JsonArrayStream})
+     * @param file the file to read
+     * @return a JsonArrayStream positioned before the array's first element
+     * @throws JsonParserException if the file doesn't hold an array
+     */
+    public static JsonArrayStream streamArray(File file) throws JsonParserException {
+        return streamArray(file, new Options());
+    }
+
+    /**
+     * Reads the elements of a JSON array in a (UTF-8) file one at a time, with options to (potentially) ignore
+     *  EMCA-404 standards. The file is read a window at a time as the stream is read, and only the elements that pass
+     *  the stream's filters are parsed into JsonValues (see {@link JsonArrayStream})
+     * @param file the file to read
+     * @param options the Options object
+     * @return a JsonArrayStream positioned before the array's first element
+     * @throws JsonParserException if the file doesn't hold an array
+     */
+    public static JsonArrayStream streamArray(File file, Options options) throws JsonParserException {
+        Reader reader;
+
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return new JsonArrayStream(reader, options);
+    }
+
+    /**
+     * Reads the elements of a JSON array from a Reader one at a time, according to EMCA-404 standards. The reader is
+     *  read a window at a time as the stream is read (so it needn't be buffered), and is closed once the stream has
+     *  been read. Only the elements that pass the stream's filters are parsed into JsonValues (see
+     *  {@link JsonArrayStream})
+     * @param reader the Reader to read from
+     * @return a JsonArrayStream positioned before the array's first element
+     * @throws JsonParserException if the reader doesn't hold an array
+     */
+    public static JsonArrayStream streamArray(Reader reader) throws JsonParserException {
+        return streamArray(reader, new Options());
+    }
+
+    /**
+     * Reads the elements of a JSON array from a Reader one at a time, with options to (potentially) ignore EMCA-404
+     *  standards. The reader is read a window at a time as the stream is read (so it needn't be buffered), and is
+     *  closed once the stream has been read. Only the elements that pass the stream's filters are parsed into
+     *  JsonValues (see {@link JsonArrayStream})
+     * @param reader the Reader to read from
+     * @param options the Options object
+     * @return a JsonArrayStream positioned before the array's first element
+     * @throws JsonParserException if the reader doesn't hold an array
+     */
+    public static JsonArrayStream streamArray(Reader reader, Options options) throws JsonParserException {
+        return new JsonArrayStream(reader, options);
+    }
+
+
+    /**
+     * Reads a value written with {@link JsonValue#writeBinary(OutputStream)}. The stream is read to its end, but not
+     *  closed
+     * @param in the InputStream to read from
+     * @return the decoded JsonValue
+     * @throws JsonParserException if the data is not a valid binary document, or has extra data after the document
+     * @throws IOException if the stream throws one
+     */
+    public static JsonValue parseBinary(InputStream in) throws JsonParserException, IOException {
+        byte[] data = in.readAllBytes();
+        int[] end = new int[1];
+        JsonValue value = BinaryCodec.read(data, 0, data.length, end);
+
+        if (end[0] != data.length)
+            throw new JsonParserException("Found unexpected data after the end of the binary document (at byte " +
+                    end[0] + ")");
+
+        return value;
+    }
+
+    /**
+     * Reads a value written with {@link JsonValue#writeBinary(OutputStream)}, starting at the buffer's position. The
+     *  buffer's position is then moved to the end of the document, so that several documents can be read one after
+     *  another
+     * @param buffer the ByteBuffer to read from
+     * @return the decoded JsonValue
+     * @throws JsonParserException if the data is not a valid binary document
+     */
+    public static JsonValue parseBinary(ByteBuffer buffer) throws JsonParserException {
+        int[] end = new int[1];
+
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            JsonValue value = BinaryCodec.read(buffer.array(), offset + buffer.position(), offset + buffer.limit(), end);
+            buffer.position(end[0] - offset);
+            return value;
+        }
+
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        JsonValue value = BinaryCodec.read(data, 0, data.length, end);
+        buffer.position(buffer.position() + end[0]);
+        return value;
+    }
+
+
     /*
      * Parsing magic
      */
 
-    private static JsonValue parseFromString(Cursor cursor) {
+    static JsonValue parseFromString(Cursor cursor) {
         cursor.moveToFirstNonWhitespace();
         JsonValue value = null;
 
         if (cursor.currentChar() == '[') {
+            int start = cursor.position();
             JsonList jl = new JsonList();
+            SchemaValidator validator = cursor.validator;
+            if (validator != null)
+                validator.beginArray();
+
             cursor.moveCursorFoward();
             cursor.moveToFirstNonWhitespace();
 
@@ -125,7 +352,14 @@ public class Parser {
                 }
 
                 // Get value
-                jl.add(collectValue(cursor));
+                if (validator == null)
+                    jl.add(collectValue(cursor));
+                else {
+                    validator.beginElement(jl.size());
+                    JsonValue element = collectValue(cursor);
+                    validator.endValue(element);
+                    jl.add(element);
+                }
 
                 // Continue if there are more elements in the array
                 try {
@@ -154,12 +388,24 @@ public class Parser {
                 break; // Finish with array
             }
 
+            if (validator != null)
+                validator.endArray(jl);
+
             cursor.decreaseDepth();
-            value = JsonValue.valueOf(jl);
+            Object container = cursor.share(jl);
+            if (cursor.spans != null)
+                cursor.spans.record(container, start, cursor.endOfPreviousToken());
+
+            value = JsonValue.valueOf(container);
 
         // Add object data
         } else if (cursor.currentChar() == '{') {
+            int start = cursor.position();
             JsonMap object = new JsonMap();
+            SchemaValidator validator = cursor.validator;
+            if (validator != null)
+                validator.beginObject();
+
             cursor.moveCursorFoward(); // Move cursor after {
             cursor.moveToFirstNonWhitespace(); // Stop at first nonwhitespace character
 
@@ -194,7 +440,7 @@ public class Parser {
                                 "the object's key" + ", found a '" + currentChar + "' instead" + cursor.locationErrMsgHelper());
                 }
 
-                String key = cursor.collectString(currentChar);
+                String key = cursor.collectKey(currentChar);
 
                 // Move to value
                 cursor.moveToFirstNonWhitespace();
@@ -208,7 +454,14 @@ public class Parser {
 
                 // Get value
                 cursor.moveToFirstNonWhitespace();
-                object.put(key, collectValue(cursor));
+                if (validator == null)
+                    object.put(key, collectValue(cursor));
+                else {
+                    validator.beginProperty(key, object.size());
+                    JsonValue propertyValue = collectValue(cursor);
+                    validator.endValue(propertyValue);
+                    object.put(key, propertyValue);
+                }
 
                 // Move to next key/value pair, or finish the object
                 cursor.moveToFirstNonWhitespace(); // Should be ',' or '}'
@@ -230,12 +483,22 @@ public class Parser {
                 break;
             }
 
+            if (validator != null)
+                validator.endObject(object);
+
             cursor.decreaseDepth();
-            value = JsonValue.valueOf(object);
+            Object container = cursor.share(object);
+            if (cursor.spans != null)
+                cursor.spans.record(container, start, cursor.endOfPreviousToken());
+
+            value = JsonValue.valueOf(container);
 
         // EMCA-404 allows for top-level values
         } else if (cursor.getDepth() == 0) {
             value = collectValue(cursor);
+            if (cursor.validator != null)
+                cursor.validator.checkScalar(value);
+
             cursor.decreaseDepth();
         }
 
@@ -268,7 +531,7 @@ public class Parser {
      * @return a JsonValue with the collected value
      * @throws IllegalCharacterException if the character at the cursor's current position is not supported for collection
      */
-    private static JsonValue collectValue(Cursor cursor) throws IllegalCharacterException {
+    static JsonValue collectValue(Cursor cursor) throws IllegalCharacterException {
         char currentChar = cursor.currentChar();
 
         if (currentChar == '\'' && !cursor.options.singleQuoteString)
@@ -287,7 +550,7 @@ public class Parser {
         // Done this way to support Java 11+
         switch (currentChar) {
             case '\'':
-            case '"': return JsonValue.valueOf(cursor.collectString(currentChar));
+            case '"': return JsonValue.wrap(cursor.collectStringValue(currentChar));
             case 't':
             case 'f': return JsonValue.valueOf(cursor.collectBoolean());
             case 'n': return JsonValue.valueOf(cursor.collectNull());
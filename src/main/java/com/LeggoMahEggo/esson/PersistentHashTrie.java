@@ -0,0 +1,303 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+/**
+ * An immutable hash array mapped trie (HAMT) from String keys to values. {@link #with(String, Object)} and
+ *  {@link #without(String)} return new tries that share every node except those on the path to the changed key, so
+ *  both take O(log32 n) time and memory. Keys are not kept in any particular order
+ * @param <V> the type of the values
+ */
+final class PersistentHashTrie<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object NOT_FOUND = new Object();
+
+    private static final PersistentHashTrie<?> EMPTY = new PersistentHashTrie<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentHashTrie<V> empty() {
+        return (PersistentHashTrie<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value mapped to a key
+     * @param key the key to look up
+     * @return the value, or null if the key is not in the trie
+     */
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        if (root == null || !(key instanceof String))
+            return null;
+
+        Object value = root.find(0, key.hashCode(), (String) key);
+        return (value == NOT_FOUND) ? null : (V) value;
+    }
+
+    /**
+     * Returns a trie with a key mapped to a value
+     * @param key the key
+     * @param value the value
+     * @return a new trie (or this one, if the key is already mapped to the value)
+     */
+    PersistentHashTrie<V> with(String key, V value) {
+        boolean[] addedKey = new boolean[1];
+        Node start = (root == null) ? BitmapNode.EMPTY : root;
+        Node newRoot = start.with(0, key.hashCode(), key, value, addedKey);
+
+        if (newRoot == root)
+            return this;
+
+        return new PersistentHashTrie<>(newRoot, addedKey[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a trie without a key
+     * @param key the key to remove
+     * @return a new trie (or this one, if the key is not in the trie)
+     */
+    PersistentHashTrie<V> without(String key) {
+        if (root == null)
+            return this;
+
+        Node newRoot = root.without(0, key.hashCode(), key);
+
+        if (newRoot == root)
+            return this;
+
+        return new PersistentHashTrie<>(newRoot, size - 1);
+    }
+
+
+    /*
+     * Nodes
+     */
+
+    private abstract static class Node {
+        abstract Object find(int shift, int hash, String key);
+
+        abstract Node with(int shift, int hash, String key, Object value, boolean[] addedKey);
+
+        abstract Node without(int shift, int hash, String key); // Returns null if the node becomes empty
+    }
+
+    /**
+     * A node holding up to 32 children, one for each value of 5 bits of the hash. Children are stored in pairs in a
+     *  compact array: a key and its value, or null and a sub-node
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, String key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+
+            if ((bitmap & bit) == 0)
+                return NOT_FOUND;
+
+            int i = indexOf(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+
+            if (k == null)
+                return ((Node) v).find(shift + BITS, hash, key);
+
+            return key.equals(k) ? v : NOT_FOUND;
+        }
+
+        @Override
+        Node with(int shift, int hash, String key, Object value, boolean[] addedKey) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = indexOf(bit);
+
+            // New child
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * i);
+                newArray[2 * i] = key;
+                newArray[2 * i + 1] = value;
+                System.arraycopy(array, 2 * i, newArray, 2 * i + 2, array.length - 2 * i);
+                addedKey[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+
+            // Sub-node
+            if (k == null) {
+                Node child = ((Node) v).with(shift + BITS, hash, key, value, addedKey);
+                return (child == v) ? this : copyWith(2 * i + 1, child);
+            }
+
+            // Same key
+            if (key.equals(k))
+                return (v == value) ? this : copyWith(2 * i + 1, value);
+
+            // Different key with the same 5 bits -- push both down into a sub-node
+            addedKey[0] = true;
+            Object[] newArray = array.clone();
+            newArray[2 * i] = null;
+            newArray[2 * i + 1] = createNode(shift + BITS, (String) k, v, hash, key, value);
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @Override
+        Node without(int shift, int hash, String key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+
+            if ((bitmap & bit) == 0)
+                return this;
+
+            int i = indexOf(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+
+            if (k == null) {
+                Node child = ((Node) v).without(shift + BITS, hash, key);
+
+                if (child == v)
+                    return this;
+
+                if (child != null)
+                    return copyWith(2 * i + 1, child);
+
+            } else if (!key.equals(k)) {
+                return this;
+            }
+
+            // Remove the child
+            if (bitmap == bit)
+                return null;
+
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, 2 * i);
+            System.arraycopy(array, 2 * i + 2, newArray, 2 * i, newArray.length - 2 * i);
+            return new BitmapNode(bitmap ^ bit, newArray);
+        }
+
+        private BitmapNode copyWith(int index, Object element) {
+            Object[] newArray = array.clone();
+            newArray[index] = element;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private static Node createNode(int shift, String key1, Object value1, int hash2, String key2, Object value2) {
+            int hash1 = key1.hashCode();
+
+            if (hash1 == hash2)
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+
+            boolean[] addedKey = new boolean[1];
+            return EMPTY.with(shift, hash1, key1, value1, addedKey).with(shift, hash2, key2, value2, addedKey);
+        }
+    }
+
+    /**
+     * A node holding keys whose hashes are all the same, as alternating keys and values
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(String key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i]))
+                    return i;
+            }
+
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, String key) {
+            int i = indexOf(key);
+            return (i < 0) ? NOT_FOUND : array[i + 1];
+        }
+
+        @Override
+        Node with(int shift, int hash, String key, Object value, boolean[] addedKey) {
+            // A different hash -- nest this node in a bitmap node, and add the key to that
+            if (hash != this.hash) {
+                BitmapNode parent = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[] {null, this});
+                return parent.with(shift, hash, key, value, addedKey);
+            }
+
+            int i = indexOf(key);
+
+            if (i >= 0) {
+                if (array[i + 1] == value)
+                    return this;
+
+                Object[] newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            addedKey[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node without(int shift, int hash, String key) {
+            int i = indexOf(key);
+
+            if (i < 0)
+                return this;
+
+            if (array.length == 2)
+                return null;
+
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            return new CollisionNode(hash, newArray);
+        }
+    }
+}
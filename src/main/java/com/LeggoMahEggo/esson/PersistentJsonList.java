@@ -0,0 +1,154 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+/**
+ * An immutable {@link JsonList}, returned by {@link JsonList#freeze()}. Instead of being modified in place, a new
+ *  version of the list is created by {@link #with(int, JsonValue)} or {@link #append(JsonValue)}, which shares all the
+ *  unchanged parts of the old one (so an update takes O(log n) time rather than a full copy). As no version can ever
+ *  change, a PersistentJsonList can be read from any number of threads without locking.
+ * <p>
+ * Every array/object inside a PersistentJsonList is frozen as well. The methods inherited from {@link java.util.List}
+ *  that would modify the list (such as add, set and remove) throw an UnsupportedOperationException
+ */
+public final class PersistentJsonList extends ReadOnlyJsonList {
+    private static final PersistentJsonList EMPTY = new PersistentJsonList(PersistentVector.empty());
+
+    private final PersistentVector<JsonValue> elements;
+    private int hash; // Cached hash code (0 until computed); as the list can't change, it never has to be dropped
+
+    private PersistentJsonList(PersistentVector<JsonValue> elements) {
+        super("Cannot modify a PersistentJsonList; use with/append to create an updated copy instead");
+        this.elements = elements;
+    }
+
+    /**
+     * Returns an empty PersistentJsonList
+     * @return an empty PersistentJsonList
+     */
+    public static PersistentJsonList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a frozen copy of a JsonList (see {@link JsonList#freeze()})
+     * @param list the list to copy
+     * @return a PersistentJsonList with the same elements
+     */
+    static PersistentJsonList from(JsonList list) {
+        if (list instanceof PersistentJsonList)
+            return (PersistentJsonList) list;
+
+        PersistentVector<JsonValue> elements = PersistentVector.empty();
+        for (JsonValue value : list)
+            elements = elements.append(freezeValue(value));
+
+        return new PersistentJsonList(elements);
+    }
+
+    /**
+     * Returns a JsonValue whose array/object (if any) is frozen
+     * @param value the JsonValue to freeze
+     * @return value itself if it holds any other type of value (or an already-frozen array/object), otherwise a new
+     *  JsonValue holding a frozen copy of the array/object
+     */
+    static JsonValue freezeValue(JsonValue value) {
+        if (value == null)
+            throw new NullPointerException("A PersistentJsonList/PersistentJsonMap cannot hold a null JsonValue (use " +
+                    "JsonValue.valueOf(null) for a JSON null)");
+
+        if (value.internal instanceof PersistentJsonList || value.internal instanceof PersistentJsonMap)
+            return value;
+
+        if (value.internal instanceof JsonList)
+            return JsonValue.wrap(from((JsonList) value.internal));
+
+        if (value.internal instanceof JsonMap)
+            return JsonValue.wrap(PersistentJsonMap.from((JsonMap) value.internal));
+
+        return value;
+    }
+
+
+    /*
+     * Reading
+     */
+
+    @Override
+    public JsonValue get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+
+        if (h == 0) {
+            h = super.hashCode();
+            hash = h;
+        }
+
+        return h;
+    }
+
+    @Override
+    long knownHashCode() {
+        int h = hash;
+        return (h == 0) ? ContainerState.UNKNOWN_HASH : h;
+    }
+
+
+    /*
+     * Updating
+     */
+
+    /**
+     * Returns a new version of the list with the element at a given index replaced. The value is frozen if it holds an
+     *  array/object
+     * @param index the index of the element to replace
+     * @param value the new element
+     * @return a new PersistentJsonList (or this one, if the element at the index is already value)
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public PersistentJsonList with(int index, JsonValue value) throws IndexOutOfBoundsException {
+        PersistentVector<JsonValue> updated = elements.set(index, freezeValue(value));
+        return (updated == elements) ? this : new PersistentJsonList(updated);
+    }
+
+    /**
+     * Returns a new version of the list with an element added to the end. The value is frozen if it holds an
+     *  array/object
+     * @param value the element to add
+     * @return a new PersistentJsonList
+     */
+    public PersistentJsonList append(JsonValue value) {
+        return new PersistentJsonList(elements.append(freezeValue(value)));
+    }
+
+    /**
+     * Returns the list itself, as it is already frozen
+     * @return this list
+     */
+    @Override
+    public PersistentJsonList freeze() {
+        return this;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable {@link JsonMap}, returned by {@link JsonMap#freeze()}. Instead of being modified in place, a new version
+ *  of the map is created by {@link #with(String, JsonValue)} or {@link #without(String)}, which shares all the unchanged
+ *  parts of the old one (so an update takes O(log n) time rather than a full copy). As no version can ever change, a
+ *  PersistentJsonMap can be read from any number of threads without locking.
+ * <p>
+ * Keys keep their insertion order, as in a JsonMap. Every array/object inside a PersistentJsonMap is frozen as well.
+ *  The methods inherited from {@link java.util.Map} that would modify the map (such as put and remove) throw an
+ *  UnsupportedOperationException
+ */
+public final class PersistentJsonMap extends ReadOnlyJsonMap {
+    private static final PersistentJsonMap EMPTY = new PersistentJsonMap(PersistentHashTrie.empty(),
+            PersistentVector.empty(), 0);
+
+    private final PersistentHashTrie<Integer> slots; // Key -> index of its entry in entries
+    private final PersistentVector<Entry<String, JsonValue>> entries; // In insertion order, null for removed keys
+    private final int size;
+    private int hash; // Cached hash code (0 until computed); as the map can't change, it never has to be dropped
+
+    private PersistentJsonMap(PersistentHashTrie<Integer> slots, PersistentVector<Entry<String, JsonValue>> entries,
+                              int size) {
+        super("Cannot modify a PersistentJsonMap; use with/without to create an updated copy instead");
+        this.slots = slots;
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /**
+     * Returns an empty PersistentJsonMap
+     * @return an empty PersistentJsonMap
+     */
+    public static PersistentJsonMap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a frozen copy of a JsonMap (see {@link JsonMap#freeze()})
+     * @param map the map to copy
+     * @return a PersistentJsonMap with the same entries
+     */
+    static PersistentJsonMap from(JsonMap map) {
+        if (map instanceof PersistentJsonMap)
+            return (PersistentJsonMap) map;
+
+        PersistentJsonMap frozen = EMPTY;
+        for (Entry<String, JsonValue> entry : map.entrySet())
+            frozen = frozen.with(entry.getKey(), entry.getValue());
+
+        return frozen;
+    }
+
+
+    /*
+     * Reading
+     */
+
+    @Override
+    Iterator<Entry<String, JsonValue>> entryIterator() {
+        return new Iterator<>() {
+            private int index = nextIndex(0);
+
+            // Skips over removed entries
+            private int nextIndex(int from) {
+                while (from < entries.size() && entries.get(from) == null)
+                    from++;
+
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < entries.size();
+            }
+
+            @Override
+            public Entry<String, JsonValue> next() {
+                if (index >= entries.size())
+                    throw new NoSuchElementException();
+
+                Entry<String, JsonValue> entry = entries.get(index);
+                index = nextIndex(index + 1);
+                return entry;
+            }
+        };
+    }
+
+    @Override
+    public JsonValue get(Object key) {
+        Integer slot = slots.get(key);
+        return (slot == null) ? null : entries.get(slot).getValue();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slots.get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+
+        if (h == 0) {
+            h = super.hashCode();
+            hash = h;
+        }
+
+        return h;
+    }
+
+    @Override
+    long knownHashCode() {
+        int h = hash;
+        return (h == 0) ? ContainerState.UNKNOWN_HASH : h;
+    }
+
+
+    /*
+     * Updating
+     */
+
+    /**
+     * Returns a new version of the map with a key mapped to a value. A new key is added at the end; an existing key
+     *  keeps its position. The value is frozen if it holds an array/object
+     * @param key the key
+     * @param value the value
+     * @return a new PersistentJsonMap (or this one, if the key is already mapped to value)
+     */
+    public PersistentJsonMap with(String key, JsonValue value) {
+        if (key == null)
+            throw new NullPointerException("A PersistentJsonMap cannot have a null key");
+
+        value = PersistentJsonList.freezeValue(value);
+        Integer slot = slots.get(key);
+
+        if (slot != null) {
+            if (entries.get(slot).getValue() == value)
+                return this;
+
+            return new PersistentJsonMap(slots, entries.set(slot, new SimpleImmutableEntry<>(key, value)), size);
+        }
+
+        return new PersistentJsonMap(slots.with(key, entries.size()),
+                entries.append(new SimpleImmutableEntry<>(key, value)), size + 1);
+    }
+
+    /**
+     * Returns a new version of the map without a key
+     * @param key the key to remove
+     * @return a new PersistentJsonMap (or this one, if the key is not in the map)
+     */
+    public PersistentJsonMap without(String key) {
+        Integer slot = slots.get(key);
+
+        if (slot == null)
+            return this;
+
+        PersistentJsonMap removed = new PersistentJsonMap(slots.without(key), entries.set(slot, null), size - 1);
+
+        // Once most of the entries are removed ones, rebuild the map without them
+        if (removed.entries.size() > 32 && removed.size < removed.entries.size() / 2)
+            return from(removed.copyEntries());
+
+        return removed;
+    }
+
+    private JsonMap copyEntries() {
+        JsonMap map = new JsonMap();
+
+        for (Iterator<Entry<String, JsonValue>> it = entryIterator(); it.hasNext(); ) {
+            Entry<String, JsonValue> entry = it.next();
+            map.put(entry.getKey(), entry.getValue());
+        }
+
+        return map;
+    }
+
+    /**
+     * Returns the map itself, as it is already frozen
+     * @return this map
+     */
+    @Override
+    public PersistentJsonMap freeze() {
+        return this;
+    }
+}
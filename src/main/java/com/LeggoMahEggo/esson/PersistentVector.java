@@ -0,0 +1,169 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.Arrays;
+
+/**
+ * An immutable vector trie (32 elements per node, with the last partial node kept as a separate "tail" array).
+ *  {@link #set(int, Object)} and {@link #append(Object)} return new vectors that share every node except those on the
+ *  path to the changed element, so both take O(log32 n) time and memory
+ * @param <E> the type of the elements
+ */
+final class PersistentVector<E> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift; // Number of bits to shift an index by to get the root's child
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Index of the first element in the tail
+    private int tailOffset() {
+        return (size < WIDTH) ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+
+        if (index >= tailOffset())
+            return tail;
+
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Object[]) node[(index >>> level) & MASK];
+
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(int index) {
+        return (E) leafFor(index)[index & MASK];
+    }
+
+
+    /*
+     * Updating
+     */
+
+    /**
+     * Returns a vector with the element at a given index replaced
+     * @param index the index of the element to replace
+     * @param element the new element
+     * @return a new vector
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    PersistentVector<E> set(int index, E element) {
+        if (leafFor(index)[index & MASK] == element)
+            return this;
+
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+
+        return new PersistentVector<>(size, shift, setInNode(shift, root, index, element), tail);
+    }
+
+    private static Object[] setInNode(int level, Object[] node, int index, Object element) {
+        Object[] copy = node.clone();
+
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            int child = (index >>> level) & MASK;
+            copy[child] = setInNode(level - BITS, (Object[]) node[child], index, element);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns a vector with an element added to the end
+     * @param element the element to add
+     * @return a new vector
+     */
+    PersistentVector<E> append(E element) {
+        // Room in the tail
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+
+        // Otherwise, push the full tail into the tree (adding a level if the root is full)
+        Object[] newRoot;
+        int newShift = shift;
+
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] {element});
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int child = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+
+        if (level == BITS) {
+            copy[child] = tailNode;
+        } else {
+            Object[] existing = (Object[]) parent[child];
+            copy[child] = (existing != null)
+                    ? pushTail(level - BITS, existing, tailNode)
+                    : newPath(level - BITS, tailNode);
+        }
+
+        return copy;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0)
+            return node;
+
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Base class for {@link JsonList}s that don't store their elements in the backing ArrayList (see {@link JsonListView}
+ *  and {@link PersistentJsonList}). Subclasses only need to implement {@link #get(int)} and {@link #size()}; every
+ *  method that would modify the list throws an UnsupportedOperationException
+ */
+abstract class ReadOnlyJsonList extends JsonList {
+    private final String readOnlyMessage;
+    private final List<JsonValue> elements; // Implements the reading methods on top of get/size
+
+    ReadOnlyJsonList(String readOnlyMessage) {
+        this.readOnlyMessage = readOnlyMessage;
+        this.elements = new AbstractList<>() {
+            @Override
+            public JsonValue get(int index) {
+                return ReadOnlyJsonList.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return ReadOnlyJsonList.this.size();
+            }
+
+            @Override
+            public Iterator<JsonValue> iterator() {
+                return ReadOnlyJsonList.this.iterator();
+            }
+        };
+    }
+
+    UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException(readOnlyMessage);
+    }
+
+    @Override
+    boolean isTrackable() {
+        return false; // Views can change without the list knowing, and frozen lists are shared between threads
+    }
+
+
+    /*
+     * Reading
+     */
+
+    @Override
+    public abstract JsonValue get(int index);
+
+    @Override
+    public abstract int size();
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return elements.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return elements.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return elements.lastIndexOf(o);
+    }
+
+    @Override
+    public Iterator<JsonValue> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public JsonValue next() {
+                if (index >= size())
+                    throw new NoSuchElementException();
+
+                return get(index++);
+            }
+        };
+    }
+
+    @Override
+    public ListIterator<JsonValue> listIterator() {
+        return elements.listIterator();
+    }
+
+    @Override
+    public ListIterator<JsonValue> listIterator(int index) {
+        return elements.listIterator(index);
+    }
+
+    @Override
+    public List<JsonValue> subList(int fromIndex, int toIndex) {
+        return elements.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Spliterator<JsonValue> spliterator() {
+        return Spliterators.spliterator(this, Spliterator.ORDERED);
+    }
+
+    @Override
+    public void forEach(Consumer<? super JsonValue> action) {
+        for (JsonValue value : this)
+            action.accept(value);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return elements.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return elements.toArray(a);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+
+        if (o instanceof JsonList && ContainerState.hashesDiffer(knownHashCode(), ((JsonList) o).knownHashCode()))
+            return false;
+
+        return elements.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return elements.hashCode();
+    }
+
+
+    /*
+     * Writing (not supported)
+     */
+
+    @Override
+    public boolean add(JsonValue value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void add(int index, JsonValue value) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends JsonValue> c) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends JsonValue> c) {
+        throw readOnly();
+    }
+
+    @Override
+    public JsonValue set(int index, JsonValue value) {
+        throw readOnly();
+    }
+
+    @Override
+    public JsonValue remove(int index) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super JsonValue> filter) {
+        throw readOnly();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        throw readOnly();
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<JsonValue> operator) {
+        throw readOnly();
+    }
+
+    @Override
+    public void sort(Comparator<? super JsonValue> c) {
+        throw readOnly();
+    }
+
+    @Override
+    public void clear() {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Base class for {@link JsonMap}s that don't store their entries in the backing LinkedHashMap (see {@link JsonMapView}
+ *  and {@link PersistentJsonMap}). Subclasses only need to implement {@link #get(Object)}, {@link #containsKey(Object)},
+ *  {@link #size()} and {@link #entryIterator()}; every method that would modify the map throws an
+ *  UnsupportedOperationException
+ */
+abstract class ReadOnlyJsonMap extends JsonMap {
+    private final String readOnlyMessage;
+
+    ReadOnlyJsonMap(String readOnlyMessage) {
+        this.readOnlyMessage = readOnlyMessage;
+    }
+
+    UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException(readOnlyMessage);
+    }
+
+    @Override
+    boolean isTrackable() {
+        return false; // Views can change without the map knowing, and frozen maps are shared between threads
+    }
+
+    /**
+     * Returns an iterator over the map's entries, in order
+     * @return an iterator over the map's entries
+     */
+    abstract Iterator<Entry<String, JsonValue>> entryIterator();
+
+
+    /*
+     * Reading
+     */
+
+    @Override
+    public abstract JsonValue get(Object key);
+
+    @Override
+    public abstract boolean containsKey(Object key);
+
+    @Override
+    public abstract int size();
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public JsonValue getOrDefault(Object key, JsonValue defaultValue) {
+        JsonValue value = get(key);
+        return (value == null) ? defaultValue : value;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return values().contains(value);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                Iterator<Entry<String, JsonValue>> it = entryIterator();
+
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return it.next().getKey();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return ReadOnlyJsonMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<JsonValue> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<JsonValue> iterator() {
+                Iterator<Entry<String, JsonValue>> it = entryIterator();
+
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public JsonValue next() {
+                        return it.next().getValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ReadOnlyJsonMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, JsonValue>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, JsonValue>> iterator() {
+                return entryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ReadOnlyJsonMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super JsonValue> action) {
+        for (Iterator<Entry<String, JsonValue>> it = entryIterator(); it.hasNext(); ) {
+            Entry<String, JsonValue> entry = it.next();
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+
+    /*
+     * Writing (not supported)
+     */
+
+    @Override
+    public JsonValue put(String key, JsonValue value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends JsonValue> m) {
+        throw readOnly();
+    }
+
+    @Override
+    public JsonValue putIfAbsent(String key, JsonValue value) {
+        throw readOnly();
+    }
+
+    @Override
+    public JsonValue remove(Object key) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public JsonValue replace(String key, JsonValue value) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean replace(String key, JsonValue oldValue, JsonValue newValue) {
+        throw readOnly();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super JsonValue, ? extends JsonValue> function) {
+        throw readOnly();
+    }
+
+    @Override
+    public JsonValue computeIfAbsent(String key, Function<? super String, ? extends JsonValue> mappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public JsonValue computeIfPresent(String key,
+                                      BiFunction<? super String, ? super JsonValue, ? extends JsonValue> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public JsonValue compute(String key,
+                             BiFunction<? super String, ? super JsonValue, ? extends JsonValue> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public JsonValue merge(String key, JsonValue value,
+                           BiFunction<? super JsonValue, ? super JsonValue, ? extends JsonValue> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public void clear() {
+        throw readOnly();
+    }
+}
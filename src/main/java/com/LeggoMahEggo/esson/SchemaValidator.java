@@ -0,0 +1,139 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import com.LeggoMahEggo.esson.exceptions.SchemaViolationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks values against a {@link JsonSchema} as the parser reads them (see
+ *  {@link Options.OptionsBuilder#schema(JsonSchema)}). The parser reports the start of each array/object, each
+ *  element/property before it is read, each value once it has been read, and the end of each array/object; limits
+ *  that can be checked early (such as maxItems, or a property that isn't allowed) are checked before the value that
+ *  breaks them is even parsed
+ */
+final class SchemaValidator {
+    private final Cursor cursor;
+    private final List<JsonSchema.Node> open = new ArrayList<>(); // Schemas of the arrays/objects being parsed
+    private final List<Object> path = new ArrayList<>(); // Keys/indexes leading to the current value
+    private JsonSchema.Node current; // Schema of the value being parsed
+
+    SchemaValidator(JsonSchema schema, Cursor cursor) {
+        this.cursor = cursor;
+        current = schema.root;
+    }
+
+    void beginArray() {
+        if (!current.allows(JsonSchema.ARRAY))
+            fail("expected " + JsonSchema.typeNames(current.types) + ", found array");
+
+        open.add(current);
+    }
+
+    void beginElement(int index) {
+        JsonSchema.Node array = open.get(open.size() - 1);
+        if (array.maxItems >= 0 && index >= array.maxItems)
+            fail("array has more than " + array.maxItems + " elements");
+
+        path.add(index);
+        current = array.item(index);
+    }
+
+    void endArray(JsonList list) {
+        current = open.remove(open.size() - 1);
+
+        if (current.minItems >= 0 && list.size() < current.minItems)
+            fail("array has fewer than " + current.minItems + " elements");
+
+        checkEnum(list);
+    }
+
+    void beginObject() {
+        if (!current.allows(JsonSchema.OBJECT))
+            fail("expected " + JsonSchema.typeNames(current.types) + ", found object");
+
+        open.add(current);
+    }
+
+    /**
+     * @param key the key of the property about to be read
+     * @param count the number of properties read so far
+     */
+    void beginProperty(String key, int count) {
+        JsonSchema.Node object = open.get(open.size() - 1);
+        if (object.maxProperties >= 0 && count >= object.maxProperties)
+            fail("object has more than " + object.maxProperties + " properties");
+
+        path.add(key);
+        current = object.property(key);
+
+        if (current.types == 0)
+            fail("property is not allowed");
+    }
+
+    void endObject(JsonMap map) {
+        current = open.remove(open.size() - 1);
+
+        if (current.required != null) {
+            for (String key : current.required) {
+                if (!map.containsKey(key))
+                    fail("object is missing the required property '" + key + "'");
+            }
+        }
+
+        if (current.minProperties >= 0 && map.size() < current.minProperties)
+            fail("object has fewer than " + current.minProperties + " properties");
+
+        checkEnum(map);
+    }
+
+    /**
+     * Checks a value that has just been read, and leaves the array/object element it belongs to
+     * @param value the element's value
+     */
+    void endValue(JsonValue value) {
+        if (!(value.internal instanceof JsonContainer))
+            checkScalar(value);
+
+        path.remove(path.size() - 1);
+    }
+
+    /**
+     * Checks a string, number, boolean or null against the current schema
+     * @param value the value
+     */
+    void checkScalar(JsonValue value) {
+        String violation = current.checkScalar(value);
+        if (violation != null)
+            fail(violation);
+    }
+
+    private void checkEnum(Object container) {
+        if (!current.inEnum(JsonValue.wrap(container)))
+            fail("value is not one of " + current.enumValues);
+    }
+
+    private void fail(String reason) throws SchemaViolationException {
+        StringBuilder pointer = new StringBuilder();
+        for (Object token : path)
+            pointer.append('/').append((token instanceof String) ? JsonDiff.escapeToken((String) token) : token);
+
+        throw new SchemaViolationException("Value at '" + pointer + "' does not match the schema: " + reason +
+                cursor.locationErrMsgHelper(), pointer.toString());
+    }
+}
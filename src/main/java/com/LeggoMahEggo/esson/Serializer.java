@@ -0,0 +1,219 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+/**
+ * Writes JsonLists/JsonMaps out to an {@link OutputSink} in a single pass, without building intermediate Strings for
+ *  nested arrays/objects
+ */
+class Serializer {
+    final OutputSink out;
+    final boolean compact;
+    final String elementSeparator;
+    final String keySeparator;
+    boolean wroteUntracked; // Whether an untracked container was written, so the output can't be cached
+    private final KeyShapes shapes;
+
+    /**
+     * @param out the OutputSink to write to
+     * @param compact whether to leave out the spaces after commas and colons
+     */
+    Serializer(OutputSink out, boolean compact) {
+        this(out, compact, new KeyShapes());
+    }
+
+    private Serializer(OutputSink out, boolean compact, KeyShapes shapes) {
+        this.shapes = shapes;
+        this.out = out;
+        this.compact = compact;
+        this.elementSeparator = compact ? "," : ", ";
+        this.keySeparator = compact ? ":" : ": ";
+    }
+
+    /**
+     * Converts a container into a JSON string
+     * @param container the JsonContainer to convert
+     * @param compact whether to leave out the spaces after commas and colons
+     * @return the container's contents in the JSON format
+     */
+    static String toJsonString(JsonContainer container, boolean compact) {
+        ContainerState state = ContainerState.of(container);
+        StringBuilder builder = new StringBuilder();
+
+        try {
+            if (state != null)
+                return new Serializer(OutputSink.of(builder), compact).encode(container, state);
+
+            write(container, OutputSink.of(builder), compact);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Can't happen; StringBuilders don't throw
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Writes a container out to a sink, and flushes the sink
+     * @param container the JsonContainer to write
+     * @param out the OutputSink to write to
+     * @param compact whether to leave out the spaces after commas and colons
+     */
+    static void write(JsonContainer container, OutputSink out, boolean compact) throws IOException {
+        new Serializer(out, compact).writeContainer(container);
+        out.flush();
+    }
+
+    /**
+     * Writes a container out, reusing its cached output if it is tracked and hasn't changed since it was last written
+     *  (see {@link JsonList#enableOutputCache()})
+     */
+    void writeContainer(JsonContainer container) throws IOException {
+        ContainerState state = ContainerState.of(container);
+        if (state == null) {
+            wroteUntracked = true;
+            writeContents(container);
+            return;
+        }
+
+        out.write(encode(container, state));
+    }
+
+    /**
+     * Returns a tracked container's output, from its cache if it hasn't changed since it was last written. Otherwise it
+     *  is encoded, and cached if possible
+     */
+    String encode(JsonContainer container, ContainerState state) throws IOException {
+        String cached = compact ? state.compactJson : state.json;
+        if (cached != null)
+            return cached;
+
+        StringBuilder builder = new StringBuilder();
+        Serializer serializer = withSink(OutputSink.of(builder));
+        serializer.writeContents(container);
+        cached = builder.toString();
+
+        // Output that includes an untracked container could change without this one knowing
+        if (serializer.wroteUntracked)
+            wroteUntracked = true;
+        else if (compact)
+            state.compactJson = cached;
+        else
+            state.json = cached;
+
+        return cached;
+    }
+
+    void writeContents(JsonContainer container) throws IOException {
+        if (container instanceof JsonList)
+            writeList((JsonList) container);
+        else if (container instanceof JsonMap)
+            writeMap((JsonMap) container);
+        else
+            out.write(container.toJsonString()); // Some other implementation; it knows how to convert itself
+    }
+
+    /**
+     * @return a Serializer with the same settings, writing to another sink
+     */
+    Serializer withSink(OutputSink out) {
+        return new Serializer(out, compact, shapes);
+    }
+
+    void writeList(JsonList list) throws IOException {
+        out.write('[');
+
+        Iterator<JsonValue> iterator = list.iterator();
+        while (iterator.hasNext()) {
+            writeValue(iterator.next());
+
+            if (iterator.hasNext())
+                out.write(elementSeparator); // No extra commas at the end of the array
+        }
+
+        out.write(']');
+    }
+
+    void writeMap(JsonMap map) throws IOException {
+        out.write('{');
+
+        int size = map.size();
+        Iterator<Entry<String, JsonValue>> iterator = map.entrySet().iterator();
+
+        if (size > KeyShapes.MAX_KEYS) {
+            while (iterator.hasNext()) {
+                Entry<String, JsonValue> pair = iterator.next();
+
+                writeString(pair.getKey());
+                out.write(keySeparator);
+                writeValue(pair.getValue());
+
+                if (iterator.hasNext())
+                    out.write(elementSeparator); // No extra commas at the end of the object
+            }
+        }
+
+        // Write the keys from the shape of the object's keys, which is reused by objects with the same keys
+        else if (size > 0) {
+            KeyShapes.Shape shape = shapes.shapeOf(map.keySet(), elementSeparator, keySeparator);
+
+            for (int i = 0; iterator.hasNext(); i++) {
+                out.write(shape.fragments[i]);
+                writeValue(iterator.next().getValue());
+            }
+        }
+
+        out.write('}');
+    }
+
+    void writeValue(JsonValue value) throws IOException {
+        Object internal = value.internal;
+
+        if (internal instanceof String)
+            writeString((String) internal);
+
+        else if (internal instanceof StringSlice) { // Slices never need escaping
+            out.write('"');
+            ((StringSlice) internal).writeTo(out);
+            out.write('"');
+        }
+
+        else if (internal instanceof JsonContainer)
+            writeContainer((JsonContainer) internal);
+
+        else if (internal instanceof Long)
+            NumberWriter.writeLong(out, (Long) internal);
+
+        else if (internal instanceof Double)
+            NumberWriter.writeDouble(out, (Double) internal);
+
+        else if (internal instanceof JsonNumber)
+            ((JsonNumber) internal).writeTo(out);
+
+        else
+            out.write(value.toString()); // Booleans and nulls
+    }
+
+    void writeString(String str) throws IOException {
+        out.write('"');
+        Escaper.write(out, str, false); // Make sure string is properly escaped
+        out.write('"');
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records where each array/object of a parse starts and ends in the JSON string (see {@link EditableJson}). Arrays
+ *  and objects finish parsing innermost first, so the ones recorded since an array/object started are its children
+ */
+final class SourceSpans {
+    private final List<Node> pending = new ArrayList<>();
+
+    /**
+     * @param container the array/object that was just parsed
+     * @param start the index of its opening bracket
+     * @param end the index after its closing bracket
+     */
+    void record(Object container, int start, int end) {
+        int first = pending.size();
+        while (first > 0 && pending.get(first - 1).start >= start)
+            first--;
+
+        List<Node> childList = pending.subList(first, pending.size());
+        Node[] children = childList.toArray(new Node[0]);
+        childList.clear();
+
+        for (Node child : children)
+            child.start -= start;
+
+        pending.add(new Node(container, start, end - start, children));
+    }
+
+    /**
+     * @return the span of the outermost array/object, or null if the parsed value wasn't an array/object
+     */
+    Node root() {
+        return (pending.isEmpty()) ? null : pending.get(pending.size() - 1);
+    }
+
+    /**
+     * The span of an array/object. Its start is relative to the start of the array/object containing it, so an edit
+     *  only moves the spans that come after it within the same parents
+     */
+    static final class Node {
+        final Object container;
+        int start;
+        int length;
+        Node[] children; // In order of their starts
+
+        Node(Object container, int start, int length, Node[] children) {
+            this.container = container;
+            this.start = start;
+            this.length = length;
+            this.children = children;
+        }
+
+        /**
+         * @param offset an index relative to this span's start
+         * @return the position in children of the last child starting before offset, or -1 if there isn't one
+         */
+        int childBefore(int offset) {
+            int low = 0;
+            int high = children.length - 1;
+
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (children[middle].start < offset)
+                    low = middle + 1;
+                else
+                    high = middle - 1;
+            }
+
+            return high;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+/**
+ * A bounded pool of Strings for deduplicating object keys and short string values while parsing. Lookups are made
+ *  directly against the characters of the JSON string, so a String is only allocated the first time a sequence of
+ *  characters is seen. Once the pool is full, the least recently used String is evicted to make room.
+ * <p>
+ * A pool can be shared between parses (and threads) by setting it on an Options object (see
+ *  {@link Options.OptionsBuilder#keyPool(StringPool)} and {@link Options.OptionsBuilder#deduplicateStrings(StringPool)});
+ *  its hit/miss counters can then be used to check how well it is working
+ */
+public final class StringPool {
+    /**
+     * Default maximum length of a String that will be pooled
+     */
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    private final int capacity;
+    private final int maxLength;
+    private final boolean concurrent; // Per-parse pools are only ever used by a single thread
+
+    // Hash table of entry indexes (offset by 1, so that 0 is an empty bucket) chained through next[]
+    private final int[] buckets;
+    private final int[] next;
+    private final int[] hashes;
+    private final String[] strings;
+
+    // Doubly-linked list of entries from most to least recently used
+    private final int[] newer;
+    private final int[] older;
+    private int mostRecent = -1;
+    private int leastRecent = -1;
+    private int size;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new pool that holds up to a given number of Strings of up to {@value #DEFAULT_MAX_LENGTH} characters
+     * @param capacity the maximum number of Strings in the pool
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public StringPool(int capacity) throws IllegalArgumentException {
+        this(capacity, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates a new pool that holds up to a given number of Strings of a maximum length
+     * @param capacity the maximum number of Strings in the pool
+     * @param maxLength the maximum length of a String to pool -- longer Strings are never pooled
+     * @throws IllegalArgumentException if capacity is less than 1, or maxLength is negative
+     */
+    public StringPool(int capacity, int maxLength) throws IllegalArgumentException {
+        this(capacity, maxLength, true);
+    }
+
+    StringPool(int capacity, int maxLength, boolean concurrent) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Pool capacity must be at least 1, was " + capacity);
+
+        if (maxLength < 0)
+            throw new IllegalArgumentException("Maximum String length cannot be negative, was " + maxLength);
+
+        this.capacity = capacity;
+        this.maxLength = maxLength;
+        this.concurrent = concurrent;
+
+        buckets = new int[Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1];
+        next = new int[capacity];
+        hashes = new int[capacity];
+        strings = new String[capacity];
+        newer = new int[capacity];
+        older = new int[capacity];
+    }
+
+
+    /*
+     * Pooling
+     */
+
+    /**
+     * Returns the pooled String equal to a given String, adding it to the pool if it is not there already
+     * @param str the String to look up
+     * @return a String equal to str (str itself if it was not pooled)
+     */
+    public String intern(String str) {
+        return intern(str, 0, str.length(), str);
+    }
+
+    /**
+     * Returns the pooled String made of a range of characters, creating and adding it to the pool if it is not there
+     *  already
+     * @param chars the characters to look up
+     * @param start the index of the first character (inclusive)
+     * @param end the index of the last character (exclusive)
+     * @return a String made of the range of characters
+     */
+    String intern(CharSequence chars, int start, int end) {
+        return intern(chars, start, end, null);
+    }
+
+    /**
+     * Checks if a String of a given length would be pooled
+     * @param length the length of the String
+     * @return true if the String is not longer than the pool's maximum length
+     */
+    boolean canPool(int length) {
+        return length <= maxLength;
+    }
+
+    private String intern(CharSequence chars, int start, int end, String original) {
+        int length = end - start;
+
+        if (length > maxLength)
+            return (original != null) ? original : chars.subSequence(start, end).toString();
+
+        if (!concurrent)
+            return lookup(chars, start, end, original);
+
+        synchronized (this) {
+            return lookup(chars, start, end, original);
+        }
+    }
+
+    private String lookup(CharSequence chars, int start, int end, String original) {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + chars.charAt(i);
+
+        int bucket = (hash ^ (hash >>> 16)) & (buckets.length - 1);
+
+        // Look for an existing String
+        for (int entry = buckets[bucket] - 1; entry >= 0; entry = next[entry] - 1) {
+            if (hashes[entry] == hash && contentEquals(strings[entry], chars, start, end)) {
+                hits++;
+                markAsRecent(entry);
+                return strings[entry];
+            }
+        }
+
+        // Otherwise add it, evicting the least recently used String if needed
+        misses++;
+        String str = (original != null) ? original : chars.subSequence(start, end).toString();
+        int entry;
+
+        if (size == capacity) {
+            entry = leastRecent;
+            unlink(entry);
+            removeFromBucket(entry);
+        } else {
+            entry = size++;
+        }
+
+        strings[entry] = str;
+        hashes[entry] = hash;
+        next[entry] = buckets[bucket];
+        buckets[bucket] = entry + 1;
+        linkAsMostRecent(entry);
+
+        return str;
+    }
+
+    private static boolean contentEquals(String str, CharSequence chars, int start, int end) {
+        if (str.length() != end - start)
+            return false;
+
+        if (chars instanceof String)
+            return str.regionMatches(0, (String) chars, start, end - start);
+
+        for (int i = start; i < end; i++) {
+            if (str.charAt(i - start) != chars.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+    private void removeFromBucket(int entry) {
+        int hash = hashes[entry];
+        int bucket = (hash ^ (hash >>> 16)) & (buckets.length - 1);
+
+        if (buckets[bucket] - 1 == entry) {
+            buckets[bucket] = next[entry];
+            return;
+        }
+
+        for (int prev = buckets[bucket] - 1; prev >= 0; prev = next[prev] - 1) {
+            if (next[prev] - 1 == entry) {
+                next[prev] = next[entry];
+                return;
+            }
+        }
+    }
+
+    private void markAsRecent(int entry) {
+        if (entry == mostRecent)
+            return;
+
+        unlink(entry);
+        linkAsMostRecent(entry);
+    }
+
+    private void unlink(int entry) {
+        int n = newer[entry];
+        int o = older[entry];
+
+        if (n >= 0)
+            older[n] = o;
+        else
+            mostRecent = o;
+
+        if (o >= 0)
+            newer[o] = n;
+        else
+            leastRecent = n;
+    }
+
+    private void linkAsMostRecent(int entry) {
+        newer[entry] = -1;
+        older[entry] = mostRecent;
+
+        if (mostRecent >= 0)
+            newer[mostRecent] = entry;
+
+        mostRecent = entry;
+
+        if (leastRecent < 0)
+            leastRecent = entry;
+    }
+
+
+    /*
+     * Statistics
+     */
+
+    /**
+     * Returns the number of lookups that found an already-pooled String
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to create (or add) a new String
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the fraction of lookups that found an already-pooled String
+     * @return a value between 0 and 1 (0 if no lookups were made)
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the number of Strings currently in the pool
+     * @return the number of pooled Strings
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Resets the hit and miss counters to 0
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "StringPool|size: " + size() + "/" + capacity + "|hits: " + getHits() + "|misses: " + getMisses() + "|";
+    }
+}
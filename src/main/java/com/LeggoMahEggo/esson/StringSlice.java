@@ -0,0 +1,69 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.io.IOException;
+
+/**
+ * A string value that points into the JSON string it was parsed from, instead of holding a copy of its characters. Only
+ *  created for strings that need no escaping or un-escaping (no backslashes, double-quotes or control characters), so
+ *  its characters can be written out as-is
+ */
+final class StringSlice implements CharSequence {
+    private final String source;
+    private final int start;
+    private final int end;
+
+    StringSlice(String source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Writes the slice's characters out without creating an intermediate String
+     * @param out the OutputSink to write to
+     */
+    void writeTo(OutputSink out) throws IOException {
+        out.write(source, start, end);
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + (end - start));
+
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end)
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length());
+
+        return new StringSlice(source, this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+        return source.substring(start, end);
+    }
+}
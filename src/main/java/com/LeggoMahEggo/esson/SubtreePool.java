@@ -0,0 +1,156 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Shares identical arrays/objects within a single parse (see {@link Options.OptionsBuilder#deduplicateSubtrees()}).
+ *  Arrays/objects are shared as they finish parsing, so the ones inside them have already been shared, and can be
+ *  compared by identity rather than by walking them again
+ */
+final class SubtreePool {
+    private final Map<Key, Key> pool = new HashMap<>();
+
+    /**
+     * @param container a parsed JsonList/JsonMap
+     * @return a frozen array/object identical to container, which was parsed earlier if there was one
+     */
+    Object share(Object container) {
+        Key key = new Key(container);
+        Key shared = pool.get(key);
+
+        if (shared != null)
+            return shared.container;
+
+        key.container = (container instanceof JsonList)
+                ? PersistentJsonList.from((JsonList) container)
+                : PersistentJsonMap.from((JsonMap) container);
+        pool.put(key, key);
+        return key.container;
+    }
+
+    /**
+     * An array/object compared by its values' exact contents (not with the tolerance of JsonValue.equals), and by the
+     *  identity of the arrays/objects inside it
+     */
+    private static final class Key {
+        Object container;
+        final int hash;
+
+        Key(Object container) {
+            this.container = container;
+
+            int h = (container instanceof JsonList) ? 1 : 2;
+            if (container instanceof JsonList) {
+                for (JsonValue value : (JsonList) container)
+                    h = 31 * h + hash(value);
+            } else {
+                for (Map.Entry<String, JsonValue> entry : ((JsonMap) container).entrySet())
+                    h = 31 * (31 * h + entry.getKey().hashCode()) + hash(entry.getValue());
+            }
+
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key) || ((Key) o).hash != hash)
+                return false;
+
+            Object other = ((Key) o).container;
+
+            if (container instanceof JsonList && other instanceof JsonList) {
+                JsonList list = (JsonList) container;
+                JsonList otherList = (JsonList) other;
+
+                if (list.size() != otherList.size())
+                    return false;
+
+                for (int i = 0; i < list.size(); i++)
+                    if (!same(list.get(i), otherList.get(i)))
+                        return false;
+
+                return true;
+            }
+
+            if (container instanceof JsonMap && other instanceof JsonMap) {
+                JsonMap map = (JsonMap) container;
+                JsonMap otherMap = (JsonMap) other;
+
+                if (map.size() != otherMap.size())
+                    return false;
+
+                // Keys must also be in the same order, as the order is kept when written out
+                Iterator<Map.Entry<String, JsonValue>> others = otherMap.entrySet().iterator();
+                for (Map.Entry<String, JsonValue> entry : map.entrySet()) {
+                    Map.Entry<String, JsonValue> otherEntry = others.next();
+
+                    if (!entry.getKey().equals(otherEntry.getKey()) || !same(entry.getValue(), otherEntry.getValue()))
+                        return false;
+                }
+
+                return true;
+            }
+
+            return false;
+        }
+
+        private static int hash(JsonValue value) {
+            Object internal = value.internal;
+
+            if (internal == null)
+                return 0;
+
+            if (internal instanceof JsonContainer)
+                return System.identityHashCode(internal);
+
+            if (internal instanceof CharSequence)
+                return JsonValue.hashCharacters((CharSequence) internal);
+
+            return (internal instanceof JsonNumber) ? internal.toString().hashCode() : internal.hashCode();
+        }
+
+        private static boolean same(JsonValue value1, JsonValue value2) {
+            Object internal1 = value1.internal;
+            Object internal2 = value2.internal;
+
+            if (internal1 == internal2)
+                return true;
+
+            if (internal1 == null || internal2 == null || internal1 instanceof JsonContainer ||
+                    internal2 instanceof JsonContainer)
+                return false;
+
+            if (internal1 instanceof CharSequence && internal2 instanceof CharSequence)
+                return CharSequence.compare((CharSequence) internal1, (CharSequence) internal2) == 0;
+
+            if (internal1.getClass() != internal2.getClass())
+                return false;
+
+            // Doubles are compared exactly (Double.equals), and JsonNumbers by their text
+            return (internal1 instanceof JsonNumber) ? internal1.toString().equals(internal2.toString()) :
+                    internal1.equals(internal2);
+        }
+    }
+}
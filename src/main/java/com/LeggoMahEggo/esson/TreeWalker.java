@@ -0,0 +1,201 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Walks trees for {@link JsonVisitor} and {@link JsonTransformer}. When given a ForkJoinPool, the children of
+ *  arrays/objects with at least {@link JsonVisitor#PARALLEL_THRESHOLD} elements are split in halves until each part has
+ *  at most {@link ParallelSerializer#CHUNK_SIZE} of them, and the parts are processed as separate tasks (large
+ *  arrays/objects inside a part are split again). Smaller arrays/objects are processed on the thread that reaches them
+ */
+final class TreeWalker {
+    private TreeWalker() {
+    }
+
+
+    /*
+     * Visiting
+     */
+
+    static <R> R visit(JsonValue root, JsonVisitor<R> visitor, ForkJoinPool pool) {
+        if (pool == null)
+            return visit(root, visitor, false);
+
+        JsonValue[] values = {root};
+        return pool.invoke(new VisitTask<>(values, 0, 1, visitor));
+    }
+
+    private static <R> R visit(JsonValue value, JsonVisitor<R> visitor, boolean parallel) {
+        R result = visitor.visit(value);
+        Object internal = value.internal;
+
+        if (internal instanceof JsonContainer) {
+            int size = (internal instanceof JsonList) ? ((JsonList) internal).size() : ((JsonMap) internal).size();
+
+            if (parallel && size >= JsonVisitor.PARALLEL_THRESHOLD) {
+                JsonValue[] children = children(internal);
+                return visitor.combine(result, new VisitTask<>(children, 0, children.length, visitor).invoke());
+            }
+
+            Iterable<JsonValue> children = (internal instanceof JsonList)
+                    ? (JsonList) internal
+                    : ((JsonMap) internal).values();
+            for (JsonValue child : children)
+                result = visitor.combine(result, visit(child, visitor, parallel));
+        }
+
+        return result;
+    }
+
+    private static final class VisitTask<R> extends RecursiveTask<R> {
+        private final JsonValue[] values;
+        private final int from;
+        private final int to;
+        private final JsonVisitor<R> visitor;
+
+        VisitTask(JsonValue[] values, int from, int to, JsonVisitor<R> visitor) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from > ParallelSerializer.CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                VisitTask<R> first = new VisitTask<>(values, from, middle, visitor);
+                first.fork();
+                R second = new VisitTask<>(values, middle, to, visitor).compute();
+                return visitor.combine(first.join(), second);
+            }
+
+            R result = visitor.empty();
+            for (int i = from; i < to; i++)
+                result = visitor.combine(result, visit(values[i], visitor, true));
+
+            return result;
+        }
+    }
+
+
+    /*
+     * Transforming
+     */
+
+    static JsonValue transform(JsonValue root, JsonTransformer transformer, ForkJoinPool pool) {
+        if (pool == null)
+            return transform(root, transformer, false);
+
+        JsonValue[] values = {root};
+        pool.invoke(new TransformTask(values, values, 0, 1, transformer));
+        return values[0];
+    }
+
+    private static JsonValue transform(JsonValue value, JsonTransformer transformer, boolean parallel) {
+        Object internal = value.internal;
+
+        if (internal instanceof JsonContainer) {
+            JsonValue[] children = children(internal);
+            JsonValue[] transformed = new JsonValue[children.length];
+
+            if (parallel && children.length >= JsonVisitor.PARALLEL_THRESHOLD)
+                new TransformTask(children, transformed, 0, children.length, transformer).invoke();
+            else {
+                for (int i = 0; i < children.length; i++)
+                    transformed[i] = transform(children[i], transformer, parallel);
+            }
+
+            value = rebuild(value, children, transformed);
+        }
+
+        return transformer.transform(value);
+    }
+
+    /**
+     * @return value, or a copy of it holding the transformed children if any of them changed (without the ones that
+     *  were dropped)
+     */
+    private static JsonValue rebuild(JsonValue value, JsonValue[] children, JsonValue[] transformed) {
+        int first = 0;
+        while (first < children.length && children[first] == transformed[first])
+            first++;
+
+        if (first == children.length)
+            return value;
+
+        if (value.internal instanceof JsonList) {
+            JsonList copy = new JsonList();
+            for (JsonValue child : transformed) {
+                if (child != null)
+                    copy.add(child);
+            }
+
+            return JsonValue.wrap(copy);
+        }
+
+        JsonMap copy = new JsonMap();
+        int i = 0;
+        for (String key : ((JsonMap) value.internal).keySet()) {
+            if (transformed[i] != null)
+                copy.put(key, transformed[i]);
+
+            i++;
+        }
+
+        return JsonValue.wrap(copy);
+    }
+
+    private static final class TransformTask extends RecursiveAction {
+        private final JsonValue[] values;
+        private final JsonValue[] results;
+        private final int from;
+        private final int to;
+        private final JsonTransformer transformer;
+
+        TransformTask(JsonValue[] values, JsonValue[] results, int from, int to, JsonTransformer transformer) {
+            this.values = values;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.transformer = transformer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ParallelSerializer.CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TransformTask(values, results, from, middle, transformer),
+                        new TransformTask(values, results, middle, to, transformer));
+                return;
+            }
+
+            for (int i = from; i < to; i++)
+                results[i] = transform(values[i], transformer, true);
+        }
+    }
+
+    private static JsonValue[] children(Object container) {
+        return (container instanceof JsonList)
+                ? ((JsonList) container).toArray(new JsonValue[0])
+                : ((JsonMap) container).values().toArray(new JsonValue[0]);
+    }
+}
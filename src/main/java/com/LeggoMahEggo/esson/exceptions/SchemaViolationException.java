@@ -0,0 +1,32 @@
+/*
+ Copyright 2024 Yehuda Broderick
+ */
+/*
+ This file is part of esson.
+
+ esson is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+  as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+
+ esson is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License along with esson. If not, see
+  <https://www.gnu.org/licenses/>.
+ */
+package com.LeggoMahEggo.esson.exceptions;
+
+public class SchemaViolationException extends JsonParserException {
+    private final String path;
+
+    public SchemaViolationException(String message, String path) {
+        super(message);
+        this.path = path;
+    }
+
+    /**
+     * @return the JSON Pointer of the value that didn't match the schema ("" for the whole document)
+     */
+    public String getPath() {
+        return path;
+    }
+}
@@ -16,6 +16,13 @@
 package com.LeggoMahEggo.esson;
 
 import com.LeggoMahEggo.esson.JsonValue.ValueType;
+import com.LeggoMahEggo.esson.exceptions.IllegalCharacterException;
+import com.LeggoMahEggo.esson.exceptions.JsonParserException;
+import com.LeggoMahEggo.esson.exceptions.JsonPatchException;
+import com.LeggoMahEggo.esson.exceptions.NumberParserException;
+import com.LeggoMahEggo.esson.exceptions.SchemaViolationException;
+import com.LeggoMahEggo.esson.exceptions.ValueParserException;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Named;
@@ -23,19 +30,38 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -361,6 +387,2095 @@ public class TestClass {
         }
     }
 
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class ViewTests {
+
+        @Test
+        public void viewSerializesLikeCopy() {
+            Map<String, Object> map = createdLHM(List.of("a", "b", "c"),
+                    List.of(1, List.of(true, "x\ny", nullList()), createdLHM(List.of("d"), List.of(2.5D))));
+            String expected = JsonMap.fromMap(map).toJsonString();
+            System.out.println("Expected: " + expected);
+
+            Assertions.assertEquals(expected, JsonValue.view(map).getAsMap().toJsonString());
+        }
+
+        @Test
+        public void viewDoesNotCopy() {
+            List<Object> list = new ArrayList<>(List.of(1, 2));
+            JsonList view = JsonValue.view(list).getAsList();
+            list.add("three");
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(3, view.size()),
+                    () -> Assertions.assertEquals("three", view.get(2).getAsString()),
+                    () -> Assertions.assertEquals(JsonList.fromList(List.of(1, 2, "three")), view)
+            );
+        }
+
+        @Test
+        public void viewValidatesOnAccess() {
+            JsonList view = JsonValue.view(List.of(1, Pattern.compile("abc"))).getAsList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(1L, view.get(0).getAsNumber()),
+                    () -> Assertions.assertThrowsExactly(IllegalArgumentException.class, () -> view.get(1)),
+                    () -> Assertions.assertThrowsExactly(IllegalArgumentException.class, view::toJsonString)
+            );
+        }
+
+        @Test
+        public void viewIsReadOnly() {
+            JsonMap view = JsonValue.view(createdLHM(List.of("a"), List.of(1))).getAsMap();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertThrows(UnsupportedOperationException.class,
+                            () -> view.put("b", JsonValue.valueOf(2))),
+                    () -> Assertions.assertThrows(UnsupportedOperationException.class, () -> view.remove("a")),
+                    () -> Assertions.assertNull(view.get("b")),
+                    () -> Assertions.assertTrue(view.get("a").equals(JsonValue.valueOf(1)))
+            );
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class StringPoolTests {
+
+        @Test
+        public void keysAreShared() {
+            JsonList list = Parser.parseFromString("[{\"id\": 1, \"status\": \"a\"}, {\"id\": 2, \"status\": \"b\"}]")
+                    .getAsList();
+            List<String> firstKeys = new ArrayList<>(list.get(0).getAsMap().keySet());
+            List<String> secondKeys = new ArrayList<>(list.get(1).getAsMap().keySet());
+
+            Assertions.assertAll(
+                    () -> Assertions.assertSame(firstKeys.get(0), secondKeys.get(0)),
+                    () -> Assertions.assertSame(firstKeys.get(1), secondKeys.get(1))
+            );
+        }
+
+        @Test
+        public void sharedPoolsCountHits() {
+            StringPool keys = new StringPool(16);
+            StringPool values = new StringPool(16);
+            Options options = Options.OptionsBuilder.newBuilder().keyPool(keys).deduplicateStrings(values).build();
+            JsonList list = Parser.parseFromString("[{\"s\": \"on\"}, {\"s\": \"on\"}, {\"s\": \"o\\nff\"}]", options)
+                    .getAsList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(2, keys.getHits()),
+                    () -> Assertions.assertEquals(1, keys.getMisses()),
+                    () -> Assertions.assertEquals(1, values.getHits()),
+                    () -> Assertions.assertEquals(2, values.getMisses()),
+                    () -> Assertions.assertSame(list.get(0).getAsMap().get("s").getAsString(),
+                            list.get(1).getAsMap().get("s").getAsString()),
+                    () -> Assertions.assertEquals("o\nff", list.get(2).getAsMap().get("s").getAsString())
+            );
+        }
+
+        @Test
+        public void leastRecentlyUsedIsEvicted() {
+            StringPool pool = new StringPool(2);
+            String a = pool.intern(new String("a"));
+            pool.intern(new String("b"));
+            pool.intern(new String("a")); // "b" is now the least recently used
+            pool.intern(new String("c"));
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(2, pool.size()),
+                    () -> Assertions.assertSame(a, pool.intern(new String("a"))),
+                    () -> Assertions.assertEquals(2, pool.getHits()),
+                    () -> Assertions.assertEquals(0.4, pool.getHitRate(), 0.000001)
+            );
+        }
+
+        @Test
+        public void longStringsAreNotPooled() {
+            StringPool pool = new StringPool(4, 3);
+            pool.intern("abcd");
+
+            Assertions.assertEquals(0, pool.size());
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class StringSliceTests {
+        private final Options SLICES = Options.OptionsBuilder.newBuilder().stringSlices(8).build();
+
+        @Test
+        public void longPlainStringsAreSliced() {
+            JsonList list = Parser.parseFromString("[\"short\", \"a long string\", \"a long\\nescape\"]", SLICES)
+                    .getAsList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertTrue(list.get(0).getAsCharSequence() instanceof String),
+                    () -> Assertions.assertFalse(list.get(1).getAsCharSequence() instanceof String),
+                    () -> Assertions.assertTrue(list.get(2).getAsCharSequence() instanceof String),
+                    () -> Assertions.assertEquals(JsonValue.valueOf("a long string"), list.get(1))
+            );
+        }
+
+        @Test
+        public void slicesPrintLikeStrings() {
+            String json = "[\"a long string\", \"short\"]";
+            JsonValue sliced = Parser.parseFromString(json, SLICES);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("['a long string', 'short']", sliced.toString()),
+                    () -> Assertions.assertEquals(Parser.parseFromString(json).toString(), sliced.toString())
+            );
+        }
+
+        @Test
+        public void sliceIsCopiedOnGetAsString() {
+            JsonValue value = Parser.parseFromString("{\"html\": \"<p>Some text</p>\"}", SLICES).getAsMap().get("html");
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("<p>Some text</p>", value.getAsString()),
+                    () -> Assertions.assertTrue(value.getAsCharSequence() instanceof String)
+            );
+        }
+
+        @Test
+        public void slicesSerializeUnchanged() {
+            String jsonStr = "{\"a\": [\"a long string\", 'single \\' quoted string', \"x\"]}";
+            Options options = Options.OptionsBuilder.newBuilder().stringSlices(8).singleQuoteString().build();
+            JsonMap map = Parser.parseFromString(jsonStr, options).getAsMap();
+
+            Assertions.assertEquals("{\"a\": [\"a long string\", \"single ' quoted string\", \"x\"]}", map.toJsonString());
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class LazyNumberTests {
+        private final Options LAZY = Options.OptionsBuilder.newBuilder().lazyNumbers().build();
+
+        @Test
+        public void largeAndPreciseNumbersRoundTrip() {
+            String jsonStr = "[123456789012345678901234567890, 0.1000000000000000000000001, -5, 2.5e-3]";
+            JsonList list = attemptToParseString(jsonStr, LAZY).getAsList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(jsonStr, list.toJsonString()),
+                    () -> Assertions.assertEquals(new BigInteger("123456789012345678901234567890"),
+                            list.get(0).getAsBigInteger()),
+                    () -> Assertions.assertEquals(new BigDecimal("0.1000000000000000000000001"),
+                            list.get(1).getAsBigDecimal()),
+                    () -> Assertions.assertEquals(-5L, list.get(2).getAsNumber().longValue()),
+                    () -> Assertions.assertEquals(0.0025d, list.get(3).getAsNumber().doubleValue())
+            );
+        }
+
+        @Test
+        public void lazyNumbersEqualEagerNumbers() {
+            JsonValue lazy = attemptToParseString("[1, 2.5, 3]", LAZY);
+            JsonValue eager = attemptToParseString("[1, 2.5, 3]", Options.defaultOptions());
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(eager, lazy),
+                    () -> Assertions.assertNotEquals(JsonValue.valueOf(3.0d), lazy.getAsList().get(2))
+            );
+        }
+
+        @Test
+        public void lenientNumbersAreNormalized() {
+            Options options = Options.OptionsBuilder.newBuilder().lazyNumbers().leadingZeroes().plusAtFront().build();
+            JsonList list = attemptToParseString("[+12, 007, 16e002]", options).getAsList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("[12, 7, 16e2]", list.toJsonString()),
+                    () -> Assertions.assertEquals(1600L, list.get(2).getAsNumber().longValue())
+            );
+        }
+
+        @Test
+        public void invalidNumbersStillThrow() {
+            Assertions.assertAll(
+                    () -> Assertions.assertThrows(NumberParserException.class,
+                            () -> Parser.parseFromString("[1.]", LAZY)),
+                    () -> Assertions.assertThrows(NumberParserException.class,
+                            () -> Parser.parseFromString("[012]", LAZY))
+            );
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class PersistentTests {
+
+        @Test
+        public void freezeKeepsContents() {
+            JsonMap map = JsonMap.fromMap(createdLHM(List.of("a", "b"), List.of(1, List.of(createdLHM(List.of("c"),
+                    List.of(true))))));
+            PersistentJsonMap frozen = map.freeze();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(map, frozen),
+                    () -> Assertions.assertEquals(map.toJsonString(), frozen.toJsonString()),
+                    () -> Assertions.assertTrue(frozen.get("b").getAsList() instanceof PersistentJsonList),
+                    () -> Assertions.assertTrue(frozen.get("b").getAsList().get(0).getAsMap() instanceof PersistentJsonMap)
+            );
+        }
+
+        @Test
+        public void updatesLeaveOldVersionsUnchanged() {
+            PersistentJsonMap v1 = JsonMap.fromMap(createdLHM(List.of("a", "b"), List.of(1, 2))).freeze();
+            PersistentJsonMap v2 = v1.with("a", JsonValue.valueOf(10)).with("c", JsonValue.valueOf(3));
+            PersistentJsonMap v3 = v2.without("b");
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("{\"a\": 1, \"b\": 2}", v1.toJsonString()),
+                    () -> Assertions.assertEquals("{\"a\": 10, \"b\": 2, \"c\": 3}", v2.toJsonString()),
+                    () -> Assertions.assertEquals("{\"a\": 10, \"c\": 3}", v3.toJsonString()),
+                    () -> Assertions.assertSame(v3, v3.without("b")),
+                    () -> Assertions.assertThrows(UnsupportedOperationException.class,
+                            () -> v1.put("d", JsonValue.valueOf(4)))
+            );
+        }
+
+        @Test
+        public void listMatchesArrayList() {
+            Random random = new Random(42);
+            List<JsonValue> expected = new ArrayList<>();
+            List<JsonValue> expectedSnapshot = null;
+            PersistentJsonList list = PersistentJsonList.empty();
+            PersistentJsonList snapshot = null;
+
+            for (int i = 0; i < 40_000; i++) {
+                JsonValue value = JsonValue.valueOf(i);
+
+                if (!expected.isEmpty() && random.nextInt(3) == 0) {
+                    int index = random.nextInt(expected.size());
+                    expected.set(index, value);
+                    list = list.with(index, value);
+                } else {
+                    expected.add(value);
+                    list = list.append(value);
+                }
+
+                if (i == 1000) {
+                    snapshot = list;
+                    expectedSnapshot = new ArrayList<>(expected);
+                }
+            }
+
+            Assertions.assertEquals(expected, list);
+            Assertions.assertEquals(expectedSnapshot, snapshot);
+        }
+
+        @Test
+        public void mapMatchesLinkedHashMap() {
+            Random random = new Random(7);
+            Map<String, JsonValue> expected = new LinkedHashMap<>();
+            PersistentJsonMap map = PersistentJsonMap.empty();
+
+            for (int i = 0; i < 20_000; i++) {
+                // "Aa" and "BB" have the same hash code, as do all 4-letter combinations of them
+                String key = (i % 10 == 0)
+                        ? List.of("Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB").get(random.nextInt(6))
+                        : "k" + random.nextInt(5000);
+
+                if (random.nextInt(4) == 0) {
+                    expected.remove(key);
+                    map = map.without(key);
+                } else {
+                    expected.put(key, JsonValue.valueOf(i));
+                    map = map.with(key, JsonValue.valueOf(i));
+                }
+            }
+
+            Assertions.assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class StreamingWriteTests {
+        private final String JSON = "{\"name\": \"café 😀\", \"list\": [1, 2.5, true, null, {}], \"text\": \"a\\nb\"}";
+        private final String COMPACT = "{\"name\":\"café 😀\",\"list\":[1,2.5,true,null,{}],\"text\":\"a\\nb\"}";
+
+        @Test
+        public void writesMatchToJsonString() throws IOException {
+            JsonMap map = Parser.parseFromString(JSON).getAsMap();
+
+            StringWriter writer = new StringWriter();
+            map.writeTo(writer);
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            map.writeTo(stream);
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            map.writeTo(buffer);
+            buffer.flip();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(JSON, map.toJsonString()),
+                    () -> Assertions.assertEquals(JSON, writer.toString()),
+                    () -> Assertions.assertEquals(JSON, stream.toString(StandardCharsets.UTF_8)),
+                    () -> Assertions.assertEquals(JSON, StandardCharsets.UTF_8.decode(buffer).toString())
+            );
+        }
+
+        @Test
+        public void compactLeavesOutSpaces() throws IOException {
+            JsonMap map = Parser.parseFromString(JSON).getAsMap();
+            StringBuilder builder = new StringBuilder();
+            map.writeTo(builder, true);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(COMPACT, map.toJsonString(true)),
+                    () -> Assertions.assertEquals(COMPACT, builder.toString()),
+                    () -> Assertions.assertEquals(map, Parser.parseFromString(COMPACT).getAsMap())
+            );
+        }
+
+        @Test
+        public void largeOutputCrossesBufferBoundaries() throws IOException {
+            JsonList list = new JsonList();
+            for (int i = 0; i < 5000; i++)
+                list.add(JsonValue.valueOf("élément 😀 " + i));
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            list.writeTo(stream);
+
+            Assertions.assertEquals(list.toJsonString(), stream.toString(StandardCharsets.UTF_8));
+        }
+
+        @Test
+        public void smallByteBufferOverflows() {
+            JsonMap map = Parser.parseFromString(JSON).getAsMap();
+            Assertions.assertThrowsExactly(BufferOverflowException.class, () -> map.writeTo(ByteBuffer.allocate(8)));
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class EscaperTests {
+
+        @Test
+        public void allControlCharactersAreEscaped() {
+            JsonList list = new JsonList();
+            list.add(JsonValue.valueOf("tab\there \"quoted\" bell\u0007 nul\u0000 esc\u001b"));
+            String jsonStr = list.toJsonString();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("[\"tab\\there \\\"quoted\\\" bell\\u0007 nul\\u0000 esc\\u001b\"]",
+                            jsonStr),
+                    () -> Assertions.assertEquals(list, Parser.parseFromString(jsonStr).getAsList())
+            );
+        }
+
+        @Test
+        public void parsedEscapesAreKept() {
+            String jsonStr = "{\"a\\\"b\": \"line\\nbreak, back\\\\slash, \\/ and \\u0041\"}";
+            JsonMap map = Parser.parseFromString(jsonStr).getAsMap();
+
+            Assertions.assertEquals("{\"a\\\"b\": \"line\\nbreak, back\\\\slash, \\/ and A\"}", map.toJsonString());
+        }
+
+        @Test
+        public void unchangedStringIsReturnedAsIs() {
+            String plain = "nothing to escape here, not even é";
+
+            Assertions.assertAll(
+                    () -> Assertions.assertSame(plain, Escaper.escape(plain)),
+                    () -> Assertions.assertEquals("a\\\"b\\u001f", Escaper.escape("a\"b\u001f"))
+            );
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class JsonWriterTests {
+
+        @Test
+        public void writesSameOutputAsTree() throws IOException {
+            JsonMap tree = Parser.parseFromString("{\"id\": 7, \"name\": \"a \\\"b\\\"\", \"ratio\": 0.5, " +
+                    "\"tags\": [\"x\", null, true], \"nested\": {}}").getAsMap();
+
+            StringWriter out = new StringWriter();
+            try (JsonWriter writer = new JsonWriter(out)) {
+                writer.beginObject()
+                        .name("id").value(7)
+                        .name("name").value("a \"b\"")
+                        .name("ratio").value(0.5)
+                        .name("tags").beginArray().value("x").nullValue().value(true).endArray()
+                        .name("nested").beginObject().endObject()
+                        .endObject();
+            }
+
+            Assertions.assertEquals(tree.toJsonString(), out.toString());
+        }
+
+        @Test
+        public void streamsRowsToOutputStream() throws IOException {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            JsonValue existing = Parser.parseFromString("{\"k\": [1, 2]}");
+
+            try (JsonWriter writer = new JsonWriter(stream, true)) {
+                writer.beginArray();
+                for (int i = 0; i < 3; i++)
+                    writer.beginObject().name("row").value(i).name("path").value("C:\\dir é").endObject();
+                writer.value(existing).endArray();
+            }
+
+            String expected = "[{\"row\":0,\"path\":\"C:\\\\dir é\"},{\"row\":1,\"path\":\"C:\\\\dir é\"}," +
+                    "{\"row\":2,\"path\":\"C:\\\\dir é\"},{\"k\":[1,2]}]";
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(expected, stream.toString(StandardCharsets.UTF_8)),
+                    () -> Assertions.assertEquals(4, Parser.parseFromString(expected).getAsList().size())
+            );
+        }
+
+        @Test
+        public void invalidNestingThrows() {
+            JsonWriter writer = new JsonWriter(new StringBuilder());
+
+            Assertions.assertAll(
+                    () -> Assertions.assertThrowsExactly(IllegalStateException.class, writer::endObject),
+                    () -> Assertions.assertThrowsExactly(IllegalStateException.class, () -> writer.name("a")),
+                    () -> Assertions.assertThrowsExactly(IllegalStateException.class,
+                            () -> writer.beginObject().value(1)),
+                    () -> Assertions.assertThrowsExactly(IllegalStateException.class, writer::endArray),
+                    () -> Assertions.assertThrowsExactly(IllegalStateException.class,
+                            () -> writer.name("a").endObject()),
+                    () -> Assertions.assertThrowsExactly(IllegalArgumentException.class,
+                            () -> writer.value(Double.NaN)),
+                    () -> Assertions.assertThrowsExactly(IllegalStateException.class, writer::close)
+            );
+        }
+
+        @Test
+        public void secondTopLevelValueThrows() throws IOException {
+            JsonWriter writer = new JsonWriter(new StringBuilder());
+            writer.value("only");
+
+            Assertions.assertThrowsExactly(IllegalStateException.class, () -> writer.value(2));
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class NumberFormatTests {
+
+        private String format(double value) {
+            JsonList list = new JsonList();
+            list.add(JsonValue.valueOf(value));
+            String jsonStr = list.toJsonString();
+            return jsonStr.substring(1, jsonStr.length() - 1);
+        }
+
+        @ParameterizedTest
+        @ValueSource(doubles = {0.0, -0.0, 1.0, 55.4, 0.1, -2.5, 100.0, 1234567.0, 1e7, 1e-3, 1e-4, 1e10, 1e-5,
+                Double.MAX_VALUE, Double.MIN_VALUE, Double.MIN_NORMAL})
+        public void layoutMatchesDoubleToString(double value) {
+            Assertions.assertEquals(Double.toString(value), format(value));
+        }
+
+        @Test
+        public void shortestRepresentationIsUsed() {
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("2.82879384806159E17", format(2.82879384806159E17)),
+                    () -> Assertions.assertEquals("1.0E23", format(1e23))
+            );
+        }
+
+        @Test
+        public void randomDoublesRoundTrip() {
+            Random random = new Random(34);
+
+            for (int i = 0; i < 100_000; i++) {
+                double value = Double.longBitsToDouble(random.nextLong());
+                if (Double.isNaN(value) || Double.isInfinite(value))
+                    continue;
+
+                String formatted = format(value);
+                Assertions.assertEquals(value, Double.parseDouble(formatted), formatted);
+                Assertions.assertTrue(formatted.length() <= Double.toString(value).length(), formatted);
+            }
+        }
+
+        @Test
+        public void longsAreWrittenInDecimal() {
+            JsonList list = JsonList.fromList(List.of(0L, -42L, Long.MAX_VALUE, Long.MIN_VALUE));
+            Assertions.assertEquals("[0, -42, " + Long.MAX_VALUE + ", " + Long.MIN_VALUE + "]", list.toJsonString());
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class ParallelSerializationTests {
+        private final ForkJoinPool POOL = new ForkJoinPool(4);
+
+        private JsonList createLargeList(int size) {
+            JsonList list = new JsonList();
+
+            for (int i = 0; i < size; i++) {
+                JsonMap row = new JsonMap();
+                row.put("id", JsonValue.valueOf(i));
+                row.put("name", JsonValue.valueOf("row \"" + i + "\""));
+                row.put("score", JsonValue.valueOf(i / 7.0));
+                list.add(JsonValue.valueOf(row));
+            }
+
+            return list;
+        }
+
+        @Test
+        public void matchesSequentialOutput() throws IOException {
+            JsonMap root = new JsonMap();
+            root.put("rows", JsonValue.valueOf(createLargeList(20_000)));
+            root.put("small", JsonValue.valueOf(createLargeList(3)));
+
+            JsonMap wide = new JsonMap();
+            for (int i = 0; i < 5_000; i++)
+                wide.put("key" + i, JsonValue.valueOf(createLargeList(i % 3)));
+            root.put("wide", JsonValue.valueOf(wide));
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            root.writeTo(stream, true, POOL);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(root.toJsonString(), root.toJsonString(false, POOL)),
+                    () -> Assertions.assertEquals(root.toJsonString(true), stream.toString(StandardCharsets.UTF_8))
+            );
+        }
+
+        @Test
+        public void smallContainersStaySequential() {
+            JsonList list = createLargeList(10);
+            Assertions.assertEquals(list.toJsonString(), list.toJsonString(false, POOL));
+        }
+
+        @Test
+        public void errorsInChunksArePropagated() {
+            List<Object> backing = new ArrayList<>(Collections.nCopies(ParallelSerializer.THRESHOLD * 2, 1L));
+            backing.set(backing.size() - 1, new Object());
+            JsonList view = JsonValue.view(backing).getAsList();
+
+            Assertions.assertThrows(IllegalArgumentException.class, () -> view.toJsonString(false, POOL));
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class OutputCacheTests {
+        private final String JSON = "{\"users\": [{\"name\": \"a\", \"tags\": [1, 2]}, {\"name\": \"b\", \"tags\": []}], " +
+                "\"meta\": {\"count\": 2, \"nested\": {\"deep\": [true]}}}";
+
+        private JsonMap createTrackedMap() {
+            JsonMap map = Parser.parseFromString(JSON).getAsMap();
+            map.enableOutputCache();
+            return map;
+        }
+
+        // Frozen copies are never cached, so they give the output expected from scratch
+        private void assertOutputIsCurrent(JsonMap map) {
+            Assertions.assertEquals(map.freeze().toJsonString(), map.toJsonString());
+            Assertions.assertEquals(map.freeze().toJsonString(true), map.toJsonString(true));
+        }
+
+        @Test
+        public void unchangedSubtreesAreReused() {
+            JsonMap map = createTrackedMap();
+            String first = map.toJsonString();
+            String second = map.toJsonString();
+            JsonMap meta = map.get("meta").getAsMap();
+            String metaOutput = meta.state.json;
+
+            map.get("users").getAsList().get(1).getAsMap().put("name", JsonValue.valueOf("c"));
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(JSON, first),
+                    () -> Assertions.assertSame(first, second),
+                    () -> Assertions.assertNull(map.state.json),
+                    () -> Assertions.assertEquals(JSON.replace("\"b\"", "\"c\""), map.toJsonString()),
+                    () -> Assertions.assertSame(metaOutput, meta.state.json)
+            );
+        }
+
+        @Test
+        public void everyMutationPathInvalidates() {
+            JsonMap map = createTrackedMap();
+            JsonList users = map.get("users").getAsList();
+            JsonMap meta = map.get("meta").getAsMap();
+            List<Runnable> mutations = List.of(
+                    () -> users.get(0).getAsMap().get("tags").getAsList().add(JsonValue.valueOf(3)),
+                    () -> {
+                        Iterator<JsonValue> iterator = users.get(0).getAsMap().get("tags").getAsList().iterator();
+                        iterator.next();
+                        iterator.remove();
+                    },
+                    () -> users.get(0).getAsMap().get("tags").getAsList().subList(0, 1).set(0, JsonValue.valueOf(9)),
+                    () -> users.get(0).getAsMap().get("tags").getAsList().subList(0, 1).clear(),
+                    () -> users.add(JsonValue.valueOf(JsonMap.fromMap(Map.of("name", "d")))),
+                    () -> users.sort(Comparator.comparing(JsonValue::toString)),
+                    () -> users.removeIf(value -> value.getAsMap().containsKey("tags")),
+                    () -> meta.entrySet().iterator().next().setValue(JsonValue.valueOf(5)),
+                    () -> meta.keySet().remove("count"),
+                    () -> meta.get("nested").getAsMap().values().removeIf(value -> true),
+                    () -> meta.merge("count", JsonValue.valueOf(1), (a, b) -> a),
+                    () -> meta.compute("count", (key, value) -> null),
+                    () -> meta.putAll(Map.of("x", JsonValue.valueOf("y"))),
+                    () -> meta.replaceAll((key, value) -> JsonValue.valueOf(key)),
+                    () -> map.clear()
+            );
+
+            for (Runnable mutation : mutations) {
+                map.toJsonString();
+                map.toJsonString(true);
+                mutation.run();
+                assertOutputIsCurrent(map);
+            }
+        }
+
+        @Test
+        public void sharedAndAddedContainersAreTracked() {
+            JsonMap map = createTrackedMap();
+            JsonList shared = new JsonList();
+            map.put("first", JsonValue.valueOf(shared));
+            map.get("meta").getAsMap().put("second", JsonValue.valueOf(shared));
+            map.toJsonString();
+
+            shared.add(JsonValue.valueOf("x"));
+            assertOutputIsCurrent(map);
+
+            map.remove("first");
+            map.toJsonString();
+            shared.add(JsonValue.valueOf("y"));
+            assertOutputIsCurrent(map);
+        }
+
+        @Test
+        public void viewsAreNeverCached() {
+            JsonMap map = createTrackedMap();
+            List<Object> backing = new ArrayList<>(List.of(1L, 2L));
+            map.get("meta").getAsMap().put("view", JsonValue.view(backing));
+            map.toJsonString();
+
+            backing.add(3L);
+            Assertions.assertTrue(map.toJsonString().contains("\"view\": [1, 2, 3]"));
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class KeyShapeTests {
+
+        @Test
+        public void repeatedShapesWithNestedObjects() throws IOException {
+            String jsonStr = "[{\"id\": 1, \"loc\": {\"x\": 1, \"y\": 2}, \"q\\\"k\": \"a\"}, " +
+                    "{\"id\": 2, \"loc\": {\"x\": 3, \"y\": 4}, \"q\\\"k\": \"b\"}, " +
+                    "{\"id\": 3, \"loc\": {\"y\": 5, \"x\": 6}, \"other\": \"c\"}, " +
+                    "{\"id\": 4, \"loc\": {}, \"q\\\"k\": \"d\"}]";
+            JsonList list = Parser.parseFromString(jsonStr).getAsList();
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            list.writeTo(stream, true);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(jsonStr, list.toJsonString()),
+                    () -> Assertions.assertEquals(jsonStr.replace(", ", ",").replace(": ", ":"),
+                            stream.toString(StandardCharsets.UTF_8))
+            );
+        }
+
+        @Test
+        public void alternatingShapesWithTheSameFirstKey() {
+            KeyShapes shapes = new KeyShapes();
+            KeyShapes.Shape named = shapes.shapeOf(List.of("id", "name", "kind"), ",", ":");
+            KeyShapes.Shape labelled = shapes.shapeOf(List.of("id", "label", "type"), ",", ":");
+
+            JsonList list = new JsonList();
+            StringBuilder expected = new StringBuilder("[");
+            for (int i = 0; i < 20; i++) {
+                boolean even = i % 2 == 0;
+                JsonMap row = new JsonMap();
+                row.put("id", JsonValue.valueOf(i));
+                row.put(even ? "name" : "label", JsonValue.valueOf("r" + i));
+                row.put(even ? "kind" : "type", JsonValue.valueOf(even));
+                list.add(JsonValue.valueOf(row));
+                expected.append(i > 0 ? "," : "").append("{\"id\":").append(i)
+                        .append(even ? ",\"name\":\"r" : ",\"label\":\"r").append(i)
+                        .append(even ? "\",\"kind\":true}" : "\",\"type\":false}");
+            }
+
+            Assertions.assertAll(
+                    () -> Assertions.assertNotSame(named, labelled),
+                    () -> Assertions.assertSame(named, shapes.shapeOf(List.of("id", "name", "kind"), ",", ":")),
+                    () -> Assertions.assertSame(labelled, shapes.shapeOf(List.of("id", "label", "type"), ",", ":")),
+                    () -> Assertions.assertSame(named, shapes.shapeOf(List.of("id", "name", "kind"), ",", ":")),
+                    () -> Assertions.assertEquals(expected.append(']').toString(), list.toJsonString(true))
+            );
+        }
+
+        @Test
+        public void manyShapesAndWideObjects() {
+            JsonList list = new JsonList();
+            Random random = new Random(37);
+            StringBuilder expected = new StringBuilder("[");
+
+            for (int i = 0; i < 500; i++) {
+                JsonMap row = new JsonMap();
+                int size = random.nextInt(3) == 0 ? 100 : random.nextInt(4);
+                StringBuilder rowJson = new StringBuilder("{");
+
+                for (int k = 0; k < size; k++) {
+                    String key = "k" + random.nextInt(3) + "é" + k;
+                    if (row.containsKey(key))
+                        continue;
+
+                    row.put(key, JsonValue.valueOf(k));
+                    rowJson.append(rowJson.length() > 1 ? ", " : "").append('"').append(key).append("\": ").append(k);
+                }
+
+                list.add(JsonValue.valueOf(row));
+                expected.append(i > 0 ? ", " : "").append(rowJson).append('}');
+            }
+
+            Assertions.assertEquals(expected.append(']').toString(), list.toJsonString());
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class BinaryTests {
+
+        private byte[] encode(JsonValue value) throws IOException {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            value.writeBinary(stream);
+            return stream.toByteArray();
+        }
+
+        @Test
+        public void everyValueTypeRoundTrips() throws IOException {
+            String jsonStr = "{\"null\": null, \"bools\": [true, false], \"longs\": [0, -1, 9223372036854775807, " +
+                    "-9223372036854775808], \"doubles\": [0.5, -0.0, 12345.678], \"text\": \"esc\\\\aped \\n \\\" é 😀\", " +
+                    "\"nested\": [{\"null\": [[]]}, {}], \"text2\": \"a long enough string to be sliced\"}";
+            Options options = Options.OptionsBuilder.newBuilder().stringSlices(8).build();
+            JsonValue value = Parser.parseFromString(jsonStr, options);
+            JsonList withSurrogate = new JsonList();
+            withSurrogate.add(JsonValue.valueOf("lone \uD800 surrogate"));
+
+            JsonValue decoded = Parser.parseBinary(new ByteArrayInputStream(encode(value)));
+            JsonValue decodedSurrogate = Parser.parseBinary(ByteBuffer.wrap(encode(JsonValue.valueOf(withSurrogate))));
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(value, decoded),
+                    () -> Assertions.assertEquals(jsonStr, decoded.getAsMap().toJsonString()),
+                    () -> Assertions.assertEquals(withSurrogate.get(0).getAsString(),
+                            decodedSurrogate.getAsList().get(0).getAsString()),
+                    () -> Assertions.assertEquals(JsonValue.valueOf("x"),
+                            Parser.parseBinary(ByteBuffer.wrap(encode(JsonValue.valueOf("x")))))
+            );
+        }
+
+        @Test
+        public void lazyNumbersKeepTheirText() throws IOException {
+            Options lazy = Options.OptionsBuilder.newBuilder().lazyNumbers().build();
+            String jsonStr = "[123456789012345678901234567890, 0.1000000000000000000000001, 2.5e-3]";
+            JsonValue decoded = Parser.parseBinary(new ByteArrayInputStream(encode(Parser.parseFromString(jsonStr, lazy))));
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(jsonStr, decoded.getAsList().toJsonString()),
+                    () -> Assertions.assertEquals(new BigInteger("123456789012345678901234567890"),
+                            decoded.getAsList().get(0).getAsBigInteger())
+            );
+        }
+
+        @Test
+        public void keysAreStoredOnce() throws IOException {
+            JsonList rows = new JsonList();
+            for (int i = 0; i < 100; i++)
+                rows.add(JsonValue.valueOf(JsonMap.fromMap(Map.of("a_rather_long_key_name", i))));
+
+            byte[] data = encode(JsonValue.valueOf(rows));
+            JsonList decoded = Parser.parseBinary(ByteBuffer.wrap(data)).getAsList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertTrue(data.length * 4 < rows.toJsonString().length(), data.length + " bytes"),
+                    () -> Assertions.assertEquals(rows, decoded)
+            );
+        }
+
+        @Test
+        public void lateKeyReferencesNearTheEnd() throws IOException {
+            JsonMap wide = new JsonMap();
+            for (int i = 0; i < 300; i++)
+                wide.put("k" + i, JsonValue.valueOf(i));
+
+            JsonList list = new JsonList();
+            list.add(JsonValue.valueOf(wide));
+            list.add(JsonValue.valueOf(JsonMap.fromMap(Map.of("k299", true))));
+
+            Assertions.assertEquals(list, Parser.parseBinary(ByteBuffer.wrap(encode(JsonValue.valueOf(list)))).getAsList());
+        }
+
+        @Test
+        public void consecutiveDocumentsInBuffer() throws IOException {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            JsonValue.valueOf(1).writeBinary(stream);
+            JsonValue.valueOf("two").writeBinary(stream);
+
+            ByteBuffer buffer = ByteBuffer.wrap(stream.toByteArray());
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(JsonValue.valueOf(1), Parser.parseBinary(buffer)),
+                    () -> Assertions.assertEquals(JsonValue.valueOf("two"), Parser.parseBinary(buffer)),
+                    () -> Assertions.assertFalse(buffer.hasRemaining())
+            );
+        }
+
+        @Test
+        public void malformedDataThrows() throws IOException {
+            byte[] valid = encode(Parser.parseFromString("{\"a\": [1, \"b\"]}"));
+
+            Assertions.assertAll(
+                    () -> Assertions.assertThrowsExactly(JsonParserException.class,
+                            () -> Parser.parseBinary(ByteBuffer.wrap("{\"a\": 1}".getBytes(StandardCharsets.UTF_8)))),
+                    () -> Assertions.assertThrowsExactly(JsonParserException.class,
+                            () -> Parser.parseBinary(ByteBuffer.wrap(Arrays.copyOf(valid, valid.length - 1)))),
+                    () -> Assertions.assertThrowsExactly(JsonParserException.class,
+                            () -> Parser.parseBinary(new ByteArrayInputStream(Arrays.copyOf(valid, valid.length + 1)))),
+                    () -> Assertions.assertThrowsExactly(JsonParserException.class,
+                            () -> Parser.parseBinary(ByteBuffer.wrap(new byte[] {'E', 'S', 'B', 1, 7, -1, -1, -1, 15})))
+            );
+        }
+    }
+
+    @Nested
+    public class WriteObjectTests {
+
+        public class Point {
+            private final int x;
+            private final int y;
+
+            Point(int x, int y) {
+                this.x = x;
+                this.y = y;
+            }
+
+            public int getY() {
+                return y;
+            }
+
+            public int getX() {
+                return x;
+            }
+
+            public boolean isOrigin() {
+                return x == 0 && y == 0;
+            }
+        }
+
+        public class Shape {
+            public String getName() {
+                return "line";
+            }
+
+            public List<Point> getPoints() {
+                return List.of(new Point(0, 0), new Point(3, -4));
+            }
+
+            public ValueType getType() {
+                return ValueType.LIST;
+            }
+
+            public String getURL() {
+                return null;
+            }
+        }
+
+        private class Hidden {
+            public double getRatio() {
+                return 0.25;
+            }
+        }
+
+        public class Node {
+            Node next;
+
+            public Node getNext() {
+                return next;
+            }
+        }
+
+        private String write(Object value) throws IOException {
+            StringWriter out = new StringWriter();
+            try (JsonWriter writer = new JsonWriter(out, true)) {
+                writer.writeObject(value);
+            }
+            return out.toString();
+        }
+
+        @Test
+        public void writesBeansSortedByProperty() throws IOException {
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("{\"origin\":false,\"x\":1,\"y\":2}", write(new Point(1, 2))),
+                    () -> Assertions.assertEquals("{\"URL\":null,\"name\":\"line\",\"points\":[{\"origin\":true," +
+                            "\"x\":0,\"y\":0},{\"origin\":false,\"x\":3,\"y\":-4}],\"type\":\"LIST\"}",
+                            write(new Shape())),
+                    () -> Assertions.assertEquals("{\"ratio\":0.25}", write(new Hidden()))
+            );
+        }
+
+        @Test
+        public void writesCollectionsArraysAndValues() throws IOException {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("ints", new int[] {1, 2});
+            map.put("chars", new char[] {'a', '"'});
+            map.put("strings", new String[] {"x", null});
+            map.put("set", Set.of(5L));
+            map.put("big", new BigDecimal("12345678901234567890.5"));
+            map.put("json", Parser.parseFromString("{\"k\": [true]}"));
+            map.put("list", Parser.parseFromString("[1.5]").getAsList());
+
+            String json = write(map);
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("{\"ints\":[1,2],\"chars\":[\"a\",\"\\\"\"],\"strings\":[\"x\",null]," +
+                            "\"set\":[5],\"big\":12345678901234567890.5,\"json\":{\"k\":[true]},\"list\":[1.5]}", json),
+                    () -> Assertions.assertEquals("[\"2024-01-31\",1,null]",
+                            write(Arrays.asList(java.time.LocalDate.of(2024, 1, 31), (short) 1, null))),
+                    () -> Assertions.assertEquals("\"text\"", write(new StringBuilder("text")))
+            );
+        }
+
+        @Test
+        public void matchesTreeOutput() throws IOException {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("a", List.of(1, 2.5, "s\tt"));
+            map.put("b", Map.of("c", false));
+
+            String json = write(map);
+            Assertions.assertEquals(Parser.parseFromString(json).getAsMap().toJsonString(true), json);
+        }
+
+        @Test
+        public void rejectsUnwritableObjects() {
+            Node node = new Node();
+            node.next = node;
+
+            Assertions.assertAll(
+                    () -> Assertions.assertThrowsExactly(IllegalArgumentException.class,
+                            () -> write(Map.of(1, "non-String key"))),
+                    () -> Assertions.assertThrowsExactly(IllegalArgumentException.class,
+                            () -> write(List.of(Double.NaN))),
+                    () -> Assertions.assertThrowsExactly(IllegalArgumentException.class, () -> write(node))
+            );
+        }
+    }
+
+    // Classes for data binding tests (static, as binding needs a constructor without arguments)
+    public static class Coordinate {
+        private int x;
+        private long y;
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public long getY() {
+            return y;
+        }
+
+        public void setY(long y) {
+            this.y = y;
+        }
+    }
+
+    public static class Route {
+        private String name;
+        private ValueType kind;
+        private List<Coordinate> stops;
+        private Map<String, Double> weights;
+        private int[] codes;
+        private Route next;
+        private JsonValue extra;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public ValueType getKind() {
+            return kind;
+        }
+
+        public void setKind(ValueType kind) {
+            this.kind = kind;
+        }
+
+        public List<Coordinate> getStops() {
+            return stops;
+        }
+
+        public void setStops(List<Coordinate> stops) {
+            this.stops = stops;
+        }
+
+        public Map<String, Double> getWeights() {
+            return weights;
+        }
+
+        public void setWeights(Map<String, Double> weights) {
+            this.weights = weights;
+        }
+
+        public int[] getCodes() {
+            return codes;
+        }
+
+        public void setCodes(int[] codes) {
+            this.codes = codes;
+        }
+
+        public Route getNext() {
+            return next;
+        }
+
+        public void setNext(Route next) {
+            this.next = next;
+        }
+
+        public JsonValue getExtra() {
+            return extra;
+        }
+
+        public void setExtra(JsonValue extra) {
+            this.extra = extra;
+        }
+    }
+
+    @Nested
+    public class BindingTests {
+
+        @Test
+        public void bindsNestedObjects() {
+            Route route = Parser.parseInto("{\"name\": \"a\\tb\", \"kind\": \"MAP\", \"unknown\": {\"skip\": [1, {}]}, " +
+                    "\"stops\": [{\"x\": 1, \"y\": 2}, {\"y\": -3}], \"weights\": {\"w\": 0.5, \"v\": 2}, " +
+                    "\"codes\": [7, 8], \"next\": {\"name\": \"b\", \"next\": null}, \"extra\": [true]}", Route.class);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("a\tb", route.getName()),
+                    () -> Assertions.assertEquals(ValueType.MAP, route.getKind()),
+                    () -> Assertions.assertEquals(2, route.getStops().size()),
+                    () -> Assertions.assertEquals(1, route.getStops().get(0).getX()),
+                    () -> Assertions.assertEquals(-3, route.getStops().get(1).getY()),
+                    () -> Assertions.assertEquals(0, route.getStops().get(1).getX()),
+                    () -> Assertions.assertEquals(Map.of("w", 0.5, "v", 2.0), route.getWeights()),
+                    () -> Assertions.assertArrayEquals(new int[] {7, 8}, route.getCodes()),
+                    () -> Assertions.assertEquals("b", route.getNext().getName()),
+                    () -> Assertions.assertNull(route.getNext().getNext()),
+                    () -> Assertions.assertEquals(Parser.parseFromString("[true]"), route.getExtra())
+            );
+        }
+
+        @Test
+        public void bindsWhatWriteObjectWrites() throws IOException {
+            Route route = new Route();
+            route.setName("line \"1\"");
+            route.setStops(List.of(new Coordinate(), new Coordinate()));
+            route.getStops().get(1).setX(-5);
+            route.setCodes(new int[] {Integer.MAX_VALUE});
+
+            StringWriter out = new StringWriter();
+            try (JsonWriter writer = new JsonWriter(out)) {
+                writer.writeObject(route);
+            }
+            Route bound = Parser.parseInto(out.toString(), Route.class);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(route.getName(), bound.getName()),
+                    () -> Assertions.assertEquals(-5, bound.getStops().get(1).getX()),
+                    () -> Assertions.assertArrayEquals(route.getCodes(), bound.getCodes()),
+                    () -> Assertions.assertNull(bound.getKind())
+            );
+        }
+
+        @Test
+        public void bindsPlainJavaTypes() {
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(List.of(1L, "two", Map.of("three", false)),
+                            Parser.parseInto("[1, \"two\", {\"three\": false}]", List.class)),
+                    () -> Assertions.assertEquals(12, Parser.parseInto(" 12 ", Integer.class)),
+                    () -> Assertions.assertEquals(new BigDecimal("0.125"), Parser.parseInto("0.125", BigDecimal.class)),
+                    () -> Assertions.assertNull(Parser.parseInto("null", Coordinate.class)),
+                    () -> Assertions.assertEquals(1, Parser.parseInto("{\"x\": 1,}", Coordinate.class,
+                            Options.commaAtEnd()).getX())
+            );
+        }
+
+        @Test
+        public void rejectsMismatchedJson() {
+            Assertions.assertAll(
+                    () -> Assertions.assertThrowsExactly(ValueParserException.class,
+                            () -> Parser.parseInto("{\"x\": \"1\"}", Coordinate.class)),
+                    () -> Assertions.assertThrowsExactly(ValueParserException.class,
+                            () -> Parser.parseInto("{\"x\": 3000000000}", Coordinate.class)),
+                    () -> Assertions.assertThrowsExactly(ValueParserException.class,
+                            () -> Parser.parseInto("{\"x\": 1.5}", Coordinate.class)),
+                    () -> Assertions.assertThrowsExactly(ValueParserException.class,
+                            () -> Parser.parseInto("{\"x\": null}", Coordinate.class)),
+                    () -> Assertions.assertThrowsExactly(ValueParserException.class,
+                            () -> Parser.parseInto("{\"kind\": \"TREE\"}", Route.class)),
+                    () -> Assertions.assertThrowsExactly(IllegalCharacterException.class,
+                            () -> Parser.parseInto("{\"x\": 1,}", Coordinate.class)),
+                    () -> Assertions.assertThrowsExactly(IllegalCharacterException.class,
+                            () -> Parser.parseInto("{\"x\": 1} 2", Coordinate.class)),
+                    () -> Assertions.assertThrowsExactly(IllegalArgumentException.class,
+                            () -> Parser.parseInto("{}", WriteObjectTests.Point.class))
+            );
+        }
+    }
+
+    @Nested
+    public class JsonReaderTests {
+
+        @Test
+        public void readsTokens() {
+            JsonReader reader = new JsonReader(" {\"id\": 7, \"tags\": [\"a\\nb\", null, true], \"skip\": {\"x\": [1, {}]}, " +
+                    "\"ratio\": 0.5, \"type\": \"MAP\", \"raw\": {\"k\": []}} ");
+
+            reader.beginObject();
+            Assertions.assertEquals("id", reader.nextName());
+            Assertions.assertEquals(JsonReader.Token.NUMBER, reader.peek());
+            Assertions.assertEquals(7, reader.nextInt());
+            Assertions.assertEquals("tags", reader.nextName());
+            reader.beginArray();
+            Assertions.assertEquals("a\nb", reader.nextString());
+            Assertions.assertNull(reader.nextString());
+            Assertions.assertTrue(reader.nextBoolean());
+            Assertions.assertFalse(reader.hasNext());
+            reader.endArray();
+            Assertions.assertEquals("skip", reader.nextName());
+            reader.skipValue();
+            Assertions.assertEquals("ratio", reader.nextName());
+            Assertions.assertEquals(0.5, reader.nextDouble());
+            Assertions.assertEquals("type", reader.nextName());
+            Assertions.assertEquals(ValueType.MAP, reader.nextEnum(ValueType.class));
+            Assertions.assertEquals("raw", reader.nextName());
+            Assertions.assertEquals(Parser.parseFromString("{\"k\": []}"), reader.nextValue());
+            Assertions.assertFalse(reader.hasNext());
+            reader.endObject();
+            reader.endDocument();
+        }
+
+        @Test
+        public void readsListsAndMaps() {
+            JsonReader reader = new JsonReader("{\"a\": [1, 2], \"b\": [], \"c\": null}");
+
+            Map<String, List<Long>> map = reader.nextMap(r -> r.nextList(JsonReader::nextLong));
+            reader.endDocument();
+
+            Map<String, List<Long>> expected = new LinkedHashMap<>();
+            expected.put("a", List.of(1L, 2L));
+            expected.put("b", List.of());
+            expected.put("c", null);
+            Assertions.assertEquals(expected, map);
+        }
+
+        @Test
+        public void rejectsUnexpectedTokens() {
+            Assertions.assertAll(
+                    () -> Assertions.assertThrowsExactly(ValueParserException.class,
+                            () -> new JsonReader("[1]").beginObject()),
+                    () -> Assertions.assertThrowsExactly(ValueParserException.class,
+                            () -> new JsonReader("\"1\"").nextInt()),
+                    () -> Assertions.assertThrowsExactly(ValueParserException.class,
+                            () -> new JsonReader("1.5").nextLong()),
+                    () -> Assertions.assertThrowsExactly(IllegalCharacterException.class,
+                            () -> new JsonReader("[1,]").nextList(JsonReader::nextLong)),
+                    () -> Assertions.assertEquals(List.of(1L),
+                            new JsonReader("[1,]", Options.commaAtEnd()).nextList(JsonReader::nextLong)),
+                    () -> Assertions.assertThrowsExactly(IllegalCharacterException.class, () -> {
+                        JsonReader reader = new JsonReader("[] []");
+                        reader.skipValue();
+                        reader.endDocument();
+                    })
+            );
+        }
+    }
+
+    @Nested
+    public class HashCodeTests {
+
+        @Test
+        public void hashCodesMatchEquals() {
+            String longString = "x".repeat(300);
+            JsonValue slice = Parser.parseFromString("\"" + longString + "\"",
+                    Options.OptionsBuilder.newBuilder().stringSlices().build());
+            JsonValue lazy = Parser.parseFromString("[123456789012, 0.1]",
+                    Options.OptionsBuilder.newBuilder().lazyNumbers().build());
+            JsonValue eager = Parser.parseFromString("[123456789012, 0.1000000001]");
+            JsonValue map1 = Parser.parseFromString("{\"a\": 1, \"b\": [true, null]}");
+            JsonValue map2 = Parser.parseFromString("{\"b\": [true, null], \"a\": 1}");
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(JsonValue.valueOf(longString), slice),
+                    () -> Assertions.assertEquals(JsonValue.valueOf(longString).hashCode(), slice.hashCode()),
+                    () -> Assertions.assertEquals(eager, lazy),
+                    () -> Assertions.assertEquals(eager.hashCode(), lazy.hashCode()),
+                    () -> Assertions.assertEquals(map1, map2),
+                    () -> Assertions.assertEquals(map1.hashCode(), map2.hashCode()),
+                    () -> Assertions.assertEquals(Set.of(map1, eager), Set.of(map2, lazy)),
+                    () -> Assertions.assertNotEquals(JsonValue.valueOf(1L).hashCode(), JsonValue.valueOf(2L).hashCode())
+            );
+        }
+
+        @Test
+        public void hashesEscapedStringsByTheirCharacters() {
+            JsonValue parsed = Parser.parseFromString("\"a\\nb\\tc\"");
+            JsonValue constructed = JsonValue.valueOf("a\nb\tc");
+            JsonList parsedList = Parser.parseFromString("[\"a\\nb\\tc\", 1]").getAsList();
+            JsonList constructedList = new JsonList();
+            constructedList.add(constructed);
+            constructedList.add(JsonValue.valueOf(1L));
+            parsedList.enableOutputCache();
+            constructedList.enableOutputCache();
+
+            Assertions.assertEquals(constructed, parsed);
+            Assertions.assertEquals(constructedList, parsedList);
+            Assertions.assertEquals(constructed.hashCode(), parsed.hashCode());
+            Assertions.assertEquals(constructedList.hashCode(), parsedList.hashCode());
+            Assertions.assertEquals(constructedList, parsedList); // Compared after both hash codes are cached
+            Assertions.assertTrue(Set.of(parsed).contains(constructed));
+            Assertions.assertTrue(Set.of(constructedList.freeze()).contains(parsedList.freeze()));
+        }
+
+        @Test
+        public void cachesHashCodesUntilChanged() {
+            JsonMap map = Parser.parseFromString("{\"a\": {\"b\": [1, 2]}, \"c\": \"d\"}").getAsMap();
+            JsonMap copy = Parser.parseFromString(map.toJsonString()).getAsMap();
+            map.enableOutputCache();
+
+            int hash = map.hashCode();
+            Assertions.assertEquals(hash, map.knownHashCode());
+            Assertions.assertEquals(copy, map);
+
+            map.get("a").getAsMap().get("b").getAsList().set(1, JsonValue.valueOf(3L));
+            Assertions.assertEquals(ContainerState.UNKNOWN_HASH, map.knownHashCode());
+            Assertions.assertNotEquals(hash, map.hashCode());
+            Assertions.assertNotEquals(copy, map);
+
+            copy.get("a").getAsMap().get("b").getAsList().set(1, JsonValue.valueOf(3L));
+            Assertions.assertEquals(copy.hashCode(), map.hashCode());
+            Assertions.assertEquals(copy, map);
+        }
+
+        @Test
+        public void doesNotCacheHashCodesOverViews() {
+            Map<String, Object> backing = new LinkedHashMap<>(Map.of("x", 1));
+            JsonMap map1 = Parser.parseFromString("{\"a\": 1}").getAsMap();
+            map1.put("v", JsonValue.view(backing));
+            JsonMap map2 = Parser.parseFromString("{\"a\": 1, \"v\": {\"x\": 2}}").getAsMap();
+            map1.enableOutputCache();
+            map2.enableOutputCache();
+
+            int hash = map1.hashCode();
+            map2.hashCode();
+            Assertions.assertEquals(ContainerState.UNKNOWN_HASH, map1.knownHashCode());
+
+            backing.put("x", 2);
+            Assertions.assertEquals(map2.toJsonString(), map1.toJsonString());
+            Assertions.assertNotEquals(hash, map1.hashCode());
+            Assertions.assertEquals(map2.hashCode(), map1.hashCode());
+            Assertions.assertEquals(map2, map1);
+            Assertions.assertEquals(map1, map2);
+        }
+
+        @Test
+        public void detachesStoredValuesRemovedByAnEqualOne() {
+            JsonMap map = Parser.parseFromString("{\"a\": {\"x\": 1}, \"b\": [1]}").getAsMap();
+            JsonMap storedA = map.get("a").getAsMap();
+            JsonList storedB = map.get("b").getAsList();
+            map.enableOutputCache();
+
+            Assertions.assertTrue(map.remove("a", Parser.parseFromString("{\"x\": 1}")));
+            Assertions.assertTrue(map.replace("b", Parser.parseFromString("[1]"), JsonValue.valueOf(2L)));
+            int hash = map.hashCode();
+            String json = map.toJsonString();
+
+            storedA.put("x", JsonValue.valueOf(3L));
+            storedB.add(JsonValue.valueOf(4L));
+            Assertions.assertEquals(hash, map.knownHashCode());
+            Assertions.assertEquals(json, map.toJsonString());
+            Assertions.assertEquals("{\"b\": 2}", json);
+        }
+
+        @Test
+        public void frozenContainersCacheHashCodes() {
+            PersistentJsonList frozen = Parser.parseFromString("[1, {\"a\": []}]").getAsList().freeze();
+
+            Assertions.assertEquals(ContainerState.UNKNOWN_HASH, frozen.knownHashCode());
+            int hash = frozen.hashCode();
+            Assertions.assertEquals(hash, frozen.knownHashCode());
+            Assertions.assertEquals(Parser.parseFromString("[1, {\"a\": []}]").getAsList().hashCode(), hash);
+            Assertions.assertNotEquals(frozen.append(JsonValue.valueOf(null)), frozen);
+        }
+
+        @Test
+        public void deduplicatesSubtrees() {
+            String json = "[{\"a\": [1, 2]}, {\"a\": [1, 2]}, {\"a\": [1, 2.0]}, {\"a\": [1, 2], \"b\": 0.1}, " +
+                    "{\"a\": [1, 2], \"b\": 0.1000000001}, {\"b\": 0.1, \"a\": [1, 2]}, {\"a\": [1, 2]}]";
+            JsonList list = Parser.parseFromString(json, Options.OptionsBuilder.newBuilder().deduplicateSubtrees().build())
+                    .getAsList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertInstanceOf(PersistentJsonList.class, list),
+                    () -> Assertions.assertInstanceOf(PersistentJsonMap.class, list.get(0).getAsMap()),
+                    () -> Assertions.assertSame(list.get(0).getAsMap(), list.get(1).getAsMap()),
+                    () -> Assertions.assertSame(list.get(0).getAsMap(), list.get(6).getAsMap()),
+                    () -> Assertions.assertSame(list.get(0).getAsMap().get("a").getAsList(),
+                            list.get(3).getAsMap().get("a").getAsList()),
+                    () -> Assertions.assertNotSame(list.get(0).getAsMap(), list.get(2).getAsMap()),
+                    () -> Assertions.assertNotSame(list.get(3).getAsMap(), list.get(4).getAsMap()),
+                    () -> Assertions.assertNotSame(list.get(3).getAsMap(), list.get(5).getAsMap()),
+                    () -> Assertions.assertEquals(Parser.parseFromString(json).getAsList().toJsonString(),
+                            list.toJsonString())
+            );
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class DiffTests {
+
+        private void assertPatches(String source, String target, String idKey) {
+            JsonValue from = Parser.parseFromString(source);
+            JsonValue to = Parser.parseFromString(target);
+            JsonList patch = JsonDiff.diff(from, to, idKey);
+
+            // The patch survives being sent as JSON text
+            JsonList received = Parser.parseFromString(patch.toJsonString()).getAsList();
+            Assertions.assertEquals(to, JsonDiff.apply(from, received), patch.toJsonString());
+        }
+
+        @Test
+        public void patchesTurnSourceIntoTarget() {
+            Assertions.assertAll(
+                    () -> assertPatches("{\"a\": 1, \"b\": [1, 2, 3]}", "{\"a\": 2, \"b\": [1, 3], \"c\": {}}", null),
+                    () -> assertPatches("[1, 2, 3, 4, 5]", "[0, 1, 2, 4, 5, 6]", null),
+                    () -> assertPatches("[{\"x\": 1}, 2]", "[[true], {\"x\": 2}, 2, 3]", null),
+                    () -> assertPatches("{\"a/b\": {\"~c\": 1}}", "{\"a/b\": {\"~c\": 2}}", null),
+                    () -> assertPatches("{\"a\": 1}", "[1]", null),
+                    () -> assertPatches("[{\"id\": 1, \"v\": \"a\"}, {\"id\": 2}, {\"id\": 3}]",
+                            "[{\"id\": 3}, {\"id\": 4}, {\"id\": 1, \"v\": \"b\"}]", "id"),
+                    () -> assertPatches("[{\"id\": 1}, {\"id\": 1}]", "[{\"id\": 2}]", "id")
+            );
+        }
+
+        @Test
+        public void skipsUnchangedBranches() {
+            String unchanged = "{\"big\": [1, 2, {\"c\": [3, 4]}], \"d\": 0.5}";
+            JsonValue source = Parser.parseFromString("{\"keep\": " + unchanged + ", \"n\": 1}");
+            JsonValue target = Parser.parseFromString("{\"keep\": " + unchanged + ", \"n\": 2}");
+
+            Assertions.assertEquals("[{\"op\":\"replace\",\"path\":\"/n\",\"value\":2}]",
+                    JsonDiff.diff(source, target).toJsonString(true));
+            Assertions.assertTrue(JsonDiff.diff(source, Parser.parseFromString(source.getAsMap().toJsonString()))
+                    .isEmpty());
+
+            // An insertion doesn't make every later element differ
+            JsonList patch = JsonDiff.diff(Parser.parseFromString("[1, 2, 3, 4]"), Parser.parseFromString("[0, 1, 2, 3, 4]"));
+            Assertions.assertEquals("[{\"op\":\"add\",\"path\":\"/0\",\"value\":0}]", patch.toJsonString(true));
+        }
+
+        @Test
+        public void matchesArraysByKey() {
+            JsonValue source = Parser.parseFromString("[{\"id\": \"a\", \"n\": 1}, {\"id\": \"b\", \"n\": 2}]");
+            JsonValue target = Parser.parseFromString("[{\"id\": \"b\", \"n\": 2}, {\"id\": \"a\", \"n\": 3}]");
+
+            Assertions.assertEquals("[{\"op\":\"move\",\"from\":\"/1\",\"path\":\"/0\"}," +
+                            "{\"op\":\"replace\",\"path\":\"/1/n\",\"value\":3}]",
+                    JsonDiff.diff(source, target, "id").toJsonString(true));
+        }
+
+        @Test
+        public void appliesInPlace() {
+            JsonMap map = Parser.parseFromString("{\"a\": [1, 2], \"b\": {\"c\": 1}}").getAsMap();
+            map.enableOutputCache();
+            String before = map.toJsonString(true);
+            JsonValue document = JsonValue.wrap(map);
+            JsonList patch = Parser.parseFromString("[" +
+                    "{\"op\": \"test\", \"path\": \"/b/c\", \"value\": 1}," +
+                    "{\"op\": \"add\", \"path\": \"/a/-\", \"value\": 3}," +
+                    "{\"op\": \"copy\", \"from\": \"/b\", \"path\": \"/e\"}," +
+                    "{\"op\": \"move\", \"from\": \"/b/c\", \"path\": \"/a/0\"}," +
+                    "{\"op\": \"remove\", \"path\": \"/a/1\"}]").getAsList();
+
+            Assertions.assertSame(document, JsonDiff.apply(document, patch));
+            Assertions.assertNotEquals(before, map.toJsonString(true));
+            Assertions.assertEquals("{\"a\":[1,2,3],\"b\":{},\"e\":{\"c\":1}}", map.toJsonString(true));
+        }
+
+        @Test
+        public void rejectsBadPatches() {
+            JsonValue document = Parser.parseFromString("{\"a\": [1]}");
+
+            Assertions.assertAll(
+                    () -> Assertions.assertThrows(JsonPatchException.class, () -> JsonDiff.apply(document,
+                            Parser.parseFromString("[{\"op\": \"test\", \"path\": \"/a/0\", \"value\": 2}]").getAsList())),
+                    () -> Assertions.assertThrows(JsonPatchException.class, () -> JsonDiff.apply(document,
+                            Parser.parseFromString("[{\"op\": \"remove\", \"path\": \"/a/01\"}]").getAsList())),
+                    () -> Assertions.assertThrows(JsonPatchException.class, () -> JsonDiff.apply(document,
+                            Parser.parseFromString("[{\"op\": \"replace\", \"path\": \"/b\", \"value\": 1}]").getAsList())),
+                    () -> Assertions.assertThrows(JsonPatchException.class, () -> JsonDiff.apply(document,
+                            Parser.parseFromString("[{\"op\": \"move\", \"from\": \"/a\", \"path\": \"/a/0\"}]").getAsList())),
+                    () -> Assertions.assertThrows(JsonPatchException.class, () -> JsonDiff.apply(document,
+                            Parser.parseFromString("[{\"op\": \"jump\", \"path\": \"\"}]").getAsList()))
+            );
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class ReparseTests {
+
+        // Applies an edit that replaces the first occurrence of target, checking the result against a full parse
+        private void edit(EditableJson document, String target, String replacement) {
+            int offset = document.getText().indexOf(target);
+            Parser.reparse(document, offset, target.length(), replacement);
+            Assertions.assertEquals(Parser.parseFromString(document.getText()), document.getValue(), document.getText());
+        }
+
+        @Test
+        public void reparsesOnlyTheEnclosingContainer() {
+            EditableJson document = Parser.parseEditable("{\"a\": {\"b\": [1, 2, 3]}, \"c\": {\"d\": true}}");
+            JsonValue root = document.getValue();
+            JsonMap a = root.getAsMap().get("a").getAsMap();
+            JsonList b = a.get("b").getAsList();
+            JsonMap c = root.getAsMap().get("c").getAsMap();
+
+            edit(document, "2", "20, 21");
+            Assertions.assertAll(
+                    () -> Assertions.assertSame(root, document.getValue()),
+                    () -> Assertions.assertSame(a, root.getAsMap().get("a").getAsMap()),
+                    () -> Assertions.assertSame(b, a.get("b").getAsList()),
+                    () -> Assertions.assertSame(c, root.getAsMap().get("c").getAsMap()),
+                    () -> Assertions.assertEquals("[1, 20, 21, 3]", b.toJsonString())
+            );
+
+            // Spans after the edit have moved with it
+            edit(document, "true", "false");
+            Assertions.assertSame(c, root.getAsMap().get("c").getAsMap());
+            Assertions.assertFalse(c.get("d").getAsBoolean());
+        }
+
+        @Test
+        public void keepsSpansThroughManyEdits() {
+            EditableJson document = Parser.parseEditable("[{\"k\": [1, {\"x\": \"y\"}]}, [[], [2]], {\"z\": null}]");
+
+            edit(document, "[]", "[ {\"new\": [3, 4]} ]");
+            edit(document, "\"y\"", "\"much longer string\"");
+            edit(document, ", 4", "");
+            edit(document, "null", "{\"w\": [5]}");
+            edit(document, "[2]", "[2, 6]");
+            edit(document, "\"k\"", "\"key\"");
+            edit(document, "5", "{}");
+            Assertions.assertEquals("[{\"key\": [1, {\"x\": \"much longer string\"}]}, [[ {\"new\": [3]} ], [2, 6]], " +
+                    "{\"z\": {\"w\": [{}]}}]", document.getText());
+        }
+
+        @Test
+        public void reparsesEverythingWhenTheStructureChanges() {
+            EditableJson document = Parser.parseEditable("{\"a\": [1, 2], \"b\": 3}");
+            JsonValue root = document.getValue();
+
+            // Still a single array by itself, so only the array is parsed again
+            edit(document, "2", "2, 3");
+            Assertions.assertSame(root, document.getValue());
+
+            // Splits the array into two
+            edit(document, "3", "3], \"c\": [4");
+            Assertions.assertNotSame(root, document.getValue());
+            Assertions.assertEquals(3, document.getValue().getAsMap().size());
+
+            // Replaces the outermost brackets
+            Parser.reparse(document, 0, document.getText().length(), "[1]");
+            Assertions.assertEquals(ValueType.LIST, document.getValue().getValueType());
+        }
+
+        @Test
+        public void leavesTheDocumentUnchangedOnErrors() {
+            JsonMap map = Parser.parseFromString("{\"a\": [1, 2]}").getAsMap();
+            EditableJson document = Parser.parseEditable("{\"a\": [1, 2]}");
+            JsonValue root = document.getValue();
+
+            Assertions.assertThrows(JsonParserException.class, () -> Parser.reparse(document, 7, 1, "1,,"));
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> Parser.reparse(document, 12, 5, ""));
+            Assertions.assertEquals("{\"a\": [1, 2]}", document.getText());
+            Assertions.assertSame(root, document.getValue());
+            Assertions.assertEquals(map, root.getAsMap());
+
+            // Cached output is invalidated by a re-parse
+            root.getAsMap().enableOutputCache();
+            Assertions.assertEquals("{\"a\": [1, 2]}", root.getAsMap().toJsonString());
+            Parser.reparse(document, 7, 1, "7");
+            Assertions.assertEquals("{\"a\": [7, 2]}", root.getAsMap().toJsonString());
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class SchemaTests {
+        private final JsonSchema schema = JsonSchema.compile("{\"type\": \"object\", \"required\": [\"id\", \"tags\"], " +
+                "\"additionalProperties\": false, \"properties\": {" +
+                "\"id\": {\"type\": \"integer\", \"minimum\": 1}," +
+                "\"name\": {\"type\": [\"string\", \"null\"], \"maxLength\": 5, \"pattern\": \"^[a-z]+$\"}," +
+                "\"ratio\": {\"type\": \"number\", \"exclusiveMaximum\": 1}," +
+                "\"kind\": {\"enum\": [\"a\", \"b\"]}," +
+                "\"tags\": {\"type\": \"array\", \"maxItems\": 2, \"items\": {\"type\": \"string\"}}}}");
+        private final Options options = Options.OptionsBuilder.newBuilder().schema(schema).build();
+
+        private String violationPath(String json) {
+            return Assertions.assertThrows(SchemaViolationException.class,
+                    () -> Parser.parseFromString(json, options)).getPath();
+        }
+
+        @Test
+        public void acceptsMatchingDocuments() {
+            String json = "{\"id\": 3, \"name\": \"abc\", \"ratio\": 0.5, \"kind\": \"b\", \"tags\": [\"x\"]}";
+            Assertions.assertEquals(Parser.parseFromString(json), Parser.parseFromString(json, options));
+            Assertions.assertDoesNotThrow(() -> Parser.parseFromString("{\"id\": 1, \"name\": null, \"tags\": []}", options));
+        }
+
+        @Test
+        public void reportsTheFirstViolation() {
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("", violationPath("[1]")),
+                    () -> Assertions.assertEquals("/id", violationPath("{\"id\": 0, \"tags\": []}")),
+                    () -> Assertions.assertEquals("/id", violationPath("{\"id\": 1.5, \"tags\": []}")),
+                    () -> Assertions.assertEquals("/name", violationPath("{\"name\": \"abcdef\"}")),
+                    () -> Assertions.assertEquals("/name", violationPath("{\"name\": \"ABC\"}")),
+                    () -> Assertions.assertEquals("/ratio", violationPath("{\"ratio\": 1}")),
+                    () -> Assertions.assertEquals("/kind", violationPath("{\"kind\": \"c\"}")),
+                    () -> Assertions.assertEquals("/tags/1", violationPath("{\"tags\": [\"x\", 2]}")),
+                    () -> Assertions.assertEquals("/other", violationPath("{\"other\": 1}")),
+                    () -> Assertions.assertEquals("", violationPath("{\"id\": 1}"))
+            );
+        }
+
+        @Test
+        public void comparesEnumNumbersByValue() {
+            Options numbers = Options.OptionsBuilder.newBuilder()
+                    .schema(JsonSchema.compile("{\"enum\": [1, 2.50, \"1\"]}")).build();
+            Options lazyNumbers = Options.OptionsBuilder.newBuilder().lazyNumbers()
+                    .schema(JsonSchema.compile("{\"const\": 100}")).build();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertDoesNotThrow(() -> Parser.parseFromString("1.0", numbers)),
+                    () -> Assertions.assertDoesNotThrow(() -> Parser.parseFromString("2.5", numbers)),
+                    () -> Assertions.assertDoesNotThrow(() -> Parser.parseFromString("\"1\"", numbers)),
+                    () -> Assertions.assertThrows(SchemaViolationException.class,
+                            () -> Parser.parseFromString("1.5", numbers)),
+                    () -> Assertions.assertThrows(SchemaViolationException.class,
+                            () -> Parser.parseFromString("\"2.5\"", numbers)),
+                    () -> Assertions.assertDoesNotThrow(() -> Parser.parseFromString("1e2", lazyNumbers)),
+                    () -> Assertions.assertDoesNotThrow(() -> Parser.parseFromString("100.00", lazyNumbers))
+            );
+        }
+
+        @Test
+        public void failsBeforeFinishingTheParse() {
+            // The array is rejected at its third element, before the malformed JSON after it is reached
+            SchemaViolationException e = Assertions.assertThrows(SchemaViolationException.class,
+                    () -> Parser.parseFromString("{\"tags\": [\"x\", \"y\", \"z\", !!!", options));
+            Assertions.assertEquals("/tags", e.getPath());
+        }
+
+        @Test
+        public void rejectsUnsupportedSchemas() {
+            Assertions.assertAll(
+                    () -> Assertions.assertThrows(IllegalArgumentException.class,
+                            () -> JsonSchema.compile("{\"oneOf\": []}")),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class,
+                            () -> JsonSchema.compile("{\"type\": \"decimal\"}")),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class,
+                            () -> JsonSchema.compile("{\"pattern\": \"(\"}")),
+                    () -> Assertions.assertDoesNotThrow(() -> JsonSchema.compile("{\"title\": \"t\", \"items\": false}"))
+            );
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class JsonPathTests {
+        private final JsonValue document = Parser.parseFromString("{\"orders\": [" +
+                "{\"id\": 1, \"total\": 50, \"items\": [{\"sku\": \"a\"}]}," +
+                "{\"id\": 2, \"total\": 150.5, \"rush\": true, \"items\": [{\"sku\": \"b\"}, {\"sku\": \"c\"}]}," +
+                "{\"id\": 3, \"total\": 100, \"items\": [], \"note\": \"gift\"}], \"limit\": 100}");
+
+        private String select(String expression) {
+            JsonList values = new JsonList();
+            values.addAll(JsonPath.compile(expression).evaluate(document));
+            return values.toJsonString(true);
+        }
+
+        @Test
+        public void selectsValues() {
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("[100]", select("$.limit")),
+                    () -> Assertions.assertEquals("[2]", select("$['orders'][1].id")),
+                    () -> Assertions.assertEquals("[3]", select("$.orders[-1].id")),
+                    () -> Assertions.assertEquals("[1,2,3]", select("$.orders[*].id")),
+                    () -> Assertions.assertEquals("[1,3]", select("$.orders[0,2].id")),
+                    () -> Assertions.assertEquals("[2,3]", select("$.orders[1:].id")),
+                    () -> Assertions.assertEquals("[3,1]", select("$.orders[::-2].id")),
+                    () -> Assertions.assertEquals("[\"a\",\"b\",\"c\"]", select("$..sku")),
+                    () -> Assertions.assertEquals("[]", select("$.missing[0].id"))
+            );
+        }
+
+        @Test
+        public void filtersValues() {
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("[\"b\",\"c\"]", select("$.orders[?(@.total > 100)].items[*].sku")),
+                    () -> Assertions.assertEquals("[2,3]", select("$.orders[?(@.total >= $.limit)].id")),
+                    () -> Assertions.assertEquals("[3]", select("$.orders[?(@.total == 100.0)].id")),
+                    () -> Assertions.assertEquals("[2]", select("$.orders[?@.rush].id")),
+                    () -> Assertions.assertEquals("[1,3]", select("$.orders[?(!@.rush)].id")),
+                    () -> Assertions.assertEquals("[1,3]", select("$.orders[?(@.note == 'gift' || @.id < 2)].id")),
+                    () -> Assertions.assertEquals("[]", select("$.orders[?(@.id > 1 && @.total < 100)].id"))
+            );
+        }
+
+        @Test
+        public void comparesEscapedStringsByTheirCharacters() {
+            JsonValue lines = Parser.parseFromString("[{\"text\": \"a\\nb\"}, {\"text\": \"a1\"}]");
+            JsonPath before = JsonPath.compile("$[?(@.text < 'a0')].text");
+            JsonPath after = JsonPath.compile("$[?(@.text > 'a0')].text");
+
+            // A newline sorts before '0', but the backslash it is stored with sorts after it
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(List.of(JsonValue.valueOf("a\nb")), before.evaluate(lines)),
+                    () -> Assertions.assertEquals(List.of(JsonValue.valueOf("a1")), after.evaluate(lines))
+            );
+        }
+
+        @Test
+        public void cachesCompiledExpressions() {
+            JsonPath path = JsonPath.compile("$.orders[*].id");
+            Assertions.assertSame(path, JsonPath.compile("$.orders[*].id"));
+            Assertions.assertEquals("$.orders[*].id", path.toString());
+            Assertions.assertSame(document.getAsMap().get("orders").getAsList().get(0).getAsMap().get("id"),
+                    path.evaluateFirst(document));
+        }
+
+        @Test
+        public void rejectsInvalidExpressions() {
+            Assertions.assertAll(
+                    () -> Assertions.assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("orders")),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("$.orders[")),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("$[?(1)]")),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("$['a"))
+            );
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class IndexTests {
+
+        private JsonList orders() {
+            return Parser.parseFromString("[" +
+                    "{\"id\": 1, \"region\": \"eu\", \"customer\": {\"id\": \"c1\"}}," +
+                    "{\"id\": 2, \"region\": \"us\", \"customer\": {\"id\": \"c2\"}}," +
+                    "{\"id\": 3, \"region\": \"eu\", \"customer\": {\"id\": \"c1\"}}," +
+                    "\"not an object\", {\"region\": \"eu\"}]").getAsList();
+        }
+
+        @Test
+        public void looksUpObjectsByKey() {
+            JsonList orders = orders();
+            JsonIndex byId = orders.indexBy("id");
+            JsonIndex byCustomer = orders.indexBy("customer.id");
+            JsonIndex byRegionAndCustomer = orders.indexBy("region", "customer.id");
+
+            Assertions.assertAll(
+                    () -> Assertions.assertSame(orders.get(1), byId.get(2)),
+                    () -> Assertions.assertSame(orders.get(1), byId.get(JsonValue.valueOf(2L))),
+                    () -> Assertions.assertNull(byId.get(4)),
+                    () -> Assertions.assertTrue(byId.isUnique()),
+                    () -> Assertions.assertEquals(3, byId.size()),
+                    () -> Assertions.assertEquals(List.of(orders.get(0), orders.get(2)), byCustomer.getAll("c1")),
+                    () -> Assertions.assertFalse(byCustomer.isUnique()),
+                    () -> Assertions.assertSame(orders.get(0), byCustomer.get("c1")),
+                    () -> Assertions.assertEquals(List.of(orders.get(1)), byRegionAndCustomer.getAll("us", "c2")),
+                    () -> Assertions.assertFalse(byRegionAndCustomer.containsKey("us", "c1")),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class, () -> byRegionAndCustomer.get("us"))
+            );
+        }
+
+        @Test
+        public void indexesDecimalsAndEscapedStrings() {
+            JsonList rows = new JsonList();
+            for (int i = 0; i < 100_000; i++) {
+                JsonMap row = new JsonMap();
+                row.put("price", JsonValue.valueOf(i + 0.25));
+                rows.add(JsonValue.valueOf(row));
+            }
+
+            JsonIndex byPrice = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> rows.indexBy("price"));
+            JsonIndex byName = Parser.parseFromString("[{\"name\": \"a\\nb\"}, {\"name\": \"a\\tb\"}]")
+                    .getAsList().indexBy("name");
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(100_000, byPrice.size()),
+                    () -> Assertions.assertTrue(byPrice.isUnique()),
+                    () -> Assertions.assertSame(rows.get(4321), byPrice.get(4321.25)),
+                    () -> Assertions.assertNull(byPrice.get(4321L)),
+                    () -> Assertions.assertEquals(JsonValue.valueOf("a\nb"), byName.get("a\nb").getAsMap().get("name")),
+                    () -> Assertions.assertEquals(1, byName.getAll("a\tb").size())
+            );
+        }
+
+        @Test
+        public void followsChangesToTheList() {
+            JsonList orders = orders();
+            JsonIndex byId = orders.indexBy("id");
+            JsonValue first = orders.get(0);
+
+            orders.add(Parser.parseFromString("{\"id\": 4}"));
+            Assertions.assertSame(orders.get(orders.size() - 1), byId.get(4));
+
+            orders.remove(0);
+            Assertions.assertNull(byId.get(1));
+
+            orders.set(0, first);
+            Assertions.assertSame(first, byId.get(1));
+            Assertions.assertNull(byId.get(2));
+
+            // Changes inside the indexed objects count too
+            first.getAsMap().put("id", JsonValue.valueOf(10L));
+            Assertions.assertNull(byId.get(1));
+            Assertions.assertSame(first, byId.get(10));
+        }
+
+        @Test
+        public void indexesFrozenLists() {
+            JsonList frozen = orders().freeze();
+            Assertions.assertEquals(3, frozen.indexBy("region").getAll("eu").size());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> frozen.indexBy());
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class ColumnTests {
+        private final JsonColumns rows = Parser.parseFromString("[" +
+                "{\"region\": \"eu\", \"units\": 3, \"price\": 2.5, \"paid\": true, \"tags\": []}," +
+                "{\"region\": \"us\", \"units\": 5, \"price\": 1, \"paid\": false}," +
+                "{\"region\": \"eu\", \"units\": null, \"price\": 4.25, \"paid\": true, \"tags\": [\"a\"]}," +
+                "{\"region\": null, \"units\": 7, \"price\": 0.5}]").getAsList().toColumns();
+
+        @Test
+        public void buildsTypedColumns() {
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(4, rows.size()),
+                    () -> Assertions.assertEquals(List.of("region", "units", "price", "paid", "tags"), rows.columnNames()),
+                    () -> Assertions.assertEquals(JsonColumns.ColumnType.STRING, rows.getType("region")),
+                    () -> Assertions.assertEquals(JsonColumns.ColumnType.LONG, rows.getType("units")),
+                    () -> Assertions.assertEquals(JsonColumns.ColumnType.DOUBLE, rows.getType("price")),
+                    () -> Assertions.assertEquals(JsonColumns.ColumnType.BOOLEAN, rows.getType("paid")),
+                    () -> Assertions.assertEquals(JsonColumns.ColumnType.OTHER, rows.getType("tags")),
+                    () -> Assertions.assertTrue(rows.isNull("units", 2)),
+                    () -> Assertions.assertTrue(rows.isNull("paid", 3)),
+                    () -> Assertions.assertEquals(1.0, rows.getDouble("price", 1)),
+                    () -> Assertions.assertEquals("us", rows.getString("region", 1)),
+                    () -> Assertions.assertNull(rows.getString("region", 3)),
+                    () -> Assertions.assertEquals(JsonValue.valueOf(true), rows.getValue("paid", 0)),
+                    () -> Assertions.assertEquals("[\"a\"]", rows.getValue("tags", 2).getAsList().toJsonString()),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class, () -> rows.getLong("region", 0)),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class, () -> rows.count("missing")),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class,
+                            () -> Parser.parseFromString("[{}, 1]").getAsList().toColumns())
+            );
+        }
+
+        @Test
+        public void aggregatesColumns() {
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(15L, rows.sum("units")),
+                    () -> Assertions.assertEquals(8.25, rows.sum("price")),
+                    () -> Assertions.assertEquals(3L, rows.min("units")),
+                    () -> Assertions.assertEquals(7L, rows.max("units")),
+                    () -> Assertions.assertEquals(0.5, rows.min("price")),
+                    () -> Assertions.assertEquals(3, rows.count("units")),
+                    () -> Assertions.assertEquals(3, rows.count("paid")),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class, () -> rows.sum("region"))
+            );
+        }
+
+        @Test
+        public void filtersAndGroupsRows() {
+            JsonColumns expensive = rows.filterDouble("price", price -> price > 2);
+            JsonColumns europe = rows.filterString("region", region -> region.equals("eu"));
+            JsonColumns paid = rows.filterLong("paid", flag -> flag == 1);
+            Map<Object, JsonColumns> byRegion = rows.groupBy("region");
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(2, expensive.size()),
+                    () -> Assertions.assertEquals(6.75, expensive.sum("price")),
+                    () -> Assertions.assertEquals(2, europe.size()),
+                    () -> Assertions.assertEquals(3L, europe.sum("units")),
+                    () -> Assertions.assertEquals(2, paid.size()),
+                    () -> Assertions.assertEquals(Arrays.asList("eu", "us", null), new ArrayList<>(byRegion.keySet())),
+                    () -> Assertions.assertEquals(6.75, byRegion.get("eu").sum("price")),
+                    () -> Assertions.assertEquals(7L, byRegion.get(null).max("units")),
+                    () -> Assertions.assertNull(byRegion.get("eu").filterLong("units", units -> units > 3).max("units"))
+            );
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class TreeWalkerTests {
+        private final ForkJoinPool POOL = new ForkJoinPool(4);
+        private JsonValue document;
+
+        @BeforeAll
+        public void buildDocument() {
+            StringBuilder json = new StringBuilder("{\"rows\": [");
+            for (int i = 0; i < 5000; i++) {
+                if (i > 0)
+                    json.append(',');
+
+                json.append("{\"id\": ").append(i).append(", \"note\": ").append(i % 3 == 0 ? "null" : "\"n" + i + "\"")
+                        .append(", \"values\": [").append(i).append(", null]}");
+            }
+
+            document = Parser.parseFromString(json.append("], \"total\": 5000}").toString());
+        }
+
+        @AfterAll
+        public void shutDownPool() {
+            POOL.shutdown();
+        }
+
+        @Test
+        public void visitsSequentiallyAndInParallel() {
+            JsonVisitor<Long> nulls = JsonVisitor.counting(JsonValue::isNullValue);
+            JsonVisitor<List<JsonValue>> maps = JsonVisitor.collecting(value -> value.getValueType() == ValueType.MAP);
+            List<JsonValue> sequential = maps.walk(document);
+            List<JsonValue> parallel = maps.walk(document, POOL);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(5000L + 1667L, nulls.walk(document)),
+                    () -> Assertions.assertEquals(5000L + 1667L, nulls.walk(document, POOL)),
+                    () -> Assertions.assertEquals(5001, sequential.size()),
+                    () -> Assertions.assertEquals(sequential, parallel),
+                    () -> Assertions.assertSame(document, parallel.get(0)),
+                    () -> Assertions.assertEquals(JsonValue.valueOf(4999L), parallel.get(5000).getAsMap().get("id"))
+            );
+        }
+
+        @Test
+        public void transformsCopyOnWrite() {
+            JsonValue small = Parser.parseFromString("{\"a\": [1, null, 2], \"b\": {\"c\": null}, \"d\": [3]}");
+            JsonTransformer dropNulls = value -> value.isNullValue() ? null : value;
+            JsonValue result = dropNulls.apply(small);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals("{\"a\": [1, 2], \"b\": {}, \"d\": [3]}", result.getAsMap().toJsonString()),
+                    () -> Assertions.assertSame(small.getAsMap().get("d"), result.getAsMap().get("d")),
+                    () -> Assertions.assertEquals(3, small.getAsMap().get("a").getAsList().size()),
+                    () -> Assertions.assertNull(dropNulls.apply(JsonValue.valueOf(null)))
+            );
+        }
+
+        @Test
+        public void transformsInParallel() {
+            JsonTransformer dropNulls = value -> value.isNullValue() ? null : value;
+            JsonValue sequential = dropNulls.apply(document);
+            JsonValue parallel = dropNulls.apply(document, POOL);
+            JsonValue unchanged = ((JsonTransformer) value -> value).apply(document, POOL);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(sequential, parallel),
+                    () -> Assertions.assertEquals(0L, JsonVisitor.counting(JsonValue::isNullValue).walk(parallel)),
+                    () -> Assertions.assertEquals(5000, parallel.getAsMap().get("rows").getAsList().size()),
+                    () -> Assertions.assertSame(document.getAsMap().get("total"), parallel.getAsMap().get("total")),
+                    () -> Assertions.assertSame(document, unchanged)
+            );
+        }
+    }
+
+    @TestInstance(Lifecycle.PER_CLASS)
+    @Nested
+    public class ArrayStreamTests {
+        private final String LOG = "[{\"status\": \"ok\", \"latency\": 20, \"tags\": [\"a\", \"b\"]}, " +
+                "{\"status\": \"error\", \"latency\": 700, \"note\": \"x]}\\\"{\", \"tags\": [\"c\"]}, " +
+                "{\"latency\": 900}, 42, " +
+                "{\"status\": \"error\", \"latency\": 100, \"tags\": []}, " +
+                "{\"status\": \"error\", \"latency\": 550.5, \"tags\": [\"d\", \"e\"]}]";
+
+        private Predicate<JsonValue> isError() {
+            return status -> status.equals(JsonValue.valueOf("error"));
+        }
+
+        @Test
+        public void filtersOnFields() {
+            List<JsonValue> slowErrors = Parser.streamArray(LOG)
+                    .filter("/status", isError())
+                    .filter("/latency", latency -> latency.getAsNumber().doubleValue() > 500)
+                    .toList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(2, slowErrors.size()),
+                    () -> Assertions.assertEquals(JsonValue.valueOf(700L), slowErrors.get(0).getAsMap().get("latency")),
+                    () -> Assertions.assertEquals("x]}\"{", slowErrors.get(0).getAsMap().get("note").getAsString()),
+                    () -> Assertions.assertEquals(3, Parser.streamArray(LOG).filter("/status", isError()).count()),
+                    () -> Assertions.assertEquals(6, Parser.streamArray(LOG).count()),
+                    () -> Assertions.assertEquals(List.of(JsonValue.valueOf("e")), Parser.streamArray(LOG)
+                            .filter("/tags/1", tag -> tag.getAsString().compareTo("c") > 0).toList().stream()
+                            .map(element -> element.getAsMap().get("tags").getAsList().get(1))
+                            .collect(Collectors.toList())),
+                    () -> Assertions.assertEquals(List.of(JsonValue.valueOf(42L)),
+                            Parser.streamArray(LOG).filter("", element -> element.getValueType() == ValueType.OTHER).toList()),
+                    () -> Assertions.assertThrows(IllegalArgumentException.class,
+                            () -> Parser.streamArray(LOG).filter("status", isError()))
+            );
+        }
+
+        @Test
+        public void stopsEarly() {
+            // Everything after the first error is malformed, and never read
+            String truncated = LOG.substring(0, LOG.indexOf("{\"latency\": 900}")) + "{\"status\": ";
+            JsonArrayStream stream = Parser.streamArray(truncated).filter("/status", isError()).limit(1);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(700L, stream.toList().get(0).getAsMap().get("latency").getAsNumber()),
+                    () -> Assertions.assertThrows(IllegalStateException.class, stream::count),
+                    () -> Assertions.assertThrows(JsonParserException.class,
+                            () -> Parser.streamArray(truncated).filter("/status", isError()).toList()),
+                    () -> Assertions.assertEquals(0, Parser.streamArray(truncated).limit(0).count())
+            );
+        }
+
+        @Test
+        public void keepsTopElements() {
+            Comparator<JsonValue> byLatency = Comparator.comparingDouble(
+                    element -> element.getAsMap().get("latency").getAsNumber().doubleValue());
+            List<JsonValue> slowest = Parser.streamArray(LOG).filter("/status", isError()).top(2, byLatency);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(2, slowest.size()),
+                    () -> Assertions.assertEquals(JsonValue.valueOf(700L), slowest.get(0).getAsMap().get("latency")),
+                    () -> Assertions.assertEquals(JsonValue.valueOf(550.5), slowest.get(1).getAsMap().get("latency"))
+            );
+        }
+
+        @Test
+        public void testsTheLastOfRepeatedKeys() {
+            String json = "[{\"a\": 1, \"a\": 2}, {\"a\": 2, \"b\": 0, \"a\": 1}]";
+            List<JsonValue> ones = Parser.streamArray(json).filter("/a", a -> a.equals(JsonValue.valueOf(1L))).toList();
+
+            Assertions.assertEquals(1, ones.size());
+            Assertions.assertEquals(JsonValue.valueOf(0L), ones.get(0).getAsMap().get("b"));
+        }
+
+        @Test
+        public void testsSeveralFieldsInOnePass() {
+            String json = "[{\"meta\": {\"level\": 3, \"tags\": [\"x\", \"y\"]}, \"na\\u006de\": \"a\"}, " +
+                    "{\"meta\": {\"tags\": [\"x\"], \"level\": 1}, \"name\": \"b\"}, " +
+                    "{\"meta\": {\"level\": 5}, \"name\": \"c\"}, " +
+                    "{\"name\": \"d\", \"meta\": {\"level\": 4, \"tags\": [\"x\"]}, \"meta\": [0]}]";
+            StringPool keys = new StringPool(16);
+            Options options = Options.OptionsBuilder.newBuilder().keyPool(keys).build();
+
+            long found = Parser.streamArray(json, options)
+                    .filter("/meta/level", level -> level.getAsNumber().intValue() > 2)
+                    .filter("/meta/tags/0", tag -> tag.getAsString().equals("x"))
+                    .filter("/name", name -> true)
+                    .count();
+            long named = Parser.streamArray(json, options).filter("/name", name -> name.getAsString().equals("a")).count();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(1, found),
+                    () -> Assertions.assertEquals(1, named),
+                    () -> Assertions.assertEquals(0, keys.size()), // Keys are compared without being interned
+                    () -> Assertions.assertEquals(List.of("b"), Parser.streamArray(json)
+                            .filter("/meta/tags/0", tag -> true).filter("/meta/level", level -> level.getAsNumber()
+                                    .intValue() < 2).toList().stream().map(element -> element.getAsMap()
+                                    .get("name").getAsString()).collect(Collectors.toList()))
+            );
+        }
+
+        @Test
+        public void readsOnlyAsMuchInputAsNeeded() {
+            // An endless array, where every tenth element is an error
+            int[] charactersRead = {0};
+            Reader endless = new Reader() {
+                private final StringBuilder pending = new StringBuilder("[");
+                private int id;
+
+                @Override
+                public int read(char[] buffer, int offset, int length) {
+                    while (pending.length() < length)
+                        pending.append("{\"id\": ").append(id).append(", \"status\": \"")
+                                .append(id++ % 10 == 9 ? "error" : "ok").append("\"},");
+
+                    pending.getChars(0, length, buffer, offset);
+                    pending.delete(0, length);
+                    charactersRead[0] += length;
+                    return length;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+
+            List<JsonValue> errors = Parser.streamArray(endless).filter("/status", isError()).limit(3).toList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(List.of(JsonValue.valueOf(9L), JsonValue.valueOf(19L),
+                            JsonValue.valueOf(29L)), errors.stream().map(error -> error.getAsMap().get("id"))
+                            .collect(Collectors.toList())),
+                    () -> Assertions.assertTrue(charactersRead[0] <= 2 * 65536, "Read " + charactersRead[0])
+            );
+        }
+
+        @Test
+        public void streamsFilesAndLongElements(@TempDir Path directory) throws IOException {
+            String longNote = "n".repeat(200_000);
+            File file = directory.resolve("log.json").toFile();
+            Files.writeString(file.toPath(), "[{\"status\": \"ok\"}, {\"status\": \"error\", \"note\": \"" +
+                    longNote + "\"}, {\"status\": \"error\", \"note\": \"\u00e9\"}]\n");
+
+            List<JsonValue> errors = Parser.streamArray(file).filter("/status", isError()).toList();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(2, errors.size()),
+                    () -> Assertions.assertEquals(longNote, errors.get(0).getAsMap().get("note").getAsString()),
+                    () -> Assertions.assertEquals("\u00e9", errors.get(1).getAsMap().get("note").getAsString()),
+                    () -> Assertions.assertEquals(3, Parser.streamArray(file).count())
+            );
+        }
+
+        @Test
+        public void rejectsMalformedArrays() {
+            Assertions.assertAll(
+                    () -> Assertions.assertThrows(IllegalCharacterException.class, () -> Parser.streamArray("{}")),
+                    () -> Assertions.assertThrows(IllegalCharacterException.class,
+                            () -> Parser.streamArray("[1, 2,]").toList()),
+                    () -> Assertions.assertThrows(IllegalCharacterException.class,
+                            () -> Parser.streamArray("[1 2]").count()),
+                    () -> Assertions.assertThrows(IllegalCharacterException.class,
+                            () -> Parser.streamArray("[1] 2").toList()),
+                    () -> Assertions.assertEquals(0, Parser.streamArray(" [ ] ").count())
+            );
+        }
+    }
+
     @TestInstance(Lifecycle.PER_CLASS)
     @Nested
     public class FileTests {